@@ -4,6 +4,7 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.core.FileAppender;
+import com.google.common.hash.Hashing;
 import org.apache.commons.io.FileUtils;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
@@ -11,20 +12,35 @@ import org.apache.tools.ant.ProjectHelper;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.LoggerListener;
 import org.dita.dost.util.Configuration.Mode;
+import org.dita.dost.util.SourceTreeCache;
 import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.dita.dost.util.Constants.ANT_INVOKER_EXT_PARAM_INCREMENTAL;
 
 /**
- * DITA-OT processer. Not thread-safe, but can be reused.
+ * DITA-OT processer. Not thread-safe, but can be reused. Separate processors can be run concurrently.
+ *
+ * <p>If {@code incremental} property is {@code true}, the temporary directory is kept between builds so that
+ * later builds can skip unchanged topics. The directory is the {@code dita.temp.dir} property if set, otherwise
+ * a directory under {@code base.temp.dir} derived from the transtype, input and output directory. Incremental
+ * builds that use the same temporary directory are run one at a time.</p>
  */
 public final class Processor {
 
+    /** Locks for incremental build temporary directories. */
+    private static final ConcurrentMap<File, Object> incrementalLocks = new ConcurrentHashMap<>();
+
     private final File ditaDir;
     private final Map<String, String> args;
     private Logger logger;
@@ -184,9 +200,19 @@ public final class Processor {
         if (!args.containsKey("output.dir")) {
             throw new IllegalStateException("Output directory not set");
         }
-        final File tempDir = getTempDir();
-        args.put("dita.temp.dir", tempDir.getAbsolutePath());
-        boolean cleanTemp = true;
+        final boolean incremental = Boolean.parseBoolean(args.get(ANT_INVOKER_EXT_PARAM_INCREMENTAL));
+        final File tempDir = incremental ? getIncrementalTempDir() : getTempDir();
+        if (incremental) {
+            synchronized (incrementalLocks.computeIfAbsent(tempDir, dir -> new Object())) {
+                run(tempDir, false);
+            }
+        } else {
+            run(tempDir, true);
+        }
+    }
+
+    private void run(final File tempDir, final boolean clean) throws DITAOTException {
+        boolean cleanTemp = clean;
 
         final ch.qos.logback.classic.Logger debugLogger = createDebugLog ? openDebugLogger(tempDir) : null;
 
@@ -209,23 +235,28 @@ public final class Processor {
             for (final Map.Entry<String, String> arg : args.entrySet()) {
                 project.setUserProperty(arg.getKey(), arg.getValue());
             }
+            project.setUserProperty("dita.temp.dir", tempDir.getAbsolutePath());
             ProjectHelper.configureProject(project, buildFile);
             final Vector<String> targets = new Vector<>();
 //            targets.addElement(project.getDefaultTarget());
             targets.addElement("dita2" + args.get("transtype"));
             project.executeTargets(targets);
         } catch (final BuildException e) {
-            cleanTemp = cleanOnFailure;
+            cleanTemp = clean && cleanOnFailure;
             throw new DITAOTException(e);
         } finally {
             if (debugLogger != null) {
                 closeDebugLogger(debugLogger);
             }
+            // source trees of this build are not shared with other builds
+            SourceTreeCache.getInstance().invalidateAll(tempDir);
             if (cleanTemp) {
                 try {
                     FileUtils.forceDelete(tempDir);
                 } catch (final IOException ex) {
-                    logger.error("Failed to delete temporary directory " + tempDir);
+                    if (logger != null) {
+                        logger.error("Failed to delete temporary directory " + tempDir);
+                    }
                 }
             }
         }
@@ -258,26 +289,36 @@ public final class Processor {
         debugLogger.detachAndStopAllAppenders();
     }
 
+    /**
+     * Get persistent temporary directory for incremental builds.
+     */
+    private File getIncrementalTempDir() {
+        final String dir = args.get("dita.temp.dir");
+        final File tempDir;
+        if (dir != null) {
+            tempDir = new File(dir).getAbsoluteFile();
+        } else {
+            final String key = args.get("transtype") + "\n" + args.get("args.input") + "\n" + args.get("output.dir");
+            final String id = Long.toHexString(Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asLong());
+            tempDir = new File(args.get("base.temp.dir"), "incremental-" + id).getAbsoluteFile();
+        }
+        try {
+            FileUtils.forceMkdir(tempDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create temporary directory", e);
+        }
+        return tempDir;
+    }
+
     private File getTempDir() {
         final File baseTempDir = new File(args.get("base.temp.dir"));
-        File tempDir;
-        for (int i = 0; i < 10; i++) {
-            tempDir = new File(baseTempDir, Long.toString(System.currentTimeMillis()));
-            if (!tempDir.exists()) {
-                try {
-                    FileUtils.forceMkdir(tempDir);
-                    return tempDir;
-                } catch (IOException e) {
-                    // Ignore
-                }
-            }
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                // Ignore
-            }
+        try {
+            FileUtils.forceMkdir(baseTempDir);
+            // directory is created atomically, concurrent processors will not share a temporary directory
+            return Files.createTempDirectory(baseTempDir.toPath(), "temp").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create temporary directory", e);
         }
-        throw new RuntimeException("Unable to create temporary directory");
     }
 
 }
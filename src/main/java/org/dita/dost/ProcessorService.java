@@ -0,0 +1,230 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost;
+
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived DITA-OT processing service.
+ *
+ * <p>The service runs builds concurrently in a single JVM, so that loaded classes, the catalog resolver and
+ * compiled stylesheets are shared between builds. Every build runs in its own temporary directory and parses
+ * {@code build.xml} into its own Ant project; the configured project is not reused, because Ant projects hold
+ * mutable per-build state and plug-in build files run tasks at parse time.</p>
+ *
+ * <p>Builds share the process-wide compiled stylesheet cache and source tree cache. Compiled stylesheets are
+ * immutable and keyed by stylesheet and catalog. Cached source trees are keyed by file and limited to files
+ * in the temporary directory of each build, and they are removed when the build finishes.</p>
+ *
+ * <p>Build requests can be read from a stream or a local socket. Each request is a single line of
+ * tab separated {@code name=value} properties, e.g.</p>
+ *
+ * <pre>transtype=html5	args.input=/data/root.ditamap	output.dir=/data/out</pre>
+ *
+ * <p>The {@code transtype}, {@code args.input} and {@code output.dir} properties are required, optional
+ * {@code id} property is used to identify the response. When the build finishes, a response line
+ * {@code <id>	OK} or {@code <id>	FAILED	<message>} is written. Responses are written in order of build
+ * completion. If no {@code id} is given, request sequence number is used.</p>
+ *
+ * @since 3.0
+ */
+public final class ProcessorService implements Closeable {
+
+    private static final String ID = "id";
+    private static final String TRANSTYPE = "transtype";
+    private static final String INPUT = "args.input";
+    private static final String OUTPUT = "output.dir";
+
+    private final ProcessorFactory processorFactory;
+    private final ExecutorService executor;
+    private final Map<String, String> defaults = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private Logger logger;
+
+    /**
+     * Create new processing service.
+     *
+     * @param processorFactory factory for build processors
+     * @param threads maximum number of concurrent builds
+     */
+    public ProcessorService(final ProcessorFactory processorFactory, final int threads) {
+        this.processorFactory = processorFactory;
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Set default properties for all builds. Request properties override defaults.
+     *
+     * @param defaults default properties
+     */
+    public void setDefaults(final Map<String, String> defaults) {
+        this.defaults.putAll(defaults);
+    }
+
+    /**
+     * Set build logger.
+     *
+     * @param logger build logger, may be {@code null}
+     */
+    public void setLogger(final Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Submit build.
+     *
+     * @param request build properties, {@code transtype}, {@code args.input} and {@code output.dir} are required
+     * @return future that completes when the build finishes
+     * @throws IllegalArgumentException if a required property is missing or invalid
+     */
+    public Future<Void> submit(final Map<String, String> request) {
+        final Processor processor = newProcessor(request);
+        return executor.submit(() -> {
+            processor.run();
+            return null;
+        });
+    }
+
+    private Processor newProcessor(final Map<String, String> request) {
+        final Map<String, String> args = new HashMap<>(defaults);
+        args.putAll(request);
+        args.remove(ID);
+        for (final String name : new String[] {TRANSTYPE, INPUT, OUTPUT}) {
+            if (!args.containsKey(name)) {
+                throw new IllegalArgumentException("Property " + name + " not set");
+            }
+        }
+        final Processor processor = processorFactory.newProcessor(args.remove(TRANSTYPE));
+        final String input = args.remove(INPUT);
+        final String output = args.remove(OUTPUT);
+        return processor.setProperties(args)
+                .setInput(new File(input).getAbsoluteFile())
+                .setOutputDir(new File(output).getAbsoluteFile())
+                .setLogger(logger);
+    }
+
+    /**
+     * Read build requests from a stream and write responses when builds finish. Returns when the input
+     * is exhausted and all builds read from it have finished.
+     *
+     * @param in request input
+     * @param out response output
+     * @throws IOException if reading requests fails
+     */
+    public void serve(final InputStream in, final OutputStream out) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        final PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+        final Phaser pending = new Phaser(1);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String id = Long.toString(sequence.incrementAndGet());
+            final Processor processor;
+            try {
+                final Map<String, String> request = parseRequest(line);
+                if (request.containsKey(ID)) {
+                    id = request.get(ID);
+                }
+                processor = newProcessor(request);
+            } catch (final RuntimeException e) {
+                respond(writer, id, e);
+                continue;
+            }
+            final String buildId = id;
+            pending.register();
+            try {
+                executor.execute(() -> {
+                    try {
+                        processor.run();
+                        respond(writer, buildId, null);
+                    } catch (final Exception e) {
+                        respond(writer, buildId, e);
+                    } finally {
+                        pending.arriveAndDeregister();
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                pending.arriveAndDeregister();
+                respond(writer, buildId, e);
+            }
+        }
+        pending.arriveAndAwaitAdvance();
+    }
+
+    /**
+     * Accept connections from a server socket and serve build requests from each connection until the
+     * socket is closed.
+     *
+     * @param serverSocket server socket to accept connections from
+     * @throws IOException if accepting connections fails
+     */
+    public void serve(final ServerSocket serverSocket) throws IOException {
+        while (!serverSocket.isClosed()) {
+            final Socket socket = serverSocket.accept();
+            final Thread handler = new Thread(() -> {
+                try (final Socket s = socket) {
+                    serve(s.getInputStream(), s.getOutputStream());
+                } catch (final IOException e) {
+                    if (logger != null) {
+                        logger.error("Failed to serve connection: " + e.getMessage(), e);
+                    }
+                }
+            }, "dita-service-" + socket.getPort());
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    /**
+     * Stop accepting builds and wait for running builds to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Map<String, String> parseRequest(final String line) {
+        final Map<String, String> request = new HashMap<>();
+        for (final String token : line.split("\t")) {
+            final int i = token.indexOf('=');
+            if (i == -1) {
+                throw new IllegalArgumentException("Invalid property " + token);
+            }
+            request.put(token.substring(0, i).trim(), token.substring(i + 1));
+        }
+        return request;
+    }
+
+    private static void respond(final PrintWriter writer, final String id, final Throwable error) {
+        synchronized (writer) {
+            if (error == null) {
+                writer.println(id + "\tOK");
+            } else {
+                final String msg = error.getMessage() != null ? error.getMessage() : error.toString();
+                writer.println(id + "\tFAILED\t" + msg.replaceAll("\\s+", " "));
+            }
+        }
+    }
+
+}
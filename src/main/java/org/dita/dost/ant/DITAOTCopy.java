@@ -7,37 +7,76 @@
  */
 package org.dita.dost.ant;
 
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.dita.dost.util.Constants.*;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.Resource;
+import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileProvider;
 import org.apache.tools.ant.util.FileUtils;
 
 /**
- * Class description goes here.
+ * Copy files to a destination directory.
+ *
+ * <p>Files are listed either with {@code includes} or {@code includesfile} and {@code relativepaths}, or with
+ * nested resource collections, e.g. {@code ditafileset}. Files are copied concurrently with a bounded thread pool.
+ * Like Ant {@code copy}, a file is skipped if the destination file is not older than the source file, unless
+ * {@code overwrite} is set. Copies keep the source last-modified time.</p>
+ *
+ * <p>In {@code hardlink} and {@code symlink} modes local files are linked into the destination directory instead of
+ * copied. If linking fails, e.g. because the destination is on a different file system, the file is copied.
+ * Symbolic links are never created to files in the temporary directory, because it may be removed after the
+ * build. Link modes must only be used if destination files are not modified in place.</p>
  *
  * @author Wu, Zhi Qiang
  */
 public final class DITAOTCopy extends Task {
-    
+
+    /** File transfer mode. */
+    enum Mode {
+        COPY, HARDLINK, SYMLINK
+    }
+
     private String includes = null;
     private File includesFile = null;
     private String relativePaths = null;
     /** Destination directory */
     private File destDir = null;
+    private final List<ResourceCollection> resources = new ArrayList<>();
+    private Mode mode = Mode.COPY;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean failOnError = true;
+    private boolean overwrite = false;
+    private final long granularity = FileUtils.getFileUtils().getFileTimestampGranularity();
 
     /**
      * Default Constructor.
-     * 
+     *
      */
     public DITAOTCopy(){
     }
@@ -49,7 +88,7 @@ public final class DITAOTCopy extends Task {
     public void setIncludes(final String incld) {
         includes = incld;
     }
-    
+
     /**
      * Set the copy files list file.
      * @param includesFile list file for includes to set.
@@ -76,12 +115,57 @@ public final class DITAOTCopy extends Task {
         }
     }
 
+    /**
+     * Add resources to copy. Resources are copied to the destination directory using resource name as the
+     * relative path.
+     * @param rc resource collection
+     */
+    public void add(final ResourceCollection rc) {
+        resources.add(rc);
+    }
+
+    /**
+     * Set file transfer mode.
+     * @param mode one of {@code copy}, {@code hardlink}, or {@code symlink}
+     */
+    public void setMode(final String mode) {
+        try {
+            this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ENGLISH));
+        } catch (final IllegalArgumentException e) {
+            throw new BuildException("Unsupported copy mode " + mode);
+        }
+    }
+
+    /**
+     * Set maximum number of concurrent copy threads.
+     * @param threads number of threads, non-positive value uses the number of available processors
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Set whether a failure to copy a file fails the build.
+     * @param failOnError {@code true} to fail the build, {@code false} to log an error
+     */
+    public void setFailonerror(final boolean failOnError) {
+        this.failOnError = failOnError;
+    }
+
+    /**
+     * Set whether to overwrite destination files that are newer than source files.
+     * @param overwrite {@code true} to always copy, {@code false} to copy only out of date files
+     */
+    public void setOverwrite(final boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
     /**
      * @see org.apache.tools.ant.Task#execute()
      */
     @Override
     public void execute() throws BuildException {
-        if (includes == null && includesFile == null) {
+        if (includes == null && includesFile == null && resources.isEmpty()) {
             return;
         }
         if (destDir == null) {
@@ -90,36 +174,97 @@ public final class DITAOTCopy extends Task {
         if (!destDir.exists() && !destDir.mkdirs()) {
             throw new BuildException(new IOException("Destination directory " + destDir + " cannot be created"));
         }
+        final List<CopyTask> tasks;
         try {
-            final FileUtils fileUtils = FileUtils.newFileUtils();
-            final List<String> incs = getIncludes();
-            if (relativePaths == null) {
-                for (final String inc: incs) {
-                    final File srcFile = new File(inc);
-                    if (srcFile.exists()) {
-                        final File destFile = new File(destDir, srcFile.getName());
-                        fileUtils.copyFile(srcFile, destFile);
-                    }
-                }
-            } else {
-                for (final String inc: incs) {
-                    final File srcFile = new File(inc);
-                    File destFile = null;
-                    for (final String rel: relativePaths.split(COMMA)) {
-                        final File temp = new File(destDir, rel);
-                        if (temp.getName().equalsIgnoreCase(srcFile.getName())) {
-                            destFile = temp;
-                            break;
+            tasks = getTasks();
+        } catch (final IOException e) {
+            throw new BuildException(e.getMessage(), e);
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        log("Copying " + tasks.size() + " files to " + destDir, Project.MSG_INFO);
+        final AtomicInteger skipped = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            final List<Future<?>> results = new ArrayList<>(tasks.size());
+            for (final CopyTask task : tasks) {
+                results.add(pool.submit(() -> {
+                    try {
+                        if (!task.run()) {
+                            skipped.incrementAndGet();
+                        }
+                    } catch (final IOException e) {
+                        final String msg = "Failed to copy " + (task.src != null ? task.src : task.resource) + " to " + task.dst + ": " + e.getMessage();
+                        if (failOnError) {
+                            throw new BuildException(msg, e);
                         }
+                        log(msg, Project.MSG_ERR);
                     }
-                    if (srcFile.exists() && destFile != null) {                      
-                        fileUtils.copyFile(srcFile, destFile);
+                    return null;
+                }));
+            }
+            for (final Future<?> result : results) {
+                result.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("Copying interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof BuildException) {
+                throw (BuildException) e.getCause();
+            }
+            throw new BuildException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (skipped.get() > 0) {
+            log("Skipped " + skipped.get() + " up to date files", Project.MSG_VERBOSE);
+        }
+    }
+
+    private List<CopyTask> getTasks() throws IOException {
+        final List<CopyTask> res = new ArrayList<>();
+        final List<String> incs = getIncludes();
+        if (relativePaths == null) {
+            for (final String inc: incs) {
+                final File srcFile = new File(inc);
+                if (srcFile.exists()) {
+                    final File destFile = new File(destDir, srcFile.getName());
+                    res.add(new CopyTask(srcFile.toPath(), null, destFile.toPath()));
+                }
+            }
+        } else {
+            for (final String inc: incs) {
+                final File srcFile = new File(inc);
+                File destFile = null;
+                for (final String rel: relativePaths.split(COMMA)) {
+                    final File temp = new File(destDir, rel);
+                    if (temp.getName().equalsIgnoreCase(srcFile.getName())) {
+                        destFile = temp;
+                        break;
                     }
                 }
+                if (srcFile.exists() && destFile != null) {
+                    res.add(new CopyTask(srcFile.toPath(), null, destFile.toPath()));
+                }
+            }
+        }
+        for (final ResourceCollection rc : resources) {
+            for (final Resource r : rc) {
+                if (!r.isExists() || r.isDirectory()) {
+                    continue;
+                }
+                final File destFile = new File(destDir, r.getName());
+                final FileProvider fp = r.as(FileProvider.class);
+                if (fp != null) {
+                    res.add(new CopyTask(fp.getFile().toPath(), null, destFile.toPath()));
+                } else {
+                    res.add(new CopyTask(null, r, destFile.toPath()));
+                }
             }
-        } catch (final IOException e) {
-            throw new BuildException(e.getMessage(), e);
         }
+        return res;
     }
 
     private List<String> getIncludes() throws IOException {
@@ -147,5 +292,109 @@ public final class DITAOTCopy extends Task {
             return Arrays.asList(includes.split(COMMA));
         }
     }
-    
-}
\ No newline at end of file
+
+    private Path getTempDir() {
+        final String tempDir = getProject() != null ? getProject().getProperty(ANT_TEMP_DIR) : null;
+        return tempDir != null ? new File(tempDir).getAbsoluteFile().toPath() : null;
+    }
+
+    /**
+     * Single file transfer.
+     */
+    private final class CopyTask {
+        /** Local source file, {@code null} if source is not a local file. */
+        final Path src;
+        /** Non-local source resource, {@code null} if source is a local file. */
+        final Resource resource;
+        final Path dst;
+
+        CopyTask(final Path src, final Resource resource, final Path dst) {
+            this.src = src;
+            this.resource = resource;
+            this.dst = dst;
+        }
+
+        /**
+         * Transfer file.
+         *
+         * @return {@code true} if the file was transferred, {@code false} if destination was up to date
+         */
+        boolean run() throws IOException {
+            if (src == null) {
+                return copyResource();
+            }
+            final BasicFileAttributes srcAttrs = Files.readAttributes(src, BasicFileAttributes.class);
+            if (isUpToDate(srcAttrs)) {
+                return false;
+            }
+            Files.createDirectories(dst.getParent());
+            switch (mode) {
+                case HARDLINK:
+                    if (link(false)) {
+                        return true;
+                    }
+                    break;
+                case SYMLINK:
+                    final Path tempDir = getTempDir();
+                    if ((tempDir == null || !src.toAbsolutePath().startsWith(tempDir)) && link(true)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            Files.copy(src, dst, REPLACE_EXISTING, COPY_ATTRIBUTES);
+            return true;
+        }
+
+        private boolean isUpToDate(final BasicFileAttributes srcAttrs) throws IOException {
+            if (!Files.exists(dst)) {
+                return false;
+            }
+            if (Files.isSameFile(src, dst)) {
+                return true;
+            }
+            final BasicFileAttributes dstAttrs = Files.readAttributes(dst, BasicFileAttributes.class);
+            return !overwrite
+                    && dstAttrs.isRegularFile()
+                    && !isOutOfDate(srcAttrs.lastModifiedTime().toMillis(), dstAttrs.lastModifiedTime().toMillis());
+        }
+
+        /** Test if destination is older than source, with the same timestamp granularity as Ant {@code copy}. */
+        private boolean isOutOfDate(final long srcLastModified, final long dstLastModified) {
+            return srcLastModified - granularity > dstLastModified;
+        }
+
+        private boolean link(final boolean symbolic) throws IOException {
+            Files.deleteIfExists(dst);
+            try {
+                if (symbolic) {
+                    Files.createSymbolicLink(dst, src.toAbsolutePath());
+                } else {
+                    Files.createLink(dst, src);
+                }
+                return true;
+            } catch (final FileSystemException | UnsupportedOperationException e) {
+                log("Failed to link " + src + " to " + dst + ", copying instead: " + e.getMessage(), Project.MSG_VERBOSE);
+                return false;
+            }
+        }
+
+        private boolean copyResource() throws IOException {
+            final long lastModified = resource.getLastModified();
+            if (!overwrite && Files.isRegularFile(dst)
+                    && !isOutOfDate(lastModified, Files.getLastModifiedTime(dst).toMillis())) {
+                return false;
+            }
+            Files.createDirectories(dst.getParent());
+            try (final InputStream in = resource.getInputStream()) {
+                Files.copy(in, dst, REPLACE_EXISTING);
+            }
+            if (lastModified != 0L) {
+                Files.setLastModifiedTime(dst, FileTime.fromMillis(lastModified));
+            }
+            return true;
+        }
+    }
+
+}
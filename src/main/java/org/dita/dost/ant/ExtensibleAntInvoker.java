@@ -23,6 +23,8 @@ import org.dita.dost.pipeline.PipelineHashIO;
 import org.dita.dost.util.Constants;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.SourceTreeCache;
+import org.dita.dost.util.XMLUtils;
 import org.dita.dost.writer.AbstractXMLFilter;
 
 import java.io.BufferedReader;
@@ -31,6 +33,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
@@ -160,12 +163,21 @@ public final class ExtensibleAntInvoker extends Task {
                 long start = System.currentTimeMillis();
                 mod.setLogger(logger);
                 mod.setJob(job);
+                mod.setParallel(m.parallel);
+                mod.setThreads(m.threads);
                 mod.execute(pipelineInput);
                 long end = System.currentTimeMillis();
                 logger.debug("{0} processing took {1} ms", mod.getClass().getSimpleName(), Long.valueOf(end - start));
             }
+            job.exportXml();
+            logger.debug(XMLUtils.getXMLReaderPool().toString());
+            logger.debug(XMLUtils.getTransformerPool().toString());
+            logger.debug(XMLUtils.getDocumentBuilderPool().toString());
+            logger.debug(SourceTreeCache.getInstance().toString());
         } catch (final DITAOTException e) {
             throw new BuildException("Failed to run pipeline: " + e.getMessage(), e);
+        } catch (final IOException e) {
+            throw new BuildException("Failed to export job configuration: " + e.getMessage(), e);
         }
     }
 
@@ -190,6 +202,7 @@ public final class ExtensibleAntInvoker extends Task {
             module.setFilenameParam(xm.filenameparameter);
             module.setFiledirParam(xm.filedirparameter);
             module.setReloadstylesheet(xm.reloadstylesheet);
+            module.setIncremental(xm.incremental);
             module.setXMLCatalog(xm.xmlcatalog);
             if (xm.mapper != null) {
                 module.setMapper(xm.mapper.getImplementation());
@@ -212,11 +225,7 @@ public final class ExtensibleAntInvoker extends Task {
             final List<FileInfoFilterElem> predicates = new ArrayList<>(fm.getFormat());
             predicates.addAll(m.fileInfoFilters);
             module.setFileInfoFilter(combine(predicates));
-            try {
-                module.setProcessingPipe(fm.getFilters());
-            } catch (final InstantiationException | IllegalAccessException e) {
-                throw new BuildException(e);
-            }
+            module.setProcessingPipe(fm.getFilters());
             return module;
         } else {
             for (final ParamElem p : m.params) {
@@ -313,10 +322,20 @@ public final class ExtensibleAntInvoker extends Task {
         public final List<ParamElem> params = new ArrayList<>();
         private Class<? extends AbstractPipelineModule> cls;
         public final Collection<FileInfoFilterElem> fileInfoFilters = new ArrayList<>();
+        private boolean parallel;
+        private int threads;
 
         public void setClass(final Class<? extends AbstractPipelineModule> cls) {
             this.cls = cls;
         }
+
+        public void setParallel(final boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
         
         public void addConfiguredParam(final ParamElem p) {
             params.add(p);
@@ -350,6 +369,7 @@ public final class ExtensibleAntInvoker extends Task {
         private String filedirparameter;
         private XMLCatalog xmlcatalog;
         private boolean reloadstylesheet;
+        private boolean incremental;
         
         // Ant setters
         
@@ -380,6 +400,10 @@ public final class ExtensibleAntInvoker extends Task {
             this.reloadstylesheet = reloadstylesheet;
         }
         
+        public void setIncremental(final boolean incremental) {
+            this.incremental = incremental;
+        }
+        
         public void setIn(final File in) {
             this.in = in;
         }
@@ -480,19 +504,32 @@ public final class ExtensibleAntInvoker extends Task {
             filters.add(filter);
         }
 
-        public List<FilterPair> getFilters() throws IllegalAccessException, InstantiationException {
+        public List<FilterPair> getFilters() {
             final List<FilterPair> res = new ArrayList<>(filters.size());
             for (final XmlFilterElem f: filters) {
                 if (isValid(getProject(), f.getIf(), f.getUnless())) {
-                    final AbstractXMLFilter fc = f.getImplementation().newInstance();
+                    final Class<? extends AbstractXMLFilter> cls = f.getImplementation();
+                    final Map<String, String> params = new LinkedHashMap<>();
                     for (final ParamElem p : f.params) {
                         if (!p.isValid()) {
                             throw new BuildException("Incomplete parameter");
                         }
                         if (isValid(getProject(), p.getIf(), p.getUnless())) {
-                            fc.setParam(p.getName(), p.getValue());
+                            params.put(p.getName(), p.getValue());
                         }
                     }
+                    final Supplier<AbstractXMLFilter> fc = () -> {
+                        final AbstractXMLFilter filter;
+                        try {
+                            filter = cls.newInstance();
+                        } catch (final InstantiationException | IllegalAccessException e) {
+                            throw new BuildException(e);
+                        }
+                        for (final Map.Entry<String, String> p : params.entrySet()) {
+                            filter.setParam(p.getKey(), p.getValue());
+                        }
+                        return filter;
+                    };
                     final List<FileInfoFilterElem> predicates = new ArrayList<>(f.fileInfoFilters);
                     predicates.addAll(getFormat());
                     assert !predicates.isEmpty();
@@ -266,12 +266,19 @@ public final class IndexTerm implements Comparable<IndexTerm> {
      * Sort all the subterms iteratively.
      */
     public void sortSubTerms() {
-        final int subTermNum = subTerms.size();
+        sortSubTerms(DITAOTCollator.getInstance(termLocale != null ? termLocale : Locale.US));
+    }
 
-        if (subTerms != null && subTermNum > 0) {
-            Collections.sort(subTerms);
+    /**
+     * Sort all the subterms iteratively.
+     *
+     * @param collator collator for sort keys
+     */
+    void sortSubTerms(final DITAOTCollator collator) {
+        if (subTerms != null && !subTerms.isEmpty()) {
+            collator.sort(subTerms, IndexTerm::getTermKey);
             for (final IndexTerm subTerm : subTerms) {
-                subTerm.sortSubTerms();
+                subTerm.sortSubTerms(collator);
             }
         }
     }
@@ -12,13 +12,16 @@ import static org.dita.dost.util.Constants.*;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.PipelineHashIO;
+import org.dita.dost.util.DITAOTCollator;
 import org.dita.dost.writer.AbstractExtendDitaWriter;
 import org.dita.dost.writer.AbstractWriter;
 import org.dita.dost.writer.IDitaTranstypeIndexWriter;
@@ -35,6 +38,8 @@ public final class IndexTermCollection {
     private static IndexTermCollection collection = null;
     /** The list of all index term. */
     private final List<IndexTerm> termList = new ArrayList<>(16);
+    /** Index of terms in {@link #termList} by full name and key. */
+    private final Map<TermId, IndexTerm> termIndex = new HashMap<>(16);
 
     /** The type of index term. */
     private String indexType = null;
@@ -97,26 +102,15 @@ public final class IndexTermCollection {
      * @param term index term
      */
     public void addTerm(final IndexTerm term) {
-        int i = 0;
-        final int termNum = termList.size();
-
-        for (; i < termNum; i++) {
-            final IndexTerm indexTerm = termList.get(i);
-            if (indexTerm.equals(term)) {
-                return;
-            }
-
-            // Add targets when same term name and same term key
-            if (indexTerm.getTermFullName().equals(term.getTermFullName())
-                    && indexTerm.getTermKey().equals(term.getTermKey())) {
-                indexTerm.addTargets(term.getTargetList());
-                indexTerm.addSubTerms(term.getSubTerms());
-                break;
-            }
-        }
-
-        if (i == termNum) {
+        final TermId id = new TermId(term.getTermFullName(), term.getTermKey());
+        final IndexTerm indexTerm = termIndex.get(id);
+        if (indexTerm == null) {
+            termIndex.put(id, term);
             termList.add(term);
+        } else if (!indexTerm.equals(term)) {
+            // Add targets when same term name and same term key
+            indexTerm.addTargets(term.getTargetList());
+            indexTerm.addSubTerms(term.getSubTerms());
         }
     }
 
@@ -142,11 +136,12 @@ public final class IndexTermCollection {
         /*
          * Sort all the terms recursively
          */
+        final DITAOTCollator collator = DITAOTCollator.getInstance(IndexTerm.getTermLocale());
         for (final IndexTerm term : termList) {
-            term.sortSubTerms();
+            term.sortSubTerms(collator);
         }
 
-        Collections.sort(termList);
+        collator.sort(termList, IndexTerm::getTermKey);
     }
 
     /**
@@ -223,6 +218,34 @@ public final class IndexTermCollection {
         pipelineHashIO = hashIO;
     }
 
+    /**
+     * Index term identity used to merge terms, full name and sort key.
+     */
+    private static final class TermId {
+        private final String fullName;
+        private final String key;
+
+        TermId(final String fullName, final String key) {
+            this.fullName = fullName;
+            this.key = key;
+        }
 
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TermId)) {
+                return false;
+            }
+            final TermId other = (TermId) o;
+            return Objects.equals(fullName, other.fullName) && Objects.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fullName, key);
+        }
+    }
 
 }
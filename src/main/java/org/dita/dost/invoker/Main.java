@@ -27,9 +27,16 @@
 package org.dita.dost.invoker;
 
 import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.tools.ant.BuildException;
@@ -53,6 +60,8 @@ import org.apache.tools.ant.property.ResolvePropertyMap;
 import org.apache.tools.ant.util.ClasspathUtils;
 import org.apache.tools.ant.util.FileUtils;
 import org.apache.tools.ant.util.ProxySetup;
+import org.dita.dost.ProcessorFactory;
+import org.dita.dost.ProcessorService;
 import org.dita.dost.util.Configuration;
 import org.dita.dost.util.XMLUtils;
 import org.w3c.dom.Document;
@@ -329,6 +338,11 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
     /** Plug-in uninstall ID. */
     private String uninstallId;
 
+    /** Run as a long-lived build service. */
+    private boolean daemon;
+    /** Local port for build service, {@code null} to read requests from standard input. */
+    private Integer daemonPort;
+
     /** Stream to use for logging. */
     private static PrintStream out = System.out;
 
@@ -481,6 +495,13 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
             }
         }
 
+        if (daemon && readyToRun) {
+            final int exitCode = runDaemon();
+            handleLogfile();
+            exit(exitCode);
+            return;
+        }
+
         // expect the worst
         int exitCode = 1;
         try {
@@ -578,6 +599,8 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
                 handleArgInstall(arg, args);
             } else if (isLongForm(arg, "-uninstall")) {
                 handleArgUninstall(args);
+            } else if (isLongForm(arg, "-daemon")) {
+                handleArgDaemon(arg);
             } else if (isLongForm(arg, "-diagnostics")) {
                 justPrintDiagnostics = true;
                 // } else if (arg.equals("-quiet") || arg.equals("-q")) {
@@ -676,6 +699,13 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
             } else {
                 targets.add("integrate");
             }
+        } else if (daemon) {
+            if (definedProps.containsKey(ANT_TEMP_DIR)) {
+                definedProps.put("base.temp.dir", definedProps.remove(ANT_TEMP_DIR));
+            }
+            if (!definedProps.containsKey("base.temp.dir")) {
+                definedProps.put("base.temp.dir", new File(System.getProperty("java.io.tmpdir")).getAbsolutePath());
+            }
         } else {
             if (!definedProps.containsKey("transtype")) {
                 printErrorMessage("Error: Transformation type not defined");
@@ -823,6 +853,19 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         uninstallId = value;
     }
 
+    /** Handle the --daemon argument */
+    private void handleArgDaemon(final String arg) {
+        daemon = true;
+        if (arg.contains("=")) {
+            final String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                daemonPort = Integer.valueOf(value);
+            } catch (final NumberFormatException e) {
+                throw new BuildException("Invalid port " + value + " for the --daemon argument");
+            }
+        }
+    }
+
     /** Handle the --buildfile, --file, -f argument */
     private void handleArgBuildFile(final Deque<String> args) {
         final String value = args.pop();
@@ -1060,6 +1103,81 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         return file;
     }
 
+    /**
+     * Run build service until request input ends.
+     *
+     * @return exit code
+     */
+    private int runDaemon() {
+        final ProcessorFactory processorFactory = ProcessorFactory.newInstance(buildFile.getParentFile());
+        final Map<String, String> defaults = new HashMap<>();
+        for (final Map.Entry<String, Object> e : definedProps.entrySet()) {
+            defaults.put(e.getKey(), e.getValue().toString());
+        }
+        processorFactory.setBaseTempDir(new File(defaults.remove("base.temp.dir")).getAbsoluteFile());
+        try (final ProcessorService service = new ProcessorService(processorFactory,
+                Runtime.getRuntime().availableProcessors())) {
+            service.setDefaults(defaults);
+            service.setLogger(createDaemonLogger());
+            if (daemonPort != null) {
+                try (final ServerSocket serverSocket = new ServerSocket(daemonPort, 50, InetAddress.getLoopbackAddress())) {
+                    System.out.println("Listening on port " + serverSocket.getLocalPort());
+                    service.serve(serverSocket);
+                }
+            } else {
+                service.serve(System.in, System.out);
+            }
+        } catch (final IOException e) {
+            printMessage(e);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Creates the build logger for daemon builds. Messages are filtered with the same message output level as
+     * normal builds. When requests are read from standard input, standard output is reserved for responses and
+     * all messages are written to the error stream.
+     *
+     * @return the logger instance for daemon builds.
+     */
+    private org.slf4j.Logger createDaemonLogger() {
+        final LoggerContext loggerContext = new LoggerContext();
+
+        final OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(loggerContext);
+        appender.setOutputStream(daemonPort == null && out == System.out ? err : out);
+        appender.setImmediateFlush(true);
+
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(emacsMode ? "%msg%n" : "[%-5level] %msg%n");
+        encoder.start();
+
+        appender.setEncoder(encoder);
+        appender.start();
+
+        final ch.qos.logback.classic.Logger logger = loggerContext.getLogger(ProcessorService.class.getCanonicalName());
+        logger.addAppender(appender);
+        switch (msgOutputLevel) {
+            case Project.MSG_ERR:
+                logger.setLevel(Level.ERROR);
+                break;
+            case Project.MSG_WARN:
+                logger.setLevel(Level.WARN);
+                break;
+            case Project.MSG_INFO:
+                logger.setLevel(Level.INFO);
+                break;
+            case Project.MSG_VERBOSE:
+                logger.setLevel(Level.DEBUG);
+                break;
+            default:
+                logger.setLevel(Level.TRACE);
+        }
+        return logger;
+    }
+
     /**
      * Executes the build. If the constructor for this instance failed (e.g.
      * returned after issuing a warning), this method returns immediately.
@@ -1281,6 +1399,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         msg.append("   or: dita --propertyfile=<file> [options]\n");
         msg.append("   or: dita --install [=<file>]\n");
         msg.append("   or: dita --uninstall <id>\n");
+        msg.append("   or: dita --daemon [=<port>] [options]\n");
         msg.append("   or: dita --help\n");
         msg.append("   or: dita --version\n");
         msg.append("Arguments: \n");
@@ -1290,6 +1409,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         msg.append("  --install [<file>]          install plug-in from a ZIP file\n");
         msg.append("  --install                   reload plugins\n");
         msg.append("  --uninstall <id>            uninstall plug-in with the ID\n");
+        msg.append("  --daemon [=<port>]          run builds read from standard input or local port\n");
         msg.append("  -h, --help                  print this message\n");
         msg.append("  --version                   print version information and exit\n");
         msg.append("Options: \n");
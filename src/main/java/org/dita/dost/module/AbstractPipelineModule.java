@@ -48,4 +48,22 @@ public interface AbstractPipelineModule {
 
     void setFileInfoFilter(Predicate<FileInfo> fileInfoFilter);
 
+    /**
+     * Set parallel processing mode. Modules that do not support parallel processing ignore this.
+     *
+     * @param parallel {@code true} to process files concurrently
+     */
+    default void setParallel(boolean parallel) {
+        // NOOP
+    }
+
+    /**
+     * Set number of worker threads used in parallel processing mode.
+     *
+     * @param threads number of threads, zero or negative to use number of available processors
+     */
+    default void setThreads(int threads) {
+        // NOOP
+    }
+
 }
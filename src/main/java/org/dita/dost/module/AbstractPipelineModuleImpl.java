@@ -14,6 +14,10 @@ import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
 
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
@@ -24,6 +28,8 @@ public abstract class AbstractPipelineModuleImpl implements AbstractPipelineModu
     protected DITAOTLogger logger;
     protected Job job;
     Predicate<FileInfo> fileInfoFilter;
+    boolean parallel;
+    int threads;
 
     @Override
     public void setLogger(final DITAOTLogger logger) {
@@ -41,4 +47,65 @@ public abstract class AbstractPipelineModuleImpl implements AbstractPipelineModu
     public void setFileInfoFilter(Predicate<FileInfo> fileInfoFilter) {
         this.fileInfoFilter = fileInfoFilter;
     }
+
+    @Override
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @Override
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Apply action to each item. In parallel mode items are processed concurrently on a dedicated worker pool
+     * and the action must not share mutable state between threads.
+     *
+     * @param items items to process
+     * @param action action to apply to each item
+     * @throws DITAOTException if processing was interrupted or action failed with a checked exception
+     */
+    <T> void forEach(final Collection<T> items, final Consumer<T> action) throws DITAOTException {
+        forEach(items, parallel, action);
+    }
+
+    /**
+     * Apply action to each item, overriding the configured parallel mode for a single call.
+     *
+     * @param items items to process
+     * @param parallel process items concurrently
+     * @param action action to apply to each item
+     * @throws DITAOTException if processing was interrupted or action failed with a checked exception
+     */
+    <T> void forEach(final Collection<T> items, final boolean parallel, final Consumer<T> action)
+            throws DITAOTException {
+        if (!parallel) {
+            items.forEach(action);
+            return;
+        }
+        final int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        logger.debug("Processing with " + threadCount + " threads");
+        final ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            pool.submit(() -> items.parallelStream().forEach(action)).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DITAOTException("Processing interrupted: " + e.getMessage(), e);
+        } catch (final ExecutionException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof DITAOTException) {
+                    throw (DITAOTException) cause;
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new DITAOTException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.module;
+
+import static java.util.Collections.singletonList;
+import static org.apache.commons.io.FileUtils.*;
+import static org.dita.dost.util.Constants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.pipeline.AbstractPipelineInput;
+import org.dita.dost.pipeline.AbstractPipelineOutput;
+import org.dita.dost.util.DocumentCache;
+import org.dita.dost.util.DocumentCache.IndexedDocument;
+import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.SourceTreeCache;
+import org.dita.dost.util.XMLUtils;
+import org.dita.dost.writer.ConrefFilter;
+import org.dita.dost.writer.ConrefFilter.ExportAnchors;
+import org.xml.sax.SAXException;
+
+/**
+ * Resolves conref in topics and maps.
+ *
+ * <p>All files are resolved against the original content of conref targets: resolved files are written next to
+ * the source files and moved in place only after every file has been processed. Parsed conref targets are shared
+ * between files and worker threads in a bounded {@link DocumentCache}.</p>
+ *
+ * @since 3.0
+ */
+final class ConrefModule extends AbstractPipelineModuleImpl {
+
+    @Override
+    public AbstractPipelineOutput execute(final AbstractPipelineInput input) throws DITAOTException {
+        final Collection<FileInfo> fis = job.getFileInfo(fileInfoFilter != null ? fileInfoFilter : f -> f.hasConref);
+        if (fis.isEmpty()) {
+            return null;
+        }
+        final String transtype = input.getAttribute(ANT_INVOKER_EXT_PARAM_TRANSTYPE);
+        final DocumentCache cache = new DocumentCache();
+        final ExportAnchors exportAnchors = getExportAnchors(cache, transtype);
+        final Map<File, File> results = new ConcurrentHashMap<>();
+        final ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(cache, transtype, exportAnchors));
+        try {
+            forEach(fis, f -> {
+                final File file = new File(job.tempDirURI.resolve(f.uri));
+                final File result = new File(file.getAbsolutePath() + FILE_EXTENSION_TEMP);
+                logger.info("Processing " + file.toURI());
+                final Worker worker = workers.get();
+                worker.filter.setCurrentFile(file.toURI());
+                try {
+                    worker.xmlUtils.transform(file, result, singletonList(worker.filter));
+                    results.put(file, result);
+                } catch (final DITAOTException e) {
+                    logger.error("Failed to resolve conref: " + e.getMessage(), e);
+                    deleteQuietly(result);
+                }
+            });
+        } finally {
+            workers.remove();
+        }
+        for (final Map.Entry<File, File> e : results.entrySet()) {
+            try {
+                deleteQuietly(e.getKey());
+                moveFile(e.getValue(), e.getKey());
+                SourceTreeCache.getInstance().invalidate(e.getKey());
+            } catch (final IOException ex) {
+                throw new DITAOTException("Failed to replace " + e.getKey() + ": " + ex.getMessage(), ex);
+            }
+        }
+        logger.debug(cache.toString());
+        return null;
+    }
+
+    /**
+     * Read exported anchors for delayed conref resolution.
+     *
+     * @return exported anchors, {@code null} if not available
+     */
+    private ExportAnchors getExportAnchors(final DocumentCache cache, final String transtype) {
+        if (!TRANS_TYPE_ECLIPSEHELP.equals(transtype)) {
+            return null;
+        }
+        final IndexedDocument export;
+        try {
+            export = cache.get(new File(job.tempDir, FILE_NAME_EXPORT_XML).toURI());
+        } catch (final SAXException e) {
+            logger.error(e.getMessage(), e);
+            return null;
+        }
+        return export != null ? ExportAnchors.read(export.document.getDocumentElement()) : null;
+    }
+
+    /**
+     * Per thread processing state.
+     */
+    private final class Worker {
+        final XMLUtils xmlUtils = new XMLUtils();
+        final ConrefFilter filter = new ConrefFilter();
+
+        Worker(final DocumentCache cache, final String transtype, final ExportAnchors exportAnchors) {
+            xmlUtils.setLogger(logger);
+            filter.setLogger(logger);
+            filter.setJob(job);
+            filter.setDocumentCache(cache);
+            filter.setTranstype(transtype);
+            filter.setExportAnchors(exportAnchors);
+        }
+    }
+
+}
@@ -81,6 +81,8 @@ public final class DebugAndFilterModule extends SourceReaderModule {
     private DitaWriterFilter ditaWriterFilter;
     private TopicFragmentFilter topicFragmentFilter;
     private TempFileNameScheme tempFileNameScheme;
+    /** Transformer factory for serializers, shared by all files of the module invocation. */
+    private final SAXTransformerFactory stf = (SAXTransformerFactory) TransformerFactory.newInstance();
 
     @Override
     public void setJob(final Job job) {
@@ -153,8 +155,6 @@ public final class DebugAndFilterModule extends SourceReaderModule {
         try {
             reader.setErrorHandler(new DITAOTXMLErrorHandler(currentFile.toString(), logger));
 
-            final TransformerFactory tf = TransformerFactory.newInstance();
-            final SAXTransformerFactory stf = (SAXTransformerFactory) tf;
             final TransformerHandler serializer = stf.newTransformerHandler();
 
             XMLReader parser = getXmlReader(f.format);
@@ -490,8 +490,7 @@ public final class DebugAndFilterModule extends SourceReaderModule {
         try {
             res = new StreamResult(new FileOutputStream(filename));
             final DOMSource ds = new DOMSource(root);
-            final TransformerFactory tff = TransformerFactory.newInstance();
-            final Transformer tf = tff.newTransformer();
+            final Transformer tf = stf.newTransformer();
             tf.transform(ds, res);
         } catch (final RuntimeException e) {
             throw e;
@@ -14,6 +14,7 @@ import org.apache.commons.io.FilenameUtils;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.exception.DITAOTXMLErrorHandler;
 import org.dita.dost.log.MessageUtils;
+import org.dita.dost.module.reader.WaitList;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.DitaValReader;
@@ -25,6 +26,7 @@ import org.dita.dost.writer.DebugFilter;
 import org.dita.dost.writer.ExportAnchorsFilter;
 import org.dita.dost.writer.ProfilingFilter;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLFilter;
 import org.xml.sax.XMLReader;
@@ -34,6 +36,7 @@ import java.io.*;
 import java.net.URI;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.dita.dost.reader.GenListModuleReader.*;
 import static org.dita.dost.util.Configuration.Mode;
@@ -52,6 +55,9 @@ import static org.dita.dost.util.URLUtils.*;
  */
 public final class GenMapAndTopicListModule extends SourceReaderModule {
 
+    /** Job property for hash of global inputs of incremental processing. */
+    private static final String PROPERTY_INCREMENTAL_KEY = "incremental.key";
+
     public static final String ELEMENT_STUB = "stub";
     /** Generate {@code xtrf} and {@code xtrc} attributes */
     private boolean genDebugInfo;
@@ -98,11 +104,10 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     private final Set<URI> relFlagImagesSet;
 
     /** List of files waiting for parsing. Values are absolute URI references. */
-    private final Queue<Reference> waitList;
+    private final WaitList waitList;
 
-    /** List of parsed files */
-    private final List<URI> doneList;
-    private final List<URI> failureList;
+    /** Set of files that failed to parse */
+    private final Set<URI> failureList;
 
     /** Set of outer dita files */
     private final Set<URI> outDitaFilesSet;
@@ -126,8 +131,8 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     /** Number of directory levels base directory is adjusted. */
     private int uplevels = 0;
 
+    /** Cross-document state merged from the list readers of all parsed files. */
     private GenListModuleReader listFilter;
-    private KeydefFilter keydefFilter;
     private ExportAnchorsFilter exportAnchorsFilter;
     private ContentHandler nullHandler;
     private FilterUtils filterUtils;
@@ -150,6 +155,12 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     /** Formats for source topics */
     // XXX This is a hack to retain format. A better solution would be to keep the format with the source URI
     private final Map<URI, String> sourceFormat = new HashMap<>();
+    /** Record content hashes and dependencies for incremental processing. */
+    private boolean incremental;
+    /** Content hashes of source files. Key is absolute source URI. */
+    private final Map<URI, String> sourceHashes = new HashMap<>();
+    /** Dependencies of parsed files. Key is absolute source URI, value is absolute source URIs. */
+    private final Map<URI, Set<URI>> sourceDependencies = new HashMap<>();
 
     /**
      * Create a new instance and do the initialization.
@@ -165,9 +176,8 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
         htmlSet = new HashSet<>(128);
         hrefTargetSet = new HashSet<>(128);
         coderefTargetSet = new HashSet<>(16);
-        waitList = new LinkedList<>();
-        doneList = new LinkedList<>();
-        failureList = new LinkedList<>();
+        waitList = new WaitList();
+        failureList = new HashSet<>();
         conrefTargetSet = new HashSet<>(128);
         nonConrefCopytoTargetSet = new HashSet<>(128);
         outDitaFilesSet = new HashSet<>(128);
@@ -213,10 +223,7 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
      * Initialize reusable filters.
      */
     private void initFilters() {
-        listFilter = new GenListModuleReader();
-        listFilter.setLogger(logger);
-        listFilter.setPrimaryDitamap(rootFile);
-        listFilter.setJob(job);
+        listFilter = newListFilter();
         
         if (profilingEnabled) {
             filterUtils = parseFilterFile();
@@ -227,12 +234,23 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
             exportAnchorsFilter.setInputFile(rootFile);
         }
         
-        keydefFilter = new KeydefFilter();
+        nullHandler = new DefaultHandler();
+    }
+
+    private GenListModuleReader newListFilter() {
+        final GenListModuleReader listFilter = new GenListModuleReader();
+        listFilter.setLogger(logger);
+        listFilter.setPrimaryDitamap(rootFile);
+        listFilter.setJob(job);
+        return listFilter;
+    }
+
+    private KeydefFilter newKeydefFilter() {
+        final KeydefFilter keydefFilter = new KeydefFilter();
         keydefFilter.setLogger(logger);
         keydefFilter.setCurrentFile(rootFile);
         keydefFilter.setJob(job);
-        
-        nullHandler = new DefaultHandler();
+        return keydefFilter;
     }
     
     private void parseInputParameters(final AbstractPipelineInput input) {
@@ -252,6 +270,7 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
         final String mode = input.getAttribute(ANT_INVOKER_EXT_PARAM_PROCESSING_MODE);
         processingMode = mode != null ? Mode.valueOf(mode.toUpperCase()) : Mode.LAX;
         genDebugInfo = Boolean.valueOf(input.getAttribute(ANT_INVOKER_EXT_PARAM_GENERATE_DEBUG_ATTR));
+        incremental = Boolean.valueOf(input.getAttribute(ANT_INVOKER_EXT_PARAM_INCREMENTAL));
 
         // For the output control
         job.setGeneratecopyouter(input.getAttribute(ANT_INVOKER_EXT_PARAM_GENERATECOPYOUTTER));
@@ -311,24 +330,62 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     }
 
     private void processWaitList() throws DITAOTException {
+        if (parallel && exportAnchorsFilter == null) {
+            processWaitListParallel();
+            return;
+        }
         while (!waitList.isEmpty()) {
-            processFile(waitList.remove());
+            mergeParseResult(readFile(waitList.remove(), reader));
         }
     }
-    
+
+    /**
+     * Crawl the wait list concurrently. Every round parses all files in the current wait list on worker
+     * threads, each thread with its own parser and every file with its own filter chain. Parse results are
+     * merged in wait list order after the round, which gives the same result and discovery order as
+     * the serial crawl.
+     */
+    private void processWaitListParallel() throws DITAOTException {
+        final ThreadLocal<XMLReader> readers = ThreadLocal.withInitial(() -> {
+            try {
+                return createXmlReader();
+            } catch (final SAXException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (!waitList.isEmpty()) {
+            final List<Reference> round = waitList.removeAll();
+            final ParseResult[] results = new ParseResult[round.size()];
+            final List<Integer> indexes = IntStream.range(0, round.size()).boxed().collect(Collectors.toList());
+            forEach(indexes, i -> {
+                try {
+                    results[i] = readFile(round.get(i), readers.get());
+                } catch (final DITAOTException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            for (final ParseResult result : results) {
+                mergeParseResult(result);
+            }
+        }
+    }
+
     /**
      * Get pipe line filters
      * 
      * @param fileToParse absolute path to current file being processed
+     * @param listFilter list reader for current file
+     * @param keydefFilter key definition reader for current file
      */
-    private List<XMLFilter> getProcessingPipe(final URI fileToParse) {
+    private List<XMLFilter> getProcessingPipe(final URI fileToParse, final GenListModuleReader listFilter,
+                                              final KeydefFilter keydefFilter) {
         assert fileToParse.isAbsolute();
         final List<XMLFilter> pipe = new ArrayList<>();
 
         if (genDebugInfo) {
             final DebugFilter debugFilter = new DebugFilter();
             debugFilter.setLogger(logger);
-            debugFilter.setCurrentFile(currentFile);
+            debugFilter.setCurrentFile(fileToParse);
             pipe.add(debugFilter);
         }
 
@@ -359,20 +416,47 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     }
 
     /**
-     * Read a file and process it for list information.
+     * Parse results of a single file.
+     */
+    private static final class ParseResult {
+        final Reference ref;
+        final GenListModuleReader listFilter;
+        final KeydefFilter keydefFilter;
+        final boolean failed;
+        /** Content hash, {@code null} if not computed. */
+        final String hash;
+
+        ParseResult(final Reference ref, final GenListModuleReader listFilter, final KeydefFilter keydefFilter,
+                    final boolean failed, final String hash) {
+            this.ref = ref;
+            this.listFilter = listFilter;
+            this.keydefFilter = keydefFilter;
+            this.failed = failed;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Read a file for list information. The file is parsed with a filter chain of its own, so unless export
+     * anchors are collected, this method does not modify module state and may be called from multiple threads.
      * 
      * @param ref system path of the file to process
+     * @param ditaReader parser to use for DITA documents
+     * @return parse results
      * @throws DITAOTException if processing failed
      */
-    private void processFile(final Reference ref) throws DITAOTException {
-        currentFile = ref.filename;
+    private ParseResult readFile(final Reference ref, final XMLReader ditaReader) throws DITAOTException {
+        final URI currentFile = ref.filename;
         assert currentFile.isAbsolute();
         logger.info("Processing " + currentFile);
         final String[] params = { currentFile.toString() };
+        final GenListModuleReader listFilter = newListFilter();
+        final KeydefFilter keydefFilter = newKeydefFilter();
+        boolean failed = false;
         
         try {
-            XMLReader xmlSource = getXmlReader(ref.format);
-            for (final XMLFilter f: getProcessingPipe(currentFile)) {
+            XMLReader xmlSource = getXmlReader(ref.format, ditaReader);
+            for (final XMLFilter f: getProcessingPipe(currentFile, listFilter, keydefFilter)) {
                 f.setParent(xmlSource);
                 f.setEntityResolver(CatalogUtils.getCatalogResolver());
                 xmlSource = f;
@@ -381,12 +465,9 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
             
             xmlSource.parse(currentFile.toString());
 
-            if (listFilter.isValidInput()) {
-                processParseResult(currentFile);
-                categorizeCurrentFile(ref);
-            } else if (!currentFile.equals(rootFile)) {
+            if (!listFilter.isValidInput() && !currentFile.equals(rootFile)) {
                 logger.warn(MessageUtils.getMessage("DOTJ021W", params).toString());
-                failureList.add(currentFile);
+                failed = true;
             }
         } catch (final RuntimeException e) {
             throw e;
@@ -402,7 +483,7 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
             } else {
                 logger.error(MessageUtils.getMessage("DOTJ013E", params).toString() + ": " + sax.getMessage(), sax);
             }
-            failureList.add(currentFile);
+            failed = true;
         } catch (final FileNotFoundException e) {
             if (currentFile.equals(rootFile)) {
                 throw new DITAOTException(MessageUtils.getMessage("DOTA069F", params).toString(), e);
@@ -411,7 +492,7 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
             } else {
                 logger.error(MessageUtils.getMessage("DOTX008E", params).toString());
             }
-            failureList.add(currentFile);
+            failed = true;
         } catch (final Exception e) {
             if (currentFile.equals(rootFile)) {
                 throw new DITAOTException(MessageUtils.getMessage("DOTJ012F", params).toString() + ": " + e.getMessage(),  e);
@@ -420,7 +501,7 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
             } else {
                 logger.error(MessageUtils.getMessage("DOTJ013E", params).toString() + ": " + e.getMessage(), e);
             }
-            failureList.add(currentFile);
+            failed = true;
         }
 
         if (!listFilter.isValidInput() && currentFile.equals(rootFile)) {
@@ -433,21 +514,52 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
             }
         }
 
-        doneList.add(currentFile);
-        listFilter.reset();
-        keydefFilter.reset();
+        final String hash = incremental && !failed ? getContentHash(currentFile) : null;
+        return new ParseResult(ref, listFilter, keydefFilter, failed, hash);
+    }
 
+    /**
+     * Get content hash of a local file.
+     *
+     * @param file absolute file URI
+     * @return hexadecimal SHA-256 hash, {@code null} if file cannot be read
+     */
+    private String getContentHash(final URI file) {
+        try {
+            return Hashing.sha256().hashBytes(java.nio.file.Files.readAllBytes(new File(file).toPath())).toString();
+        } catch (final IOException | IllegalArgumentException e) {
+            logger.debug("Failed to hash " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Merge parse results of a single file into module state.
+     *
+     * @param result parse results
+     */
+    private void mergeParseResult(final ParseResult result) {
+        currentFile = result.ref.filename;
+        if (result.failed) {
+            failureList.add(currentFile);
+        } else {
+            processParseResult(result);
+            categorizeCurrentFile(result);
+        }
+        listFilter.merge(result.listFilter);
     }
 
     /**
      * Process results from parsing a single topic or map
      *
-     * @param currentFile absolute URI processes files
+     * @param result parse results of processed file
      */
-    private void processParseResult(final URI currentFile) {
+    private void processParseResult(final ParseResult result) {
+        final URI currentFile = result.ref.filename;
+        final GenListModuleReader listFilter = result.listFilter;
         // Category non-copyto result and update uplevels accordingly
         for (final Reference file: listFilter.getNonCopytoResult()) {
-            categorizeReferenceFile(file);
+            categorizeReferenceFile(file, listFilter);
             updateUplevels(file.filename);
         }
         for (final Map.Entry<URI, URI> e : listFilter.getCopytoMap().entrySet()) {
@@ -460,7 +572,7 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
         schemeSet.addAll(listFilter.getSchemeRefSet());
 
         // collect key definitions
-        for (final Map.Entry<String, KeyDef> e: keydefFilter.getKeysDMap().entrySet()) {
+        for (final Map.Entry<String, KeyDef> e: result.keydefFilter.getKeysDMap().entrySet()) {
             // key and value.keys will differ when keydef is a redirect to another keydef
             final String key = e.getKey();
             final KeyDef value = e.getValue();
@@ -475,6 +587,22 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
         coderefTargetSet.addAll(listFilter.getCoderefTargets());
         outDitaFilesSet.addAll(listFilter.getOutFilesSet());
 
+        if (incremental) {
+            sourceHashes.put(currentFile, result.hash);
+            final Set<URI> dependencies = new HashSet<>();
+            for (final URI target : listFilter.getConrefTargets()) {
+                dependencies.add(stripFragment(target));
+            }
+            for (final URI target : listFilter.getHrefTargets()) {
+                dependencies.add(stripFragment(target));
+            }
+            for (final URI target : listFilter.getCoderefTargets()) {
+                dependencies.add(stripFragment(target));
+            }
+            dependencies.remove(currentFile);
+            sourceDependencies.put(currentFile, dependencies);
+        }
+
         // Generate topic-scheme dictionary
         final Set<URI> schemeSet = listFilter.getSchemeSet();
         if (schemeSet != null && !schemeSet.isEmpty()) {
@@ -499,9 +627,11 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     /**
      * Categorize current file type
      * 
-     * @param ref file path
+     * @param result parse results of processed file
      */
-    private void categorizeCurrentFile(final Reference ref) {
+    private void categorizeCurrentFile(final ParseResult result) {
+        final Reference ref = result.ref;
+        final GenListModuleReader listFilter = result.listFilter;
         final URI currentFile = ref.filename;
         if (listFilter.hasConaction()) {
             conrefpushSet.add(currentFile);
@@ -540,8 +670,9 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
      * Categorize file.
      * 
      * @param file file system path with optional format
+     * @param listFilter list reader of the referencing file
      */
-    private void categorizeReferenceFile(final Reference file) {
+    private void categorizeReferenceFile(final Reference file, final GenListModuleReader listFilter) {
         // avoid files referred by coderef being added into wait list
         if (listFilter.getCoderefTargets().contains(file.filename)) {
             return;
@@ -589,11 +720,73 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
     private void addToWaitList(final Reference ref) {
         final URI file = ref.filename;
         assert file.isAbsolute() && file.getFragment() == null;
-        if (doneList.contains(file) || waitList.contains(ref) || file.equals(currentFile)) {
-            return;
+        waitList.add(ref);
+    }
+
+    /**
+     * Record content hashes and dependencies to file infos, and mark files whose source and transitive
+     * dependencies have not changed since the previous build in the same temporary directory. Maps, the
+     * merged DITAVAL and the transtype are global inputs: if any of them changes, no file is unchanged.
+     *
+     * @param fileInfos file infos to update
+     */
+    private void updateIncrementalState(final Collection<FileInfo> fileInfos) {
+        final Set<URI> changed = new HashSet<>();
+        for (final FileInfo fi : fileInfos) {
+            if (fi.src == null) {
+                continue;
+            }
+            final String hash = sourceHashes.computeIfAbsent(fi.src, this::getContentHash);
+            final FileInfo prev = job.getFileInfo(fi.uri);
+            if (hash == null || prev == null || !hash.equals(prev.hash)) {
+                changed.add(fi.src);
+            }
+            fi.hash = hash;
+            fi.dependencies.clear();
+            fi.dependencies.addAll(sourceDependencies.getOrDefault(fi.src, Collections.emptySet()));
         }
 
-        waitList.add(ref);
+        final Map<URI, Set<URI>> dependents = new HashMap<>();
+        for (final Map.Entry<URI, Set<URI>> e : sourceDependencies.entrySet()) {
+            for (final URI dependency : e.getValue()) {
+                dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(e.getKey());
+            }
+        }
+        final Deque<URI> queue = new ArrayDeque<>(changed);
+        while (!queue.isEmpty()) {
+            for (final URI dependent : dependents.getOrDefault(queue.pop(), Collections.emptySet())) {
+                if (changed.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        final String key = getIncrementalKey();
+        final boolean globalChanged = !key.equals(job.getProperty(PROPERTY_INCREMENTAL_KEY));
+        int unchanged = 0;
+        for (final FileInfo fi : fileInfos) {
+            fi.isUnchanged = !globalChanged && fi.src != null && !changed.contains(fi.src);
+            if (fi.isUnchanged) {
+                unchanged++;
+            }
+        }
+        logger.info("Incremental processing: " + unchanged + " of " + fileInfos.size() + " files unchanged");
+        job.setProperty(PROPERTY_INCREMENTAL_KEY, key);
+    }
+
+    /**
+     * Get hash of global inputs for incremental processing.
+     */
+    private String getIncrementalKey() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(transtype).append('\n');
+        if (ditavalFile != null && ditavalFile.exists()) {
+            buf.append(getContentHash(ditavalFile.toURI())).append('\n');
+        }
+        fullMapSet.stream()
+                .sorted()
+                .forEach(map -> buf.append(map).append(' ').append(sourceHashes.get(map)).append('\n'));
+        return Hashing.sha256().hashString(buf, Charsets.UTF_8).toString();
     }
 
     /**
@@ -768,6 +961,10 @@ public final class GenMapAndTopicListModule extends SourceReaderModule {
 
         final Map<URI, URI> filteredCopyTo = filterConflictingCopyTo(copyTo, fileinfos.values());
 
+        if (incremental) {
+            updateIncrementalState(fileinfos.values());
+        }
+
         for (final FileInfo fs: fileinfos.values()) {
             if (!failureList.contains(fs.src)) {
                 final URI src = filteredCopyTo.get(fs.src);
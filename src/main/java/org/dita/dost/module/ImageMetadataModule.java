@@ -18,15 +18,20 @@ import java.util.function.Predicate;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
+import org.dita.dost.util.ImageMetadataCache;
 import org.dita.dost.util.Job.FileInfo;
 import org.dita.dost.writer.ImageMetadataFilter;
 
 /**
  * Image metadata module.
  *
+ * <p>Metadata of all images in the job is read before topics are processed, concurrently in parallel mode.
+ * If the {@code cache} parameter is set, image metadata is persisted between builds in that file.</p>
  */
 final class ImageMetadataModule extends AbstractPipelineModuleImpl {
 
+    private static final String PARAM_CACHE = "cache";
+
     /**
      * Constructor.
      */
@@ -49,9 +54,13 @@ final class ImageMetadataModule extends AbstractPipelineModuleImpl {
         final Collection<FileInfo> images = job.getFileInfo(f -> ATTR_FORMAT_VALUE_IMAGE.equals(f.format) || ATTR_FORMAT_VALUE_HTML.equals(f.format));
         if (!images.isEmpty()) {
             final File outputDir = new File(input.getAttribute(ANT_INVOKER_EXT_PARAM_OUTPUTDIR));
+            final File cacheFile = input.getAttribute(PARAM_CACHE) != null ? new File(input.getAttribute(PARAM_CACHE)) : null;
+            final ImageMetadataCache cache = readCache(cacheFile);
             final ImageMetadataFilter writer = new ImageMetadataFilter(outputDir, job);
             writer.setLogger(logger);
             writer.setJob(job);
+            writer.setMetadataCache(cache);
+            forEach(job.getFileInfo(f -> ATTR_FORMAT_VALUE_IMAGE.equals(f.format)), writer::prefetch);
             final Predicate<FileInfo> filter = fileInfoFilter != null
                     ? fileInfoFilter
                     : f -> !f.isResourceOnly && ATTR_FORMAT_VALUE_DITA.equals(f.format);
@@ -60,6 +69,7 @@ final class ImageMetadataModule extends AbstractPipelineModuleImpl {
             }
 
             storeImageFormat(writer.getImages(), outputDir);
+            writeCache(cache, cacheFile);
 
             try {
                 job.write();
@@ -71,6 +81,29 @@ final class ImageMetadataModule extends AbstractPipelineModuleImpl {
         return null;
     }
 
+    private ImageMetadataCache readCache(final File cacheFile) {
+        if (cacheFile != null) {
+            try {
+                final ImageMetadataCache cache = ImageMetadataCache.read(cacheFile);
+                logger.debug("Read " + cache.size() + " entries from image metadata cache " + cacheFile);
+                return cache;
+            } catch (final IOException e) {
+                logger.warn("Failed to read image metadata cache: " + e.getMessage(), e);
+            }
+        }
+        return new ImageMetadataCache();
+    }
+
+    private void writeCache(final ImageMetadataCache cache, final File cacheFile) {
+        if (cacheFile != null) {
+            try {
+                cache.write(cacheFile);
+            } catch (final IOException e) {
+                logger.warn("Failed to write image metadata cache: " + e.getMessage(), e);
+            }
+        }
+    }
+
     private void storeImageFormat(final Collection<URI> images, final File outputDir) {
         final URI output = outputDir.toURI();
         final URI temp = job.tempDirURI;
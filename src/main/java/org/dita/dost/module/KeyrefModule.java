@@ -19,19 +19,23 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.module.GenMapAndTopicListModule.TempFileNameScheme;
 import org.dita.dost.util.*;
 import org.dita.dost.writer.TopicFragmentFilter;
-import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 import org.xml.sax.XMLFilter;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
@@ -39,10 +43,6 @@ import org.dita.dost.reader.KeyrefReader;
 import org.dita.dost.writer.ConkeyrefFilter;
 import org.dita.dost.writer.KeyrefPaser;
 
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
 /**
  * Keyref ModuleElem.
  *
@@ -50,13 +50,10 @@ import javax.xml.transform.stream.StreamResult;
 final class KeyrefModule extends AbstractPipelineModuleImpl {
 
     private TempFileNameScheme tempFileNameScheme;
-    /** Delayed conref utils. */
-    private DelayConrefUtils delayConrefUtils;
     private String transtype;
-    final Set<URI> normalProcessingRole = new HashSet<>();
+    /** Resource-only targets referenced with normal processing role, collected concurrently by resolve tasks. */
+    final Set<URI> normalProcessingRole = ConcurrentHashMap.newKeySet();
     final Map<URI, Integer> usage = new HashMap<>();
-    private TopicFragmentFilter topicFragmentFilter;
-    private final XMLUtils xmlUtils = new XMLUtils();
 
     @Override
     public void setJob(final Job job) {
@@ -69,12 +66,6 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
         tempFileNameScheme.setBaseDir(job.getInputDir());
     }
 
-    @Override
-    public void setLogger(final DITAOTLogger logger) {
-        super.setLogger(logger);
-        xmlUtils.setLogger(logger);
-    }
-
     /**
      * Entry point of KeyrefModule.
      * 
@@ -101,31 +92,33 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
                 throw new RuntimeException(e);
             }
             tempFileNameScheme.setBaseDir(job.getInputDir());
-            initFilters();
-
-            final Document doc = readMap();
 
             final KeyrefReader reader = new KeyrefReader();
             reader.setLogger(logger);
-            final URI mapFile = job.getInputMap();
-            logger.info("Reading " + job.tempDirURI.resolve(mapFile).toString());
-            reader.read(job.tempDirURI.resolve(mapFile), doc);
+            final URI mapFile = job.tempDirURI.resolve(job.getInputMap());
+            logger.info("Reading " + mapFile.toString());
+            final MapNode root = readMap(mapFile, reader);
 
             final KeyScope rootScope = reader.getKeyDefinition();
-            final List<ResolveTask> jobs = collectProcessingTopics(fis, rootScope, doc);
-            writeMap(doc);
+            final List<ResolveTask> jobs = collectProcessingTopics(fis, rootScope, root);
+            writeMap(new File(mapFile), root);
 
             transtype = input.getAttribute(ANT_INVOKER_EXT_PARAM_TRANSTYPE);
-            delayConrefUtils = transtype.equals(INDEX_TYPE_ECLIPSEHELP) ? new DelayConrefUtils() : null;
-            for (final ResolveTask r: jobs) {
-                if (r.out != null) {
-                    processFile(r);
-                }
-            }
-            for (final ResolveTask r: jobs) {
-                if (r.out == null) {
-                    processFile(r);
-                }
+            final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+            try {
+                // Copies read the original source, so they must be written before sources are rewritten in place
+                final List<ResolveTask> copies = jobs.stream()
+                        .filter(r -> r.out != null)
+                        .collect(Collectors.toList());
+                forEach(copies, r -> processFile(r, workers.get()));
+                // Tasks that rewrite the same file in place are run in sequence
+                final Collection<List<ResolveTask>> rewrites = jobs.stream()
+                        .filter(r -> r.out == null)
+                        .collect(Collectors.groupingBy(r -> r.in.uri, LinkedHashMap::new, Collectors.toList()))
+                        .values();
+                forEach(rewrites, rs -> rs.forEach(r -> processFile(r, workers.get())));
+            } finally {
+                workers.remove();
             }
 
             // Store job configuration updates
@@ -146,16 +139,12 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
         return null;
     }
 
-    private void initFilters() {
-        topicFragmentFilter = new TopicFragmentFilter(ATTRIBUTE_NAME_CONREF, ATTRIBUTE_NAME_CONREFEND);
-    }
-
     /** Collect topics for key reference processing and modify map to reflect new file names. */
-    private List<ResolveTask> collectProcessingTopics(final Collection<FileInfo> fis, final KeyScope rootScope, final Document doc) {
+    private List<ResolveTask> collectProcessingTopics(final Collection<FileInfo> fis, final KeyScope rootScope, final MapNode root) {
         final List<ResolveTask> res = new ArrayList<>();
         res.add(new ResolveTask(rootScope, job.getFileInfo(job.getInputMap()), null));
         // Collect topics from map and rewrite topicrefs for duplicates
-        walkMap(doc.getDocumentElement(), rootScope, res);
+        walkMap(root, rootScope, res);
         // Collect topics not in map and map itself
         for (final FileInfo f: fis) {
             if (!usage.containsKey(f.uri)) {
@@ -211,24 +200,19 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
     }
 
     KeyScope rewriteScopeTargets(KeyScope scope, Map<URI, URI> rewrites) {
-        final Map<String, KeyDef> newKeys = new HashMap<>();
-        for (Map.Entry<String, KeyDef> key : scope.keyDefinition.entrySet()) {
-            final KeyDef oldKey = key.getValue();
-            URI href = oldKey.href;
+        if (rewrites.isEmpty()) {
+            return scope;
+        }
+        return scope.map(oldKey -> {
+            final URI href = oldKey.href;
             if (href != null && rewrites.containsKey(stripFragment(href))) {
-                href = setFragment(rewrites.get(stripFragment(href)), href.getFragment());
+                final URI newHref = setFragment(rewrites.get(stripFragment(href)), href.getFragment());
+                return new KeyDef(oldKey.keys, newHref, oldKey.scope, oldKey.format, oldKey.source, oldKey.element);
             }
-            final KeyDef newKey = new KeyDef(oldKey.keys, href, oldKey.scope, oldKey.format, oldKey.source, oldKey.element);
-            newKeys.put(key.getKey(), newKey);
-        }
-        return new KeyScope(scope.id, scope.name,
-                newKeys,
-                scope.childScopes.stream()
-                        .map(c -> rewriteScopeTargets(c, rewrites))
-                        .collect(Collectors.toList()));
+            return oldKey;
+        });
     }
 
-
     /** Tuple class for key reference processing info. */
     static class ResolveTask {
         final KeyScope scope;
@@ -244,24 +228,19 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
     }
 
     /** Recursively walk map and process topics that have keyrefs. */
-    void walkMap(final Element elem, final KeyScope scope, final List<ResolveTask> res) {
+    void walkMap(final MapNode elem, final KeyScope scope, final List<ResolveTask> res) {
         List<KeyScope> ss = Collections.singletonList(scope);
-        if (elem.getAttributeNode(ATTRIBUTE_NAME_KEYSCOPE) != null) {
+        if (elem.keyscope != null) {
             ss = new ArrayList<>();
-            for (final String keyscope: elem.getAttribute(ATTRIBUTE_NAME_KEYSCOPE).trim().split("\\s+")) {
+            for (final String keyscope: elem.keyscope.trim().split("\\s+")) {
                 final KeyScope s = scope.getChildScope(keyscope);
                 assert s != null;
                 ss.add(s);
             }
         }
-        Attr hrefNode = elem.getAttributeNode(ATTRIBUTE_NAME_COPY_TO);
-        if (hrefNode == null) {
-            hrefNode = elem.getAttributeNode(ATTRIBUTE_NAME_HREF);
-        }
-        final boolean isResourceOnly = isResourceOnly(elem);
         for (final KeyScope s: ss) {
-            if (hrefNode != null) {
-                final URI href = stripFragment(job.getInputMap().resolve(hrefNode.getValue()));
+            if (elem.target != null) {
+                final URI href = stripFragment(job.getInputMap().resolve(elem.target));
                 final FileInfo fi = job.getFileInfo(href);
                 if (fi != null && fi.hasKeyref) {
                     final int count = usage.getOrDefault(fi.uri, 0);
@@ -270,39 +249,25 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
                         final ResolveTask resolveTask = existing.get();
                         if (resolveTask.out != null) {
                             final URI value = tempFileNameScheme.generateTempFileName(resolveTask.out.result);
-                            hrefNode.setValue(value.toString());
+                            elem.setTarget(value.toString());
                         }
                     } else {
-                        final ResolveTask resolveTask = processTopic(fi, s, isResourceOnly);
+                        final ResolveTask resolveTask = processTopic(fi, s, elem.isResourceOnly);
                         res.add(resolveTask);
                         final Integer used = usage.get(fi.uri);
                         if (used > 1) {
                             final URI value = tempFileNameScheme.generateTempFileName(resolveTask.out.result);
-                            hrefNode.setValue(value.toString());
+                            elem.setTarget(value.toString());
                         }
                     }
                 }
             }
-            for (final Element child : getChildElements(elem, MAP_TOPICREF)) {
+            for (final MapNode child : elem.children) {
                 walkMap(child, s, res);
             }
         }
     }
 
-    private boolean isResourceOnly(final Element elem) {
-        Node curr = elem;
-        while (curr != null) {
-            if (curr.getNodeType() == Node.ELEMENT_NODE) {
-                final Attr processingRole = ((Element) curr).getAttributeNode(ATTRIBUTE_NAME_PROCESSING_ROLE);
-                if (processingRole != null) {
-                    return processingRole.getValue().equals(ATTR_PROCESSING_ROLE_VALUE_RESOURCE_ONLY);
-                }
-            }
-            curr = curr.getParentNode();
-        }
-        return false;
-    }
-
     /**
      * Determine how topic is processed for key reference processing.
      *
@@ -328,27 +293,90 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
         }
     }
 
+    /**
+     * Per thread processing state.
+     */
+    private final class Worker {
+        final XMLUtils xmlUtils = new XMLUtils();
+        final TopicFragmentFilter topicFragmentFilter = new TopicFragmentFilter(ATTRIBUTE_NAME_CONREF, ATTRIBUTE_NAME_CONREFEND);
+        /** Delayed conref utils. */
+        final DelayConrefUtils delayConrefUtils = transtype.equals(INDEX_TYPE_ECLIPSEHELP) ? new DelayConrefUtils() : null;
+        /** Thread confined views of key scopes. */
+        private final Map<KeyScope, KeyScope> scopes = new IdentityHashMap<>();
+        /** Thread confined copies of key definitions. */
+        private final Map<KeyDef, KeyDef> keyDefs = new IdentityHashMap<>();
+        private Document doc;
+
+        Worker() {
+            xmlUtils.setLogger(logger);
+        }
+
+        /**
+         * Get key scope for the current thread. DOM implementations are not safe for concurrent reads, so in
+         * parallel mode key definition elements are lazily imported into a document owned by the current thread.
+         */
+        KeyScope getScope(final KeyScope scope) {
+            if (!parallel) {
+                return scope;
+            }
+            return scopes.computeIfAbsent(scope, s -> new KeyScope(s.id, s.name, new AbstractMap<String, KeyDef>() {
+                @Override
+                public KeyDef get(final Object key) {
+                    final KeyDef k = s.keyDefinition.get(key);
+                    return k != null ? copy(k) : null;
+                }
+
+                @Override
+                public boolean containsKey(final Object key) {
+                    return s.keyDefinition.containsKey(key);
+                }
+
+                @Override
+                public Set<Entry<String, KeyDef>> entrySet() {
+                    return s.keyDefinition.entrySet().stream()
+                            .collect(toMap(Entry::getKey, e -> copy(e.getValue())))
+                            .entrySet();
+                }
+            }, s.childScopes));
+        }
+
+        /** Copy key definition with elements imported into a document owned by the current thread. */
+        private KeyDef copy(final KeyDef k) {
+            return keyDefs.computeIfAbsent(k, src -> {
+                if (src.element == null) {
+                    return src;
+                }
+                if (doc == null) {
+                    doc = XMLUtils.getDocumentBuilder().newDocument();
+                }
+                final Element element = (Element) doc.importNode(src.element, true);
+                return new KeyDef(src.keys, src.href, src.scope, src.format, src.source, element);
+            });
+        }
+    }
+
     /**
      * Process key references in a topic. Topic is stored with a new name if it's
      * been processed before.
      */
-    private void processFile(final ResolveTask r) {
+    private void processFile(final ResolveTask r, final Worker worker) {
         final List<XMLFilter> filters = new ArrayList<>();
+        final KeyScope scope = worker.getScope(r.scope);
 
         final ConkeyrefFilter conkeyrefFilter = new ConkeyrefFilter();
         conkeyrefFilter.setLogger(logger);
         conkeyrefFilter.setJob(job);
-        conkeyrefFilter.setKeyDefinitions(r.scope);
+        conkeyrefFilter.setKeyDefinitions(scope);
         conkeyrefFilter.setCurrentFile(job.tempDirURI.resolve(r.in.uri));
-        conkeyrefFilter.setDelayConrefUtils(delayConrefUtils);
+        conkeyrefFilter.setDelayConrefUtils(worker.delayConrefUtils);
         filters.add(conkeyrefFilter);
 
-        filters.add(topicFragmentFilter);
+        filters.add(worker.topicFragmentFilter);
 
         final KeyrefPaser parser = new KeyrefPaser();
         parser.setLogger(logger);
         parser.setJob(job);
-        parser.setKeyDefinition(r.scope);
+        parser.setKeyDefinition(scope);
         parser.setCurrentFile(job.tempDirURI.resolve(r.in.uri));
         filters.add(parser);
 
@@ -357,12 +385,12 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
             if (r.out != null) {
                 logger.info("Processing " + job.tempDirURI.resolve(r.in.uri) +
                         " to " + job.tempDirURI.resolve(r.out.uri));
-                xmlUtils.transform(new File(job.tempDir, r.in.file.getPath()),
-                                   new File(job.tempDir, r.out.file.getPath()),
-                                   filters);
+                worker.xmlUtils.transform(new File(job.tempDir, r.in.file.getPath()),
+                                          new File(job.tempDir, r.out.file.getPath()),
+                                          filters);
             } else {
                 logger.info("Processing " + job.tempDirURI.resolve(r.in.uri));
-                xmlUtils.transform(new File(job.tempDir, r.in.file.getPath()), filters);
+                worker.xmlUtils.transform(new File(job.tempDir, r.in.file.getPath()), filters);
             }
             // validate resource-only list
             normalProcessingRole.addAll(parser.getNormalProcessingRoleTargets());
@@ -384,40 +412,163 @@ final class KeyrefModule extends AbstractPipelineModuleImpl {
         }
     }
 
-    private Document readMap() throws DITAOTException {
-        InputSource in = null;
+    /**
+     * Read key definitions and topicref tree from map in a single pass.
+     *
+     * @param mapFile absolute URI of the map
+     * @param reader key definition reader
+     * @return document element of the topicref tree
+     */
+    MapNode readMap(final URI mapFile, final KeyrefReader reader) throws DITAOTException {
+        final XMLReader parser = XMLUtils.getXMLReaderPool().borrow();
         try {
-            in = new InputSource(job.tempDirURI.resolve(job.getInputMap()).toString());
-            return XMLUtils.getDocumentBuilder().parse(in);
+            final MapCollector collector = new MapCollector();
+            reader.setCurrentFile(mapFile);
+            reader.setParent(parser);
+            reader.setEntityResolver(CatalogUtils.getCatalogResolver());
+            reader.setContentHandler(collector);
+            reader.parse(new InputSource(mapFile.toString()));
+            return collector.root;
+        } catch (final RuntimeException e) {
+            throw e;
         } catch (final Exception e) {
             throw new DITAOTException("Failed to parse map: " + e.getMessage(), e);
         } finally {
-            try {
-                close(in);
-            } catch (IOException e) {
-                logger.error("Failed to close input: " + e.getMessage(), e);
+            reader.setParent(null);
+            XMLUtils.getXMLReaderPool().release(parser);
+        }
+    }
+
+    /**
+     * Write changed topicref targets to map. Map is not rewritten if no targets have changed.
+     *
+     * @param mapFile map file
+     * @param root document element of the topicref tree
+     */
+    void writeMap(final File mapFile, final MapNode root) throws DITAOTException {
+        final List<MapNode> nodes = new ArrayList<>();
+        root.collect(nodes);
+        if (nodes.stream().noneMatch(n -> n.changed)) {
+            return;
+        }
+        final XMLUtils xmlUtils = new XMLUtils();
+        xmlUtils.setLogger(logger);
+        xmlUtils.transform(mapFile, Collections.singletonList(new MapRewriteFilter(nodes)));
+    }
+
+    /**
+     * Topicref in a map. Only the document element and topicrefs that are children of topicrefs are included,
+     * so the tree is small compared to a map DOM.
+     */
+    static final class MapNode {
+        /** Key scope attribute value, {@code null} if not defined. */
+        final String keyscope;
+        /** Target attribute name, {@code null} if element has no target. */
+        final String targetAttr;
+        /** Target attribute value, {@code null} if element has no target. */
+        String target;
+        /** Whether target has been changed. */
+        boolean changed;
+        final boolean isResourceOnly;
+        final List<MapNode> children = new ArrayList<>();
+
+        MapNode(final Attributes atts, final boolean isResourceOnly) {
+            keyscope = atts.getValue(ATTRIBUTE_NAME_KEYSCOPE);
+            if (atts.getValue(ATTRIBUTE_NAME_COPY_TO) != null) {
+                targetAttr = ATTRIBUTE_NAME_COPY_TO;
+            } else if (atts.getValue(ATTRIBUTE_NAME_HREF) != null) {
+                targetAttr = ATTRIBUTE_NAME_HREF;
+            } else {
+                targetAttr = null;
+            }
+            target = targetAttr != null ? atts.getValue(targetAttr) : null;
+            this.isResourceOnly = isResourceOnly;
+        }
+
+        void setTarget(final String target) {
+            this.target = target;
+            changed = true;
+        }
+
+        /** Collect nodes in document order. */
+        void collect(final List<MapNode> nodes) {
+            nodes.add(this);
+            for (final MapNode child : children) {
+                child.collect(nodes);
             }
         }
     }
 
-    private void writeMap(final Document doc) throws DITAOTException {
-        Result out = null;
-        try {
-            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            out = new StreamResult(new File(job.tempDirURI.resolve(job.getInputMap())));
-            transformer.transform(new DOMSource(doc), out);
-        } catch (final TransformerConfigurationException e) {
-            throw new RuntimeException(e);
-        } catch (final TransformerException e) {
-            throw new DITAOTException("Failed to write map: " + e.getMessageAndLocation(), e);
-        } finally {
-            try {
-                close(out);
-            } catch (IOException e) {
-                logger.error("Failed to close result: " + e.getMessage(), e);
+    /** Content handler that collects the topicref tree of a map. */
+    private static final class MapCollector extends DefaultHandler {
+
+        /** Tree nodes of open elements, empty for elements not in the tree. */
+        private final Deque<Optional<MapNode>> nodes = new ArrayDeque<>();
+        /** Resource-only processing role of open elements. */
+        private final Deque<Boolean> resourceOnly = new ArrayDeque<>();
+        MapNode root;
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+            final String processingRole = atts.getValue(ATTRIBUTE_NAME_PROCESSING_ROLE);
+            final boolean isResourceOnly = processingRole != null
+                    ? processingRole.equals(ATTR_PROCESSING_ROLE_VALUE_RESOURCE_ONLY)
+                    : !resourceOnly.isEmpty() && resourceOnly.peek();
+            resourceOnly.push(isResourceOnly);
+            if (nodes.isEmpty()) {
+                root = new MapNode(atts, isResourceOnly);
+                nodes.push(Optional.of(root));
+            } else if (nodes.peek().isPresent() && MAP_TOPICREF.matches(atts)) {
+                final MapNode node = new MapNode(atts, isResourceOnly);
+                nodes.peek().get().children.add(node);
+                nodes.push(Optional.of(node));
+            } else {
+                nodes.push(Optional.empty());
             }
         }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            nodes.pop();
+            resourceOnly.pop();
+        }
     }
 
+    /** Filter that writes changed topicref targets. Elements are matched to tree nodes in document order. */
+    private static final class MapRewriteFilter extends XMLFilterImpl {
+
+        private final Iterator<MapNode> nodes;
+        /** Whether open elements are in the tree. */
+        private final Deque<Boolean> inTree = new ArrayDeque<>();
+
+        MapRewriteFilter(final List<MapNode> nodes) {
+            super();
+            this.nodes = nodes.iterator();
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+                throws SAXException {
+            Attributes res = atts;
+            if (inTree.isEmpty() || (inTree.peek() && MAP_TOPICREF.matches(atts))) {
+                inTree.push(true);
+                final MapNode node = nodes.next();
+                if (node.changed) {
+                    final AttributesImpl a = new AttributesImpl(atts);
+                    a.setValue(a.getIndex(node.targetAttr), node.target);
+                    res = a;
+                }
+            } else {
+                inTree.push(false);
+            }
+            super.startElement(uri, localName, qName, res);
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            inTree.pop();
+            super.endElement(uri, localName, qName);
+        }
+    }
 
 }
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -24,6 +25,8 @@ import org.apache.tools.ant.util.FileUtils;
 import org.apache.xml.resolver.tools.CatalogResolver;
 import org.dita.dost.util.CatalogUtils;
 import org.dita.dost.util.Configuration;
+import org.dita.dost.util.SourceTreeCache;
+import org.dita.dost.util.TemplatesCache;
 import org.dita.dost.util.XMLUtils;
 import org.dita.dost.util.XMLUtils.DebugURIResolver;
 import org.w3c.dom.Element;
@@ -33,7 +36,7 @@ import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.MapMetaReader;
 import org.dita.dost.util.Job.FileInfo;
 import org.dita.dost.writer.DitaMapMetaWriter;
-import org.dita.dost.writer.DitaMetaWriter;
+import org.dita.dost.writer.DitaMetaFilter;
 
 import javax.xml.transform.*;
 import javax.xml.transform.stream.StreamResult;
@@ -46,6 +49,9 @@ import javax.xml.transform.stream.StreamSource;
  * in maps and collects metadata for topics. The collected metadata is then inserted
  * into maps and topics.
  *
+ * <p>Maps are processed in parallel with a single compiled stylesheet and metadata is streamed into topics
+ * on a worker pool when the module is run in parallel mode.</p>
+ *
  * @author Zhang, Yuan Peng
  */
 final class MoveMetaModule extends AbstractPipelineModuleImpl {
@@ -59,8 +65,9 @@ final class MoveMetaModule extends AbstractPipelineModuleImpl {
      */
     @Override
     public AbstractPipelineOutput execute(final AbstractPipelineInput input) throws DITAOTException {
-        final Collection<FileInfo> fis = new ArrayList<>();
-        fis.add(job.getFileInfo(job.getInputMap()));
+        final Collection<FileInfo> fis = fileInfoFilter != null
+                ? job.getFileInfo(fileInfoFilter)
+                : Collections.singletonList(job.getFileInfo(job.getInputMap()));
         if (!fis.isEmpty()) {
             final Map<URI, Map<String, Element>> mapSet = getMapMetadata(fis);
             pushMetadata(mapSet);
@@ -77,81 +84,103 @@ final class MoveMetaModule extends AbstractPipelineModuleImpl {
     private void pullTopicMetadata(final AbstractPipelineInput input, final Collection<FileInfo> fis) throws DITAOTException {
         // Pull metadata (such as navtitle) into the map from the referenced topics
         final File styleFile = new File(input.getAttribute(ANT_INVOKER_EXT_PARAM_STYLE));
-        for (final FileInfo f : fis) {
-            final File inputFile = new File(job.tempDir, f.file.getPath());
-            final File tmp = new File(inputFile.getAbsolutePath() + ".tmp" + Long.toString(System.currentTimeMillis()));
-            if (!tmp.getParentFile().exists() && !tmp.getParentFile().mkdirs()) {
-                throw new DITAOTException("Failed to create directory " + tmp.getParent());
-            }
-            logger.info("Processing " + inputFile.toURI());
-            logger.debug("Processing " + inputFile.toURI() + " to " + tmp.toURI());
-
-            Source source = null;
-            Result result = null;
+        final CatalogResolver xmlCatalog = CatalogUtils.getCatalogResolver();
+        final Templates templates;
+        try {
+            logger.info("Loading stylesheet " + styleFile);
+            templates = TemplatesCache.getInstance()
+                    .getTemplates(styleFile, xmlCatalog, CatalogUtils.getCatalogFile().getAbsolutePath());
+        } catch (final TransformerConfigurationException e) {
+            throw new RuntimeException("Failed to compile stylesheet '" + styleFile.toURI() + "': " + e.getMessage(), e);
+        }
+        final ThreadLocal<Transformer> transformers = ThreadLocal.withInitial(() -> {
             try {
-                source = new StreamSource(inputFile.toURI().toString());
-                result = new StreamResult(tmp);
-
-                logger.info("Loading stylesheet " + styleFile);
-                final TransformerFactory tf = TransformerFactory.newInstance();
-                final CatalogResolver xmlCatalog = CatalogUtils.getCatalogResolver();
-                tf.setURIResolver(xmlCatalog);
-                final Transformer t = withLogger(tf.newTransformer(new StreamSource(styleFile)), logger);
-                final URIResolver resolver;
-                if (Configuration.DEBUG) {
-                    resolver = new DebugURIResolver(xmlCatalog);
-                } else {
-                    resolver = xmlCatalog;
-                }
-                t.setURIResolver(resolver);
+                final Transformer t = withLogger(templates.newTransformer(), logger);
+                final URIResolver resolver = Configuration.DEBUG ? new DebugURIResolver(xmlCatalog) : xmlCatalog;
+                t.setURIResolver(SourceTreeCache.getInstance().getURIResolver(t, job.tempDir, resolver));
                 for (Entry<String, String> e : input.getAttributes().entrySet()) {
                     logger.debug("Set parameter " + e.getKey() + " to '" + e.getValue() + "'");
                     t.setParameter(e.getKey(), e.getValue());
                 }
-
-                t.transform(source, result);
+                return t;
             } catch (final TransformerConfigurationException e) {
-                throw new RuntimeException("Failed to compile stylesheet '" + styleFile.toURI() + "': " + e.getMessage(), e);
-            } catch (final Exception e) {
-                throw new DITAOTException("Failed to transform document: " + e.getMessage(), e);
-            } finally {
-                try {
-                    XMLUtils.close(source);
-                } catch (final IOException e) {
-                    // NOOP
-                }
+                throw new RuntimeException("Failed to create Transformer: " + e.getMessage(), e);
+            }
+        });
+        try {
+            forEach(fis, f -> {
                 try {
-                    XMLUtils.close(result);
-                } catch (final IOException e) {
-                    // NOOP
+                    pullTopicMetadata(f, transformers.get());
+                } catch (final DITAOTException e) {
+                    throw new RuntimeException(e);
                 }
+            });
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof DITAOTException) {
+                throw (DITAOTException) e.getCause();
             }
+            throw e;
+        } finally {
+            transformers.remove();
+        }
+    }
+
+    private void pullTopicMetadata(final FileInfo f, final Transformer t) throws DITAOTException {
+        final File inputFile = new File(job.tempDir, f.file.getPath());
+        final File tmp = new File(inputFile.getAbsolutePath() + ".tmp" + Long.toString(System.currentTimeMillis()));
+        if (!tmp.getParentFile().exists() && !tmp.getParentFile().mkdirs()) {
+            throw new DITAOTException("Failed to create directory " + tmp.getParent());
+        }
+        logger.info("Processing " + inputFile.toURI());
+        logger.debug("Processing " + inputFile.toURI() + " to " + tmp.toURI());
+
+        Source source = null;
+        Result result = null;
+        try {
+            source = new StreamSource(inputFile.toURI().toString());
+            result = new StreamResult(tmp);
+            t.transform(source, result);
+        } catch (final Exception e) {
+            throw new DITAOTException("Failed to transform document: " + e.getMessage(), e);
+        } finally {
             try {
-                logger.debug("Moving " + tmp.toURI() + " to " + inputFile.toURI());
-                if (!inputFile.delete()) {
-                    throw new IOException("Failed to to delete input file " + inputFile.toURI());
-                }
-                if (!tmp.renameTo(inputFile)) {
-                    throw new IOException("Failed to to replace input file " + inputFile.toURI());
-                }
+                XMLUtils.close(source);
             } catch (final IOException e) {
-                throw new DITAOTException("Failed to replace document: " + e.getMessage(), e);
-            } finally {
-                logger.debug("Remove " + tmp.toURI());
-                FileUtils.delete(tmp);
+                // NOOP
             }
+            try {
+                XMLUtils.close(result);
+            } catch (final IOException e) {
+                // NOOP
+            }
+        }
+        try {
+            logger.debug("Moving " + tmp.toURI() + " to " + inputFile.toURI());
+            if (!inputFile.delete()) {
+                throw new IOException("Failed to to delete input file " + inputFile.toURI());
+            }
+            if (!tmp.renameTo(inputFile)) {
+                throw new IOException("Failed to to replace input file " + inputFile.toURI());
+            }
+            SourceTreeCache.getInstance().invalidate(inputFile);
+        } catch (final IOException e) {
+            throw new DITAOTException("Failed to replace document: " + e.getMessage(), e);
+        } finally {
+            logger.debug("Remove " + tmp.toURI());
+            FileUtils.delete(tmp);
         }
     }
 
     /**
      * Push information from topicmeta in the map into the corresponding topics and maps.
      */
-    private void pushMetadata(final Map<URI, Map<String, Element>> mapSet) {
+    private void pushMetadata(final Map<URI, Map<String, Element>> mapSet) throws DITAOTException {
         if (!mapSet.isEmpty()) {
             //process map first
             final DitaMapMetaWriter mapInserter = new DitaMapMetaWriter();
             mapInserter.setLogger(logger);
             mapInserter.setJob(job);
+            final Collection<Entry<URI, Map<String, Element>>> topics = new ArrayList<>();
             for (final Entry<URI, Map<String, Element>> entry : mapSet.entrySet()) {
                 final URI key = entry.getKey();
                 final FileInfo fi = job.getFileInfo(key);
@@ -169,31 +198,35 @@ final class MoveMetaModule extends AbstractPipelineModuleImpl {
                     } else {
                         logger.error("File " + targetFileName + " does not exist");
                     }
-
+                } else if (fi.format == null || fi.format.equals(ATTR_FORMAT_VALUE_DITA)) {
+                    topics.add(entry);
                 }
             }
             //process topic
-            final DitaMetaWriter topicInserter = new DitaMetaWriter();
-            topicInserter.setLogger(logger);
-            topicInserter.setJob(job);
-            for (final Entry<URI, Map<String, Element>> entry : mapSet.entrySet()) {
-                final URI key = entry.getKey();
-                final FileInfo fi = job.getFileInfo(key);
-                if (fi == null) {
-                    logger.error("File " + new File(job.tempDir, key.getPath()) + " was not found.");
-                    continue;
-                }
-                final URI targetFileName = job.tempDirURI.resolve(fi.uri);
-                assert targetFileName.isAbsolute();
-                if (fi.format == null || fi.format.equals(ATTR_FORMAT_VALUE_DITA)) {
-                    topicInserter.setMetaTable(entry.getValue());
+            final ThreadLocal<DitaMetaFilter> topicInserters = ThreadLocal.withInitial(() -> {
+                final DitaMetaFilter topicInserter = new DitaMetaFilter();
+                topicInserter.setLogger(logger);
+                topicInserter.setJob(job);
+                return topicInserter;
+            });
+            try {
+                forEach(topics, entry -> {
+                    final URI targetFileName = job.tempDirURI.resolve(job.getFileInfo(entry.getKey()).uri);
                     if (toFile(targetFileName).exists()) {
-                        topicInserter.read(toFile(targetFileName));
+                        final DitaMetaFilter topicInserter = topicInserters.get();
+                        topicInserter.setMetaTable(entry.getValue());
+                        topicInserter.setCurrentFile(targetFileName);
+                        try {
+                            topicInserter.write(toFile(targetFileName));
+                        } catch (final DITAOTException e) {
+                            logger.error("Failed to insert metadata into " + targetFileName + ": " + e.getMessage(), e);
+                        }
                     } else {
                         logger.error("File " + targetFileName + " does not exist");
                     }
-
-                }
+                });
+            } finally {
+                topicInserters.remove();
             }
         }
     }
@@ -57,8 +57,19 @@ abstract class SourceReaderModule extends AbstractPipelineModuleImpl {
      * @throws SAXException if creating reader failed
      */
     XMLReader getXmlReader(final String format) throws SAXException {
+        return getXmlReader(format, reader);
+    }
+
+    /**
+     * Get reader for input format
+     * @param format input document format
+     * @param ditaReader reader to use for DITA documents
+     * @return reader for given format
+     * @throws SAXException if creating reader failed
+     */
+    XMLReader getXmlReader(final String format, final XMLReader ditaReader) throws SAXException {
         if (format == null || format.equals(ATTR_FORMAT_VALUE_DITA)) {
-            return reader;
+            return ditaReader;
         }
         for (final Map.Entry<String, String> e : parserMap.entrySet()) {
             if (format.equals(e.getKey())) {
@@ -79,7 +90,7 @@ abstract class SourceReaderModule extends AbstractPipelineModuleImpl {
                 }
             }
         }
-        return reader;
+        return ditaReader;
     }
 
     /**
@@ -88,6 +99,17 @@ abstract class SourceReaderModule extends AbstractPipelineModuleImpl {
      * @throws SAXException if parser configuration failed
      */
     void initXmlReader() throws SAXException {
+        reader = createXmlReader();
+    }
+
+    /**
+     * Create new XML reader for pipeline parsing DITA documents.
+     *
+     * @return configured XML reader
+     * @throws SAXException if parser configuration failed
+     */
+    XMLReader createXmlReader() throws SAXException {
+        final XMLReader reader;
         if (parserMap.containsKey(ATTR_FORMAT_VALUE_DITA)) {
             reader = XMLReaderFactory.createXMLReader(parserMap.get(ATTR_FORMAT_VALUE_DITA));
             final Map<String, Boolean> features = parserFeatures.getOrDefault(ATTR_FORMAT_VALUE_DITA, emptyMap());
@@ -125,6 +147,7 @@ abstract class SourceReaderModule extends AbstractPipelineModuleImpl {
 
         CatalogUtils.setDitaDir(ditaDir);
         reader.setEntityResolver(CatalogUtils.getCatalogResolver());
+        return reader;
     }
 
 }
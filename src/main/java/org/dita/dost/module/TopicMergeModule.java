@@ -13,31 +13,38 @@ import static org.dita.dost.util.XMLUtils.withLogger;
 import static javax.xml.XMLConstants.*;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
+import org.apache.xml.resolver.tools.CatalogResolver;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.MergeMapParser;
 import org.dita.dost.util.CatalogUtils;
+import org.dita.dost.util.TemplatesCache;
+import org.dita.dost.util.XMLUtils;
 
 /**
  * The module handles topic merge in issues as PDF.
+ *
+ * <p>The merged document is streamed as SAX events into the style transformation, or into the serializer if
+ * no style is set.</p>
  */
 final class TopicMergeModule extends AbstractPipelineModuleImpl {
 
+    private static final String ELEMENT_DITA_MERGE = "dita-merge";
+
     /**
      * Default Constructor.
      *
@@ -74,39 +81,38 @@ final class TopicMergeModule extends AbstractPipelineModuleImpl {
         mapParser.setJob(job);
         mapParser.setOutput(out);
 
-        final ByteArrayOutputStream midBuffer = new ByteArrayOutputStream();
-        try {
-            midBuffer.write(XML_HEAD.getBytes(UTF8));
-            midBuffer.write(("<dita-merge " + ATTRIBUTE_NAMESPACE_PREFIX_DITAARCHVERSION + "='" + DITA_NAMESPACE + "' "
-                    + XMLNS_ATTRIBUTE + ":" + DITA_OT_NS_PREFIX + "='" + DITA_OT_NS + "'>").getBytes(UTF8));
-            mapParser.setOutputStream(midBuffer);
-            mapParser.read(ditaInput, job.tempDir);
-            midBuffer.write("</dita-merge>".getBytes(UTF8));
-        } catch (final UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        } catch (final IOException e) {
-            throw new DITAOTException("Failed to merge topics: " + e.getMessage(), e);
-        }
-
         final File outputDir = out.getParentFile();
         if (!outputDir.exists() && !outputDir.mkdirs()) {
             logger.error("Failed to create directory " + outputDir.getAbsolutePath());
         }
         try (final OutputStream output = new BufferedOutputStream(new FileOutputStream(out))) {
+            final SAXTransformerFactory stf = (SAXTransformerFactory) TransformerFactory.newInstance();
+            final TransformerHandler handler;
             if (style != null) {
-                final TransformerFactory factory = TransformerFactory.newInstance();
-                factory.setURIResolver(CatalogUtils.getCatalogResolver());
-                final StreamSource styleSource = new StreamSource(style);
-                final Transformer transformer = withLogger(factory.newTransformer(styleSource), logger);
-                final StreamSource source = new StreamSource(new ByteArrayInputStream(midBuffer.toByteArray()));
-                final StreamResult result = new StreamResult(output);
-                transformer.transform(source, result);
+                final CatalogResolver resolver = CatalogUtils.getCatalogResolver();
+                final Templates templates = TemplatesCache.getInstance()
+                        .getTemplates(style, resolver, CatalogUtils.getCatalogFile().getAbsolutePath());
+                handler = stf.newTransformerHandler(templates);
+                final Transformer transformer = withLogger(handler.getTransformer(), logger);
+                transformer.setURIResolver(resolver);
             } else {
-                output.write(midBuffer.toByteArray());
-                output.flush();
+                handler = stf.newTransformerHandler();
             }
+            handler.setResult(new StreamResult(output));
+            handler.startDocument();
+            handler.startPrefixMapping(ATTRIBUTE_PREFIX_DITAARCHVERSION, DITA_NAMESPACE);
+            handler.startPrefixMapping(DITA_OT_NS_PREFIX, DITA_OT_NS);
+            handler.startElement(NULL_NS_URI, ELEMENT_DITA_MERGE, ELEMENT_DITA_MERGE, XMLUtils.EMPTY_ATTRIBUTES);
+            mapParser.setContentHandler(handler);
+            mapParser.read(ditaInput, job.tempDir);
+            handler.endElement(NULL_NS_URI, ELEMENT_DITA_MERGE, ELEMENT_DITA_MERGE);
+            handler.endPrefixMapping(DITA_OT_NS_PREFIX);
+            handler.endPrefixMapping(ATTRIBUTE_PREFIX_DITAARCHVERSION);
+            handler.endDocument();
         } catch (final RuntimeException e) {
             throw e;
+        } catch (final IOException e) {
+            throw new DITAOTException("Failed to merge topics: " + e.getMessage(), e);
         } catch (final Exception e) {
             throw new DITAOTException("Failed to process merged topics: " + e.getMessage(), e);
         }
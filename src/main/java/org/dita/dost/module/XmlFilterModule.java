@@ -8,7 +8,6 @@
 package org.dita.dost.module;
 
 import org.dita.dost.exception.DITAOTException;
-import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.util.Job.FileInfo;
@@ -21,22 +20,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
- * Map processes topics through XML filters. Filters are reused and should reset internal state on
- * {@code startDocument} event.
+ * Map processes topics through XML filters. Filters are created once per worker thread and reused for
+ * every file processed by that thread, so they should reset internal state on {@code startDocument} event.
  */
 public final class XmlFilterModule extends AbstractPipelineModuleImpl {
 
-    private final XMLUtils xmlUtils = new XMLUtils();
     private List<FilterPair> pipe;
 
-    @Override
-    public void setLogger(final DITAOTLogger logger) {
-        super.setLogger(logger);
-        xmlUtils.setLogger(logger);
-    }
-
     /**
      * Filter files through XML filters.
      * 
@@ -47,14 +41,24 @@ public final class XmlFilterModule extends AbstractPipelineModuleImpl {
     public AbstractPipelineOutput execute(final AbstractPipelineInput input)
             throws DITAOTException {
         final Collection<FileInfo> fis = job.getFileInfo(fileInfoFilter);
-        for (final FileInfo f: fis) {
-            final URI file = job.tempDirURI.resolve(f.uri);
-            logger.info("Processing " + file);
-            try {
-                xmlUtils.transform(file, getProcessingPipe(f));
-            } catch (final DITAOTException e) {
-                logger.error("Failed to process XML filter: " + e.getMessage(), e);
-            }
+        final boolean runParallel = parallel && pipe.stream().noneMatch(p -> p.filter != null);
+        if (parallel && !runParallel) {
+            logger.debug("Processing pipe with shared filter instances serially");
+        }
+        final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        try {
+            forEach(fis, runParallel, f -> {
+                final URI file = job.tempDirURI.resolve(f.uri);
+                logger.info("Processing " + file);
+                final Worker worker = workers.get();
+                try {
+                    worker.xmlUtils.transform(file, getProcessingPipe(f, worker.filters));
+                } catch (final DITAOTException e) {
+                    logger.error("Failed to process XML filter: " + e.getMessage(), e);
+                }
+            });
+        } finally {
+            workers.remove();
         }
         return null;
     }
@@ -67,14 +71,16 @@ public final class XmlFilterModule extends AbstractPipelineModuleImpl {
      * Get pipe line filters
      *
      * @param fi current file being processed
+     * @param filters filter instances owned by the current thread, in pipe order
      */
-    private List<XMLFilter> getProcessingPipe(final FileInfo fi) {
+    private List<XMLFilter> getProcessingPipe(final FileInfo fi, final List<AbstractXMLFilter> filters) {
         final URI fileToParse = job.tempDirURI.resolve(fi.uri);
         assert fileToParse.isAbsolute();
         final List<XMLFilter> res = new ArrayList<>();
-        for (final FilterPair p: pipe) {
+        for (int i = 0; i < pipe.size(); i++) {
+            final FilterPair p = pipe.get(i);
             if (p.predicate.test(fi)) {
-                final AbstractXMLFilter f = p.filter;
+                final AbstractXMLFilter f = filters.get(i);
                 logger.debug("Configure filter " + f.getClass().getCanonicalName());
                 f.setCurrentFile(fileToParse);
                 f.setJob(job);
@@ -86,13 +92,50 @@ public final class XmlFilterModule extends AbstractPipelineModuleImpl {
     }
 
     /**
-     * SAX filter with file predicate.
+     * Per thread processing state.
+     */
+    private final class Worker {
+        final XMLUtils xmlUtils = new XMLUtils();
+        final List<AbstractXMLFilter> filters;
+
+        Worker() {
+            xmlUtils.setLogger(logger);
+            filters = pipe.stream()
+                    .map(p -> p.newFilter.get())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * SAX filter factory with file predicate.
      */
     public static class FilterPair {
+        /** Factory that returns a new filter instance on every call. */
+        public final Supplier<AbstractXMLFilter> newFilter;
+        /**
+         * Shared filter instance, {@code null} if created with a filter factory.
+         *
+         * @deprecated since 3.0, use {@link #newFilter}
+         */
+        @Deprecated
         public final AbstractXMLFilter filter;
         public final Predicate<FileInfo> predicate;
 
+        public FilterPair(final Supplier<AbstractXMLFilter> newFilter, final Predicate<FileInfo> fileInfoFilter) {
+            this.newFilter = newFilter;
+            this.filter = null;
+            this.predicate = fileInfoFilter;
+        }
+
+        /**
+         * Create filter pair with a shared filter instance. Shared filters are not thread-safe, so pipes that contain
+         * them are always processed serially.
+         *
+         * @deprecated since 3.0, use {@link #FilterPair(Supplier, Predicate)}
+         */
+        @Deprecated
         public FilterPair(final AbstractXMLFilter filter, final Predicate<FileInfo> fileInfoFilter) {
+            this.newFilter = () -> filter;
             this.filter = filter;
             this.predicate = fileInfoFilter;
         }
@@ -7,6 +7,9 @@
  */
 package org.dita.dost.module;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.XMLCatalog;
 import org.apache.tools.ant.util.FileNameMapper;
 import org.apache.tools.ant.util.FileUtils;
@@ -15,6 +18,8 @@ import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.util.Configuration;
 import org.dita.dost.util.Job;
+import org.dita.dost.util.SourceTreeCache;
+import org.dita.dost.util.TemplatesCache;
 import org.dita.dost.util.XMLUtils;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -23,13 +28,9 @@ import org.xml.sax.XMLReader;
 import javax.xml.transform.*;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import static org.dita.dost.util.FileUtils.replaceExtension;
 import static org.dita.dost.util.XMLUtils.withLogger;
@@ -42,11 +43,22 @@ import static org.dita.dost.util.XMLUtils.withLogger;
  *   <li>If source and destination directories are same, transformation results are saved to a temporary file
  *   and the original source file is replaced after a successful transformation.</li>
  *   <li>If no {@code extension} attribute is set, the target file extension is the same as the source file extension.</li>
+ *   <li>In parallel mode files are transformed concurrently, each worker thread with its own transformer and parser.
+ *   In-place results replace source files while other workers are running, so parallel mode must only be used with
+ *   stylesheets that read nothing but their own input file, e.g. not with {@code document()} on other files in the
+ *   same file set.</li>
+ *   <li>In incremental mode files marked unchanged in the job are skipped if their output is newer than the
+ *   stylesheet and the stylesheet parameters have not changed since the previous run.</li>
+ *   <li>Documents in the temporary directory read with {@code document()} are cached across transformations in
+ *   {@link SourceTreeCache}.</li>
  * </ul>
  *  
  */
 public final class XsltModule extends AbstractPipelineModuleImpl {
 
+    /** Job property prefix for stylesheet parameter hashes of incremental processing. */
+    private static final String PROPERTY_INCREMENTAL_PREFIX = "xslt.incremental.";
+
     private Templates templates;
     private final Map<String, String> params = new HashMap<>();
     private File style;
@@ -61,6 +73,7 @@ public final class XsltModule extends AbstractPipelineModuleImpl {
     private XMLCatalog xmlcatalog;
     private FileNameMapper mapper;
     private String extension;
+    private boolean incremental;
 
     public AbstractPipelineOutput execute(AbstractPipelineInput input) throws DITAOTException {
         if (fileInfoFilter != null) {
@@ -76,93 +89,213 @@ public final class XsltModule extends AbstractPipelineModuleImpl {
         }
 
         logger.info("Transforming into " + destDir.getAbsolutePath());
-        final TransformerFactory tf = TransformerFactory.newInstance();
-        tf.setURIResolver(xmlcatalog);
         try {
-            templates = tf.newTemplates(new StreamSource(style));
+            templates = TemplatesCache.getInstance().getTemplates(style, xmlcatalog, getCatalogKey());
         } catch (TransformerConfigurationException e) {
             throw new RuntimeException("Failed to compile stylesheet '" + style.getAbsolutePath() + "': " + e.getMessage(), e);
         }
-        XMLReader parser;
+        if (incremental && fileInfoFilter != null) {
+            includes = getModified();
+            if (includes.isEmpty()) {
+                return null;
+            }
+        }
+
+        final ThreadLocal<XMLReader> parsers = ThreadLocal.withInitial(this::getXMLReader);
+        final ThreadLocal<Transformer> transformers = ThreadLocal.withInitial(() -> {
+            try {
+                return getTransformer();
+            } catch (final DITAOTException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        try {
+            forEach(includes, include -> {
+                if (reloadstylesheet) {
+                    transformers.remove();
+                }
+                transform(include, transformers.get(), parsers.get());
+            });
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof DITAOTException) {
+                throw (DITAOTException) e.getCause();
+            }
+            throw e;
+        } finally {
+            transformers.remove();
+            parsers.remove();
+        }
+        return null;
+    }
+
+    /**
+     * Get files that need to be transformed in incremental mode and store stylesheet parameters hash to the job.
+     *
+     * @return files whose source, output, stylesheet or parameters have changed since previous run
+     */
+    private Collection<File> getModified() throws DITAOTException {
+        final String key = PROPERTY_INCREMENTAL_PREFIX + Hashing.sha256()
+                .hashString(style.getAbsolutePath() + File.pathSeparator + destDir.getAbsolutePath(), Charsets.UTF_8);
+        final String stamp = getParamsHash();
+        final boolean paramsChanged = !stamp.equals(job.getProperty(key));
+        final long styleModified = TemplatesCache.getInstance().getLastModified(style, getCatalogKey());
+        final Collection<File> res = new ArrayList<>(includes.size());
+        for (final Job.FileInfo f : job.getFileInfo(fileInfoFilter)) {
+            final File in = new File(baseDir, f.file.getPath());
+            final File out = getOutputFile(f.file);
+            if (paramsChanged || !f.isUnchanged || styleModified == -1L || out == null || out.equals(in)
+                    || !out.exists() || out.lastModified() < styleModified) {
+                res.add(f.file);
+            } else {
+                logger.debug("Skip unchanged " + in.getAbsolutePath());
+            }
+        }
+        logger.info("Incremental processing: " + (includes.size() - res.size()) + " of " + includes.size()
+                + " files up to date");
+        if (paramsChanged) {
+            job.setProperty(key, stamp);
+            try {
+                job.write();
+            } catch (final IOException e) {
+                throw new DITAOTException("Failed to write job: " + e.getMessage(), e);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Get hash of stylesheet parameters and output file naming configuration.
+     */
+    private String getParamsHash() {
+        final StringBuilder buf = new StringBuilder();
+        for (final Map.Entry<String, String> e : new TreeMap<>(params).entrySet()) {
+            buf.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        buf.append(extension).append('\n')
+                .append(filenameparameter).append('\n')
+                .append(filedirparameter).append('\n')
+                .append(mapper != null ? mapper.getClass().getName() : null);
+        return Hashing.sha256().hashString(buf, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Get identifier of the catalog configuration for stylesheet cache. Catalogs without a catalog path are
+     * identified by the catalog instance.
+     */
+    private Object getCatalogKey() {
+        if (xmlcatalog == null) {
+            return null;
+        }
+        final Path catalogPath = xmlcatalog.getCatalogPath();
+        return catalogPath != null ? catalogPath.toString() : xmlcatalog;
+    }
+
+    private XMLReader getXMLReader() {
+        final XMLReader parser;
         try {
             parser = XMLUtils.getXMLReader();
         } catch (final SAXException e) {
             throw new RuntimeException("Failed to create XML reader: " + e.getMessage(), e);
         }
         parser.setEntityResolver(xmlcatalog);
+        return parser;
+    }
 
-        Transformer t = null;
-        for (final File include: includes) {
-            if (reloadstylesheet || t == null) {
-                logger.info("Loading stylesheet " + style.getAbsolutePath());
-                try {
-                    t = withLogger(templates.newTransformer(), logger);
-                    if (Configuration.DEBUG) {
-                        t.setURIResolver(new XMLUtils.DebugURIResolver(xmlcatalog));
-                    }
-                } catch (final TransformerConfigurationException e) {
-                    throw new DITAOTException("Failed to create Transformer: " + e.getMessage(), e);
-                }
-            }
-            final File in = new File(baseDir, include.getPath());
-            File out = new File(destDir, include.getPath());
-            if (mapper != null) {
-                final String[] outs = mapper.mapFileName(include.getPath());
-                if (outs == null) {
-                    continue;
-                }
-                if (outs.length > 1) {
-                    throw new RuntimeException("XSLT module only support one to one output mapping");
-                }
-                out = new File(destDir, outs[0]);
-            } else if (extension != null) {
-                out = new File(replaceExtension(out.getAbsolutePath(), extension));
-            }
-            final boolean same = in.getAbsolutePath().equals(out.getAbsolutePath());
-            final File tmp = same ? new File(out.getAbsolutePath() + ".tmp" + Long.toString(System.currentTimeMillis())) : out; 
-            for (Map.Entry<String, String> e: params.entrySet()) {
-                logger.debug("Set parameter " + e.getKey() + " to '" + e.getValue() + "'");
-                t.setParameter(e.getKey(), e.getValue());
-            }
-            if (filenameparameter != null) {
-                logger.debug("Set parameter " + filenameparameter + " to '" + include.getName() + "'");
-                t.setParameter(filenameparameter, include.getName());
+    private Transformer getTransformer() throws DITAOTException {
+        logger.info("Loading stylesheet " + style.getAbsolutePath());
+        try {
+            final Transformer t = withLogger(templates.newTransformer(), logger);
+            final URIResolver resolver = Configuration.DEBUG ? new XMLUtils.DebugURIResolver(xmlcatalog) : xmlcatalog;
+            if (job != null) {
+                t.setURIResolver(SourceTreeCache.getInstance().getURIResolver(t, job.tempDir, resolver));
+            } else if (resolver != null) {
+                t.setURIResolver(resolver);
             }
-            if (filedirparameter != null) {
-                final String v = include.getParent() != null ? include.getParent() : ".";
-                logger.debug("Set parameter " + filedirparameter + " to '" + v + "'");
-                t.setParameter(filedirparameter, v);
+            return t;
+        } catch (final TransformerConfigurationException e) {
+            throw new DITAOTException("Failed to create Transformer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Transform a single file. Errors are logged and the partial result is removed.
+     *
+     * @param include source file path relative to base directory
+     * @param t transformer to use
+     * @param parser XML reader to use
+     */
+    private void transform(final File include, final Transformer t, final XMLReader parser) {
+        final File in = new File(baseDir, include.getPath());
+        final File out = getOutputFile(include);
+        if (out == null) {
+            return;
+        }
+        final boolean same = in.getAbsolutePath().equals(out.getAbsolutePath());
+        final File tmp = same ? new File(out.getAbsolutePath() + ".tmp" + Long.toString(System.currentTimeMillis())) : out;
+        for (Map.Entry<String, String> e: params.entrySet()) {
+            logger.debug("Set parameter " + e.getKey() + " to '" + e.getValue() + "'");
+            t.setParameter(e.getKey(), e.getValue());
+        }
+        if (filenameparameter != null) {
+            logger.debug("Set parameter " + filenameparameter + " to '" + include.getName() + "'");
+            t.setParameter(filenameparameter, include.getName());
+        }
+        if (filedirparameter != null) {
+            final String v = include.getParent() != null ? include.getParent() : ".";
+            logger.debug("Set parameter " + filedirparameter + " to '" + v + "'");
+            t.setParameter(filedirparameter, v);
+        }
+        if (same) {
+            logger.info("Processing " + in.getAbsolutePath());
+            logger.debug("Processing " + in.getAbsolutePath() + " to " + tmp.getAbsolutePath());
+        } else {
+            logger.info("Processing " + in.getAbsolutePath() + " to " + tmp.getAbsolutePath());
+        }
+        final Source source = new SAXSource(parser, new InputSource(in.toURI().toString()));
+        try {
+            if (!tmp.getParentFile().exists() && !tmp.getParentFile().mkdirs() && !tmp.getParentFile().exists()) {
+                throw new IOException("Failed to create directory " + tmp.getParent());
             }
+            t.transform(source, new StreamResult(tmp));
             if (same) {
-                logger.info("Processing " + in.getAbsolutePath());
-                logger.debug("Processing " + in.getAbsolutePath() + " to " + tmp.getAbsolutePath());
-            } else {
-                logger.info("Processing " + in.getAbsolutePath() + " to " + tmp.getAbsolutePath());
-            }
-            final Source source = new SAXSource(parser, new InputSource(in.toURI().toString()));
-            try {
-                if (!tmp.getParentFile().exists() && !tmp.getParentFile().mkdirs()) {
-                    throw new IOException("Failed to create directory " + tmp.getParent());
+                logger.debug("Moving " + tmp.getAbsolutePath() + " to " + out.getAbsolutePath());
+                if (!out.delete()) {
+                    throw new IOException("Failed to to delete input file " + out.getAbsolutePath());
                 }
-                t.transform(source, new StreamResult(tmp));
-                if (same) {
-                    logger.debug("Moving " + tmp.getAbsolutePath() + " to " + out.getAbsolutePath());
-                    if (!out.delete()) {
-                        throw new IOException("Failed to to delete input file " + out.getAbsolutePath());
-                    }
-                    if (!tmp.renameTo(out)) {
-                        throw new IOException("Failed to to replace input file " + out.getAbsolutePath());
-                    }
+                if (!tmp.renameTo(out)) {
+                    throw new IOException("Failed to to replace input file " + out.getAbsolutePath());
                 }
-            } catch (final Exception e) {
-                logger.error("Failed to transform document: " + e.getMessage(), e);
-                logger.debug("Remove " + tmp.getAbsolutePath());
-                FileUtils.delete(tmp);
-            } 
+            }
+            SourceTreeCache.getInstance().invalidate(out);
+        } catch (final Exception e) {
+            logger.error("Failed to transform document: " + e.getMessage(), e);
+            logger.debug("Remove " + tmp.getAbsolutePath());
+            FileUtils.delete(tmp);
         }
-        return null;
     }
     
+    /**
+     * Get output file for a source file.
+     *
+     * @param include source file path relative to base directory
+     * @return output file, {@code null} if mapper does not map the source file
+     */
+    private File getOutputFile(final File include) {
+        if (mapper != null) {
+            final String[] outs = mapper.mapFileName(include.getPath());
+            if (outs == null) {
+                return null;
+            }
+            if (outs.length > 1) {
+                throw new RuntimeException("XSLT module only support one to one output mapping");
+            }
+            return new File(destDir, outs[0]);
+        } else if (extension != null) {
+            return new File(replaceExtension(new File(destDir, include.getPath()).getAbsolutePath(), extension));
+        }
+        return new File(destDir, include.getPath());
+    }
+
     public void setStyle(final File style) {
         this.style = style;
     }
@@ -215,4 +348,8 @@ public final class XsltModule extends AbstractPipelineModuleImpl {
         this.extension = extension.startsWith(".") ? extension : ("." + extension);
     }
 
+    public void setIncremental(final boolean incremental) {
+        this.incremental = incremental;
+    }
+
 }
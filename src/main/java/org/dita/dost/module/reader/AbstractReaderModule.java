@@ -84,10 +84,9 @@ public abstract class AbstractReaderModule extends AbstractPipelineModuleImpl {
     private final Set<URI> relFlagImagesSet = new LinkedHashSet<>(128);
     /** List of files waiting for parsing. Values are absolute URI references. */
     @VisibleForTesting
-    final Queue<Reference> waitList = new LinkedList<>();
-    /** List of parsed files */
-    final List<URI> doneList = new LinkedList<>();
-    final List<URI> failureList = new LinkedList<>();
+    final WaitList waitList = new WaitList();
+    /** Set of files that failed to parse */
+    final Set<URI> failureList = new HashSet<>();
     /** Set of outer dita files */
     private final Set<URI> outDitaFilesSet = new HashSet<>(128);
     /** Set of sources of conacion */
@@ -418,7 +417,6 @@ public abstract class AbstractReaderModule extends AbstractPipelineModuleImpl {
             }
         }
 
-        doneList.add(currentFile);
         listFilter.reset();
         keydefFilter.reset();
 
@@ -529,10 +527,6 @@ public abstract class AbstractReaderModule extends AbstractPipelineModuleImpl {
     void addToWaitList(final Reference ref) {
         final URI file = ref.filename;
         assert file.isAbsolute() && file.getFragment() == null;
-        if (doneList.contains(file) || waitList.contains(ref) || file.equals(currentFile)) {
-            return;
-        }
-
         waitList.add(ref);
     }
 
@@ -0,0 +1,88 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ *  See the accompanying LICENSE file for applicable license.
+ */
+
+package org.dita.dost.module.reader;
+
+import org.dita.dost.reader.GenListModuleReader.Reference;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * FIFO queue of files waiting for parsing.
+ *
+ * <p>Every file is accepted into the queue only once, files that are waiting, being parsed, or already
+ * parsed are rejected. Membership is tracked with a hash set of normalized file URIs, so adding a reference
+ * is a constant time operation regardless of the size of the crawl. The format of the reference is not
+ * part of the identity, the first reference to a file determines the format it's parsed with.</p>
+ */
+public final class WaitList {
+
+    /** Files waiting for parsing in discovery order. */
+    private final Deque<Reference> queue = new ArrayDeque<>();
+    /** Files that have been accepted into the queue. */
+    private final Set<URI> seen = new HashSet<>();
+
+    /**
+     * Add reference to the end of the queue if the file has not been accepted before.
+     *
+     * @param ref reference to absolute file URI
+     * @return {@code true} if reference was added, {@code false} if file had already been accepted
+     */
+    public boolean add(final Reference ref) {
+        assert ref.filename.isAbsolute() && ref.filename.getFragment() == null;
+        if (seen.add(ref.filename.normalize())) {
+            queue.add(ref);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Test if file has been accepted into the queue, regardless whether it has already been removed.
+     *
+     * @param file absolute file URI
+     * @return {@code true} if file has been accepted, otherwise {@code false}
+     */
+    public boolean isSeen(final URI file) {
+        return seen.contains(file.normalize());
+    }
+
+    /**
+     * Retrieve and remove the head of the queue.
+     *
+     * @return first waiting reference
+     * @throws NoSuchElementException if queue is empty
+     */
+    public Reference remove() {
+        return queue.remove();
+    }
+
+    /**
+     * Retrieve and remove all waiting references.
+     *
+     * @return waiting references in queue order
+     */
+    public List<Reference> removeAll() {
+        final List<Reference> res = new ArrayList<>(queue);
+        queue.clear();
+        return res;
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Number of references waiting for parsing.
+     */
+    public int size() {
+        return queue.size();
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.platform;
+
+import static javax.xml.XMLConstants.NULL_NS_URI;
+
+import org.dita.dost.util.XMLUtils.AttributesBuilder;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Set Ant property if plug-ins extend an extension point.
+ *
+ * <p>Parameter {@code property} is the name of the property to set and optional parameter {@code value} the value,
+ * defaults to {@code true}. Nothing is generated if no plug-in extends the extension point.</p>
+ *
+ * @since 3.0
+ */
+final class ExtensionPropertyAction extends ImportAction {
+
+    /**
+     * Get result.
+     */
+    @Override
+    public void getResult(final ContentHandler buf) throws SAXException {
+        if (valueSet.isEmpty()) {
+            return;
+        }
+        buf.startElement(NULL_NS_URI, "property", "property", new AttributesBuilder()
+                .add("name", paramTable.get("property"))
+                .add("value", paramTable.getOrDefault("value", "true"))
+                .build());
+        buf.endElement(NULL_NS_URI, "property", "property");
+    }
+
+}
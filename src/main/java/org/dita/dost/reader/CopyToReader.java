@@ -85,7 +85,7 @@ public final class CopyToReader extends AbstractXMLFilter {
 
         final String classValue = atts.getValue(ATTRIBUTE_NAME_CLASS);
         
-        final DitaClass cls = atts.getValue(ATTRIBUTE_NAME_CLASS) != null ? new DitaClass(atts.getValue(ATTRIBUTE_NAME_CLASS)) : new DitaClass("");
+        final DitaClass cls = atts.getValue(ATTRIBUTE_NAME_CLASS) != null ? DitaClass.getInstance(atts) : DitaClass.getInstance("");
 
         if (chunkLevel > 0) {
             chunkLevel++;
@@ -376,6 +376,21 @@ public final class GenListModuleReader extends AbstractXMLFilter {
         // Don't clean resourceOnlySet, normalProcessingRoleSet, or nonTopicrefReferenceSet
     }
 
+    /**
+     * Add cross-document state collected by another reader into this reader. Used to combine readers that
+     * have parsed documents independently.
+     *
+     * @param other reader to merge from
+     */
+    public void merge(final GenListModuleReader other) {
+        resourceOnlySet.addAll(other.resourceOnlySet);
+        normalProcessingRoleSet.addAll(other.normalProcessingRoleSet);
+        nonTopicrefReferenceSet.addAll(other.nonTopicrefReferenceSet);
+        for (final Map.Entry<URI, Set<URI>> e : other.schemeRelationGraph.entrySet()) {
+            schemeRelationGraph.computeIfAbsent(e.getKey(), k -> new LinkedHashSet<>()).addAll(e.getValue());
+        }
+    }
+
     @Override
     public void startDocument() throws SAXException {
         if (currentDir == null) {
@@ -399,7 +414,7 @@ public final class GenListModuleReader extends AbstractXMLFilter {
         }
         processRoleStack.push(processingRole);
 
-        final DitaClass cls = atts.getValue(ATTRIBUTE_NAME_CLASS) != null ? new DitaClass(atts.getValue(ATTRIBUTE_NAME_CLASS)) : null;
+        final DitaClass cls = DitaClass.getInstance(atts);
 
         final URI href = toURI(atts.getValue(ATTRIBUTE_NAME_HREF));
         final String scope = atts.getValue(ATTRIBUTE_NAME_SCOPE);
@@ -12,30 +12,29 @@ import org.dita.dost.util.XMLGrammarPoolImplUtils;
 
 /**
  * Manages creation and access to a master Xerces grammar pool.
- * The grammar pool is managed as a ThreadLocal variable so it can
- * be used across Ant task invocations.
+ * The grammar pool is shared by all threads in the process, so it can
+ * be used across Ant task invocations and by concurrent parser threads.
+ * The pool implementation is synchronized and cached DTD grammars are
+ * not modified after they have been stored.
  */
 public final class GrammarPoolManager {
 
-    private static final ThreadLocal<XMLGrammarPool> grammarPool = new ThreadLocal<>();
+    private static XMLGrammarPool grammarPool;
 
     /**
      * Get grammar pool
      * 
      * @return grammar pool instance
      */
-    public static XMLGrammarPool getGrammarPool() {
-        XMLGrammarPool pool = grammarPool.get();
-        if (pool == null) {
+    public static synchronized XMLGrammarPool getGrammarPool() {
+        if (grammarPool == null) {
             try {
-                pool = new XMLGrammarPoolImplUtils();
-                grammarPool.set(pool);
+                grammarPool = new XMLGrammarPoolImplUtils();
             } catch (final Exception e) {
                 System.out.println("Failed to create Xerces grammar pool for caching DTDs and schemas");
             }
         }
-        return pool;
+        return grammarPool;
     }
 
 }
-
@@ -17,7 +17,11 @@ import java.io.File;
 import java.net.URI;
 import java.util.*;
 
-import javax.xml.parsers.DocumentBuilder;
+import javax.xml.XMLConstants;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 
 import org.dita.dost.log.MessageBean;
 import org.dita.dost.log.MessageUtils;
@@ -27,11 +31,19 @@ import org.dita.dost.util.KeyScope;
 import org.dita.dost.util.XMLUtils;
 import org.w3c.dom.*;
 import org.dita.dost.log.DITAOTLogger;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 /**
  * KeyrefReader class which reads DITA map file to collect key definitions. Instances are reusable but not thread-safe.
+ *
+ * <p>Key definitions are collected from SAX events and the events are passed through unchanged, so the reader
+ * can be used as a filter in the same parse as other map processing. Each key definition element is copied into
+ * a detached document with its attributes and content, e.g. topicmeta and link text, but without nested topicrefs.
+ * Key scopes are resolved at the end of the document.</p>
  */
-public final class KeyrefReader implements AbstractReader {
+public final class KeyrefReader extends XMLFilterImpl implements AbstractReader {
 
     private static final List<String> ATTS = Collections.unmodifiableList(asList(
             ATTRIBUTE_NAME_HREF,
@@ -56,15 +68,22 @@ public final class KeyrefReader implements AbstractReader {
 
     private DITAOTLogger logger;
     private Job job;
-    private final DocumentBuilder builder;
     private KeyScope rootScope;
     private URI currentFile;
+    /** Open elements, innermost first. */
+    private final Deque<Frame> elements = new ArrayDeque<>();
+    /** Key definition elements being copied, innermost first. */
+    private final Deque<Capture> captures = new ArrayDeque<>();
+    /** Prefix mappings declared on the next element. */
+    private final List<String[]> prefixMappings = new ArrayList<>();
+    /** Key scopes read from the document element. */
+    private List<KeyScope> rootScopes;
 
     /**
      * Constructor.
      */
     public KeyrefReader() {
-        builder = XMLUtils.getDocumentBuilder();
+        super();
     }
     
     @Override
@@ -82,6 +101,15 @@ public final class KeyrefReader implements AbstractReader {
         this.job = job;
     }
 
+    /**
+     * Set file to read.
+     *
+     * @param currentFile absolute URI to DITA map with key definitions
+     */
+    public void setCurrentFile(final URI currentFile) {
+        this.currentFile = currentFile;
+    }
+
     /**
      * Get key definitions for root scope. Each key definition Element has a distinct Document.
      * 
@@ -98,124 +126,150 @@ public final class KeyrefReader implements AbstractReader {
      * @param doc key definition DITA map
      */
     public void read(final URI filename, final Document doc) {
-        currentFile = filename;
+        setCurrentFile(filename);
+        final Transformer transformer = XMLUtils.getTransformerPool().borrow();
+        try {
+            transformer.transform(new DOMSource(doc), new SAXResult(this));
+        } catch (final TransformerException e) {
+            throw new RuntimeException("Failed to read key definitions: " + e.getMessage(), e);
+        } finally {
+            XMLUtils.getTransformerPool().release(transformer);
+        }
+    }
+
+    // SAX methods
+
+    @Override
+    public void startDocument() throws SAXException {
         rootScope = null;
+        rootScopes = null;
+        elements.clear();
+        captures.clear();
+        prefixMappings.clear();
+        super.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
         // TODO: use KeyScope implementation that retains order
-        KeyScope keyScope = readScopes(doc);
+        KeyScope keyScope = rootScopes.size() == 1 && rootScopes.get(0).name == null
+                ? rootScopes.get(0)
+                : new KeyScope("#root", null, Collections.emptyMap(), rootScopes);
+        rootScopes = null;
         keyScope = cascadeChildKeys(keyScope);
-        // TODO: determine effective key definitions here
-        keyScope = inheritParentKeys(keyScope);
-        rootScope = resolveIntermediate(keyScope);
+        rootScope = resolveScopes(keyScope);
+        super.endDocument();
     }
 
-    /** Read keys scopes in map. */
-    private KeyScope readScopes(final Document doc) {
-        final List<KeyScope> scopes = readScopes(doc.getDocumentElement());
-        if (scopes.size() == 1 && scopes.get(0).name == null) {
-            return scopes.get(0);
-        } else {
-            return new KeyScope("#root", null, Collections.emptyMap(), scopes);
-        }
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        prefixMappings.add(new String[] {prefix, uri});
+        super.startPrefixMapping(prefix, uri);
     }
-    private List<KeyScope> readScopes(final Element root) {
-        final List<KeyScope> childScopes = new ArrayList<>();
-        final Map<String, KeyDef> keyDefs = new HashMap<>();
-        readScope(root, keyDefs);
-        readChildScopes(root, childScopes);
-        final String keyscope = root.getAttribute(ATTRIBUTE_NAME_KEYSCOPE).trim();
-        if (keyscope.isEmpty()) {
-            return Collections.singletonList(new KeyScope("#root", null, keyDefs, childScopes));
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        final Frame parent = elements.peek();
+        final String keyscope = atts.getValue(ATTRIBUTE_NAME_KEYSCOPE);
+        final int position = parent != null ? ++parent.children : 1;
+        final Frame frame;
+        if (parent == null || keyscope != null) {
+            final ScopeBuilder scope = new ScopeBuilder(keyscope, generateId(qName, position));
+            frame = new Frame(qName, position, scope, scope.addUnit(), true);
+        } else if (SUBMAP.matches(atts)) {
+            frame = new Frame(qName, position, parent.scope, parent.scope.addUnit(), false);
         } else {
-            final List<KeyScope> res = new ArrayList<>();
-            for (final String scope: keyscope.split("\\s+")) {
-                res.add(new KeyScope(generateId(root, scope), scope, keyDefs, childScopes));
-            }
-            return res;
+            frame = new Frame(qName, position, parent.scope, parent.unit, false);
+        }
+        elements.push(frame);
+
+        for (final Capture capture : captures) {
+            capture.startElement(uri, qName, atts, prefixMappings);
         }
+        readKeyDefinition(uri, qName, atts, frame.unit);
+        prefixMappings.clear();
+
+        super.startElement(uri, localName, qName, atts);
     }
 
-    private String generateId(final Element root, final String scope) {
-        final StringBuilder res = new StringBuilder();
-        Element elem = root;
-        while (elem != null) {
-            res.append(elem.getNodeName()).append('[');
-            int position = 0;
-            for (Node n = elem; n != null; position++) {
-                n = n.getPreviousSibling();
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        final Frame frame = elements.pop();
+        for (final Iterator<Capture> it = captures.iterator(); it.hasNext();) {
+            final Capture capture = it.next();
+            if (capture.depth == elements.size()) {
+                it.remove();
+            } else {
+                capture.endElement();
             }
-            res.append(Integer.toString(position)).append(']');
-            final Node p = elem.getParentNode();
-            if (p != null && p.getNodeType() == Node.ELEMENT_NODE) {
-                elem = (Element) p;
+        }
+        if (frame.scopeStart) {
+            final List<KeyScope> scopes = frame.scope.build();
+            final Frame parent = elements.peek();
+            if (parent != null) {
+                parent.scope.childScopes.addAll(scopes);
             } else {
-                elem = null;
+                rootScopes = scopes;
             }
         }
-        res.append('.').append(scope);
-        return res.toString();
+
+        super.endElement(uri, localName, qName);
     }
 
-    private void readChildScopes(final Element elem, final List<KeyScope> childScopes) {
-        for (final Element child: getChildElements(elem)) {
-            if (child.getAttributeNode(ATTRIBUTE_NAME_KEYSCOPE) != null) {
-                final List<KeyScope> childScope = readScopes(child);
-                childScopes.addAll(childScope);
-            }
-            else {
-                readChildScopes(child, childScopes);
-            }
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        for (final Capture capture : captures) {
+            capture.characters(ch, start, length);
         }
+        super.characters(ch, start, length);
     }
 
-    /** Read key definitions from a key scope. */
-    private void readScope(final Element scope, final Map<String, KeyDef> keyDefs) {
-        final List<Element> maps = new ArrayList<>();
-        maps.add(scope);
-        for (final Element child: getChildElements(scope)) {
-            collectMaps(child, maps);
-        }
-        for (final Element map: maps) {
-            readMap(map, keyDefs);
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        for (final Capture capture : captures) {
+            capture.characters(ch, start, length);
         }
+        super.ignorableWhitespace(ch, start, length);
     }
 
-    private void collectMaps(final Element elem, final List<Element> maps) {
-        if (elem.getAttributeNode(ATTRIBUTE_NAME_KEYSCOPE) != null) {
-            return;
-        }
-        final String classValue = elem.getAttribute(ATTRIBUTE_NAME_CLASS);
-        if (MAP_MAP.matches(classValue) || SUBMAP.matches(classValue)) {
-            maps.add(elem);
-        }
-        for (final Element child: getChildElements(elem)) {
-            collectMaps(child, maps);
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        for (final Capture capture : captures) {
+            capture.processingInstruction(target, data);
         }
+        super.processingInstruction(target, data);
     }
 
-    /** Recursively read key definitions from a single map fragment. */
-    private void readMap(final Element map, final Map<String, KeyDef> keyDefs) {
-        readKeyDefinition(map, keyDefs);
-        for (final Element elem: getChildElements(map)) {
-            if (!(SUBMAP.matches(elem) || elem.getAttributeNode(ATTRIBUTE_NAME_KEYSCOPE) != null)) {
-                readMap(elem, keyDefs);
-            }
+    /** Generate key scope ID from element path, innermost element first. */
+    private String generateId(final String qName, final int position) {
+        final StringBuilder res = new StringBuilder();
+        res.append(qName).append('[').append(position).append(']');
+        for (final Frame elem: elements) {
+            res.append(elem.name).append('[').append(elem.position).append(']');
         }
+        return res.toString();
     }
 
-    private void readKeyDefinition(final Element elem, final Map<String, KeyDef> keyDefs) {
-        final String keyName = elem.getAttribute(ATTRIBUTE_NAME_KEYS);
-        if (!keyName.isEmpty()) {
+    private void readKeyDefinition(final String uri, final String qName, final Attributes atts,
+                                   final Map<String, KeyDef> keyDefs) {
+        final String keyName = atts.getValue(ATTRIBUTE_NAME_KEYS);
+        if (keyName != null && !keyName.isEmpty()) {
+            Element copy = null;
             for (final String key: keyName.trim().split("\\s+")) {
                 if (!keyDefs.containsKey(key)) {
-                    final Document d = builder.newDocument();
-                    final Element copy = (Element) d.importNode(elem, true);
-                    d.appendChild(copy);
-                    final String h = copy.getAttribute(ATTRIBUTE_NAME_HREF);
-                    final URI href = h.isEmpty() ? null : toURI(h);
-                    final String s = copy.getAttribute(ATTRIBUTE_NAME_SCOPE);
-                    final String scope = s.isEmpty() ? null : s;
-                    final String f = copy.getAttribute(ATTRIBUTE_NAME_FORMAT);
-                    final String format = f.isEmpty() ? null : f;
+                    if (copy == null) {
+                        final Capture capture = new Capture(elements.size() - 1);
+                        capture.startElement(uri, qName, atts, prefixMappings);
+                        captures.push(capture);
+                        copy = capture.doc.getDocumentElement();
+                    }
+                    final String h = atts.getValue(ATTRIBUTE_NAME_HREF);
+                    final URI href = h == null || h.isEmpty() ? null : toURI(h);
+                    final String s = atts.getValue(ATTRIBUTE_NAME_SCOPE);
+                    final String scope = s == null || s.isEmpty() ? null : s;
+                    final String f = atts.getValue(ATTRIBUTE_NAME_FORMAT);
+                    final String format = f == null || f.isEmpty() ? null : f;
                     final KeyDef keyDef = new KeyDef(key, href, scope, format, currentFile, copy);
                     keyDefs.put(key, keyDef);
                 }
@@ -223,6 +277,129 @@ public final class KeyrefReader implements AbstractReader {
         }
     }
 
+    /** Open element state. */
+    private static final class Frame {
+        final String name;
+        /** Position among sibling elements, starting from 1. */
+        final int position;
+        /** Innermost key scope. */
+        final ScopeBuilder scope;
+        /** Key definitions of the innermost map or submap within the key scope. */
+        final Map<String, KeyDef> unit;
+        /** Whether element starts a new key scope. */
+        final boolean scopeStart;
+        /** Number of child elements read so far. */
+        int children;
+
+        Frame(final String name, final int position, final ScopeBuilder scope, final Map<String, KeyDef> unit,
+              final boolean scopeStart) {
+            this.name = name;
+            this.position = position;
+            this.scope = scope;
+            this.unit = unit;
+            this.scopeStart = scopeStart;
+        }
+    }
+
+    /** Key scope being read. */
+    private static final class ScopeBuilder {
+        /** Key scope attribute value, {@code null} if not defined. */
+        final String keyscope;
+        final String id;
+        /** Key definitions of the scope element and its submaps in document order. Earlier definitions win. */
+        final List<Map<String, KeyDef>> units = new ArrayList<>();
+        final List<KeyScope> childScopes = new ArrayList<>();
+
+        ScopeBuilder(final String keyscope, final String id) {
+            this.keyscope = keyscope;
+            this.id = id;
+        }
+
+        Map<String, KeyDef> addUnit() {
+            final Map<String, KeyDef> unit = new HashMap<>();
+            units.add(unit);
+            return unit;
+        }
+
+        List<KeyScope> build() {
+            final Map<String, KeyDef> keyDefs = new HashMap<>();
+            for (final Map<String, KeyDef> unit: units) {
+                for (final Map.Entry<String, KeyDef> e: unit.entrySet()) {
+                    keyDefs.putIfAbsent(e.getKey(), e.getValue());
+                }
+            }
+            final String names = keyscope != null ? keyscope.trim() : "";
+            if (names.isEmpty()) {
+                return Collections.singletonList(new KeyScope("#root", null, keyDefs, childScopes));
+            } else {
+                final List<KeyScope> res = new ArrayList<>();
+                for (final String scope: names.split("\\s+")) {
+                    res.add(new KeyScope(id + "." + scope, scope, keyDefs, childScopes));
+                }
+                return res;
+            }
+        }
+    }
+
+    /** Detached copy of a key definition element. Nested topicrefs are not copied. */
+    private static final class Capture {
+        /** Depth of the key definition element. */
+        final int depth;
+        final Document doc = XMLUtils.getDocumentBuilder().newDocument();
+        Node current = doc;
+        /** Depth within a skipped nested topicref, {@code 0} if not skipping. */
+        int skip;
+
+        Capture(final int depth) {
+            this.depth = depth;
+        }
+
+        void startElement(final String uri, final String qName, final Attributes atts,
+                          final List<String[]> prefixMappings) {
+            if (skip > 0 || (current != doc && MAP_TOPICREF.matches(atts))) {
+                skip++;
+                return;
+            }
+            final Element elem = doc.createElementNS(uri.isEmpty() ? null : uri, qName);
+            for (final String[] mapping: prefixMappings) {
+                final String name = mapping[0].isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + mapping[0];
+                elem.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, mapping[1]);
+            }
+            for (int i = 0; i < atts.getLength(); i++) {
+                final String attUri = atts.getURI(i);
+                elem.setAttributeNS(attUri.isEmpty() ? null : attUri, atts.getQName(i), atts.getValue(i));
+            }
+            current.appendChild(elem);
+            current = elem;
+        }
+
+        void endElement() {
+            if (skip > 0) {
+                skip--;
+            } else {
+                current = current.getParentNode();
+            }
+        }
+
+        void characters(final char[] ch, final int start, final int length) {
+            if (skip > 0) {
+                return;
+            }
+            final Node last = current.getLastChild();
+            if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+                ((Text) last).appendData(new String(ch, start, length));
+            } else {
+                current.appendChild(doc.createTextNode(new String(ch, start, length)));
+            }
+        }
+
+        void processingInstruction(final String target, final String data) {
+            if (skip == 0) {
+                current.appendChild(doc.createProcessingInstruction(target, data));
+            }
+        }
+    }
+
     /** Cascade child keys with prefixes to parent key scopes. */
     private KeyScope cascadeChildKeys(final KeyScope rootScope) {
         final Map<String, KeyDef> res = new HashMap<>(rootScope.keyDefinition);
@@ -248,39 +425,83 @@ public final class KeyrefReader implements AbstractReader {
     }
 
 
-    /** Inherit parent keys to child key scopes. */
-    private KeyScope inheritParentKeys(final KeyScope rootScope) {
-        return inheritParentKeys(rootScope, Collections.emptyMap());
+    /**
+     * Inherit parent keys to child key scopes and resolve intermediate key references.
+     *
+     * <p>Child scopes share inherited key definitions with their parent scope. An inherited key definition is
+     * resolved again in a child scope only if its key reference chain ends in a key that is undefined in the
+     * parent scope but defined in the child scope.</p>
+     */
+    private KeyScope resolveScopes(final KeyScope rootScope) {
+        return resolveScopes(rootScope, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
     }
-    private KeyScope inheritParentKeys(final KeyScope current, final Map<String, KeyDef> parent) {
-        if (parent.keySet().isEmpty() && current.childScopes.isEmpty()) {
-            return current;
-        } else {
-            final Map<String, KeyDef> resKeys = new HashMap<>();
-            resKeys.putAll(current.keyDefinition);
-            resKeys.putAll(parent);
-            final List<KeyScope> resChildren = new ArrayList<>();
-            for (final KeyScope child: current.childScopes) {
-                final KeyScope resChild = inheritParentKeys(child, resKeys);
-                resChildren.add(resChild);
+
+    /**
+     * @param scope key scope with own key definitions
+     * @param parent effective key definitions of the parent scope
+     * @param parentResolved resolved key definitions of the parent scope
+     * @param parentUndefined names of parent scope keys with an undefined key reference, by undefined key name
+     */
+    private KeyScope resolveScopes(final KeyScope scope, final Map<String, KeyDef> parent,
+                                   final Map<String, KeyDef> parentResolved,
+                                   final Map<String, List<String>> parentUndefined) {
+        // parent key definitions take precedence over own key definitions
+        final Map<String, KeyDef> local = new HashMap<>();
+        for (final Map.Entry<String, KeyDef> e: scope.keyDefinition.entrySet()) {
+            if (!parent.containsKey(e.getKey())) {
+                local.put(e.getKey(), e.getValue());
             }
-            return new KeyScope(current.id, current.name, resKeys, resChildren);
         }
-    }
+        final Map<String, KeyDef> keys = KeyScope.inherit(parent, local);
+        final KeyScope effective = new KeyScope(scope.id, scope.name, keys, Collections.emptyList());
 
-    /** Resolve intermediate key references. */
-    private KeyScope resolveIntermediate(final KeyScope scope) {
-        final Map<String, KeyDef> keys = new HashMap<>(scope.keyDefinition);
-        for (final Map.Entry<String, KeyDef> e: scope.keyDefinition.entrySet()) {
-            final KeyDef res = resolveIntermediate(scope, e.getValue(), Collections.singletonList(e.getValue()));
-            keys.put(e.getKey(), res);
+        final Map<String, List<String>> undefined = new HashMap<>(parentUndefined);
+        final List<String> unresolved = new ArrayList<>(local.keySet());
+        for (final String key: local.keySet()) {
+            final List<String> inherited = undefined.remove(key);
+            if (inherited != null) {
+                unresolved.addAll(inherited);
+            }
+        }
+        final Map<String, KeyDef> resolved = new HashMap<>(unresolved.size());
+        for (final String key: unresolved) {
+            final KeyDef keyDef = keys.get(key);
+            resolved.put(key, resolveIntermediate(effective, keyDef, Collections.singletonList(keyDef)));
+            final String undefinedKey = getUndefinedKeyref(effective, keyDef);
+            if (undefinedKey != null) {
+                final List<String> ks = new ArrayList<>(undefined.getOrDefault(undefinedKey, Collections.emptyList()));
+                ks.add(key);
+                undefined.put(undefinedKey, ks);
+            }
         }
+        final Map<String, KeyDef> resKeys = KeyScope.inherit(parentResolved, resolved);
+
         final List<KeyScope> children = new ArrayList<>();
         for (final KeyScope child: scope.childScopes) {
-            final KeyScope resolvedChild = resolveIntermediate(child);
-            children.add(resolvedChild);
+            children.add(resolveScopes(child, keys, resKeys, undefined));
+        }
+        return new KeyScope(scope.id, scope.name, resKeys, children);
+    }
+
+    /**
+     * Get the undefined key a key reference chain ends in.
+     *
+     * @return undefined key name, {@code null} if the chain ends in a key definition or is circular
+     */
+    private String getUndefinedKeyref(final KeyScope scope, final KeyDef keyDef) {
+        final Set<String> visited = new HashSet<>();
+        String keyref = keyDef.element.getAttribute(ATTRIBUTE_NAME_KEYREF);
+        while (!keyref.isEmpty()) {
+            final KeyDef next = scope.keyDefinition.get(keyref);
+            if (next == null) {
+                return keyref;
+            }
+            if (!visited.add(keyref)) {
+                return null;
+            }
+            keyref = next.element.getAttribute(ATTRIBUTE_NAME_KEYREF);
         }
-        return new KeyScope(scope.id, scope.name, keys, children);
+        return null;
     }
 
     private KeyDef resolveIntermediate(final KeyScope scope, final KeyDef keyDef, final List<KeyDef> circularityTracker) {
@@ -8,12 +8,15 @@
  */
 package org.dita.dost.reader;
 
+import static javax.xml.XMLConstants.NULL_NS_URI;
 import static javax.xml.transform.OutputKeys.*;
 import static org.dita.dost.util.Constants.*;
 import static org.dita.dost.util.URLUtils.*;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.Stack;
@@ -36,6 +39,8 @@ import org.dita.dost.util.MergeUtils;
 import org.dita.dost.util.XMLUtils;
 
 import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
@@ -43,6 +48,10 @@ import org.xml.sax.XMLReader;
  * MergeMapParser reads the ditamap file after preprocessing and merges
  * different files into one intermediate result. It calls MergeTopicParser
  * to process the topic file. Instances are reusable but not thread-safe.
+ *
+ * <p>Merged result is pushed as SAX events to the content handler without document start and end events: first
+ * the map and then the topics. Topics are parsed while the map is read, so they are spooled into a temporary file
+ * in the temporary directory and streamed to the content handler after the map.</p>
  */
 public final class MergeMapParser extends XMLFilterImpl {
     
@@ -56,9 +65,10 @@ public final class MergeMapParser extends XMLFilterImpl {
     private File dirPath = null;
     private File tempdir = null;
 
+    private static final String ELEMENT_TOPICS = "topics";
+
     private final Stack<String> processStack;
     private int processLevel;
-    private final ByteArrayOutputStream topicBuffer;
     private final SAXTransformerFactory stf;
     private OutputStream output;
     private DITAOTLogger logger;
@@ -72,7 +82,6 @@ public final class MergeMapParser extends XMLFilterImpl {
         processLevel = 0;
         util = new MergeUtils();
         topicParser = new MergeTopicParser(util);
-        topicBuffer = new ByteArrayOutputStream();
         try{
             reader = XMLUtils.getXMLReader();
             reader.setContentHandler(this);
@@ -83,10 +92,6 @@ public final class MergeMapParser extends XMLFilterImpl {
                 throw new RuntimeException("SAX transformation factory not supported");
             }
             stf = (SAXTransformerFactory) tf;
-            final TransformerHandler s = stf.newTransformerHandler();
-            s.getTransformer().setOutputProperty(OMIT_XML_DECLARATION , "yes");
-            s.setResult(new StreamResult(topicBuffer));
-            topicParser.setContentHandler(s);
         } catch (final RuntimeException e){
             throw e;
         }catch (final Exception e){
@@ -113,9 +118,9 @@ public final class MergeMapParser extends XMLFilterImpl {
     }
     
     /**
-     * Set output.
+     * Set output. Merged result is serialized into the output stream instead of the content handler.
      * 
-     * @param output output stream
+     * @param output output stream, {@code null} to push merged result to the content handler
      */
     public void setOutputStream(final OutputStream output) {
         this.output = output;
@@ -129,23 +134,63 @@ public final class MergeMapParser extends XMLFilterImpl {
      */
     public void read(final File filename, final File tmpDir) {
         tempdir = tmpDir != null ? tmpDir : filename.getParentFile();
+        File topics = null;
         try{
-            final TransformerHandler s = stf.newTransformerHandler();
-            s.getTransformer().setOutputProperty(OMIT_XML_DECLARATION, "yes");
-            s.setResult(new StreamResult(output));
-            setContentHandler(s);
+            TransformerHandler serializer = null;
+            if (output != null) {
+                serializer = stf.newTransformerHandler();
+                serializer.getTransformer().setOutputProperty(OMIT_XML_DECLARATION, "yes");
+                serializer.setResult(new StreamResult(output));
+                setContentHandler(serializer);
+                serializer.startDocument();
+            }
             dirPath = filename.getParentFile();
-            reader.setErrorHandler(new DITAOTXMLErrorHandler(filename.getAbsolutePath(), logger));
-            topicParser.getContentHandler().startDocument();
-            logger.info("Processing " + filename.getAbsolutePath());
-            reader.parse(filename.toURI().toString());
-            topicParser.getContentHandler().endDocument();
-            output.write(topicBuffer.toByteArray());
+            topics = File.createTempFile("merge", ".xml", tempdir);
+            try (final OutputStream topicOutput = new BufferedOutputStream(new FileOutputStream(topics))) {
+                final TransformerHandler s = stf.newTransformerHandler();
+                s.setResult(new StreamResult(topicOutput));
+                topicParser.setContentHandler(s);
+                s.startDocument();
+                s.startElement(NULL_NS_URI, ELEMENT_TOPICS, ELEMENT_TOPICS, XMLUtils.EMPTY_ATTRIBUTES);
+                reader.setErrorHandler(new DITAOTXMLErrorHandler(filename.getAbsolutePath(), logger));
+                logger.info("Processing " + filename.getAbsolutePath());
+                reader.parse(filename.toURI().toString());
+                s.endElement(NULL_NS_URI, ELEMENT_TOPICS, ELEMENT_TOPICS);
+                s.endDocument();
+            }
+            copyTopics(topics, getContentHandler());
+            if (serializer != null) {
+                serializer.endDocument();
+            }
         }catch(final Exception e){
             logger.error(e.getMessage(), e) ;
+        } finally {
+            if (topics != null && !topics.delete()) {
+                logger.debug("Failed to delete " + topics.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Stream spooled topics to content handler without document and wrapper element events.
+     */
+    private void copyTopics(final File topics, final ContentHandler handler) throws IOException, SAXException {
+        final XMLReader parser = XMLUtils.getXMLReaderPool().borrow();
+        try {
+            final XMLFilterImpl filter = new TopicsFilter();
+            filter.setContentHandler(handler);
+            parser.setContentHandler(filter);
+            parser.parse(new InputSource(topics.toURI().toString()));
+        } finally {
+            XMLUtils.getXMLReaderPool().release(parser);
         }
     }
 
+    @Override
+    public void startDocument() throws SAXException {
+        // NOOP
+    }
+
     @Override
     public void endElement(final String uri, final String localName, final String qName) throws SAXException {
         if (processLevel > 0) {
@@ -270,8 +315,40 @@ public final class MergeMapParser extends XMLFilterImpl {
         }catch (final Exception e){
             logger.error(e.getMessage(), e) ;
         }
-        
-        getContentHandler().endDocument();
     }
     
+    /**
+     * Filter that removes document events and the wrapper element of spooled topics.
+     */
+    private static final class TopicsFilter extends XMLFilterImpl {
+
+        private int depth = 0;
+
+        @Override
+        public void startDocument() {
+            // NOOP
+        }
+
+        @Override
+        public void endDocument() {
+            // NOOP
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+                throws SAXException {
+            if (depth++ > 0) {
+                super.startElement(uri, localName, qName, atts);
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if (--depth > 0) {
+                super.endElement(uri, localName, qName);
+            }
+        }
+
+    }
+
 }
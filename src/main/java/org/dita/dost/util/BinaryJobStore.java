@@ -0,0 +1,398 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.dita.dost.util.Job.FileInfo;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.dita.dost.util.URLUtils.toURI;
+
+/**
+ * Binary append-only job store. Job is stored into {@code .job.bin} in the temporary directory.
+ *
+ * <p>The file is a log of property and file info records. The first write stores a full snapshot of the job and
+ * subsequent writes from the same store instance append only properties and file infos that have been added,
+ * changed or removed since the previous read or write. When reading, records are replayed in order and the
+ * last record for a property or file info wins. The log is compacted into a full snapshot when it grows larger
+ * than twice the size of the job, or when the file has been changed by another store instance.</p>
+ *
+ * <p>The file header contains the job generation, which is updated in place on every write. To detect changes
+ * the store keeps a copy of the job as it was last written.</p>
+ *
+ * @since 3.0
+ */
+public final class BinaryJobStore implements JobStore {
+
+    /** Job file name. */
+    static final String JOB_FILE = ".job.bin";
+
+    private static final int MAGIC = 0x444A4F42;
+    private static final int VERSION = 2;
+    /** Header size: magic, version and generation. */
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte RECORD_PROPERTY = 1;
+    private static final byte RECORD_REMOVE_PROPERTY = 2;
+    private static final byte RECORD_FILE = 3;
+    private static final byte RECORD_REMOVE_FILE = 4;
+
+    private static final byte VALUE_STRING = 0;
+    private static final byte VALUE_SET = 1;
+    private static final byte VALUE_MAP = 2;
+
+    private final File jobFile;
+    /** Properties as last read or written, {@code null} if not known. */
+    private Map<String, Object> writtenProps;
+    /** File infos as last read or written, {@code null} if not known. */
+    private Map<URI, FileInfo> writtenFiles;
+    /** Number of records in the log. */
+    private int records;
+    private long writtenLength = -1L;
+    private long writtenGeneration = -1L;
+
+    public BinaryJobStore(final File tempDir) {
+        jobFile = new File(tempDir, JOB_FILE);
+    }
+
+    @Override
+    public synchronized long getGeneration() throws IOException {
+        if (!jobFile.exists()) {
+            return 0L;
+        }
+        try (final DataInputStream in = new DataInputStream(new FileInputStream(jobFile))) {
+            return readHeader(in);
+        } catch (final EOFException e) {
+            throw new IOException("Failed to read job file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read file header.
+     *
+     * @return job generation
+     */
+    private long readHeader(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unsupported job file format " + jobFile);
+        }
+        return in.readLong();
+    }
+
+    @Override
+    public synchronized void read(final Map<String, Object> prop, final Map<URI, FileInfo> files) throws IOException {
+        final Map<String, Object> readProps = new HashMap<>();
+        final Map<URI, FileInfo> readFiles = new HashMap<>();
+        int count = 0;
+        boolean complete = true;
+        final long generation;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(jobFile)))) {
+            generation = readHeader(in);
+            int type;
+            while ((type = in.read()) != -1) {
+                try {
+                    readRecord(in, (byte) type, readProps, readFiles);
+                } catch (final EOFException e) {
+                    // truncated record from an interrupted write, ignore it
+                    complete = false;
+                    break;
+                }
+                count++;
+            }
+        } catch (final EOFException e) {
+            throw new IOException("Failed to read job file: " + e.getMessage(), e);
+        }
+        prop.putAll(readProps);
+        files.putAll(readFiles);
+
+        if (complete) {
+            writtenProps = copyProperties(readProps);
+            writtenFiles = copyFiles(readFiles);
+            records = count;
+            writtenLength = jobFile.length();
+            writtenGeneration = generation;
+        } else {
+            writtenProps = null;
+            writtenFiles = null;
+        }
+    }
+
+    private static void readRecord(final DataInputStream in, final byte type,
+                                   final Map<String, Object> prop, final Map<URI, FileInfo> files) throws IOException {
+        switch (type) {
+            case RECORD_PROPERTY:
+                final String name = readString(in);
+                prop.put(name, readValue(in));
+                break;
+            case RECORD_REMOVE_PROPERTY:
+                prop.remove(readString(in));
+                break;
+            case RECORD_FILE:
+                final FileInfo fi = readFileInfo(in);
+                files.put(fi.uri, fi);
+                break;
+            case RECORD_REMOVE_FILE:
+                files.remove(toURI(readString(in)));
+                break;
+            default:
+                throw new IOException("Unsupported job file record type " + type);
+        }
+    }
+
+    @Override
+    public synchronized void write(final Map<String, Object> prop, final Map<URI, FileInfo> files,
+                                   final long generation) throws IOException {
+        final boolean append = writtenProps != null
+                && writtenFiles != null
+                && jobFile.length() == writtenLength
+                && getGeneration() == writtenGeneration
+                && records <= 2 * (prop.size() + files.size());
+        try {
+            if (append) {
+                try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(jobFile, true)))) {
+                    records += writeChanges(out, prop, files);
+                }
+                try (final RandomAccessFile out = new RandomAccessFile(jobFile, "rw")) {
+                    out.seek(HEADER_SIZE - 8);
+                    out.writeLong(generation);
+                }
+            } else {
+                try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(jobFile)))) {
+                    records = writeSnapshot(out, prop, files, generation);
+                }
+            }
+        } catch (final IOException e) {
+            writtenProps = null;
+            writtenFiles = null;
+            throw new IOException("Failed to write job file: " + e.getMessage(), e);
+        }
+        writtenProps = copyProperties(prop);
+        writtenFiles = copyFiles(files);
+        writtenLength = jobFile.length();
+        writtenGeneration = generation;
+    }
+
+    private static int writeSnapshot(final DataOutputStream out, final Map<String, Object> prop,
+                                     final Map<URI, FileInfo> files, final long generation) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(generation);
+        for (final Map.Entry<String, Object> e : prop.entrySet()) {
+            writeProperty(out, e.getKey(), e.getValue());
+        }
+        for (final FileInfo fi : files.values()) {
+            writeFileInfo(out, fi);
+        }
+        return prop.size() + files.size();
+    }
+
+    private int writeChanges(final DataOutputStream out, final Map<String, Object> prop,
+                             final Map<URI, FileInfo> files) throws IOException {
+        int count = 0;
+        for (final Map.Entry<String, Object> e : prop.entrySet()) {
+            if (!Objects.equals(writtenProps.get(e.getKey()), e.getValue())) {
+                writeProperty(out, e.getKey(), e.getValue());
+                count++;
+            }
+        }
+        for (final String name : writtenProps.keySet()) {
+            if (!prop.containsKey(name)) {
+                out.writeByte(RECORD_REMOVE_PROPERTY);
+                writeString(out, name);
+                count++;
+            }
+        }
+        for (final FileInfo fi : files.values()) {
+            if (!fi.equals(writtenFiles.get(fi.uri))) {
+                writeFileInfo(out, fi);
+                count++;
+            }
+        }
+        for (final URI uri : writtenFiles.keySet()) {
+            if (!files.containsKey(uri)) {
+                out.writeByte(RECORD_REMOVE_FILE);
+                writeString(out, uri.toString());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void writeProperty(final DataOutputStream out, final String name, final Object value)
+            throws IOException {
+        out.writeByte(RECORD_PROPERTY);
+        writeString(out, name);
+        if (value instanceof Set) {
+            final Set<?> s = (Set<?>) value;
+            out.writeByte(VALUE_SET);
+            out.writeInt(s.size());
+            for (final Object o : s) {
+                writeString(out, o.toString());
+            }
+        } else if (value instanceof Map) {
+            final Map<?, ?> m = (Map<?, ?>) value;
+            out.writeByte(VALUE_MAP);
+            out.writeInt(m.size());
+            for (final Map.Entry<?, ?> o : m.entrySet()) {
+                writeString(out, o.getKey().toString());
+                writeString(out, o.getValue().toString());
+            }
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(final DataInputStream in) throws IOException {
+        final byte kind = in.readByte();
+        switch (kind) {
+            case VALUE_STRING:
+                return readString(in);
+            case VALUE_SET: {
+                final int size = in.readInt();
+                final Set<String> s = new HashSet<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    s.add(readString(in));
+                }
+                return s;
+            }
+            case VALUE_MAP: {
+                final int size = in.readInt();
+                final Map<String, String> m = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    m.put(readString(in), readString(in));
+                }
+                return m;
+            }
+            default:
+                throw new IOException("Unsupported job file property type " + kind);
+        }
+    }
+
+    private static void writeFileInfo(final DataOutputStream out, final FileInfo fi) throws IOException {
+        out.writeByte(RECORD_FILE);
+        writeString(out, fi.uri.toString());
+        writeString(out, fi.src != null ? fi.src.toString() : null);
+        writeString(out, fi.result != null ? fi.result.toString() : null);
+        writeString(out, fi.format);
+        writeString(out, fi.hash);
+        int flags = 0;
+        final boolean[] values = getFlags(fi);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i]) {
+                flags |= 1 << i;
+            }
+        }
+        out.writeInt(flags);
+        out.writeInt(fi.dependencies.size());
+        for (final URI dependency : fi.dependencies) {
+            writeString(out, dependency.toString());
+        }
+    }
+
+    private static FileInfo readFileInfo(final DataInputStream in) throws IOException {
+        final URI uri = toURI(readString(in));
+        final FileInfo fi = new FileInfo(toURI(readString(in)), uri, null);
+        fi.result = toURI(readString(in));
+        fi.format = readString(in);
+        fi.hash = readString(in);
+        final int flags = in.readInt();
+        fi.hasConref = (flags & 1) != 0;
+        fi.isChunked = (flags & 1 << 1) != 0;
+        fi.hasLink = (flags & 1 << 2) != 0;
+        fi.isResourceOnly = (flags & 1 << 3) != 0;
+        fi.isTarget = (flags & 1 << 4) != 0;
+        fi.isConrefPush = (flags & 1 << 5) != 0;
+        fi.hasKeyref = (flags & 1 << 6) != 0;
+        fi.hasCoderef = (flags & 1 << 7) != 0;
+        fi.isSubjectScheme = (flags & 1 << 8) != 0;
+        fi.isSubtarget = (flags & 1 << 9) != 0;
+        fi.isFlagImage = (flags & 1 << 10) != 0;
+        fi.isOutDita = (flags & 1 << 11) != 0;
+        fi.isUnchanged = (flags & 1 << 12) != 0;
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            fi.dependencies.add(toURI(readString(in)));
+        }
+        return fi;
+    }
+
+    /** File info flags in serialization bit order. */
+    private static boolean[] getFlags(final FileInfo fi) {
+        return new boolean[] {
+                fi.hasConref, fi.isChunked, fi.hasLink, fi.isResourceOnly, fi.isTarget, fi.isConrefPush,
+                fi.hasKeyref, fi.hasCoderef, fi.isSubjectScheme, fi.isSubtarget, fi.isFlagImage, fi.isOutDita,
+                fi.isUnchanged
+        };
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> copyProperties(final Map<String, Object> prop) {
+        final Map<String, Object> res = new HashMap<>(prop.size() * 2);
+        for (final Map.Entry<String, Object> e : prop.entrySet()) {
+            final Object value = e.getValue();
+            if (value instanceof Set) {
+                res.put(e.getKey(), new HashSet<>((Set<?>) value));
+            } else if (value instanceof Map) {
+                res.put(e.getKey(), new HashMap<>((Map<?, ?>) value));
+            } else {
+                res.put(e.getKey(), value);
+            }
+        }
+        return res;
+    }
+
+    private static Map<URI, FileInfo> copyFiles(final Map<URI, FileInfo> files) {
+        final Map<URI, FileInfo> res = new HashMap<>(files.size() * 2);
+        for (final FileInfo fi : files.values()) {
+            final FileInfo copy = new FileInfo(fi.src, fi.uri, fi.file);
+            copy.result = fi.result;
+            copy.format = fi.format;
+            copy.hasConref = fi.hasConref;
+            copy.isChunked = fi.isChunked;
+            copy.hasLink = fi.hasLink;
+            copy.isResourceOnly = fi.isResourceOnly;
+            copy.isTarget = fi.isTarget;
+            copy.isConrefPush = fi.isConrefPush;
+            copy.hasKeyref = fi.hasKeyref;
+            copy.hasCoderef = fi.hasCoderef;
+            copy.isSubjectScheme = fi.isSubjectScheme;
+            copy.isSubtarget = fi.isSubtarget;
+            copy.isFlagImage = fi.isFlagImage;
+            copy.isOutDita = fi.isOutDita;
+            copy.hash = fi.hash;
+            copy.dependencies.addAll(fi.dependencies);
+            copy.isUnchanged = fi.isUnchanged;
+            res.put(fi.uri, copy);
+        }
+        return res;
+    }
+
+}
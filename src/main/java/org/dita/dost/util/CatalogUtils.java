@@ -53,13 +53,20 @@ public final class CatalogUtils {
             manager.setIgnoreMissingProperties(true);
             manager.setUseStaticCatalog(false); // We'll use a private catalog.
             manager.setPreferPublic(true);
-            final File catalogFilePath = new File(ditaDir, Configuration.pluginResourceDirs.get("org.dita.base") + File.separator + FILE_NAME_CATALOG);
-            manager.setCatalogFiles(catalogFilePath.toURI().toASCIIString());
+            manager.setCatalogFiles(getCatalogFile().toURI().toASCIIString());
             //manager.setVerbosity(10);
             catalogResolver = new CatalogResolver(manager);
         }
 
         return catalogResolver;
     }
+
+    /**
+     * Get catalog file used by {@link #getCatalogResolver()}.
+     * @return absolute catalog file
+     */
+    public static synchronized File getCatalogFile() {
+        return new File(ditaDir, Configuration.pluginResourceDirs.get("org.dita.base") + File.separator + FILE_NAME_CATALOG);
+    }
 }
 
@@ -18,6 +18,8 @@ import java.io.InputStream;
 import java.util.*;
 
 import org.dita.dost.platform.Integrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -215,4 +217,27 @@ public final class Configuration {
         ditaFormat = Collections.unmodifiableSet(s);
     }
 
+    /**
+     * Get integer configuration property.
+     *
+     * <p>Static configuration is read before any processing logger exists, so an invalid value is reported through
+     * the SLF4J logger DITA-OT logging is built on.</p>
+     *
+     * @param key configuration property name
+     * @param defaultValue value to use when property is not set or is not a valid integer
+     * @return configured value or default value
+     */
+    public static int getInt(final String key, final int defaultValue) {
+        final String value = configuration.get(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (final NumberFormatException e) {
+                final Logger logger = LoggerFactory.getLogger(Configuration.class);
+                logger.warn("Failed to parse " + key + " configuration value '" + value + "', using default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
 }
@@ -826,6 +826,8 @@ public final class Constants {
     public static final String ANT_INVOKER_EXT_PARAN_FORCE_UNIQUE = "force-unique";
     public static final String ANT_INVOKER_EXT_PARAM_GENERATE_DEBUG_ATTR = "generate-debug-attributes";
     public static final String ANT_INVOKER_EXT_PARAM_PROCESSING_MODE = "processing-mode";
+    /**Constants for extensive params used in ant invoker(incremental).*/
+    public static final String ANT_INVOKER_EXT_PARAM_INCREMENTAL = "incremental";
     /**Constants for line separator.*/
     public static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
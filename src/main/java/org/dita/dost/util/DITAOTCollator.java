@@ -8,19 +8,40 @@
  */
 package org.dita.dost.util;
 
-import java.lang.reflect.Method;
-import java.text.Collator;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.ibm.icu.text.CollationKey;
+import com.ibm.icu.text.Collator;
+
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * DITAOTCollator class.
  *
+ * <p>Instances are shared per locale and are thread-safe. Collation keys are cached in a bounded per-locale
+ * cache, size of which is configured with {@link #CONF_KEY_CACHE_SIZE} configuration property.</p>
+ *
  * @author Wu, Zhi Qiang
  */
 public final class DITAOTCollator implements Comparator {
-    private static final HashMap<Locale, DITAOTCollator> cache = new HashMap<>();
+
+    /** Configuration property for maximum number of cached collation keys per locale. */
+    public static final String CONF_KEY_CACHE_SIZE = "collator.key-cache.size";
+    private static final int DEFAULT_KEY_CACHE_SIZE = 8192;
+    /** Minimum number of items in a list to sort in parallel. */
+    public static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    private static final ConcurrentMap<Locale, DITAOTCollator> cache = new ConcurrentHashMap<>();
+    private static final int keyCacheSize = Configuration.getInt(CONF_KEY_CACHE_SIZE, DEFAULT_KEY_CACHE_SIZE);
 
     /**
      * Return the DITAOTCollator instance, Locale.US is default.
@@ -39,26 +60,26 @@ public final class DITAOTCollator implements Comparator {
         if (locale == null) {
             throw new NullPointerException("Locale may not be null");
         }
-        DITAOTCollator instance;
-        instance = cache.computeIfAbsent(locale, DITAOTCollator::new);
-        return instance;
+        return cache.computeIfAbsent(locale, DITAOTCollator::new);
     }
 
-    private Object collatorInstance = null;
-    private Method compareMethod = null;
-
-    /**
-     * Default Constructor
-     */
-    private DITAOTCollator(){
-        this(Locale.US);
-    }
+    /** Frozen collator, safe for concurrent use. */
+    private final Collator collator;
+    private final LoadingCache<String, CollationKey> keys;
 
     /**
      * Constructor specifying Locale.
      */
     private DITAOTCollator(final Locale locale) {
-        init(locale);
+        collator = Collator.getInstance(locale).freeze();
+        keys = CacheBuilder.newBuilder()
+                .maximumSize(keyCacheSize)
+                .build(new CacheLoader<String, CollationKey>() {
+                    @Override
+                    public CollationKey load(final String source) {
+                        return collator.getCollationKey(source);
+                    }
+                });
     }
 
     /**
@@ -67,32 +88,81 @@ public final class DITAOTCollator implements Comparator {
      */
     @Override
     public int compare(final Object source, final Object target) {
-        try {
-            return (Integer) compareMethod.invoke(collatorInstance, source, target);
-        } catch (final Exception e) {
-            throw new RuntimeException(e.getMessage(), e);
+        return collator.compare(source, target);
+    }
+
+    /**
+     * Get collation key for a string.
+     *
+     * @param source string to get key for
+     * @return collation key
+     */
+    public CollationKey getCollationKey(final String source) {
+        return keys.getUnchecked(source);
+    }
+
+    /**
+     * Sort strings in place. See {@link #sort(List, Function)}.
+     *
+     * @param list strings to sort
+     */
+    public void sort(final List<String> list) {
+        sort(list, Function.identity());
+    }
+
+    /**
+     * Sort list in place by collation key. Collation keys are computed once per item without the key cache,
+     * because keys are only used for a single sort and would evict reusable keys. Lists larger than
+     * {@link #PARALLEL_SORT_THRESHOLD} are sorted in parallel. The sort is stable and the result is consistent
+     * with {@link #compare(Object, Object)}.
+     *
+     * @param list items to sort
+     * @param keyExtractor function to get sort string of an item
+     * @param <T> item type
+     */
+    public <T> void sort(final List<T> list, final Function<? super T, String> keyExtractor) {
+        final int size = list.size();
+        if (size < 2) {
+            return;
+        }
+        final boolean parallel = size >= PARALLEL_SORT_THRESHOLD;
+        final Object[] items = list.toArray();
+        final SortEntry[] entries = new SortEntry[size];
+        final IntStream indexes = parallel ? IntStream.range(0, size).parallel() : IntStream.range(0, size);
+        indexes.forEach(i -> {
+            @SuppressWarnings("unchecked")
+            final T item = (T) items[i];
+            entries[i] = new SortEntry(collator.getCollationKey(keyExtractor.apply(item)), item);
+        });
+        if (parallel) {
+            Arrays.parallelSort(entries);
+        } else {
+            Arrays.sort(entries);
+        }
+        final ListIterator<T> it = list.listIterator();
+        for (final SortEntry entry : entries) {
+            it.next();
+            @SuppressWarnings("unchecked")
+            final T item = (T) entry.item;
+            it.set(item);
         }
     }
 
     /**
-     * Initialization.
+     * Item with a precomputed collation key.
      */
-    private void init(final Locale locale) {
-        Class<?> c;
+    private static final class SortEntry implements Comparable<SortEntry> {
+        private final CollationKey key;
+        private final Object item;
 
-        try {
-            c = Class.forName("com.ibm.icu.text.Collator");
-        } catch (final Exception e) {
-            c = Collator.class;
+        private SortEntry(final CollationKey key, final Object item) {
+            this.key = key;
+            this.item = item;
         }
 
-        try {
-            final Method m = c.getDeclaredMethod("getInstance",
-                    Locale.class);
-            collatorInstance = m.invoke(null, locale);
-            compareMethod = c.getDeclaredMethod("compare", Object.class, Object.class);
-        } catch (final Exception e) {
-            throw new RuntimeException("Failed to initialize collator: " + e.getMessage(), e);
+        @Override
+        public int compareTo(final SortEntry o) {
+            return key.compareTo(o.key);
         }
     }
 
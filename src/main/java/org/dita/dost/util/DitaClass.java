@@ -9,8 +9,13 @@ package org.dita.dost.util;
 
 import static org.dita.dost.util.Constants.*;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
+import com.google.common.collect.ImmutableSet;
+
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -19,7 +24,9 @@ import org.xml.sax.Attributes;
 /**
  * DITA specialization hierarchy object.
  * 
- * <p>Instances of this class are immutable and are safe for use by multiple concurrent threads.</p>
+ * <p>Instances of this class are immutable and are safe for use by multiple concurrent threads. Instances
+ * returned by {@code getInstance} methods are interned by class attribute value, and matching is done against
+ * the parsed set of module/type tokens instead of searching the class attribute string.</p>
  * 
  * @since 1.5.3
  * @author Jarno Elovirta
@@ -31,6 +38,12 @@ public final class DitaClass {
     private static final Pattern WHITESPACE = Pattern.compile("\\s+");
     private static final Pattern VALID_DITA_CLASS = Pattern.compile("(\\+|-)\\s+(topic|map)/\\S+\\s+" +
                                                          "([\\S[^/]]+/\\S+\\s+)*");
+    /** Maximum number of interned class attribute values. */
+    private static final int MAX_CACHE_SIZE = 8192;
+    /** Interned instances by class attribute value. */
+    private static final ConcurrentMap<String, DitaClass> cache = new ConcurrentHashMap<>();
+    /** Last class attribute value looked up by the current thread. */
+    private static final ThreadLocal<LastInstance> lastInstance = ThreadLocal.withInitial(LastInstance::new);
 
     /** ModuleElem/type pair for the most specialized type, with a single preceding and following space character. */
     public final String matcher;
@@ -38,6 +51,10 @@ public final class DitaClass {
     public final String localName;
     /** Normalized specialization hierarchy string. */
     private final String stringValue;
+    /** ModuleElem/type pair for the most specialized type. */
+    private final String matcherToken;
+    /** ModuleElem/type pairs in the specialization hierarchy, i.e. tokens that follow the first token. */
+    private final Set<String> tokens;
     /** Does this class value use valid DITA class syntax */
     private boolean validDitaClass = false;
 
@@ -50,14 +67,20 @@ public final class DitaClass {
      */
     public DitaClass(final String cls) {
         final String[] tokens = WHITESPACE.split(cls);
-        final String last = tokens[tokens.length - 1];
+        final String last = tokens.length > 0 ? tokens[tokens.length - 1] : "";
+        matcherToken = last;
         matcher = ' ' + last + ' ';
         localName = last.substring(last.indexOf('/') + 1);
         final StringBuilder sb = new StringBuilder();
-        for (final String s: tokens) {
-            sb.append(s).append(' ');
+        final ImmutableSet.Builder<String> tokenSet = ImmutableSet.builder();
+        for (int i = 0; i < tokens.length; i++) {
+            sb.append(tokens[i]).append(' ');
+            if (i > 0) {
+                tokenSet.add(tokens[i]);
+            }
         }
         stringValue = sb.toString();
+        this.tokens = tokenSet.build();
         validDitaClass = VALID_DITA_CLASS.matcher(stringValue).matches();
     }
 
@@ -66,11 +89,27 @@ public final class DitaClass {
      * @param cls DITA class, may be {@code null}
      * @return DITA class, {@code null} if the input was {@code null} 
      */
-    private static DitaClass getInstance(final String cls) {
+    public static DitaClass getInstance(final String cls) {
         if (cls == null) {
             return null;
         }
-        return new DitaClass(cls);
+        final LastInstance last = lastInstance.get();
+        if (last.cls == cls) {
+            return last.instance;
+        }
+        DitaClass res = cache.get(cls);
+        if (res == null) {
+            res = new DitaClass(cls);
+            if (cache.size() < MAX_CACHE_SIZE) {
+                final DitaClass prev = cache.putIfAbsent(cls, res);
+                if (prev != null) {
+                    res = prev;
+                }
+            }
+        }
+        last.cls = cls;
+        last.instance = res;
+        return res;
     }
     
     /**
@@ -143,7 +182,7 @@ public final class DitaClass {
      * @return {@code true} if given class matches this class, otherwise {@code false}
      */
     public boolean matches(final DitaClass cls) {
-        return cls != null && cls.toString().contains(matcher);
+        return cls != null && cls.tokens.contains(matcherToken);
     }
 
     /**
@@ -153,7 +192,46 @@ public final class DitaClass {
      * @return {@code true} if given class matches this class, otherwise {@code false}
      */
     public boolean matches(final String classString) {
-        return classString != null && classString.contains(matcher);
+        if (classString == null) {
+            return false;
+        }
+        if (cache.size() >= MAX_CACHE_SIZE && !cache.containsKey(classString)) {
+            return containsToken(classString, matcherToken);
+        }
+        return matches(getInstance(classString));
+    }
+
+    /**
+     * Scan class attribute value for a token that follows the first token, without creating an instance.
+     *
+     * @param cls class attribute value
+     * @param token moduleElem/type pair to look for
+     * @return {@code true} if token was found, otherwise {@code false}
+     */
+    private static boolean containsToken(final String cls, final String token) {
+        final int len = cls.length();
+        int i = 0;
+        while (i < len && !isWhitespace(cls.charAt(i))) {
+            i++;
+        }
+        while (i < len) {
+            while (i < len && isWhitespace(cls.charAt(i))) {
+                i++;
+            }
+            final int start = i;
+            while (i < len && !isWhitespace(cls.charAt(i))) {
+                i++;
+            }
+            if (i > start && i - start == token.length() && cls.regionMatches(start, token, 0, token.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Same characters as {@code \s} in {@link #WHITESPACE}. */
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     /**
@@ -188,4 +266,12 @@ public final class DitaClass {
         return validDitaClass;
     }
 
+    /**
+     * Per-thread record of the last looked up class attribute value, compared by identity.
+     */
+    private static final class LastInstance {
+        private String cls;
+        private DitaClass instance;
+    }
+
 }
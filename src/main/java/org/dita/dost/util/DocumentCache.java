@@ -0,0 +1,263 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+import org.w3c.dom.*;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+import static org.dita.dost.util.Constants.*;
+import static org.dita.dost.util.URLUtils.stripFragment;
+
+/**
+ * Bounded cache of parsed documents with an ID index.
+ *
+ * <p>Documents are parsed with pooled DOM parsers and fully expanded when they are indexed. Cached documents are
+ * shared between all users of the cache and must not be modified. DOM implementations cache node list lookups,
+ * so concurrent readers must only traverse cached documents with {@link Node#getFirstChild()},
+ * {@link Node#getNextSibling()} and {@link Node#getParentNode()}, and read attributes by name or by index from
+ * {@link Node#getAttributes()}; {@link NodeList} based access is not thread-safe. The cache holds at most {@link #CONF_DOCUMENT_CACHE_SIZE} documents and evicts the least
+ * recently used document when full.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 3.0
+ */
+public final class DocumentCache {
+
+    /** Configuration property for maximum number of cached documents. */
+    public static final String CONF_DOCUMENT_CACHE_SIZE = "document-cache.size";
+    private static final int DEFAULT_SIZE = 256;
+
+    private final LoadingCache<URI, Optional<IndexedDocument>> cache;
+
+    /**
+     * Create new cache with configured size.
+     */
+    public DocumentCache() {
+        this(Configuration.getInt(CONF_DOCUMENT_CACHE_SIZE, DEFAULT_SIZE));
+    }
+
+    /**
+     * Create new cache.
+     *
+     * @param size maximum number of cached documents
+     */
+    public DocumentCache(final int size) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build(new CacheLoader<URI, Optional<IndexedDocument>>() {
+                    @Override
+                    public Optional<IndexedDocument> load(final URI uri) throws SAXException {
+                        return parse(uri);
+                    }
+                });
+    }
+
+    /**
+     * Get parsed document, parsing it if it is not cached.
+     *
+     * @param uri absolute document URI, fragment is ignored
+     * @return parsed document, {@code null} if document doesn't exist or cannot be read
+     * @throws SAXException if document is not well-formed, message contains document URI
+     */
+    public IndexedDocument get(final URI uri) throws SAXException {
+        assert uri.isAbsolute();
+        try {
+            return cache.get(stripFragment(uri)).orElse(null);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof SAXException) {
+                throw (SAXException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Remove document from the cache.
+     *
+     * @param uri absolute document URI, fragment is ignored
+     */
+    public void invalidate(final URI uri) {
+        cache.invalidate(stripFragment(uri));
+    }
+
+    /**
+     * Get cache statistics.
+     *
+     * @return cache statistics
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        final CacheStats stats = cache.stats();
+        return "Document cache: " + stats.hitCount() + " hits, " + stats.missCount() + " misses"
+                + (stats.requestCount() > 0 ? " (" + Math.round(stats.hitRate() * 100) + "% hit rate)" : "");
+    }
+
+    private static Optional<IndexedDocument> parse(final URI uri) throws SAXException {
+        if (uri.getScheme().equals("file") && !new File(uri).exists()) {
+            return Optional.empty();
+        }
+        final DocumentBuilder builder = XMLUtils.getDocumentBuilderPool().borrow();
+        try {
+            builder.setEntityResolver(CatalogUtils.getCatalogResolver());
+            final Document doc = builder.parse(new InputSource(uri.toString()));
+            return Optional.of(new IndexedDocument(uri, doc));
+        } catch (final IOException e) {
+            return Optional.empty();
+        } catch (final SAXException e) {
+            throw new SAXException("Failed to parse " + uri + ": " + e.getMessage(), e);
+        } finally {
+            XMLUtils.getDocumentBuilderPool().release(builder);
+        }
+    }
+
+    /**
+     * Parsed document with an ID index. Instances are immutable.
+     */
+    public static final class IndexedDocument {
+
+        /** Document URI. */
+        public final URI uri;
+        /** Parsed document. */
+        public final Document document;
+        /** Domains declaration of the document, {@code null} if not declared. */
+        public final String domains;
+        /** Identifier prefix derived from the document URI. */
+        private final String idPrefix;
+        private final Map<String, List<Element>> ids;
+        private final Map<Element, Integer> ordinals;
+        private final List<Element> firstTopics;
+
+        private IndexedDocument(final URI uri, final Document document) {
+            this.uri = uri;
+            this.document = document;
+            this.idPrefix = "d" + Long.toHexString(Hashing.murmur3_128()
+                    .hashString(uri.toString(), StandardCharsets.UTF_8).asLong()) + "e";
+            final Map<String, List<Element>> ids = new HashMap<>();
+            final Map<Element, Integer> ordinals = new IdentityHashMap<>();
+            final List<Element> firstTopics = new ArrayList<>();
+            final Deque<Boolean> topicSeen = new ArrayDeque<>();
+            topicSeen.push(false);
+            Node node = document.getFirstChild();
+            while (node != null) {
+                node.getNodeValue();
+                if (node.getNodeType() == Node.ELEMENT_NODE) {
+                    final Element elem = (Element) node;
+                    final NamedNodeMap atts = elem.getAttributes();
+                    for (int i = 0; i < atts.getLength(); i++) {
+                        atts.item(i).getNodeValue();
+                    }
+                    final Attr id = elem.getAttributeNode(ATTRIBUTE_NAME_ID);
+                    if (id != null) {
+                        ids.computeIfAbsent(id.getValue(), k -> new ArrayList<>(1)).add(elem);
+                        ordinals.put(elem, ordinals.size() + 1);
+                    }
+                    if (TOPIC_TOPIC.matches(elem) && !topicSeen.peek()) {
+                        firstTopics.add(elem);
+                        topicSeen.pop();
+                        topicSeen.push(true);
+                    }
+                }
+                if (node.getFirstChild() != null) {
+                    topicSeen.push(false);
+                    node = node.getFirstChild();
+                } else {
+                    while (node != null && node.getNextSibling() == null) {
+                        node = node.getParentNode();
+                        if (node != null) {
+                            topicSeen.pop();
+                        }
+                    }
+                    if (node != null) {
+                        node = node.getNextSibling();
+                    }
+                }
+            }
+            this.ids = ids;
+            this.ordinals = ordinals;
+            this.firstTopics = Collections.unmodifiableList(firstTopics);
+            this.domains = getDomains(document.getDocumentElement());
+        }
+
+        private static String getDomains(final Element root) {
+            if (root == null) {
+                return null;
+            }
+            final Attr domains = root.getAttributeNode(ATTRIBUTE_NAME_DOMAINS);
+            if (domains != null) {
+                return domains.getValue();
+            } else if (root.getTagName().equals(ELEMENT_NAME_DITA)) {
+                for (final Element child : XMLUtils.getChildElements(root)) {
+                    final Attr childDomains = child.getAttributeNode(ATTRIBUTE_NAME_DOMAINS);
+                    if (childDomains != null) {
+                        return childDomains.getValue();
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get elements by ID.
+         *
+         * @param id element ID
+         * @return elements with the ID in document order, empty list if none found
+         */
+        public List<Element> getElementsById(final String id) {
+            final List<Element> res = ids.get(id);
+            return res != null ? Collections.unmodifiableList(res) : Collections.emptyList();
+        }
+
+        /**
+         * Get topics that are the first topic among their siblings.
+         *
+         * @return topics in document order
+         */
+        public List<Element> getFirstTopics() {
+            return firstTopics;
+        }
+
+        /**
+         * Generate document unique identifier for an element. The identifier is derived from the document URI and
+         * the position of the element among elements with an ID, so the same element gets the same identifier
+         * across runs and when the document is parsed again after eviction.
+         *
+         * @param elem element with an ID in this document
+         * @return generated identifier
+         * @throws IllegalArgumentException if element is not in this document or it doesn't have an ID
+         */
+        public String generateId(final Element elem) {
+            final Integer ordinal = ordinals.get(elem);
+            if (ordinal == null) {
+                throw new IllegalArgumentException("Element is not indexed: " + elem.getTagName());
+            }
+            return idPrefix + ordinal;
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@ import static org.dita.dost.util.Constants.*;
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,6 +24,9 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import org.dita.dost.log.DITAOTLogger;
@@ -50,25 +54,46 @@ public final class FilterUtils {
     /** Subject scheme file extension */
     public static final String SUBJECT_SCHEME_EXTENSION = ".subm";
     public static final FilterKey DEFAULT = new FilterKey(QName.valueOf(DEFAULT_ACTION), null);
+    /** Maximum number of memoized exclusion results per attribute. */
+    private static final int MAX_EXCLUDE_CACHE_SIZE = 4096;
 
     private DITAOTLogger logger;
     /** Actions for filter keys. */
     private final Map<FilterKey, Action> filterMap;
+    /** Actions for attribute values, compiled from {@link #filterMap}. */
+    private final Map<QName, Map<String, Action>> valueActions;
+    /** Default actions for attributes, compiled from {@link #filterMap}. */
+    private final Map<QName, Action> defaultActions;
+    /** Global default action is exclude. */
+    private final boolean defaultExclude;
+    /** Memoized exclusion results by profiling attribute and attribute value. */
+    private final Map<QName, Map<String, Boolean>> excludeCache = new ConcurrentHashMap<>();
+    /** Memoized exclusion results by {@code props} specialization and attribute value. */
+    private final Map<List<QName>, Map<String, Boolean>> extExcludeCache = new ConcurrentHashMap<>();
+    /** Exclusion result caches by {@code props} specialization array identity, avoids creating a list key per lookup. */
+    private final LoadingCache<QName[], Map<String, Boolean>> extExcludeCacheByPropList = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(propList -> getExcludeCache(extExcludeCache, Arrays.asList(propList.clone()))));
     /** Set of filter keys for which an error has already been thrown. */
-    private final Set<FilterKey> notMappingRules = new HashSet<>();
+    private final Set<FilterKey> notMappingRules = ConcurrentHashMap.newKeySet();
     private boolean logMissingAction;
     private final String foregroundConflictColor;
     private final String backgroundConflictColor;
     private Set<QName> filterAttributes;
+    private QName[] filterAttributeArray;
     private Set<QName> flagAttributes;
 
     public FilterUtils(final Map<FilterKey, Action> filterMap, String foregroundConflictColor,
                        String backgroundConflictColor) {
         this.logMissingAction = !filterMap.isEmpty();
         this.filterMap = new HashMap<>(filterMap);
+        this.valueActions = getValueActions(this.filterMap);
+        this.defaultActions = getDefaultActions(this.filterMap);
+        this.defaultExclude = isDefaultExclude(this.filterMap);
         this.foregroundConflictColor = foregroundConflictColor;
         this.backgroundConflictColor = backgroundConflictColor;
         filterAttributes = getProfileAttributes(Configuration.configuration.get("filter-attributes"));
+        filterAttributeArray = filterAttributes.toArray(new QName[0]);
         flagAttributes = getFlaggingAttributes(Configuration.configuration.get("flag-attributes"));
     }
 
@@ -101,9 +126,13 @@ public final class FilterUtils {
         dfm.putAll(filterMap);
         this.logMissingAction = !filterMap.isEmpty();
         this.filterMap = dfm;
+        this.valueActions = getValueActions(dfm);
+        this.defaultActions = getDefaultActions(dfm);
+        this.defaultExclude = isDefaultExclude(dfm);
         this.foregroundConflictColor = foregroundConflictColor;
         this.backgroundConflictColor = backgroundConflictColor;
         filterAttributes = getProfileAttributes(Configuration.configuration.get("filter-attributes"));
+        filterAttributeArray = filterAttributes.toArray(new QName[0]);
         flagAttributes = getFlaggingAttributes(Configuration.configuration.get("flag-attributes"));
     }
 
@@ -113,6 +142,7 @@ public final class FilterUtils {
                        Set<QName> filterAttributes, Set<QName> flagAttributes) {
         this(isPrintType, filterMap, foregroundConflictColor, backgroundConflictColor);
         this.filterAttributes = Sets.union(this.filterAttributes, filterAttributes);
+        this.filterAttributeArray = this.filterAttributes.toArray(new QName[0]);
         this.flagAttributes = Sets.union(this.flagAttributes, flagAttributes);
     }
 
@@ -125,6 +155,41 @@ public final class FilterUtils {
         return filterMap.toString();
     }
 
+    private static Map<QName, Map<String, Action>> getValueActions(final Map<FilterKey, Action> filterMap) {
+        final Map<QName, Map<String, Action>> res = new HashMap<>();
+        for (final Map.Entry<FilterKey, Action> e : filterMap.entrySet()) {
+            if (e.getKey().value != null) {
+                res.computeIfAbsent(e.getKey().attribute, k -> new HashMap<>()).put(e.getKey().value, e.getValue());
+            }
+        }
+        return res;
+    }
+
+    private static Map<QName, Action> getDefaultActions(final Map<FilterKey, Action> filterMap) {
+        final Map<QName, Action> res = new HashMap<>();
+        for (final Map.Entry<FilterKey, Action> e : filterMap.entrySet()) {
+            if (e.getKey().value == null) {
+                res.put(e.getKey().attribute, e.getValue());
+            }
+        }
+        return res;
+    }
+
+    private static boolean isDefaultExclude(final Map<FilterKey, Action> filterMap) {
+        final Action defaultAction = filterMap.get(DEFAULT);
+        return defaultAction != null && defaultAction instanceof Exclude;
+    }
+
+    /**
+     * Get action for attribute value.
+     *
+     * @return action, {@code null} if not defined
+     */
+    private Action getAction(final QName attName, final String value) {
+        final Map<String, Action> actions = valueActions.get(attName);
+        return actions != null ? actions.get(value) : null;
+    }
+
     private static Set<QName> getProfileAttributes(final String conf) {
         final ImmutableSet.Builder<QName> res = ImmutableSet.<QName>builder()
                 .add(QName.valueOf(ATTRIBUTE_NAME_AUDIENCE),
@@ -251,9 +316,9 @@ public final class FilterUtils {
         final List<Flag> res = new ArrayList<>();
         for (final QName attName : Arrays.asList(propList)) {
             for (final String attSubValue : attValue) {
-                Action filterAction = filterMap.get(new FilterKey(attName, attSubValue));
+                Action filterAction = getAction(attName, attSubValue);
                 if (filterAction == null) {
-                    filterAction = filterMap.get(new FilterKey(attName, null));
+                    filterAction = defaultActions.get(attName);
                 }
                 if (filterAction instanceof Flag) {
                     res.add((Flag) filterAction);
@@ -291,19 +356,10 @@ public final class FilterUtils {
             return false;
         }
 
-        for (final QName attr: filterAttributes) {
+        for (final QName attr: filterAttributeArray) {
             final String value = atts.getValue(attr.getNamespaceURI(), attr.getLocalPart());
-            if (value != null) {
-                final Map<QName, List<String>> groups = getGroups(value);
-                for (Map.Entry<QName, List<String>> group: groups.entrySet()) {
-                    final QName[] propList =
-                            group.getKey() != null
-                                    ? new QName[]{attr, group.getKey()}
-                                    : new QName[]{attr};
-                    if (extCheckExclude(propList, group.getValue())) {
-                        return true;
-                    }
-                }
+            if (value != null && needExclude(attr, value)) {
+                return true;
             }
         }
 
@@ -318,7 +374,7 @@ public final class FilterUtils {
                     final QName current = propList[propListIndex];
                     propValue = getLabelValue(propName, atts.getValue(current.getNamespaceURI(), current.getLocalPart()));
                 }
-                if (propValue != null && extCheckExclude(propList, Arrays.asList(propValue.split("\\s+")))) {
+                if (propValue != null && needExclude(propList, propValue)) {
                     return true;
                 }
             }
@@ -326,6 +382,69 @@ public final class FilterUtils {
         return false;
     }
 
+    /**
+     * Check if profiling attribute value is excluded. Results are memoized by attribute value.
+     *
+     * @param attr profiling attribute name
+     * @param value profiling attribute value
+     * @return {@code true} if should be excluded, otherwise {@code false}
+     */
+    private boolean needExclude(final QName attr, final String value) {
+        final Map<String, Boolean> cache = getExcludeCache(excludeCache, attr);
+        Boolean res = cache.get(value);
+        if (res == null) {
+            res = false;
+            final Map<QName, List<String>> groups = getGroups(value);
+            for (Map.Entry<QName, List<String>> group: groups.entrySet()) {
+                final QName[] propList =
+                        group.getKey() != null
+                                ? new QName[]{attr, group.getKey()}
+                                : new QName[]{attr};
+                if (extCheckExclude(propList, group.getValue())) {
+                    res = true;
+                    break;
+                }
+            }
+            putExcludeCache(cache, value, res);
+        }
+        return res;
+    }
+
+    /**
+     * Check if {@code props} specialization value is excluded. Results are memoized by attribute value.
+     *
+     * @param propList attribute group names, from most common to most specific
+     * @param value attribute value
+     * @return {@code true} if should be excluded, otherwise {@code false}
+     */
+    private boolean needExclude(final QName[] propList, final String value) {
+        final Map<String, Boolean> cache = extExcludeCacheByPropList.getUnchecked(propList);
+        Boolean res = cache.get(value);
+        if (res == null) {
+            res = extCheckExclude(propList, Arrays.asList(value.split("\\s+")));
+            putExcludeCache(cache, value, res);
+        }
+        return res;
+    }
+
+    private static <K> Map<String, Boolean> getExcludeCache(final Map<K, Map<String, Boolean>> caches, final K key) {
+        Map<String, Boolean> cache = caches.get(key);
+        if (cache == null) {
+            final Map<String, Boolean> c = new ConcurrentHashMap<>();
+            cache = caches.putIfAbsent(key, c);
+            if (cache == null) {
+                cache = c;
+            }
+        }
+        return cache;
+    }
+
+    private static void putExcludeCache(final Map<String, Boolean> cache, final String value, final Boolean res) {
+        if (cache.size() < MAX_EXCLUDE_CACHE_SIZE) {
+            cache.put(value, res);
+        }
+    }
+
     private final Pattern groupPattern = Pattern.compile("(\\w+)\\((.*?)\\)");
 
     /**
@@ -402,12 +521,11 @@ public final class FilterUtils {
             boolean hasNonExcludeAction = false;
             boolean hasExcludeAction = false;
             for (final String attSubValue: attValue) {
-                final FilterKey filterKey = new FilterKey(attName, attSubValue);
-                final Action filterAction = filterMap.get(filterKey);
+                final Action filterAction = getAction(attName, attSubValue);
                 // no action will be considered as 'not exclude'
                 if (filterAction == null) {
                     // check Specified DefaultAction mapping this attribute's name
-                    final Action defaultAction = filterMap.get(new FilterKey(attName, null));
+                    final Action defaultAction = defaultActions.get(attName);
                     if (defaultAction != null) {
                         if (defaultAction instanceof Exclude) {
                             hasExcludeAction = true;
@@ -455,8 +573,7 @@ public final class FilterUtils {
     }
 
     private boolean isDefaultExclude() {
-        final Action defaultAction = filterMap.get(DEFAULT);
-        return defaultAction != null && defaultAction instanceof Exclude;
+        return defaultExclude;
     }
 
     /**
@@ -469,9 +586,8 @@ public final class FilterUtils {
             return;
         }
         for (final String attSubValue: attValue) {
-            final FilterKey filterKey = new FilterKey(attName, attSubValue);
-            final Action filterAction = filterMap.get(filterKey);
-            if (filterAction == null && logMissingAction) {
+            if (logMissingAction && getAction(attName, attSubValue) == null) {
+                final FilterKey filterKey = new FilterKey(attName, attSubValue);
                 if (!alreadyShowed(filterKey)) {
                     logger.info(MessageUtils.getMessage("DOTJ031I", filterKey.toString()).toString());
                 }
@@ -480,11 +596,7 @@ public final class FilterUtils {
     }
 
     private boolean alreadyShowed(final FilterKey notMappingKey) {
-        if (!notMappingRules.contains(notMappingKey)) {
-            notMappingRules.add(notMappingKey);
-            return false;
-        }
-        return true;
+        return !notMappingRules.add(notMappingKey);
     }
 
     /**
@@ -0,0 +1,177 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.dita.dost.writer.ImageMetadataFilter.Dimensions;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Image metadata cache that can be persisted between builds.
+ *
+ * <p>Metadata of local image files is keyed by image URI and validated against the length and last-modified
+ * time of the image file; if either has changed, the image is read again. Metadata of other images, e.g.
+ * {@code data} URIs, is not cached.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 3.0
+ */
+public final class ImageMetadataCache {
+
+    private static final int MAGIC = 0x44494d43;
+    private static final int VERSION = 1;
+
+    private final ConcurrentMap<URI, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    /**
+     * Create empty cache.
+     */
+    public ImageMetadataCache() {
+    }
+
+    /**
+     * Read persisted cache. If the file doesn't exist or is not a cache file of a supported version,
+     * an empty cache is returned.
+     *
+     * @param file cache file
+     * @return image metadata cache
+     * @throws IOException if reading the cache file failed
+     */
+    public static ImageMetadataCache read(final File file) throws IOException {
+        final ImageMetadataCache cache = new ImageMetadataCache();
+        if (!file.exists()) {
+            return cache;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return cache;
+            }
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                final URI uri = URI.create(in.readUTF());
+                final long length = in.readLong();
+                final long lastModified = in.readLong();
+                final Dimensions dimensions = new Dimensions();
+                dimensions.width = readString(in);
+                dimensions.height = readString(in);
+                dimensions.horizontalDpi = readString(in);
+                dimensions.verticalDpi = readString(in);
+                cache.entries.put(uri, new Entry(length, lastModified, dimensions));
+            }
+        } catch (final EOFException | IllegalArgumentException e) {
+            throw new IOException("Invalid image metadata cache " + file + ": " + e.getMessage(), e);
+        }
+        return cache;
+    }
+
+    /**
+     * Persist cache. The file is only written if the cache has been modified since it was read.
+     *
+     * @param file cache file
+     * @throws IOException if writing the cache file failed
+     */
+    public void write(final File file) throws IOException {
+        if (!modified) {
+            return;
+        }
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir);
+        }
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                final Map<URI, Entry> snapshot = new HashMap<>(entries);
+                out.writeInt(snapshot.size());
+                for (final Map.Entry<URI, Entry> e : snapshot.entrySet()) {
+                    final Entry entry = e.getValue();
+                    out.writeUTF(e.getKey().toString());
+                    out.writeLong(entry.length);
+                    out.writeLong(entry.lastModified);
+                    writeString(out, entry.dimensions.width);
+                    writeString(out, entry.dimensions.height);
+                    writeString(out, entry.dimensions.horizontalDpi);
+                    writeString(out, entry.dimensions.verticalDpi);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            modified = false;
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Get image metadata, reading it if it's not cached or the image file has changed.
+     *
+     * @param image absolute image URI
+     * @param reader function to read image metadata, returns {@code null} if reading failed
+     * @return image metadata, {@code null} if reading failed
+     */
+    public Dimensions get(final URI image, final Function<URI, Dimensions> reader) {
+        if (!"file".equals(image.getScheme())) {
+            return reader.apply(image);
+        }
+        final File file = new File(image);
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final Entry cached = entries.get(image);
+        if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+            return cached.dimensions;
+        }
+        final Dimensions dimensions = reader.apply(image);
+        if (dimensions != null) {
+            entries.put(image, new Entry(length, lastModified, dimensions));
+            modified = true;
+        }
+        return dimensions;
+    }
+
+    /**
+     * Number of cached images.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static final class Entry {
+        private final long length;
+        private final long lastModified;
+        private final Dimensions dimensions;
+
+        private Entry(final long length, final long lastModified, final Dimensions dimensions) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.dimensions = dimensions;
+        }
+    }
+
+}
@@ -11,14 +11,8 @@ import static org.dita.dost.util.Configuration.configuration;
 import static org.dita.dost.util.Constants.*;
 import static org.dita.dost.util.URLUtils.*;
 
-import org.xml.sax.helpers.DefaultHandler;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.lang.reflect.Field;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,16 +20,8 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import javax.xml.stream.XMLOutputFactory;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
-
 import org.dita.dost.module.GenMapAndTopicListModule;
 import org.dita.dost.module.GenMapAndTopicListModule.TempFileNameScheme;
-import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 
 /**
  * Definition of current job.
@@ -46,40 +32,6 @@ import org.xml.sax.XMLReader;
  */
 public final class Job {
 
-    private static final String JOB_FILE = ".job.xml";
-    
-    private static final String ELEMENT_JOB = "job";
-    private static final String ATTRIBUTE_KEY = "key";
-    private static final String ELEMENT_ENTRY = "entry";
-    private static final String ELEMENT_MAP = "map";
-    private static final String ELEMENT_SET = "set";
-    private static final String ELEMENT_STRING = "string";
-    private static final String ATTRIBUTE_NAME = "name";
-    private static final String ELEMENT_PROPERTY = "property";
-
-    private static final String ELEMENT_FILES = "files";
-    private static final String ELEMENT_FILE = "file";
-    private static final String ATTRIBUTE_SRC = "src";
-    private static final String ATTRIBUTE_URI = "uri";
-    private static final String ATTRIBUTE_PATH = "path";
-    private static final String ATTRIBUTE_RESULT = "result";
-    private static final String ATTRIBUTE_FORMAT = "format";
-    private static final String ATTRIBUTE_CHUNKED = "chunked";
-    private static final String ATTRIBUTE_HAS_CONREF = "has-conref";
-    private static final String ATTRIBUTE_HAS_KEYREF = "has-keyref";
-    private static final String ATTRIBUTE_HAS_CODEREF = "has-coderef";
-    private static final String ATTRIBUTE_RESOURCE_ONLY = "resource-only";
-    private static final String ATTRIBUTE_TARGET = "target";
-    private static final String ATTRIBUTE_CONREF_TARGET = "conref-target";
-    private static final String ATTRIBUTE_CONREF_PUSH = "conrefpush";
-    private static final String ATTRIBUTE_SUBJECT_SCHEME = "subjectscheme";
-    private static final String ATTRIBUTE_HAS_LINK = "has-link";
-    private static final String ATTRIBUTE_COPYTO_SOURCE_LIST = "copy-to-source";
-    private static final String ATTRIBUTE_OUT_DITA_FILES_LIST = "out-dita";
-    private static final String ATTRIBUTE_CHUNKED_DITAMAP_LIST = "chunked-ditamap";
-    private static final String ATTRIBUTE_FLAG_IMAGE_LIST = "flag-image";
-    private static final String ATTRIBUTE_SUBSIDIARY_TARGET_LIST = "subtarget";
-    
     private static final String PROPERTY_OUTER_CONTROL = ANT_INVOKER_EXT_PARAM_OUTTERCONTROL;
     private static final String PROPERTY_ONLY_TOPIC_IN_MAP = ANT_INVOKER_EXT_PARAM_ONLYTOPICINMAP;
     private static final String PROPERTY_GENERATE_COPY_OUTER = ANT_INVOKER_EXT_PARAM_GENERATECOPYOUTTER;
@@ -96,33 +48,21 @@ public final class Job {
     /** File name for temporary input file list file */
     public static final String USER_INPUT_FILE_LIST_FILE = "usr.input.file.list";
 
-    /** Map of serialization attributes to file info boolean fields. */
-    private static final Map<String, Field> attrToFieldMap= new HashMap<>();
-    static {
-        try {
-            attrToFieldMap.put(ATTRIBUTE_CHUNKED, FileInfo.class.getField("isChunked"));
-            attrToFieldMap.put(ATTRIBUTE_HAS_LINK, FileInfo.class.getField("hasLink"));    
-            attrToFieldMap.put(ATTRIBUTE_HAS_CONREF, FileInfo.class.getField("hasConref"));    
-            attrToFieldMap.put(ATTRIBUTE_HAS_KEYREF, FileInfo.class.getField("hasKeyref"));    
-            attrToFieldMap.put(ATTRIBUTE_HAS_CODEREF, FileInfo.class.getField("hasCoderef"));    
-            attrToFieldMap.put(ATTRIBUTE_RESOURCE_ONLY, FileInfo.class.getField("isResourceOnly"));    
-            attrToFieldMap.put(ATTRIBUTE_TARGET, FileInfo.class.getField("isTarget"));
-            attrToFieldMap.put(ATTRIBUTE_CONREF_PUSH, FileInfo.class.getField("isConrefPush"));    
-            attrToFieldMap.put(ATTRIBUTE_SUBJECT_SCHEME, FileInfo.class.getField("isSubjectScheme"));
-            attrToFieldMap.put(ATTRIBUTE_OUT_DITA_FILES_LIST, FileInfo.class.getField("isOutDita"));
-            attrToFieldMap.put(ATTRIBUTE_FLAG_IMAGE_LIST, FileInfo.class.getField("isFlagImage"));
-            attrToFieldMap.put(ATTRIBUTE_SUBSIDIARY_TARGET_LIST, FileInfo.class.getField("isSubtarget"));
-        } catch (final NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
-    }
-    
     private final Map<String, Object> prop;
     public final File tempDir;
     public final URI tempDirURI;
     private final File jobFile;
+    private final JobStore store;
+    private final XmlJobStore xmlStore;
     private final ConcurrentMap<URI, FileInfo> files = new ConcurrentHashMap<>();
-    private long lastModified;
+    /** Generation of the job as last read or written. */
+    private long generation;
+    /** XML export is up to date with job store. */
+    private boolean xmlExported;
+    /** Last-modified time of XML job file as last read or written. */
+    private long xmlLastModified;
+    /** Length of XML job file as last read or written. */
+    private long xmlLength;
     
     /**
      * Create new job configuration instance. Initialise by reading temporary configuration files.
@@ -132,12 +72,25 @@ public final class Job {
      * @throws IllegalStateException if configuration files are missing
      */
     public Job(final File tempDir) throws IOException {
+        this(tempDir, createStore(tempDir));
+    }
+
+    /**
+     * Create new job configuration instance with a job store. Initialise by reading temporary configuration files.
+     *
+     * @param tempDir temporary directory
+     * @param store job store
+     * @throws IOException if reading configuration files failed
+     */
+    Job(final File tempDir, final JobStore store) throws IOException {
         if (!tempDir.isAbsolute()) {
             throw new IllegalArgumentException("Temporary directory " + tempDir + " must be absolute");
         }
         this.tempDir = tempDir;
         tempDirURI = tempDir.toURI();
-        jobFile = new File(tempDir, JOB_FILE);
+        jobFile = new File(tempDir, XmlJobStore.JOB_FILE);
+        this.store = store;
+        xmlStore = store instanceof XmlJobStore ? (XmlJobStore) store : new XmlJobStore(tempDir);
         prop = new HashMap<>();
         read();
         for (Map.Entry<String, String> e : configuration.entrySet()) {
@@ -148,145 +101,77 @@ public final class Job {
     }
 
     /**
-     * Test if serialized configuration file has been updated.
+     * Create configured job store. Defaults to XML job store.
+     */
+    private static JobStore createStore(final File tempDir) {
+        final String cls = configuration.get(JobStore.CONF_JOB_STORE);
+        if (cls == null || cls.trim().isEmpty()) {
+            return new XmlJobStore(tempDir);
+        }
+        try {
+            return (JobStore) Class.forName(cls.trim()).getConstructor(File.class).newInstance(tempDir);
+        } catch (final ReflectiveOperationException | ClassCastException e) {
+            throw new RuntimeException("Failed to create job store " + cls + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Test if serialized configuration file has been updated. The job is stale if a job store has a higher
+     * generation or if the XML job file has been modified by other tools, which do not update the generation.
      * @return {@code true} if configuration file has been update after this object has been created or serialized
      */
     public boolean isStale() {
-        return jobFile.lastModified() > lastModified;
+        if (jobFile.lastModified() != xmlLastModified || jobFile.length() != xmlLength) {
+            return true;
+        }
+        try {
+            return getStoreGeneration() > generation;
+        } catch (final IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Get the most recent generation of the stored job.
+     */
+    private long getStoreGeneration() throws IOException {
+        return store == xmlStore
+                ? store.getGeneration()
+                : Math.max(store.getGeneration(), xmlStore.getGeneration());
+    }
+
+    /**
+     * Record XML job file state for {@link #isStale()}.
+     */
+    private void updateXmlState() {
+        xmlLastModified = jobFile.lastModified();
+        xmlLength = jobFile.length();
     }
     
     /**
      * Read temporary configuration files. If configuration files are not found,
-     * assume an empty job object is being created.
+     * assume an empty job object is being created. If XML job file has a higher generation than
+     * the configured job store or it has been written by other tools, it is read instead.
      * 
      * @throws IOException if reading configuration files failed
      * @throws IllegalStateException if configuration files are missing
      */
     private void read() throws IOException {
-        lastModified = jobFile.lastModified();
-        if (jobFile.exists()) {
-            try (final InputStream in = new FileInputStream(jobFile)) {
-                final XMLReader parser = XMLUtils.getXMLReader();
-                parser.setContentHandler(new JobHandler(prop, files));
-
-                parser.parse(new InputSource(in));
-            } catch (final SAXException e) {
-                throw new IOException("Failed to read job file: " + e.getMessage());
-            }
+        final long storeGeneration = store.getGeneration();
+        final long xmlGeneration = store == xmlStore ? storeGeneration : xmlStore.getGeneration();
+        updateXmlState();
+        if (xmlGeneration == XmlJobStore.GENERATION_UNKNOWN || xmlGeneration > storeGeneration) {
+            xmlStore.read(prop, files);
+        } else if (storeGeneration != 0L) {
+            store.read(prop, files);
         } else {
             // defaults
             prop.put(PROPERTY_GENERATE_COPY_OUTER, Generate.NOT_GENERATEOUTTER.toString());
             prop.put(PROPERTY_ONLY_TOPIC_IN_MAP, Boolean.toString(false));
             prop.put(PROPERTY_OUTER_CONTROL, OutterControl.WARN.toString());
         }
-    }
-    
-    private final static class JobHandler extends DefaultHandler {
-
-        private final Map<String, Object> prop;
-        private final Map<URI, FileInfo> files;
-        private StringBuilder buf;
-        private String name;
-        private String key;
-        private Set<String> set;
-        private Map<String, String> map;
-        
-        JobHandler(final Map<String, Object> prop, final Map<URI, FileInfo> files) {
-            this.prop = prop;
-            this.files = files;
-        }
-        
-        @Override
-        public void characters(final char[] ch, final int start, final int length) throws SAXException {
-            if (buf != null) {
-                buf.append(ch, start, length);
-            }
-        }
-
-        @Override
-        public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
-            if (buf != null) {
-                buf.append(ch, start, length);
-            }
-        }
-        
-        @Override
-        public void startElement(final String ns, final String localName, final String qName, final Attributes atts) throws SAXException {
-            final String n = localName != null ? localName : qName;
-            switch (n) {
-                case ELEMENT_PROPERTY:
-                    name = atts.getValue(ATTRIBUTE_NAME);
-                    break;
-                case ELEMENT_STRING:
-                    buf = new StringBuilder();
-                    break;
-                case ELEMENT_SET:
-                    set = new HashSet<>();
-                    break;
-                case ELEMENT_MAP:
-                    map = new HashMap<>();
-                    break;
-                case ELEMENT_ENTRY:
-                    key = atts.getValue(ATTRIBUTE_KEY);
-                    break;
-                case ELEMENT_FILE:
-                    final URI src = toURI(atts.getValue(ATTRIBUTE_SRC));
-                    final URI uri = toURI(atts.getValue(ATTRIBUTE_URI));
-                    final File path = toFile(atts.getValue(ATTRIBUTE_PATH));
-                    FileInfo i;
-                    if (uri != null) {
-                        i = new FileInfo(src, uri, toFile(uri));
-                    } else {
-                        i = new FileInfo(src, toURI(path), path);
-                    }
-                    i.result = toURI(atts.getValue(ATTRIBUTE_RESULT));
-                    if (i.result == null) {
-                        i.result = src;
-                    }
-                    i.format = atts.getValue(ATTRIBUTE_FORMAT);
-                    try {
-                        for (Map.Entry<String, Field> e : attrToFieldMap.entrySet()) {
-                            e.getValue().setBoolean(i, Boolean.parseBoolean(atts.getValue(e.getKey())));
-                        }
-                    } catch (final IllegalAccessException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                    files.put(i.uri, i);
-                    break;
-            }
-        }
-        
-        @Override
-        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
-            final String n = localName != null ? localName : qName;
-            switch (n) {
-                case ELEMENT_PROPERTY:
-                    name = null;
-                    break;
-                case ELEMENT_STRING:
-                    if (set != null) {
-                        set.add(buf.toString());
-                    } else if (map != null) {
-                        map.put(key, buf.toString());
-                    } else {
-                        prop.put(name, buf.toString());
-                    }
-                    buf = null;
-                    break;
-                case ELEMENT_SET:
-                    prop.put(name, set);
-                    set = null;
-                    break;
-                case ELEMENT_MAP:
-                    prop.put(name, map);
-                    map = null;
-                    break;
-                case ELEMENT_ENTRY:
-                    key = null;
-                    break;
-            }
-        }
-        
+        xmlExported = xmlGeneration == XmlJobStore.GENERATION_UNKNOWN || xmlGeneration >= storeGeneration;
+        generation = Math.max(0L, Math.max(storeGeneration, xmlGeneration));
     }
     
     /**
@@ -295,98 +180,33 @@ public final class Job {
      * @throws IOException if writing configuration files failed
      */
     public void write() throws IOException {
-        OutputStream outStream = null;
-        XMLStreamWriter out = null;
-        try {
-            outStream = new FileOutputStream(jobFile);
-            out = XMLOutputFactory.newInstance().createXMLStreamWriter(outStream, "UTF-8");
-            out.writeStartDocument();
-            out.writeStartElement(ELEMENT_JOB);
-            for (final Map.Entry<String, Object> e: prop.entrySet()) {
-                out.writeStartElement(ELEMENT_PROPERTY);
-                out.writeAttribute(ATTRIBUTE_NAME, e.getKey());
-                if (e.getValue() instanceof String) {
-                    out.writeStartElement(ELEMENT_STRING);
-                    out.writeCharacters(e.getValue().toString());
-                    out.writeEndElement(); //string
-                } else if (e.getValue() instanceof Set) {
-                    out.writeStartElement(ELEMENT_SET);
-                    final Set<?> s = (Set<?>) e.getValue();
-                    for (final Object o: s) {
-                        out.writeStartElement(ELEMENT_STRING);
-                        out.writeCharacters(o.toString());
-                        out.writeEndElement(); //string
-                    }
-                    out.writeEndElement(); //set
-                } else if (e.getValue() instanceof Map) {
-                    out.writeStartElement(ELEMENT_MAP);
-                    final Map<?, ?> s = (Map<?, ?>) e.getValue();
-                    for (final Map.Entry<?, ?> o: s.entrySet()) {
-                        out.writeStartElement(ELEMENT_ENTRY);
-                        out.writeAttribute(ATTRIBUTE_KEY, o.getKey().toString());
-                        out.writeStartElement(ELEMENT_STRING);
-                        out.writeCharacters(o.getValue().toString());
-                        out.writeEndElement(); //string
-                        out.writeEndElement(); //entry
-                    }
-                    out.writeEndElement(); //string
-                } else {
-                    out.writeStartElement(e.getValue().getClass().getName());
-                    out.writeCharacters(e.getValue().toString());
-                    out.writeEndElement(); //string
-                }
-                out.writeEndElement(); //property
-            }
-            out.writeStartElement(ELEMENT_FILES);
-            for (final FileInfo i: files.values()) {
-                out.writeStartElement(ELEMENT_FILE);
-                if (i.src != null) {
-                    out.writeAttribute(ATTRIBUTE_SRC, i.src.toString());
-                }
-                out.writeAttribute(ATTRIBUTE_URI, i.uri.toString());
-                out.writeAttribute(ATTRIBUTE_PATH, i.file.getPath());
-                if (i.result != null) {
-                    out.writeAttribute(ATTRIBUTE_RESULT, i.result.toString());
-                }
-                if (i.format != null) {
-                    out.writeAttribute(ATTRIBUTE_FORMAT, i.format);
-                }
-                try {
-                    for (Map.Entry<String, Field> e: attrToFieldMap.entrySet()) {
-                        final boolean v = e.getValue().getBoolean(i);
-                        if (v) {
-                            out.writeAttribute(e.getKey(), Boolean.TRUE.toString());
-                        }
-                    }
-                } catch (final IllegalAccessException ex) {
-                    throw new RuntimeException(ex);
-                }
-                out.writeEndElement(); //file
-            }
-            out.writeEndElement(); //files
-            out.writeEndElement(); //job
-            out.writeEndDocument();
-        } catch (final IOException e) {
-            throw new IOException("Failed to write file: " + e.getMessage());
-        } catch (final XMLStreamException e) {
-            throw new IOException("Failed to serialize job file: " + e.getMessage());
-        } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (final XMLStreamException e) {
-                    throw new IOException("Failed to close file: " + e.getMessage());
-                }
-            }
-            if (outStream != null) {
-                try {
-                    outStream.close();
-                } catch (final IOException e) {
-                    throw new IOException("Failed to close file: " + e.getMessage());
-                }
-            }
+        final long xmlGeneration = xmlStore.getGeneration();
+        generation = Math.max(0L, Math.max(generation, getStoreGeneration())) + 1;
+        store.write(prop, files, generation);
+        if (store != xmlStore && xmlGeneration == XmlJobStore.GENERATION_UNKNOWN) {
+            // XML job file written by other tools would otherwise be preferred on read
+            xmlStore.write(prop, files, generation);
+            xmlExported = true;
+        } else {
+            xmlExported = store == xmlStore;
+        }
+        updateXmlState();
+    }
+
+    /**
+     * Export job into XML job file for stylesheets and other tools that read it directly. Does nothing if
+     * the job store is XML based or the export is up to date. The XML job file gets the same generation as the
+     * configured job store, so the configured job store is preferred on read.
+     *
+     * @throws IOException if writing XML job file failed
+     */
+    public void exportXml() throws IOException {
+        if (xmlExported) {
+            return;
         }
-        lastModified = jobFile.lastModified();
+        xmlStore.write(prop, files, generation);
+        xmlExported = true;
+        updateXmlState();
     }
     
     /**
@@ -609,6 +429,12 @@ public final class Job {
         public boolean isFlagImage;
         /** Source file is outside base directory. */
         public boolean isOutDita;
+        /** Content hash of the source file, {@code null} if not known. */
+        public String hash;
+        /** Absolute source URIs of files whose content affects processing of this file. */
+        public final Set<URI> dependencies = new HashSet<>();
+        /** Source file and its transitive dependencies have not changed since previous build. */
+        public boolean isUnchanged;
         
         FileInfo(final URI src, final URI uri, final File file) {
             if (uri == null && file == null) throw new IllegalArgumentException(new NullPointerException());
@@ -645,6 +471,9 @@ public final class Job {
                     ", isSubtarget=" + isSubtarget +
                     ", isFlagImage=" + isFlagImage +
                     ", isOutDita=" + isOutDita +
+                    ", hash='" + hash + '\'' +
+                    ", dependencies=" + dependencies +
+                    ", isUnchanged=" + isUnchanged +
                     '}';
         }
 
@@ -667,6 +496,9 @@ public final class Job {
             if (isSubtarget != fileInfo.isSubtarget) return false;
             if (isFlagImage != fileInfo.isFlagImage) return false;
             if (isOutDita != fileInfo.isOutDita) return false;
+            if (isUnchanged != fileInfo.isUnchanged) return false;
+            if (hash != null ? !hash.equals(fileInfo.hash) : fileInfo.hash != null) return false;
+            if (!dependencies.equals(fileInfo.dependencies)) return false;
             if (src != null ? !src.equals(fileInfo.src) : fileInfo.src != null) return false;
             if (!uri.equals(fileInfo.uri)) return false;
             if (!file.equals(fileInfo.file)) return false;
@@ -693,6 +525,9 @@ public final class Job {
             result1 = 31 * result1 + (isSubtarget ? 1 : 0);
             result1 = 31 * result1 + (isFlagImage ? 1 : 0);
             result1 = 31 * result1 + (isOutDita ? 1 : 0);
+            result1 = 31 * result1 + (isUnchanged ? 1 : 0);
+            result1 = 31 * result1 + (hash != null ? hash.hashCode() : 0);
+            result1 = 31 * result1 + dependencies.hashCode();
             return result1;
         }
 
@@ -715,6 +550,9 @@ public final class Job {
             private boolean isSubtarget;
             private boolean isFlagImage;
             private boolean isOutDita;
+            private String hash;
+            private final Set<URI> dependencies = new HashSet<>();
+            private boolean isUnchanged;
         
             public Builder() {}
             public Builder(final FileInfo orig) {
@@ -735,6 +573,9 @@ public final class Job {
                 isSubtarget = orig.isSubtarget;
                 isFlagImage = orig.isFlagImage;
                 isOutDita = orig.isOutDita;
+                hash = orig.hash;
+                dependencies.addAll(orig.dependencies);
+                isUnchanged = orig.isUnchanged;
             }
             
             /**
@@ -758,6 +599,9 @@ public final class Job {
                 if (orig.isSubtarget) isSubtarget = orig.isSubtarget;
                 if (orig.isFlagImage) isFlagImage = orig.isFlagImage;
                 if (orig.isOutDita) isOutDita = orig.isOutDita;
+                if (orig.hash != null) hash = orig.hash;
+                dependencies.addAll(orig.dependencies);
+                if (orig.isUnchanged) isUnchanged = orig.isUnchanged;
                 return this;
             }
 
@@ -799,6 +643,9 @@ public final class Job {
             public Builder isSubtarget(final boolean isSubtarget) { this.isSubtarget = isSubtarget; return this; }
             public Builder isFlagImage(final boolean isFlagImage) { this.isFlagImage = isFlagImage; return this; }
             public Builder isOutDita(final boolean isOutDita) { this.isOutDita = isOutDita; return this; }
+            public Builder hash(final String hash) { this.hash = hash; return this; }
+            public Builder dependencies(final Collection<URI> dependencies) { this.dependencies.clear(); this.dependencies.addAll(dependencies); return this; }
+            public Builder isUnchanged(final boolean isUnchanged) { this.isUnchanged = isUnchanged; return this; }
 
             public FileInfo build() {
                 if (uri == null && file == null) {
@@ -821,6 +668,9 @@ public final class Job {
                 fi.isSubtarget = isSubtarget;
                 fi.isFlagImage = isFlagImage;
                 fi.isOutDita = isOutDita;
+                fi.hash = hash;
+                fi.dependencies.addAll(dependencies);
+                fi.isUnchanged = isUnchanged;
                 return fi;
             }
             
@@ -0,0 +1,57 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.dita.dost.util.Job.FileInfo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Persistent storage of job configuration.
+ *
+ * <p>Implementations must have a public constructor that takes the temporary directory as a {@link java.io.File}
+ * argument. The implementation class is configured with {@link #CONF_JOB_STORE} configuration property.</p>
+ *
+ * @since 3.0
+ */
+public interface JobStore {
+
+    /** Configuration property for job store implementation class. */
+    String CONF_JOB_STORE = "job.store";
+
+    /**
+     * Get generation of stored job. The generation is written with the job and it's used to decide which store
+     * has the most recent copy of the job.
+     *
+     * @return generation of stored job, {@code 0L} if job has not been stored
+     * @throws IOException if reading generation failed
+     */
+    long getGeneration() throws IOException;
+
+    /**
+     * Read stored job.
+     *
+     * @param prop properties to read into
+     * @param files file infos to read into, keyed by file info URI
+     * @throws IOException if reading failed
+     */
+    void read(Map<String, Object> prop, Map<URI, FileInfo> files) throws IOException;
+
+    /**
+     * Store job. Implementations may store only changes since the last read or write.
+     *
+     * @param prop properties to write
+     * @param files file infos to write, keyed by file info URI
+     * @param generation generation of the job
+     * @throws IOException if writing failed
+     */
+    void write(Map<String, Object> prop, Map<URI, FileInfo> files, long generation) throws IOException;
+
+}
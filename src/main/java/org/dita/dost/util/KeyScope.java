@@ -8,6 +8,9 @@
 package org.dita.dost.util;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
@@ -15,22 +18,47 @@ import static java.util.Collections.unmodifiableMap;
 /**
  * Immutable key store for keys and child key scopes.
  *
+ * <p>Key definitions inherited from a parent scope are not copied: the key definition map of a child scope only
+ * stores the keys defined in the child scope and delegates other lookups to the parent map, caching the
+ * results.</p>
+ *
  * @since 2.2
  */
 public class KeyScope {
 
     public final String id;
     public final String name;
+    /** Effective key definitions, including key definitions inherited from ancestor scopes. */
     public final Map<String, KeyDef> keyDefinition;
     public final List<KeyScope> childScopes;
+    private int hash;
 
     public KeyScope(final String id, final String name, final Map<String, KeyDef> keyDefinition, final List<KeyScope> childScopes) {
         this.id = id;
         this.name = name;
-        this.keyDefinition = unmodifiableMap(keyDefinition);
+        this.keyDefinition = keyDefinition instanceof LayeredKeyMap
+                ? keyDefinition
+                : new LayeredKeyMap(unmodifiableMap(keyDefinition), null);
         this.childScopes = unmodifiableList(new ArrayList<>(childScopes));
     }
 
+    /**
+     * Create key definition map that inherits key definitions from a parent map without copying them.
+     *
+     * @param parent parent key definitions
+     * @param local local key definitions, take precedence over parent key definitions
+     * @return immutable key definition map
+     */
+    public static Map<String, KeyDef> inherit(final Map<String, KeyDef> parent, final Map<String, KeyDef> local) {
+        if (parent.isEmpty()) {
+            return new LayeredKeyMap(unmodifiableMap(local), null);
+        }
+        final Map<String, KeyDef> p = parent instanceof LayeredKeyMap
+                ? parent
+                : new LayeredKeyMap(unmodifiableMap(parent), null);
+        return new LayeredKeyMap(unmodifiableMap(local), p);
+    }
+
     public KeyDef get(final String key) {
         return keyDefinition.get(key);
     }
@@ -43,6 +71,52 @@ public class KeyScope {
         return childScopes.stream().filter(s -> s.name.equals(scope)).findFirst().orElse(null);
     }
 
+    /**
+     * Create a key scope tree with key definitions mapped with a function. Inherited key definitions are mapped
+     * once per ancestor scope and shared between child scopes.
+     *
+     * @param mapper key definition mapping function
+     * @return key scope with mapped key definitions, or this key scope if no key definition changed
+     */
+    public KeyScope map(final Function<KeyDef, KeyDef> mapper) {
+        return map(mapper, new IdentityHashMap<>());
+    }
+
+    private KeyScope map(final Function<KeyDef, KeyDef> mapper, final Map<Map<String, KeyDef>, Map<String, KeyDef>> layers) {
+        final Map<String, KeyDef> keys = mapLayer(keyDefinition, mapper, layers);
+        final List<KeyScope> children = new ArrayList<>(childScopes.size());
+        boolean changed = keys != keyDefinition;
+        for (final KeyScope child : childScopes) {
+            final KeyScope c = child.map(mapper, layers);
+            changed |= c != child;
+            children.add(c);
+        }
+        return changed ? new KeyScope(id, name, keys, children) : this;
+    }
+
+    private static Map<String, KeyDef> mapLayer(final Map<String, KeyDef> layer, final Function<KeyDef, KeyDef> mapper,
+                                                final Map<Map<String, KeyDef>, Map<String, KeyDef>> layers) {
+        if (!(layer instanceof LayeredKeyMap)) {
+            return layer;
+        }
+        final Map<String, KeyDef> cached = layers.get(layer);
+        if (cached != null) {
+            return cached;
+        }
+        final LayeredKeyMap l = (LayeredKeyMap) layer;
+        final Map<String, KeyDef> parent = l.parent != null ? mapLayer(l.parent, mapper, layers) : null;
+        boolean changed = parent != l.parent;
+        final Map<String, KeyDef> local = new HashMap<>(l.local.size());
+        for (final Map.Entry<String, KeyDef> e : l.local.entrySet()) {
+            final KeyDef v = mapper.apply(e.getValue());
+            changed |= v != e.getValue();
+            local.put(e.getKey(), v);
+        }
+        final Map<String, KeyDef> res = changed ? new LayeredKeyMap(unmodifiableMap(local), parent) : layer;
+        layers.put(layer, res);
+        return res;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -57,9 +131,118 @@ public class KeyScope {
 
     @Override
     public int hashCode() {
-        int result = name != null ? name.hashCode() : 0;
-        result = 31 * result + keyDefinition.hashCode();
-        result = 31 * result + childScopes.hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = name != null ? name.hashCode() : 0;
+            result = 31 * result + keyDefinition.hashCode();
+            result = 31 * result + childScopes.hashCode();
+            hash = result;
+        }
         return result;
     }
+
+    /**
+     * Immutable key definition map with local key definitions and an optional parent map.
+     */
+    private static final class LayeredKeyMap extends AbstractMap<String, KeyDef> {
+
+        /** Local key definitions. */
+        private final Map<String, KeyDef> local;
+        /** Parent key definitions, {@code null} if none. */
+        private final Map<String, KeyDef> parent;
+        /** Cache of key definitions resolved from the parent map. */
+        private final ConcurrentMap<String, KeyDef> inherited = new ConcurrentHashMap<>();
+        private int size = -1;
+        private int hash;
+
+        LayeredKeyMap(final Map<String, KeyDef> local, final Map<String, KeyDef> parent) {
+            this.local = local;
+            this.parent = parent;
+        }
+
+        @Override
+        public KeyDef get(final Object key) {
+            if (key == null) {
+                return null;
+            }
+            KeyDef res = local.get(key);
+            if (res != null || parent == null) {
+                return res;
+            }
+            res = inherited.get(key);
+            if (res == null) {
+                res = parent.get(key);
+                if (res != null) {
+                    inherited.put((String) key, res);
+                }
+            }
+            return res;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            if (size == -1) {
+                int res = parent != null ? parent.size() : 0;
+                for (final String key : local.keySet()) {
+                    if (parent == null || !parent.containsKey(key)) {
+                        res++;
+                    }
+                }
+                size = res;
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, KeyDef>> entrySet() {
+            if (parent == null) {
+                return local.entrySet();
+            }
+            final Map<String, KeyDef> res = new HashMap<>(parent);
+            res.putAll(local);
+            return unmodifiableMap(res).entrySet();
+        }
+
+        @Override
+        public int hashCode() {
+            int res = hash;
+            if (res == 0) {
+                if (parent == null) {
+                    res = local.hashCode();
+                } else {
+                    res = parent.hashCode() + local.hashCode();
+                    for (final Entry<String, KeyDef> e : local.entrySet()) {
+                        final KeyDef shadowed = parent.get(e.getKey());
+                        if (shadowed != null) {
+                            res -= e.getKey().hashCode() ^ shadowed.hashCode();
+                        }
+                    }
+                }
+                hash = res;
+            }
+            return res;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof LayeredKeyMap) {
+                final LayeredKeyMap other = (LayeredKeyMap) o;
+                if (hashCode() != other.hashCode()) {
+                    return false;
+                }
+                if (parent == other.parent && local.equals(other.local)) {
+                    return true;
+                }
+            }
+            return super.equals(o);
+        }
+    }
 }
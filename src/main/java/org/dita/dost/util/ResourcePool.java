@@ -0,0 +1,114 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable objects that are expensive to create, e.g. parsers and transformers.
+ *
+ * <p>Objects are borrowed with {@link #borrow()} and must be returned with {@link #release(Object)} once the
+ * borrower is done with them, preferably in a {@code finally} block. A borrowed object is owned by the borrower
+ * until released and must not be shared between threads. Released objects are reset before they are returned
+ * to the pool; if the pool is full or reset fails, the released object is discarded.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @param <T> pooled object type
+ * @since 3.0
+ */
+public final class ResourcePool<T> {
+
+    private final String name;
+    private final BlockingQueue<T> idle;
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create new pool.
+     *
+     * @param name pool name for statistics
+     * @param size maximum number of idle objects
+     * @param factory factory for new objects
+     * @param reset action to reset an object to its initial state before it's returned to the pool
+     */
+    public ResourcePool(final String name, final int size, final Supplier<T> factory, final Consumer<T> reset) {
+        this.name = name;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.factory = factory;
+        this.reset = reset;
+    }
+
+    /**
+     * Borrow object from the pool. If no idle object is available, a new one is created.
+     *
+     * @return pooled object
+     */
+    public T borrow() {
+        final T res = idle.poll();
+        if (res != null) {
+            hits.incrementAndGet();
+            return res;
+        }
+        misses.incrementAndGet();
+        return factory.get();
+    }
+
+    /**
+     * Return object to the pool.
+     *
+     * @param obj object previously borrowed from this pool, may be {@code null}
+     */
+    public void release(final T obj) {
+        if (obj == null) {
+            return;
+        }
+        try {
+            reset.accept(obj);
+        } catch (final RuntimeException e) {
+            return;
+        }
+        idle.offer(obj);
+    }
+
+    /**
+     * Number of borrows served with a pooled object.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of borrows that required creating a new object.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of idle objects in the pool.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    @Override
+    public String toString() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return name + " pool: " + h + " hits, " + (total - h) + " misses"
+                + (total > 0 ? " (" + (h * 100 / total) + "% hit rate)" : "");
+    }
+
+}
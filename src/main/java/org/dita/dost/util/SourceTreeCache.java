@@ -0,0 +1,229 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.sf.saxon.jaxp.TransformerImpl;
+import net.sf.saxon.om.TreeInfo;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of source documents parsed by XSLT {@code document()} and {@code doc()} functions.
+ *
+ * <p>Saxon scopes its document pool to a single transformation, so stylesheets that read other files with
+ * {@code document()} re-parse the same documents for every file they transform. This cache keeps parsed
+ * Saxon trees across transformations and threads. Only files under a registered base directory, e.g. the temporary
+ * directory, are cached. Trees can only be shared between transformers that use the same Saxon configuration, i.e.
+ * transformers created from the same compiled stylesheet; a request from another configuration replaces the cached
+ * tree.</p>
+ *
+ * <p>For every entry the cache records the last-modified time and length of the source file and re-parses the
+ * file if either has changed. Code that rewrites files should also call {@link #invalidate(File)}. The total
+ * size of cached source files is limited by {@link #CONF_SOURCE_TREE_CACHE_SIZE} megabytes and the least
+ * recently used trees are evicted when full.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 3.0
+ */
+public final class SourceTreeCache {
+
+    /** Configuration property for maximum total size of cached source files in megabytes. */
+    public static final String CONF_SOURCE_TREE_CACHE_SIZE = "xslt.source-tree-cache.size";
+    private static final int DEFAULT_SIZE = 64;
+
+    private static final SourceTreeCache instance = new SourceTreeCache(Configuration.getInt(CONF_SOURCE_TREE_CACHE_SIZE, DEFAULT_SIZE));
+
+    private final Cache<File, Entry> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SourceTreeCache(final long size) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(size * 1024)
+                .weigher((final File file, final Entry entry) -> (int) Math.min(Integer.MAX_VALUE, entry.length / 1024 + 1))
+                .build();
+    }
+
+    /**
+     * Get process-wide cache.
+     *
+     * @return shared cache instance
+     */
+    public static SourceTreeCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get caching URI resolver for a transformer. If the transformer is not a Saxon transformer, the delegate
+     * resolver is returned as is.
+     *
+     * @param transformer transformer the resolver will be set to
+     * @param baseDir directory under which documents are cached
+     * @param resolver URI resolver to delegate to, may be {@code null}
+     * @return URI resolver
+     */
+    public URIResolver getURIResolver(final Transformer transformer, final File baseDir, final URIResolver resolver) {
+        if (!(transformer instanceof TransformerImpl)) {
+            return resolver;
+        }
+        final net.sf.saxon.Configuration config = ((TransformerImpl) transformer).getUnderlyingController().getConfiguration();
+        return new CachingURIResolver(config, baseDir.getAbsoluteFile(), resolver);
+    }
+
+    /**
+     * Remove cached tree of a file.
+     *
+     * @param file source file
+     */
+    public void invalidate(final File file) {
+        cache.invalidate(file.getAbsoluteFile());
+    }
+
+    /**
+     * Remove cached trees of all files under a directory, e.g. when a build that used the directory finishes.
+     *
+     * @param dir base directory
+     */
+    public void invalidateAll(final File dir) {
+        final Path base = dir.getAbsoluteFile().toPath();
+        cache.asMap().keySet().removeIf(file -> file.toPath().startsWith(base));
+    }
+
+    /**
+     * Remove all cached trees.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Number of requests served with a cached tree.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of requests that required parsing the source file.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return "Source tree cache: " + h + " hits, " + (total - h) + " misses"
+                + (total > 0 ? " (" + (h * 100 / total) + "% hit rate)" : "");
+    }
+
+    /**
+     * Get cached tree or parse the source.
+     *
+     * @param file source file
+     * @param source source from the delegate resolver, may be {@code null}
+     * @param config Saxon configuration of the requesting transformer
+     * @return document node
+     */
+    private Source get(final File file, final Source source, final net.sf.saxon.Configuration config)
+            throws TransformerException {
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final Entry cached = cache.getIfPresent(file);
+        if (cached != null && cached.config == config
+                && cached.lastModified == lastModified && cached.length == length) {
+            hits.incrementAndGet();
+            close(source);
+            return cached.tree.getRootNode();
+        }
+        misses.incrementAndGet();
+        final TreeInfo tree = config.buildDocumentTree(source != null ? source : new StreamSource(file.toURI().toString()));
+        cache.put(file, new Entry(config, tree, lastModified, length));
+        return tree.getRootNode();
+    }
+
+    private static void close(final Source source) {
+        try {
+            if (source instanceof SAXSource) {
+                XMLUtils.close(((SAXSource) source).getInputSource());
+            } else {
+                XMLUtils.close(source);
+            }
+        } catch (final IOException e) {
+            // NOOP
+        }
+    }
+
+    private static final class Entry {
+        private final net.sf.saxon.Configuration config;
+        private final TreeInfo tree;
+        private final long lastModified;
+        private final long length;
+
+        private Entry(final net.sf.saxon.Configuration config, final TreeInfo tree, final long lastModified,
+                      final long length) {
+            this.config = config;
+            this.tree = tree;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * URI resolver that returns cached trees for local files under a base directory.
+     */
+    private final class CachingURIResolver implements URIResolver {
+        private final net.sf.saxon.Configuration config;
+        private final File baseDir;
+        private final URIResolver resolver;
+
+        private CachingURIResolver(final net.sf.saxon.Configuration config, final File baseDir,
+                                   final URIResolver resolver) {
+            this.config = config;
+            this.baseDir = baseDir;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public Source resolve(final String href, final String base) throws TransformerException {
+            final Source source = resolver != null ? resolver.resolve(href, base) : null;
+            final File file;
+            try {
+                final URI uri = source != null && source.getSystemId() != null
+                        ? new URI(source.getSystemId())
+                        : base != null ? new URI(base).resolve(href) : new URI(href);
+                if (!"file".equals(uri.getScheme())) {
+                    return source;
+                }
+                file = new File(URLUtils.stripFragment(uri)).getAbsoluteFile();
+            } catch (final URISyntaxException | IllegalArgumentException e) {
+                return source;
+            }
+            if (!file.toPath().startsWith(baseDir.toPath()) || !file.isFile()) {
+                return source;
+            }
+            return get(file, source, config);
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import javax.xml.transform.*;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Process-wide cache of compiled stylesheets.
+ *
+ * <p>Compiled stylesheets are keyed by stylesheet URI and catalog identifier. For every entry the cache records the
+ * last-modified time of the stylesheet and of all modules it includes or imports; if any of those files
+ * has changed, the stylesheet is recompiled on next request. The cache holds at most
+ * {@link #CONF_TEMPLATES_CACHE_SIZE} entries and evicts the least recently used stylesheet when full.</p>
+ *
+ * <p>{@link Templates} are thread-safe. They are compiled with the URI resolver of the requester that caused the
+ * compilation and the resolver is released once compilation is done, so cached templates do not retain e.g. the Ant
+ * project of a previous build. Callers must set their own URI resolver and error listener to transformers created
+ * from cached templates.</p>
+ *
+ * @since 3.0
+ */
+public final class TemplatesCache {
+
+    /** Configuration property for maximum number of cached stylesheets. */
+    public static final String CONF_TEMPLATES_CACHE_SIZE = "xslt.templates-cache.size";
+    private static final int DEFAULT_SIZE = 32;
+
+    private static final TemplatesCache instance = new TemplatesCache(Configuration.getInt(CONF_TEMPLATES_CACHE_SIZE, DEFAULT_SIZE));
+
+    private final Map<Key, Entry> cache;
+
+    TemplatesCache(final int size) {
+        cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * Get process-wide cache.
+     *
+     * @return shared cache instance
+     */
+    public static TemplatesCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get compiled stylesheet, compiling it if it is not cached or it has been modified.
+     *
+     * @param style stylesheet file
+     * @param resolver URI resolver to use for compilation, may be {@code null}
+     * @param catalog identifier of the catalog configuration the resolver uses, compared with
+     *                {@link Object#equals(Object)}, may be {@code null}
+     * @return compiled stylesheet
+     * @throws TransformerConfigurationException if compilation fails
+     */
+    public Templates getTemplates(final File style, final URIResolver resolver, final Object catalog)
+            throws TransformerConfigurationException {
+        final Key key = new Key(style.getAbsoluteFile().toURI(), catalog);
+        final Entry cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && !cached.isModified()) {
+            return cached.templates;
+        }
+        final Entry entry = compile(style, resolver);
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+        return entry.templates;
+    }
+
+    /**
+     * Get last-modified time of a cached stylesheet and all modules it includes or imports.
+     *
+     * @param style stylesheet file
+     * @param catalog identifier of the catalog configuration the resolver uses, may be {@code null}
+     * @return latest last-modified time of stylesheet modules, or {@code -1} if stylesheet is not cached
+     */
+    public long getLastModified(final File style, final Object catalog) {
+        final Key key = new Key(style.getAbsoluteFile().toURI(), catalog);
+        final Entry cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached == null) {
+            return -1L;
+        }
+        long lastModified = 0L;
+        for (final File module : cached.modules.keySet()) {
+            lastModified = Math.max(lastModified, module.lastModified());
+        }
+        return lastModified;
+    }
+
+    /**
+     * Remove all cached stylesheets.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Number of cached stylesheets.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private Entry compile(final File style, final URIResolver resolver) throws TransformerConfigurationException {
+        final RecordingURIResolver recorder = new RecordingURIResolver(resolver);
+        recorder.add(style.getAbsoluteFile());
+        final TransformerFactory tf = TransformerFactory.newInstance();
+        tf.setURIResolver(recorder);
+        try {
+            final Templates templates = tf.newTemplates(new StreamSource(style));
+            return new Entry(templates, recorder.modules);
+        } finally {
+            recorder.release();
+        }
+    }
+
+    private static final class Key {
+        private final URI style;
+        private final Object catalog;
+
+        private Key(final URI style, final Object catalog) {
+            this.style = style;
+            this.catalog = catalog;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return style.equals(key.style) && Objects.equals(catalog, key.catalog);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * style.hashCode() + Objects.hashCode(catalog);
+        }
+    }
+
+    private static final class Entry {
+        private final Templates templates;
+        /** Stylesheet modules and their last-modified times at compilation. */
+        private final Map<File, Long> modules;
+
+        private Entry(final Templates templates, final Map<File, Long> modules) {
+            this.templates = templates;
+            this.modules = modules;
+        }
+
+        private boolean isModified() {
+            for (final Map.Entry<File, Long> module : modules.entrySet()) {
+                if (module.getKey().lastModified() != module.getValue()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * URI resolver that records local files resolved during stylesheet compilation.
+     *
+     * <p>The transformer factory keeps a reference to this resolver, so the delegate is released after compilation.</p>
+     */
+    private static final class RecordingURIResolver implements URIResolver {
+        private volatile URIResolver resolver;
+        private final Map<File, Long> modules = new HashMap<>();
+        private volatile boolean recording = true;
+
+        private RecordingURIResolver(final URIResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        /**
+         * Stop recording and release the delegate resolver.
+         */
+        private void release() {
+            recording = false;
+            resolver = null;
+        }
+
+        @Override
+        public Source resolve(final String href, final String base) throws TransformerException {
+            final URIResolver resolver = this.resolver;
+            final Source source = resolver != null ? resolver.resolve(href, base) : null;
+            if (!recording) {
+                return source;
+            }
+            try {
+                final URI uri = source != null && source.getSystemId() != null
+                        ? new URI(source.getSystemId())
+                        : new URI(base).resolve(href);
+                if ("file".equals(uri.getScheme())) {
+                    add(new File(URLUtils.stripFragment(uri)));
+                }
+            } catch (final Exception e) {
+                // not a local module, ignore
+            }
+            return source;
+        }
+
+        private void add(final File file) {
+            modules.put(file, file.lastModified());
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import net.sf.saxon.serialize.MessageWarner;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.log.LoggingErrorListener;
+import org.dita.dost.reader.GrammarPoolManager;
 import org.w3c.dom.*;
 
 import org.xml.sax.*;
@@ -50,13 +51,24 @@ public final class XMLUtils {
         factory = DocumentBuilderFactory.newInstance();
         factory.setNamespaceAware(true);
     }
+    /** Configuration property for maximum number of idle pooled parsers and transformers. */
+    public static final String CONF_XML_POOL_SIZE = "xml.pool.size";
+    private static final String FEATURE_GRAMMAR_POOL = "http://apache.org/xml/properties/internal/grammar-pool";
+    /** Preferred SAX driver class, {@code null} if platform default should be used. */
+    private static final String saxDriver = findSaxDriver();
+    private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+    private static final int poolSize = Configuration.getInt(CONF_XML_POOL_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+    private static final ResourcePool<XMLReader> xmlReaderPool = new ResourcePool<>("XMLReader", poolSize,
+            XMLUtils::createPooledXMLReader, XMLUtils::resetXMLReader);
+    private static final ResourcePool<Transformer> transformerPool = new ResourcePool<>("Transformer", poolSize,
+            XMLUtils::createIdentityTransformer, Transformer::reset);
+    private static final ResourcePool<DocumentBuilder> documentBuilderPool = new ResourcePool<>("DocumentBuilder",
+            poolSize, XMLUtils::getDocumentBuilder, DocumentBuilder::reset);
     private DITAOTLogger logger;
-    private final TransformerFactory transformerFactory;
 
     public static final Attributes EMPTY_ATTRIBUTES = new AttributesImpl();
 
     public XMLUtils() {
-        transformerFactory = TransformerFactory.newInstance();
     }
 
     public void setLogger(final DITAOTLogger logger) {
@@ -421,6 +433,7 @@ public final class XMLUtils {
         try {
             deleteQuietly(inputFile);
             moveFile(outputFile, inputFile);
+            SourceTreeCache.getInstance().invalidate(inputFile);
         } catch (final RuntimeException e) {
             throw e;
         } catch (final Exception e) {
@@ -448,13 +461,15 @@ public final class XMLUtils {
             throw new DITAOTException("Failed to create output directory " + outputFile.getParentFile().getAbsolutePath());
         }
 
+        final Transformer transformer = transformerPool.borrow();
+        final XMLReader parser = xmlReaderPool.borrow();
         try (final InputStream in = new BufferedInputStream(new FileInputStream(inputFile));
              final OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
-            Transformer transformer = transformerFactory.newTransformer();
             if (logger != null) {
-                transformer = withLogger(transformer, logger);
+                withLogger(transformer, logger);
             }
-            XMLReader reader = getXMLReader();
+            parser.setEntityResolver(CatalogUtils.getCatalogResolver());
+            XMLReader reader = parser;
             for (final XMLFilter filter : filters) {
                 // ContentHandler must be reset so e.g. Saxon 9.1 will reassign ContentHandler
                 // when reusing filter with multiple Transformers.
@@ -466,10 +481,14 @@ public final class XMLUtils {
             source.setSystemId(inputFile.toURI().toString());
             final Result result = new StreamResult(out);
             transformer.transform(source, result);
+            SourceTreeCache.getInstance().invalidate(outputFile);
         } catch (final RuntimeException e) {
             throw e;
         } catch (final Exception e) {
             throw new DITAOTException("Failed to transform " + inputFile + ": " + e.getMessage(), e);
+        } finally {
+            xmlReaderPool.release(parser);
+            transformerPool.release(transformer);
         }
     }
 
@@ -496,12 +515,14 @@ public final class XMLUtils {
 
         InputSource src = null;
         StreamResult result = null;
+        final Transformer transformer = transformerPool.borrow();
+        final XMLReader parser = xmlReaderPool.borrow();
         try {
-            Transformer transformer = transformerFactory.newTransformer();
             if (logger != null) {
-                transformer = withLogger(transformer, logger);
+                withLogger(transformer, logger);
             }
-            XMLReader reader = getXMLReader();
+            parser.setEntityResolver(CatalogUtils.getCatalogResolver());
+            XMLReader reader = parser;
             for (final XMLFilter filter : filters) {
                 // ContentHandler must be reset so e.g. Saxon 9.1 will reassign ContentHandler
                 // when reusing filter with multiple Transformers.
@@ -513,11 +534,14 @@ public final class XMLUtils {
             final Source source = new SAXSource(reader, src);
             result = new StreamResult(output.toString());
             transformer.transform(source, result);
+            SourceTreeCache.getInstance().invalidate(outputFile);
         } catch (final RuntimeException e) {
             throw e;
         } catch (final Exception e) {
             throw new DITAOTException("Failed to transform " + input + ": " + e.getMessage(), e);
         } finally {
+            xmlReaderPool.release(parser);
+            transformerPool.release(transformer);
             try {
                 close(src);
             } catch (final IOException e) {
@@ -647,21 +671,10 @@ public final class XMLUtils {
         if (System.getProperty(SAX_DRIVER_PROPERTY) != null) {
             return XMLReaderFactory.createXMLReader();
         }
-        try {
-            Class.forName(SAX_DRIVER_DEFAULT_CLASS);
-            reader = XMLReaderFactory.createXMLReader(SAX_DRIVER_DEFAULT_CLASS);
-        } catch (final ClassNotFoundException e) {
-            try {
-                Class.forName(SAX_DRIVER_SUN_HACK_CLASS);
-                reader = XMLReaderFactory.createXMLReader(SAX_DRIVER_SUN_HACK_CLASS);
-            } catch (final ClassNotFoundException ex) {
-                try {
-                    Class.forName(SAX_DRIVER_CRIMSON_CLASS);
-                    reader = XMLReaderFactory.createXMLReader(SAX_DRIVER_CRIMSON_CLASS);
-                } catch (final ClassNotFoundException exc){
-                    reader = XMLReaderFactory.createXMLReader();
-                }
-            }
+        if (saxDriver != null) {
+            reader = XMLReaderFactory.createXMLReader(saxDriver);
+        } else {
+            reader = XMLReaderFactory.createXMLReader();
         }
         if (Configuration.DEBUG) {
             reader = new DebugXMLReader(reader);
@@ -669,6 +682,83 @@ public final class XMLUtils {
         return reader;
     }
 
+    /**
+     * Find first available preferred SAX driver.
+     *
+     * @return SAX driver class name, {@code null} if none available
+     */
+    private static String findSaxDriver() {
+        for (final String driver : new String[] {SAX_DRIVER_DEFAULT_CLASS, SAX_DRIVER_SUN_HACK_CLASS, SAX_DRIVER_CRIMSON_CLASS}) {
+            try {
+                Class.forName(driver);
+                return driver;
+            } catch (final ClassNotFoundException e) {
+                // try next
+            }
+        }
+        return null;
+    }
+
+    private static XMLReader createPooledXMLReader() {
+        final XMLReader reader;
+        try {
+            reader = getXMLReader();
+        } catch (final SAXException e) {
+            throw new RuntimeException("Failed to create XML reader: " + e.getMessage(), e);
+        }
+        try {
+            reader.setProperty(FEATURE_GRAMMAR_POOL, GrammarPoolManager.getGrammarPool());
+        } catch (final NoClassDefFoundError | SAXNotRecognizedException | SAXNotSupportedException e) {
+            // Not Xerces, no grammar caching
+        }
+        return reader;
+    }
+
+    private static void resetXMLReader(final XMLReader reader) {
+        reader.setContentHandler(null);
+        reader.setDTDHandler(null);
+        reader.setEntityResolver(null);
+        reader.setErrorHandler(null);
+    }
+
+    private static Transformer createIdentityTransformer() {
+        try {
+            synchronized (transformerFactory) {
+                return transformerFactory.newTransformer();
+            }
+        } catch (final TransformerConfigurationException e) {
+            throw new RuntimeException("Failed to create identity transformer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get pool of namespace aware SAX parsers. Pooled parsers use the shared grammar pool when supported. Borrowers
+     * must not change parser features or properties, handlers are reset when the parser is released.
+     *
+     * @return XML reader pool
+     */
+    public static ResourcePool<XMLReader> getXMLReaderPool() {
+        return xmlReaderPool;
+    }
+
+    /**
+     * Get pool of identity transformers.
+     *
+     * @return transformer pool
+     */
+    public static ResourcePool<Transformer> getTransformerPool() {
+        return transformerPool;
+    }
+
+    /**
+     * Get pool of DOM parsers. Document builders are reset when released.
+     *
+     * @return document builder pool
+     */
+    public static ResourcePool<DocumentBuilder> getDocumentBuilderPool() {
+        return documentBuilderPool;
+    }
+
     /**
      * Get DOM parser.
      *
@@ -0,0 +1,372 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import static org.dita.dost.util.URLUtils.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.dita.dost.util.Job.FileInfo;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * XML job store. Job is stored into {@code .job.xml} in the temporary directory.
+ *
+ * <p>The job generation is stored in the {@code generation} attribute of the root element. A job file without
+ * the attribute has been written by other tools, e.g. Ant {@code echoxml}, and its generation is
+ * {@link #GENERATION_UNKNOWN}. Such a file is considered newer than any other stored or in-memory job.</p>
+ *
+ * @since 3.0
+ */
+public final class XmlJobStore implements JobStore {
+
+    /** Job file name. */
+    static final String JOB_FILE = ".job.xml";
+    /** Generation of a job file written by other tools. */
+    static final long GENERATION_UNKNOWN = -1L;
+    
+    private static final String ELEMENT_JOB = "job";
+    private static final String ATTRIBUTE_GENERATION = "generation";
+    private static final String ATTRIBUTE_KEY = "key";
+    private static final String ELEMENT_ENTRY = "entry";
+    private static final String ELEMENT_MAP = "map";
+    private static final String ELEMENT_SET = "set";
+    private static final String ELEMENT_STRING = "string";
+    private static final String ATTRIBUTE_NAME = "name";
+    private static final String ELEMENT_PROPERTY = "property";
+
+    private static final String ELEMENT_FILES = "files";
+    private static final String ELEMENT_FILE = "file";
+    private static final String ATTRIBUTE_SRC = "src";
+    private static final String ATTRIBUTE_URI = "uri";
+    private static final String ATTRIBUTE_PATH = "path";
+    private static final String ATTRIBUTE_RESULT = "result";
+    private static final String ATTRIBUTE_FORMAT = "format";
+    private static final String ATTRIBUTE_CHUNKED = "chunked";
+    private static final String ATTRIBUTE_HAS_CONREF = "has-conref";
+    private static final String ATTRIBUTE_HAS_KEYREF = "has-keyref";
+    private static final String ATTRIBUTE_HAS_CODEREF = "has-coderef";
+    private static final String ATTRIBUTE_RESOURCE_ONLY = "resource-only";
+    private static final String ATTRIBUTE_TARGET = "target";
+    private static final String ATTRIBUTE_CONREF_TARGET = "conref-target";
+    private static final String ATTRIBUTE_CONREF_PUSH = "conrefpush";
+    private static final String ATTRIBUTE_SUBJECT_SCHEME = "subjectscheme";
+    private static final String ATTRIBUTE_HAS_LINK = "has-link";
+    private static final String ATTRIBUTE_COPYTO_SOURCE_LIST = "copy-to-source";
+    private static final String ATTRIBUTE_OUT_DITA_FILES_LIST = "out-dita";
+    private static final String ATTRIBUTE_CHUNKED_DITAMAP_LIST = "chunked-ditamap";
+    private static final String ATTRIBUTE_FLAG_IMAGE_LIST = "flag-image";
+    private static final String ATTRIBUTE_SUBSIDIARY_TARGET_LIST = "subtarget";
+    private static final String ATTRIBUTE_HASH = "hash";
+    private static final String ATTRIBUTE_UNCHANGED = "unchanged";
+    private static final String ELEMENT_DEPENDENCY = "dependency";
+
+    /** Map of serialization attributes to file info boolean fields. */
+    private static final Map<String, Field> attrToFieldMap= new HashMap<>();
+    static {
+        try {
+            attrToFieldMap.put(ATTRIBUTE_CHUNKED, FileInfo.class.getField("isChunked"));
+            attrToFieldMap.put(ATTRIBUTE_HAS_LINK, FileInfo.class.getField("hasLink"));    
+            attrToFieldMap.put(ATTRIBUTE_HAS_CONREF, FileInfo.class.getField("hasConref"));    
+            attrToFieldMap.put(ATTRIBUTE_HAS_KEYREF, FileInfo.class.getField("hasKeyref"));    
+            attrToFieldMap.put(ATTRIBUTE_HAS_CODEREF, FileInfo.class.getField("hasCoderef"));    
+            attrToFieldMap.put(ATTRIBUTE_RESOURCE_ONLY, FileInfo.class.getField("isResourceOnly"));    
+            attrToFieldMap.put(ATTRIBUTE_TARGET, FileInfo.class.getField("isTarget"));
+            attrToFieldMap.put(ATTRIBUTE_CONREF_PUSH, FileInfo.class.getField("isConrefPush"));    
+            attrToFieldMap.put(ATTRIBUTE_SUBJECT_SCHEME, FileInfo.class.getField("isSubjectScheme"));
+            attrToFieldMap.put(ATTRIBUTE_OUT_DITA_FILES_LIST, FileInfo.class.getField("isOutDita"));
+            attrToFieldMap.put(ATTRIBUTE_FLAG_IMAGE_LIST, FileInfo.class.getField("isFlagImage"));
+            attrToFieldMap.put(ATTRIBUTE_SUBSIDIARY_TARGET_LIST, FileInfo.class.getField("isSubtarget"));
+            attrToFieldMap.put(ATTRIBUTE_UNCHANGED, FileInfo.class.getField("isUnchanged"));
+        } catch (final NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final File jobFile;
+
+    public XmlJobStore(final File tempDir) {
+        jobFile = new File(tempDir, JOB_FILE);
+    }
+
+    @Override
+    public long getGeneration() throws IOException {
+        if (!jobFile.exists()) {
+            return 0L;
+        }
+        try (final InputStream in = new FileInputStream(jobFile)) {
+            final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        final String generation = reader.getAttributeValue(null, ATTRIBUTE_GENERATION);
+                        return generation != null ? Long.parseLong(generation) : GENERATION_UNKNOWN;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException | NumberFormatException e) {
+            throw new IOException("Failed to read job file generation: " + e.getMessage(), e);
+        }
+        return 0L;
+    }
+
+    @Override
+    public void read(final Map<String, Object> prop, final Map<URI, FileInfo> files) throws IOException {
+        try (final InputStream in = new FileInputStream(jobFile)) {
+            final XMLReader parser = XMLUtils.getXMLReader();
+            parser.setContentHandler(new JobHandler(prop, files));
+
+            parser.parse(new InputSource(in));
+        } catch (final SAXException e) {
+            throw new IOException("Failed to read job file: " + e.getMessage());
+        }
+    }
+
+    private final static class JobHandler extends DefaultHandler {
+
+        private final Map<String, Object> prop;
+        private final Map<URI, FileInfo> files;
+        private StringBuilder buf;
+        private String name;
+        private String key;
+        private Set<String> set;
+        private Map<String, String> map;
+        private FileInfo fileInfo;
+        
+        JobHandler(final Map<String, Object> prop, final Map<URI, FileInfo> files) {
+            this.prop = prop;
+            this.files = files;
+        }
+        
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            if (buf != null) {
+                buf.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+            if (buf != null) {
+                buf.append(ch, start, length);
+            }
+        }
+        
+        @Override
+        public void startElement(final String ns, final String localName, final String qName, final Attributes atts) throws SAXException {
+            final String n = localName != null ? localName : qName;
+            switch (n) {
+                case ELEMENT_PROPERTY:
+                    name = atts.getValue(ATTRIBUTE_NAME);
+                    break;
+                case ELEMENT_STRING:
+                    buf = new StringBuilder();
+                    break;
+                case ELEMENT_SET:
+                    set = new HashSet<>();
+                    break;
+                case ELEMENT_MAP:
+                    map = new HashMap<>();
+                    break;
+                case ELEMENT_ENTRY:
+                    key = atts.getValue(ATTRIBUTE_KEY);
+                    break;
+                case ELEMENT_FILE:
+                    final URI src = toURI(atts.getValue(ATTRIBUTE_SRC));
+                    final URI uri = toURI(atts.getValue(ATTRIBUTE_URI));
+                    final File path = toFile(atts.getValue(ATTRIBUTE_PATH));
+                    FileInfo i;
+                    if (uri != null) {
+                        i = new FileInfo(src, uri, toFile(uri));
+                    } else {
+                        i = new FileInfo(src, toURI(path), path);
+                    }
+                    i.result = toURI(atts.getValue(ATTRIBUTE_RESULT));
+                    if (i.result == null) {
+                        i.result = src;
+                    }
+                    i.format = atts.getValue(ATTRIBUTE_FORMAT);
+                    i.hash = atts.getValue(ATTRIBUTE_HASH);
+                    try {
+                        for (Map.Entry<String, Field> e : attrToFieldMap.entrySet()) {
+                            e.getValue().setBoolean(i, Boolean.parseBoolean(atts.getValue(e.getKey())));
+                        }
+                    } catch (final IllegalAccessException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    files.put(i.uri, i);
+                    fileInfo = i;
+                    break;
+                case ELEMENT_DEPENDENCY:
+                    if (fileInfo != null) {
+                        fileInfo.dependencies.add(toURI(atts.getValue(ATTRIBUTE_SRC)));
+                    }
+                    break;
+            }
+        }
+        
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            final String n = localName != null ? localName : qName;
+            switch (n) {
+                case ELEMENT_PROPERTY:
+                    name = null;
+                    break;
+                case ELEMENT_STRING:
+                    if (set != null) {
+                        set.add(buf.toString());
+                    } else if (map != null) {
+                        map.put(key, buf.toString());
+                    } else {
+                        prop.put(name, buf.toString());
+                    }
+                    buf = null;
+                    break;
+                case ELEMENT_SET:
+                    prop.put(name, set);
+                    set = null;
+                    break;
+                case ELEMENT_MAP:
+                    prop.put(name, map);
+                    map = null;
+                    break;
+                case ELEMENT_ENTRY:
+                    key = null;
+                    break;
+            }
+        }
+        
+    }
+
+    @Override
+    public void write(final Map<String, Object> prop, final Map<URI, FileInfo> files, final long generation)
+            throws IOException {
+        OutputStream outStream = null;
+        XMLStreamWriter out = null;
+        try {
+            outStream = new FileOutputStream(jobFile);
+            out = XMLOutputFactory.newInstance().createXMLStreamWriter(outStream, "UTF-8");
+            out.writeStartDocument();
+            out.writeStartElement(ELEMENT_JOB);
+            out.writeAttribute(ATTRIBUTE_GENERATION, Long.toString(generation));
+            for (final Map.Entry<String, Object> e: prop.entrySet()) {
+                out.writeStartElement(ELEMENT_PROPERTY);
+                out.writeAttribute(ATTRIBUTE_NAME, e.getKey());
+                if (e.getValue() instanceof String) {
+                    out.writeStartElement(ELEMENT_STRING);
+                    out.writeCharacters(e.getValue().toString());
+                    out.writeEndElement(); //string
+                } else if (e.getValue() instanceof Set) {
+                    out.writeStartElement(ELEMENT_SET);
+                    final Set<?> s = (Set<?>) e.getValue();
+                    for (final Object o: s) {
+                        out.writeStartElement(ELEMENT_STRING);
+                        out.writeCharacters(o.toString());
+                        out.writeEndElement(); //string
+                    }
+                    out.writeEndElement(); //set
+                } else if (e.getValue() instanceof Map) {
+                    out.writeStartElement(ELEMENT_MAP);
+                    final Map<?, ?> s = (Map<?, ?>) e.getValue();
+                    for (final Map.Entry<?, ?> o: s.entrySet()) {
+                        out.writeStartElement(ELEMENT_ENTRY);
+                        out.writeAttribute(ATTRIBUTE_KEY, o.getKey().toString());
+                        out.writeStartElement(ELEMENT_STRING);
+                        out.writeCharacters(o.getValue().toString());
+                        out.writeEndElement(); //string
+                        out.writeEndElement(); //entry
+                    }
+                    out.writeEndElement(); //string
+                } else {
+                    out.writeStartElement(e.getValue().getClass().getName());
+                    out.writeCharacters(e.getValue().toString());
+                    out.writeEndElement(); //string
+                }
+                out.writeEndElement(); //property
+            }
+            out.writeStartElement(ELEMENT_FILES);
+            for (final FileInfo i: files.values()) {
+                out.writeStartElement(ELEMENT_FILE);
+                if (i.src != null) {
+                    out.writeAttribute(ATTRIBUTE_SRC, i.src.toString());
+                }
+                out.writeAttribute(ATTRIBUTE_URI, i.uri.toString());
+                out.writeAttribute(ATTRIBUTE_PATH, i.file.getPath());
+                if (i.result != null) {
+                    out.writeAttribute(ATTRIBUTE_RESULT, i.result.toString());
+                }
+                if (i.format != null) {
+                    out.writeAttribute(ATTRIBUTE_FORMAT, i.format);
+                }
+                if (i.hash != null) {
+                    out.writeAttribute(ATTRIBUTE_HASH, i.hash);
+                }
+                try {
+                    for (Map.Entry<String, Field> e: attrToFieldMap.entrySet()) {
+                        final boolean v = e.getValue().getBoolean(i);
+                        if (v) {
+                            out.writeAttribute(e.getKey(), Boolean.TRUE.toString());
+                        }
+                    }
+                } catch (final IllegalAccessException ex) {
+                    throw new RuntimeException(ex);
+                }
+                for (final URI dependency : i.dependencies) {
+                    out.writeStartElement(ELEMENT_DEPENDENCY);
+                    out.writeAttribute(ATTRIBUTE_SRC, dependency.toString());
+                    out.writeEndElement(); //dependency
+                }
+                out.writeEndElement(); //file
+            }
+            out.writeEndElement(); //files
+            out.writeEndElement(); //job
+            out.writeEndDocument();
+        } catch (final IOException e) {
+            throw new IOException("Failed to write file: " + e.getMessage());
+        } catch (final XMLStreamException e) {
+            throw new IOException("Failed to serialize job file: " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (final XMLStreamException e) {
+                    throw new IOException("Failed to close file: " + e.getMessage());
+                }
+            }
+            if (outStream != null) {
+                try {
+                    outStream.close();
+                } catch (final IOException e) {
+                    throw new IOException("Failed to close file: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+}
@@ -79,11 +79,10 @@ public abstract class AbstractDitaMetaWriter extends AbstractDomFilter {
      */
     private List<Element> getNewChildren(final DitaClass cls, final Document doc) {
         final List<Element> res = new ArrayList<>();
-        if (metaTable.containsKey(cls.matcher)) {
-            metaTable.get(cls.matcher);
-            final NodeList list = metaTable.get(cls.matcher).getChildNodes();
-            for (int i = 0; i < list.getLength(); i++) {
-                Node item = list.item(i);
+        final Element meta = metaTable.get(cls.matcher);
+        if (meta != null) {
+            // sibling traversal doesn't use the node list cache of the metadata document and is safe for concurrent readers
+            for (Node item = meta.getFirstChild(); item != null; item = item.getNextSibling()) {
                 res.add((Element) doc.importNode(item, true));
             }
         }
@@ -40,8 +40,8 @@ public abstract class AbstractDomFilter implements AbstractReader {
         assert filename.isAbsolute();
         logger.info("Processing " + filename.toURI());
         Document doc;
+        final DocumentBuilder builder = XMLUtils.getDocumentBuilderPool().borrow();
         try {
-            final DocumentBuilder builder = XMLUtils.getDocumentBuilder();
             builder.setErrorHandler(new DITAOTXMLErrorHandler(filename.getPath(), logger));
             logger.debug("Reading " + filename.toURI());
             doc = builder.parse(filename);
@@ -50,6 +50,8 @@ public abstract class AbstractDomFilter implements AbstractReader {
         } catch (final Exception e) {
             logger.error("Failed to parse " + filename.getAbsolutePath() + ":" + e.getMessage(), e);
             return;
+        } finally {
+            XMLUtils.getDocumentBuilderPool().release(builder);
         }
 
         final Document resDoc = process(doc);
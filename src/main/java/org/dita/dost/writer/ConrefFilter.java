@@ -0,0 +1,1146 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.writer;
+
+import static javax.xml.XMLConstants.*;
+import static org.dita.dost.util.Constants.*;
+
+import java.net.URI;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import org.dita.dost.log.MessageBean;
+import org.dita.dost.log.MessageUtils;
+import org.dita.dost.util.DocumentCache;
+import org.dita.dost.util.DocumentCache.IndexedDocument;
+import org.dita.dost.util.URLUtils;
+import org.dita.dost.util.XMLUtils;
+import org.w3c.dom.*;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * Resolves content references in DITA topics and maps.
+ *
+ * <p>The source document is processed as a stream and every element with a conref is replaced with a copy
+ * of its target. Conref targets are read from a shared {@link DocumentCache}. Conref ranges and {@code conaction}
+ * are supported; conkeyref has already been rewritten into conref by the keyref step. The filter is a port of
+ * {@code preprocess/conrefImpl.xsl} and generates the same result, except that IDs generated for elements
+ * pulled from conref targets have a different form.</p>
+ *
+ * <p>Instances are reusable but not thread-safe.</p>
+ *
+ * @since 3.0
+ */
+public final class ConrefFilter extends AbstractXMLFilter implements LexicalHandler {
+
+    private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+    private static final String ATTRIBUTE_NAME_STATE = "state";
+    private static final String ATTR_VALUE_DITA_USE_CONREF_TARGET = "-dita-use-conref-target";
+    private static final String ELEMENT_NAME_EXPORT_FILE = "file";
+    private static final String ELEMENT_NAME_EXPORT_TOPICID = "topicid";
+    private static final String ELEMENT_NAME_EXPORT_ID = "id";
+    private static final Pattern DOMAINS_SEPARATOR = Pattern.compile("\\)\\s*?");
+    private static final Pattern DOMAINS_TOKEN_SEPARATOR = Pattern.compile("\\(|\\)\\s*?\\(|\\)");
+
+    private DocumentCache cache;
+    private String transtype;
+    /** Exported anchors, {@code null} if not available */
+    private ExportAnchors exportAnchors;
+
+    private LexicalHandler lexicalHandler;
+    private final NamespaceSupport namespaces = new NamespaceSupport();
+    private final List<String[]> pendingPrefixes = new ArrayList<>();
+    private final Deque<List<String>> declaredPrefixes = new ArrayDeque<>();
+    private final Deque<String> topicIds = new ArrayDeque<>();
+    /** Followed conref elements for loop detection. */
+    private final Set<Element> conrefIds = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int skipDepth;
+    private String rootClass;
+    private IndexedDocument currentDocument;
+    private String originalDomains;
+
+    /**
+     * Set shared document cache used to read conref targets.
+     *
+     * @param cache document cache
+     */
+    public void setDocumentCache(final DocumentCache cache) {
+        this.cache = cache;
+    }
+
+    public void setTranstype(final String transtype) {
+        this.transtype = transtype;
+    }
+
+    /**
+     * Set exported anchors for delayed conref resolution.
+     *
+     * @param exportAnchors exported anchors, may be {@code null}
+     */
+    public void setExportAnchors(final ExportAnchors exportAnchors) {
+        this.exportAnchors = exportAnchors;
+    }
+
+    // XMLReader methods -------------------------------------------------------
+
+    @Override
+    public void setProperty(final String name, final Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER_PROPERTY.equals(name)) {
+            lexicalHandler = (LexicalHandler) value;
+            super.setProperty(name, this);
+        } else {
+            super.setProperty(name, value);
+        }
+    }
+
+    @Override
+    public Object getProperty(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER_PROPERTY.equals(name)) {
+            return lexicalHandler;
+        }
+        return super.getProperty(name);
+    }
+
+    // ContentHandler methods --------------------------------------------------
+
+    @Override
+    public void startDocument() throws SAXException {
+        namespaces.reset();
+        pendingPrefixes.clear();
+        declaredPrefixes.clear();
+        topicIds.clear();
+        conrefIds.clear();
+        skipDepth = 0;
+        rootClass = null;
+        currentDocument = null;
+        originalDomains = null;
+        super.startDocument();
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        if (skipDepth == 0) {
+            pendingPrefixes.add(new String[] {prefix, uri});
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        // prefix mappings are ended on endElement
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        if (skipDepth > 0) {
+            skipDepth++;
+            return;
+        }
+        final String cls = atts.getValue(ATTRIBUTE_NAME_CLASS);
+        if (rootClass == null) {
+            rootClass = cls != null ? cls : "";
+        }
+        final String id = atts.getValue(ATTRIBUTE_NAME_ID);
+        final String topicId = TOPIC_TOPIC.matches(cls) ? (id != null ? id : "") : (topicIds.isEmpty() ? "" : topicIds.peek());
+        topicIds.push(topicId);
+
+        Attributes res = atts;
+        final String conaction = atts.getValue(ATTRIBUTE_NAME_CONACTION);
+        final String conref = atts.getValue(ATTRIBUTE_NAME_CONREF);
+        if (conaction != null) {
+            if (conaction.equals(ATTR_CONACTION_VALUE_MARK)) {
+                pendingPrefixes.clear();
+                skipDepth = 1;
+                return;
+            }
+            final AttributesImpl conactionAtts = new AttributesImpl(atts);
+            XMLUtils.removeAttribute(conactionAtts, ATTRIBUTE_NAME_CONACTION);
+            XMLUtils.removeAttribute(conactionAtts, ATTRIBUTE_NAME_CONREF);
+            res = conactionAtts;
+        } else if (conref != null && !conref.isEmpty()) {
+            final Src src = new Src(localName, atts, null, getCurrentDocument(), currentFile, topicId, rootClass);
+            final Result result = resolveConref(src, new Context("", null, null, src.doc), null, localName);
+            if (result == Result.RESOLVED) {
+                pendingPrefixes.clear();
+                skipDepth = 1;
+                return;
+            } else if (result == Result.COPY_WITHOUT_ATTRIBUTES) {
+                res = XMLUtils.EMPTY_ATTRIBUTES;
+            }
+        }
+
+        namespaces.pushContext();
+        final List<String> prefixes = pendingPrefixes.isEmpty() ? Collections.emptyList() : new ArrayList<>();
+        for (final String[] mapping : pendingPrefixes) {
+            namespaces.declarePrefix(mapping[0], mapping[1]);
+            prefixes.add(mapping[0]);
+            getContentHandler().startPrefixMapping(mapping[0], mapping[1]);
+        }
+        pendingPrefixes.clear();
+        declaredPrefixes.push(prefixes);
+        getContentHandler().startElement(uri, localName, qName, res);
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (skipDepth > 0) {
+            skipDepth--;
+            if (skipDepth == 0) {
+                topicIds.pop();
+            }
+            return;
+        }
+        endElementAndPrefixes(uri, localName, qName);
+        topicIds.pop();
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (skipDepth == 0) {
+            getContentHandler().characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        if (skipDepth == 0) {
+            getContentHandler().ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (skipDepth == 0) {
+            getContentHandler().processingInstruction(target, data);
+        }
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        if (skipDepth == 0) {
+            getContentHandler().skippedEntity(name);
+        }
+    }
+
+    // LexicalHandler methods --------------------------------------------------
+
+    @Override
+    public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.startDTD(name, publicId, systemId);
+        }
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.endDTD();
+        }
+    }
+
+    @Override
+    public void startEntity(final String name) throws SAXException {
+        if (lexicalHandler != null && skipDepth == 0) {
+            lexicalHandler.startEntity(name);
+        }
+    }
+
+    @Override
+    public void endEntity(final String name) throws SAXException {
+        if (lexicalHandler != null && skipDepth == 0) {
+            lexicalHandler.endEntity(name);
+        }
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        if (lexicalHandler != null && skipDepth == 0) {
+            lexicalHandler.startCDATA();
+        }
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        if (lexicalHandler != null && skipDepth == 0) {
+            lexicalHandler.endCDATA();
+        }
+    }
+
+    @Override
+    public void comment(final char[] ch, final int start, final int length) throws SAXException {
+        if (lexicalHandler != null && skipDepth == 0) {
+            lexicalHandler.comment(ch, start, length);
+        }
+    }
+
+    // Conref resolution -------------------------------------------------------
+
+    /**
+     * Get parsed current document. Domains of the current document are used to validate conref targets.
+     */
+    private IndexedDocument getCurrentDocument() throws SAXException {
+        if (currentDocument == null) {
+            currentDocument = cache.get(currentFile);
+            if (currentDocument != null && currentDocument.domains != null) {
+                originalDomains = currentDocument.domains;
+            } else {
+                originalDomains = "";
+            }
+        }
+        return currentDocument;
+    }
+
+    /**
+     * Resolve conref.
+     *
+     * @param src element with conref
+     * @param ctx processing context of the element
+     * @param sourceAttributes names of attributes set on the original conref element, {@code null} if none
+     * @param originalElement local name of the original conref element
+     * @return how streamed source element should be processed
+     */
+    private Result resolveConref(final Src src, final Context ctx, final List<String> sourceAttributes,
+                                 final String originalElement) throws SAXException {
+        final String conref = src.atts.getValue(ATTRIBUTE_NAME_CONREF);
+        final String conrefend = getConrefEnd(src.atts.getValue(ATTRIBUTE_NAME_CONREFEND));
+        final int hashIndex = conref.indexOf(SHARP);
+        final String path = hashIndex != -1 ? conref.substring(0, hashIndex) : conref;
+        final String addRelativePath = path.substring(0, path.lastIndexOf(SLASH) + 1);
+        final boolean sameFile = conref.startsWith(SHARP);
+        URI file;
+        try {
+            file = sameFile ? src.base : src.base.resolve(URLUtils.toURI(path.replace(" ", "%20")));
+        } catch (final IllegalArgumentException e) {
+            file = null;
+        }
+        final String conrefFilename = file != null ? getFileName(file) : "";
+        final String filename = sameFile ? conrefFilename : path;
+        final String exportFilename = (filename.contains(".") ? filename.substring(0, filename.indexOf('.')) : "")
+                + FILE_EXTENSION_DITA;
+        final String conrefSourceTopic = ctx.sourceTopicId != null && !ctx.sourceTopicId.trim().isEmpty()
+                ? ctx.sourceTopicId
+                : src.topicId;
+        final String topicid = getTopicId(conref);
+        final String elemid = getElementId(conref);
+
+        final ExportAnchors.FileAnchors exportFile = getExportFile(exportFilename);
+        if (exportFile != null && (
+                (exportFile.ids.contains(elemid) && exportFile.topicIds.contains(topicid))
+                || exportFile.getTopicElementIds(topicid).contains(elemid)
+                || (elemid == null && exportFile.topicIds.contains(topicid)))) {
+            return copy(src, new Context(ctx.relativePath, conrefFilename, ctx.sourceTopicId, ctx.doc), true);
+        }
+
+        if (src.node != null && conrefIds.contains(src.node)) {
+            logger.error(src.setLocation(MessageUtils.getMessage("DOTX013E", conref)).toString());
+            return Result.RESOLVED;
+        }
+        if (!(elemid != null
+                || TOPIC_TOPIC.matches(src.atts)
+                || MAP_TOPICREF.matches(src.atts)
+                || MAP_MAP.matches(src.rootClass)
+                || (hashIndex != -1 && hashIndex < conref.length() - 1))) {
+            logger.error(src.setLocation(MessageUtils.getMessage("DOTX015E", conref)).toString());
+            return Result.RESOLVED;
+        }
+        final IndexedDocument targetDoc = sameFile ? src.doc : (file != null ? cache.get(file) : null);
+        if (targetDoc == null) {
+            logger.error(src.setLocation(MessageUtils.getMessage("DOTX010E", conref)).toString());
+            return Result.RESOLVED;
+        }
+        if (!isValid(targetDoc.domains)) {
+            logger.warn(src.setLocation(MessageUtils.getMessage("DOTX012W")).toString());
+            return Result.RESOLVED;
+        }
+        final List<Element> targets = getTargets(targetDoc, topicid, elemid, src);
+        if (targets.isEmpty()) {
+            logger.error(src.setLocation(MessageUtils.getMessage("DOTX010E", conref)).toString());
+            return Result.RESOLVED;
+        }
+        if (exportFile != null && topicid == null && elemid == null) {
+            for (final Element target : targets) {
+                final Attr id = target.getAttributeNode(ATTRIBUTE_NAME_ID);
+                if (id != null && exportFile.topicIds.contains(id.getValue())) {
+                    return copy(src, new Context(ctx.relativePath, conrefFilename, ctx.sourceTopicId, ctx.doc), false);
+                }
+            }
+        }
+
+        final List<String> srcAtts = sourceAttributes != null && !sourceAttributes.isEmpty()
+                ? sourceAttributes
+                : getSourceAttributes(src.atts);
+        final Context targetCtx = new Context(ctx.relativePath + addRelativePath, conrefFilename, conrefSourceTopic, targetDoc);
+        if (src.node != null) {
+            conrefIds.add(src.node);
+        }
+        try {
+            processTarget(targets.get(0), targetCtx, srcAtts, conrefend, originalElement, src.atts);
+        } finally {
+            if (src.node != null) {
+                conrefIds.remove(src.node);
+            }
+        }
+        if (targets.size() > 1) {
+            logger.warn(src.setLocation(MessageUtils.getMessage("DOTX011W", conref)).toString());
+        }
+        return Result.RESOLVED;
+    }
+
+    /**
+     * Copy conref element without resolving it. Streamed elements are copied by the caller.
+     */
+    private Result copy(final Src src, final Context ctx, final boolean withAttributes) throws SAXException {
+        if (src.node == null) {
+            return withAttributes ? Result.COPY : Result.COPY_WITHOUT_ATTRIBUTES;
+        }
+        final Element elem = src.node;
+        final AttributesImpl atts = withAttributes ? getAttributes(elem, ctx) : new AttributesImpl();
+        startElement(elem, getNamespaceURI(elem), elem.getLocalName(), elem.getTagName(), atts);
+        processChildren(elem, ctx);
+        endElementAndPrefixes(getNamespaceURI(elem), elem.getLocalName(), elem.getTagName());
+        return Result.RESOLVED;
+    }
+
+    /**
+     * Find conref targets.
+     *
+     * @return target elements in document order, empty list if none found
+     */
+    private List<Element> getTargets(final IndexedDocument doc, final String topicid, final String elemid, final Src src) {
+        final List<Element> res = new ArrayList<>();
+        if (elemid != null) {
+            for (final Element elem : doc.getElementsById(elemid)) {
+                if (elem.getLocalName().equals(src.localName)) {
+                    final Element topic = getAncestorTopic(elem);
+                    if (topic != null && topic.getAttribute(ATTRIBUTE_NAME_ID).equals(topicid)
+                            && topic.hasAttribute(ATTRIBUTE_NAME_ID)) {
+                        res.add(elem);
+                    }
+                }
+            }
+        } else if (topicid != null) {
+            for (final Element elem : doc.getElementsById(topicid)) {
+                if (elem.getLocalName().equals(src.localName)) {
+                    if (TOPIC_TOPIC.matches(src.atts)) {
+                        if (TOPIC_TOPIC.matches(elem)) {
+                            res.add(elem);
+                        }
+                    } else if (MAP_TOPICREF.matches(src.atts)) {
+                        if (MAP_TOPICREF.matches(elem)) {
+                            res.add(elem);
+                        }
+                    } else {
+                        res.add(elem);
+                    }
+                }
+            }
+        } else {
+            for (final Element topic : doc.getFirstTopics()) {
+                if (topic.getLocalName().equals(src.localName)) {
+                    res.add(topic);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Process conref target element.
+     *
+     * @param target conref target element
+     * @param ctx processing context in the target document
+     * @param sourceAttributes names of attributes set on the original conref element
+     * @param conrefend conref range end element ID, {@code null} if not a range
+     * @param originalElement local name of the original conref element
+     * @param originalAttributes attributes of the conref element
+     */
+    private void processTarget(final Element target, final Context ctx, final List<String> sourceAttributes,
+                               final String conrefend, final String originalElement,
+                               final Attributes originalAttributes) throws SAXException {
+        if (target.hasAttribute(ATTRIBUTE_NAME_CONREF)) {
+            // If target is a conref too, forget the original and continue with the target
+            processElement(target, ctx, sourceAttributes, originalElement);
+        } else {
+            final AttributesImpl atts = new AttributesImpl();
+            final String originalClass = originalAttributes.getValue(ATTRIBUTE_NAME_CLASS);
+            for (int i = 0; i < originalAttributes.getLength(); i++) {
+                final String name = originalAttributes.getQName(i);
+                if (!isIgnoredAttribute(name, originalAttributes.getValue(i), originalClass)
+                        && !name.equals(ATTRIBUTE_NAME_CONREFEND)) {
+                    XMLUtils.addOrSetAttribute(atts, originalAttributes.getURI(i), originalAttributes.getLocalName(i),
+                            name, originalAttributes.getType(i), originalAttributes.getValue(i));
+                }
+            }
+            final NamedNodeMap targetAtts = target.getAttributes();
+            for (int i = 0; i < targetAtts.getLength(); i++) {
+                final Attr attr = (Attr) targetAtts.item(i);
+                final String name = attr.getName();
+                if (!isNamespaceDeclaration(attr) && !name.equals(ATTRIBUTE_NAME_ID) && !sourceAttributes.contains(name)) {
+                    final String value = name.equals(ATTRIBUTE_NAME_HREF)
+                            ? getHref(target, attr.getValue(), ctx)
+                            : attr.getValue();
+                    XMLUtils.addOrSetAttribute(atts, getNamespaceURI(attr), attr.getLocalName(), name, "CDATA", value);
+                }
+            }
+            startElement(null, NULL_NS_URI, originalElement, originalElement, atts);
+            processChildren(target, ctx);
+            endElementAndPrefixes(NULL_NS_URI, originalElement, originalElement);
+        }
+
+        if (conrefend != null) {
+            Element end = null;
+            for (Node n = target.getNextSibling(); n != null; n = n.getNextSibling()) {
+                if (n.getNodeType() == Node.ELEMENT_NODE) {
+                    final Attr id = ((Element) n).getAttributeNode(ATTRIBUTE_NAME_ID);
+                    if (id != null && id.getValue().equals(conrefend)) {
+                        end = (Element) n;
+                        break;
+                    }
+                }
+            }
+            if (end == null) {
+                logger.error(MessageUtils.getMessage("DOTX071E", conrefend).setLocation(target).toString());
+            } else {
+                for (Node n = target.getNextSibling(); n != null; n = n.getNextSibling()) {
+                    if (n.getNodeType() == Node.ELEMENT_NODE) {
+                        final Element elem = (Element) n;
+                        if (elem.hasAttribute(ATTRIBUTE_NAME_CONREF)) {
+                            processElement(elem, ctx, sourceAttributes, elem.getLocalName());
+                        } else {
+                            final AttributesImpl atts = new AttributesImpl();
+                            final NamedNodeMap elemAtts = elem.getAttributes();
+                            for (int i = 0; i < elemAtts.getLength(); i++) {
+                                final Attr attr = (Attr) elemAtts.item(i);
+                                if (!isNamespaceDeclaration(attr) && !attr.getLocalName().equals(ATTRIBUTE_NAME_ID)) {
+                                    final String value = attr.getName().equals(ATTRIBUTE_NAME_HREF)
+                                            ? getHref(elem, attr.getValue(), ctx)
+                                            : attr.getValue();
+                                    atts.addAttribute(getNamespaceURI(attr), attr.getLocalName(), attr.getName(), "CDATA", value);
+                                }
+                            }
+                            startElement(elem, getNamespaceURI(elem), elem.getLocalName(), elem.getTagName(), atts);
+                            processChildren(elem, ctx);
+                            endElementAndPrefixes(getNamespaceURI(elem), elem.getLocalName(), elem.getTagName());
+                        }
+                        if (elem == end) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Process element in a conref target document.
+     *
+     * @param elem element to process
+     * @param ctx processing context
+     * @param sourceAttributes names of attributes set on the original conref element, {@code null} if none
+     * @param originalElement local name of the original conref element
+     */
+    private void processElement(final Element elem, final Context ctx, final List<String> sourceAttributes,
+                                final String originalElement) throws SAXException {
+        final Attr conaction = elem.getAttributeNode(ATTRIBUTE_NAME_CONACTION);
+        final String conref = elem.getAttribute(ATTRIBUTE_NAME_CONREF);
+        if (conaction != null) {
+            if (!conaction.getValue().equals(ATTR_CONACTION_VALUE_MARK)) {
+                final AttributesImpl atts = new AttributesImpl();
+                final NamedNodeMap elemAtts = elem.getAttributes();
+                for (int i = 0; i < elemAtts.getLength(); i++) {
+                    final Attr attr = (Attr) elemAtts.item(i);
+                    final String name = attr.getName();
+                    if (!isNamespaceDeclaration(attr) && !name.equals(ATTRIBUTE_NAME_CONACTION) && !name.equals(ATTRIBUTE_NAME_CONREF)) {
+                        atts.addAttribute(getNamespaceURI(attr), attr.getLocalName(), name, "CDATA", attr.getValue());
+                    }
+                }
+                startElement(elem, getNamespaceURI(elem), elem.getLocalName(), elem.getTagName(), atts);
+                processChildren(elem, ctx);
+                endElementAndPrefixes(getNamespaceURI(elem), elem.getLocalName(), elem.getTagName());
+            }
+        } else if (!conref.isEmpty()) {
+            final Src src = new Src(elem.getLocalName(), getAttributes(elem), elem, ctx.doc, ctx.doc.uri,
+                    getTopicId(elem), ctx.doc.document.getDocumentElement().getAttribute(ATTRIBUTE_NAME_CLASS));
+            resolveConref(src, ctx, sourceAttributes, originalElement);
+        } else {
+            final String cls = elem.getAttribute(ATTRIBUTE_NAME_CLASS);
+            String generalizedName = null;
+            if (cls.startsWith("+ ") && !Objects.equals(ctx.doc.domains, originalDomains)) {
+                generalizedName = generalizeDomain(cls.substring(1).trim().replaceAll("\\s+", " "), originalDomains);
+            }
+            final AttributesImpl atts = getAttributes(elem, ctx);
+            if (generalizedName != null) {
+                startElement(null, NULL_NS_URI, generalizedName, generalizedName, atts);
+                processChildren(elem, ctx);
+                endElementAndPrefixes(NULL_NS_URI, generalizedName, generalizedName);
+            } else {
+                startElement(elem, getNamespaceURI(elem), elem.getLocalName(), elem.getTagName(), atts);
+                processChildren(elem, ctx);
+                endElementAndPrefixes(getNamespaceURI(elem), elem.getLocalName(), elem.getTagName());
+            }
+        }
+    }
+
+    private void processChildren(final Element elem, final Context ctx) throws SAXException {
+        for (Node n = elem.getFirstChild(); n != null; n = n.getNextSibling()) {
+            switch (n.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    processElement((Element) n, ctx, null, n.getLocalName());
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    final char[] ch = n.getNodeValue().toCharArray();
+                    getContentHandler().characters(ch, 0, ch.length);
+                    break;
+                case Node.COMMENT_NODE:
+                    if (lexicalHandler != null) {
+                        final char[] c = n.getNodeValue().toCharArray();
+                        lexicalHandler.comment(c, 0, c.length);
+                    }
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    getContentHandler().processingInstruction(((ProcessingInstruction) n).getTarget(),
+                            ((ProcessingInstruction) n).getData());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Get attributes of an element in conref target document, rewriting {@code href} and {@code id} attributes.
+     */
+    private AttributesImpl getAttributes(final Element elem, final Context ctx) {
+        final AttributesImpl atts = new AttributesImpl();
+        final NamedNodeMap elemAtts = elem.getAttributes();
+        for (int i = 0; i < elemAtts.getLength(); i++) {
+            final Attr attr = (Attr) elemAtts.item(i);
+            if (isNamespaceDeclaration(attr)) {
+                continue;
+            }
+            final String name = attr.getName();
+            final String value;
+            if (name.equals(ATTRIBUTE_NAME_HREF)) {
+                value = getHref(elem, attr.getValue(), ctx);
+            } else if (name.equals(ATTRIBUTE_NAME_ID) && ctx.conrefFilename != null) {
+                value = ctx.doc.generateId(elem);
+            } else {
+                value = attr.getValue();
+            }
+            atts.addAttribute(getNamespaceURI(attr), attr.getLocalName(), name, "CDATA", value);
+        }
+        return atts;
+    }
+
+    private static AttributesImpl getAttributes(final Element elem) {
+        final AttributesImpl atts = new AttributesImpl();
+        final NamedNodeMap elemAtts = elem.getAttributes();
+        for (int i = 0; i < elemAtts.getLength(); i++) {
+            final Attr attr = (Attr) elemAtts.item(i);
+            if (!isNamespaceDeclaration(attr)) {
+                atts.addAttribute(getNamespaceURI(attr), attr.getLocalName(), attr.getName(), "CDATA", attr.getValue());
+            }
+        }
+        return atts;
+    }
+
+    /**
+     * Rewrite link in conref content so that it's relative to the document that uses the conref.
+     */
+    private String getHref(final Element elem, final String href, final Context ctx) {
+        if (elem.getAttribute(ATTRIBUTE_NAME_SCOPE).equals(ATTR_SCOPE_VALUE_EXTERNAL)
+                || href.startsWith("http://") || href.startsWith("https://") || href.startsWith("ftp://")) {
+            return href;
+        } else if (href.startsWith(SHARP)) {
+            return ctx.conrefFilename == null ? href : generateHref(href, ctx);
+        } else {
+            return ctx.relativePath + href;
+        }
+    }
+
+    /**
+     * Rewrite same file link in conref content. If the link target is pulled into the current document with the
+     * conref, the link is changed to point to the generated ID. Otherwise the link points to the target document.
+     */
+    private String generateHref(final String href, final Context ctx) {
+        final IndexedDocument doc = ctx.doc;
+        final StringJoiner conrefTopicId = new StringJoiner(" ");
+        for (final Element topic : doc.getFirstTopics()) {
+            final Attr id = topic.getAttributeNode(ATTRIBUTE_NAME_ID);
+            if (id != null) {
+                conrefTopicId.add(id.getValue());
+            }
+        }
+        final String hrefTopicId = getTopicId(href);
+        final String hrefElemId = getElementId(href);
+
+        String conrefGenId = "";
+        if (hrefElemId != null) {
+            search:
+            for (final Element topic : doc.getElementsById(conrefTopicId.toString())) {
+                if (TOPIC_TOPIC.matches(topic)) {
+                    for (final Element elem : doc.getElementsById(hrefElemId)) {
+                        if (isDescendant(elem, topic)) {
+                            conrefGenId = doc.generateId(elem);
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        String hrefGenId = "";
+        if (hrefTopicId != null && hrefElemId != null) {
+            final Optional<Element> topic = doc.getElementsById(hrefTopicId).stream()
+                    .filter(TOPIC_TOPIC::matches)
+                    .findFirst();
+            if (topic.isPresent()) {
+                for (final Element elem : doc.getElementsById(hrefElemId)) {
+                    if (getAncestorTopic(elem) == topic.get()) {
+                        hrefGenId = doc.generateId(elem);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (conrefGenId.isEmpty() || !conrefGenId.equals(hrefGenId)) {
+            return ctx.relativePath + ctx.conrefFilename + href;
+        } else {
+            return SHARP + ctx.sourceTopicId + SLASH + conrefGenId;
+        }
+    }
+
+    // Domain validation -------------------------------------------------------
+
+    /**
+     * Test if conref target domains are compatible with domain constraints of the current document.
+     *
+     * @param domains domains of the target document, may be {@code null}
+     */
+    private boolean isValid(final String domains) {
+        return checkValid(normalizeSpace(originalDomains),
+                normalizeSpace("(topic) " + (domains != null ? domains : "")));
+    }
+
+    private static boolean checkValid(final String sourceDomains, final String targetDomains) {
+        final StringBuilder out = new StringBuilder();
+        for (final String token : tokenize(sourceDomains, DOMAINS_SEPARATOR)) {
+            if (!normalizeSpace(token).startsWith("a")) {
+                out.append(token).append(") ");
+            }
+        }
+        final List<String> subDomains = tokenize(normalizeSpace(out.toString()), DOMAINS_TOKEN_SEPARATOR);
+        Collections.reverse(subDomains);
+        final List<String> constraints = new ArrayList<>();
+        for (final String subDomain : subDomains) {
+            if (subDomain.contains("-c")) {
+                constraints.add(subDomain);
+            }
+        }
+        if (constraints.isEmpty()) {
+            return true;
+        }
+
+        final String compareItem = constraints.get(0);
+        final String constraintItem = "(" + compareItem + ")";
+        final StringJoiner originalItem = new StringJoiner(" ");
+        String lastConstraint = "";
+        for (final String token : tokenize(compareItem, Pattern.compile(" "))) {
+            if (token.contains("-c")) {
+                lastConstraint = token;
+            } else {
+                originalItem.add(token);
+            }
+        }
+        final String module = normalizeSpace(originalItem.toString());
+        final String originalModule = "(" + module + ")";
+        final String originalModuleStart = "(" + module;
+        final String editedConstraintItem = "(" + module + " " + lastConstraint;
+        final boolean hasConstraint = targetDomains.contains(constraintItem) || targetDomains.contains(editedConstraintItem);
+        if (hasConstraint && constraints.size() == 1) {
+            return true;
+        } else if ((hasConstraint && constraints.size() > 1)
+                || (!targetDomains.contains(originalModule) && !targetDomains.contains(originalModuleStart))) {
+            final StringBuilder remain = new StringBuilder();
+            for (final String constraint : constraints.subList(1, constraints.size())) {
+                remain.append("s(").append(constraint).append(") ");
+            }
+            return checkValid(normalizeSpace(remain.toString()), targetDomains);
+        }
+        return false;
+    }
+
+    /**
+     * Generalize domain element name to a domain that is valid in the current document.
+     *
+     * @param cls normalized class attribute value without the leading {@code +}
+     * @param domains domains of the current document
+     * @return element name, {@code null} if no valid name was found
+     */
+    private static String generalizeDomain(final String cls, final String domains) {
+        final int space = cls.indexOf(' ');
+        if (space != -1 && space < cls.length() - 1) {
+            final String next = generalizeDomain(cls.substring(space + 1), domains);
+            if (next != null && !next.isEmpty()) {
+                return next;
+            }
+        }
+        final int slash = cls.indexOf(SLASH);
+        final String testModule = slash != -1 ? cls.substring(0, slash) : "";
+        final String testElement = substringAfter(space != -1 ? cls.substring(0, space) : cls, SLASH);
+        if (domains.contains(" " + testModule + ")") || testModule.equals("topic") || testModule.equals("map")) {
+            return testElement;
+        }
+        return null;
+    }
+
+    // Utilities ---------------------------------------------------------------
+
+    /**
+     * Test if attribute of the original conref element should not be copied to the result.
+     */
+    private static boolean isIgnoredAttribute(final String name, final String value, final String cls) {
+        return name.equals(ATTRIBUTE_NAME_CONREF)
+                || name.equals(ATTRIBUTE_NAME_XTRF)
+                || name.equals(ATTRIBUTE_NAME_XTRC)
+                || value.equals(ATTR_VALUE_DITA_USE_CONREF_TARGET)
+                || (name.equals(ATTRIBUTE_NAME_HREF) && TOPIC_IMAGE.matches(cls))
+                || (name.equals(ATTRIBUTE_NAME_COLS) && TOPIC_TGROUP.matches(cls))
+                || (name.equals(ATTRIBUTE_NAME_STATE) && TOPIC_BOOLEAN.matches(cls))
+                || ((name.equals(ATTRIBUTE_NAME_NAME) || name.equals(ATTRIBUTE_NAME_VALUE)) && TOPIC_STATE.matches(cls))
+                || (name.equals(ATTRIBUTE_NAME_NAVTITLE) && MAPGROUP_D_TOPICHEAD.matches(cls));
+    }
+
+    /**
+     * Get names of attributes set on the conref element that override attributes of the conref target.
+     */
+    private static List<String> getSourceAttributes(final Attributes atts) {
+        final String cls = atts.getValue(ATTRIBUTE_NAME_CLASS);
+        final List<String> res = new ArrayList<>(atts.getLength());
+        for (int i = 0; i < atts.getLength(); i++) {
+            if (!isIgnoredAttribute(atts.getQName(i), atts.getValue(i), cls)) {
+                res.add(atts.getQName(i));
+            }
+        }
+        return res;
+    }
+
+    private static String getConrefEnd(final String conrefend) {
+        if (conrefend == null) {
+            return null;
+        } else if (getElementId(conrefend) != null) {
+            return getElementId(conrefend);
+        } else if (conrefend.contains(SHARP)) {
+            return substringAfter(conrefend, SHARP);
+        } else if (conrefend.contains(SLASH)) {
+            return substringAfter(conrefend, SLASH);
+        }
+        return conrefend;
+    }
+
+    /**
+     * Get topic ID from reference.
+     *
+     * @return topic ID, {@code null} if reference has no fragment
+     */
+    private static String getTopicId(final String href) {
+        final String fragment = substringAfter(href, SHARP);
+        if (fragment.isEmpty()) {
+            return null;
+        }
+        final int slash = fragment.indexOf(SLASH);
+        return slash != -1 ? fragment.substring(0, slash) : fragment;
+    }
+
+    /**
+     * Get element ID from reference.
+     *
+     * @return element ID, {@code null} if reference has no element ID
+     */
+    private static String getElementId(final String href) {
+        final String fragment = substringAfter(href, SHARP);
+        final int slash = fragment.indexOf(SLASH);
+        return slash != -1 ? fragment.substring(slash + 1) : null;
+    }
+
+    /**
+     * Get ID of the closest ancestor-or-self topic.
+     */
+    private static String getTopicId(final Element elem) {
+        final Element topic = TOPIC_TOPIC.matches(elem) ? elem : getAncestorTopic(elem);
+        return topic != null ? topic.getAttribute(ATTRIBUTE_NAME_ID) : "";
+    }
+
+    private static Element getAncestorTopic(final Element elem) {
+        for (Node n = elem.getParentNode(); n != null && n.getNodeType() == Node.ELEMENT_NODE; n = n.getParentNode()) {
+            if (TOPIC_TOPIC.matches(n)) {
+                return (Element) n;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDescendant(final Node node, final Node ancestor) {
+        for (Node n = node.getParentNode(); n != null; n = n.getParentNode()) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ExportAnchors.FileAnchors getExportFile(final String name) {
+        if (exportAnchors == null || !TRANS_TYPE_ECLIPSEHELP.equals(transtype)) {
+            return null;
+        }
+        return exportAnchors.files.get(name);
+    }
+
+    private static String getFileName(final URI file) {
+        final String path = file.getRawPath();
+        return path != null ? path.substring(path.lastIndexOf(SLASH) + 1) : "";
+    }
+
+    private static boolean isNamespaceDeclaration(final Attr attr) {
+        return XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI());
+    }
+
+    private static String getNamespaceURI(final Node node) {
+        final String uri = node.getNamespaceURI();
+        return uri != null ? uri : NULL_NS_URI;
+    }
+
+    private static String substringAfter(final String s, final String separator) {
+        final int i = s.indexOf(separator);
+        return i != -1 ? s.substring(i + separator.length()) : "";
+    }
+
+    private static String normalizeSpace(final String s) {
+        return s.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Tokenize string with XPath {@code fn:tokenize} semantics.
+     */
+    private static List<String> tokenize(final String s, final Pattern separator) {
+        if (s.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(separator.split(s, -1)));
+    }
+
+    // Output ------------------------------------------------------------------
+
+    /**
+     * Start element, declaring namespace prefixes used by the element and its attributes that are not in scope.
+     *
+     * @param source element whose namespace declarations are copied, may be {@code null}
+     */
+    private void startElement(final Element source, final String uri, final String localName, final String qName,
+                              final Attributes atts) throws SAXException {
+        namespaces.pushContext();
+        final List<String> prefixes = new ArrayList<>();
+        if (source != null) {
+            final NamedNodeMap sourceAtts = source.getAttributes();
+            for (int i = 0; i < sourceAtts.getLength(); i++) {
+                final Attr attr = (Attr) sourceAtts.item(i);
+                if (isNamespaceDeclaration(attr)) {
+                    final String prefix = attr.getName().equals(XMLNS_ATTRIBUTE) ? DEFAULT_NS_PREFIX : attr.getLocalName();
+                    declarePrefix(prefix, attr.getValue(), prefixes);
+                }
+            }
+        }
+        declarePrefix(getPrefix(qName), uri, prefixes);
+        for (int i = 0; i < atts.getLength(); i++) {
+            final String prefix = getPrefix(atts.getQName(i));
+            if (!prefix.isEmpty() && !prefix.equals(XML_NS_PREFIX)) {
+                declarePrefix(prefix, atts.getURI(i), prefixes);
+            }
+        }
+        declaredPrefixes.push(prefixes);
+        getContentHandler().startElement(uri, localName, qName, atts);
+    }
+
+    private void declarePrefix(final String prefix, final String uri, final List<String> prefixes) throws SAXException {
+        final String current = namespaces.getURI(prefix);
+        if (current != null ? current.equals(uri) : uri.isEmpty()) {
+            return;
+        }
+        namespaces.declarePrefix(prefix, uri);
+        prefixes.add(prefix);
+        getContentHandler().startPrefixMapping(prefix, uri);
+    }
+
+    private void endElementAndPrefixes(final String uri, final String localName, final String qName) throws SAXException {
+        getContentHandler().endElement(uri, localName, qName);
+        for (final String prefix : declaredPrefixes.pop()) {
+            getContentHandler().endPrefixMapping(prefix);
+        }
+        namespaces.popContext();
+    }
+
+    private static String getPrefix(final String qName) {
+        final int i = qName.indexOf(':');
+        return i != -1 ? qName.substring(0, i) : DEFAULT_NS_PREFIX;
+    }
+
+    // Classes -----------------------------------------------------------------
+
+    /** Outcome of conref resolution for a streamed element. */
+    private enum Result {
+        /** Element was replaced and its content must be skipped. */
+        RESOLVED,
+        /** Element must be copied as is. */
+        COPY,
+        /** Element must be copied without attributes. */
+        COPY_WITHOUT_ATTRIBUTES
+    }
+
+    /**
+     * Element with a conref.
+     */
+    private static final class Src {
+        final String localName;
+        final Attributes atts;
+        /** Element node, {@code null} if element is read from the source stream */
+        final Element node;
+        /** Document that contains the element, {@code null} if not available */
+        final IndexedDocument doc;
+        final URI base;
+        /** ID of the closest ancestor-or-self topic */
+        final String topicId;
+        /** Class of the document element */
+        final String rootClass;
+
+        Src(final String localName, final Attributes atts, final Element node, final IndexedDocument doc,
+            final URI base, final String topicId, final String rootClass) {
+            this.localName = localName;
+            this.atts = atts;
+            this.node = node;
+            this.doc = doc;
+            this.base = base;
+            this.topicId = topicId;
+            this.rootClass = rootClass;
+        }
+
+        MessageBean setLocation(final MessageBean msg) {
+            return node != null ? msg.setLocation(node) : msg.setLocation(atts);
+        }
+    }
+
+    /**
+     * Conref processing context.
+     */
+    private static final class Context {
+        /** Relative path from the current document to the document being processed */
+        final String relativePath;
+        /** File name of the conref target document, {@code null} outside conref content */
+        final String conrefFilename;
+        /** ID of the topic that contains the original conref element, {@code null} outside conref content */
+        final String sourceTopicId;
+        /** Document being processed */
+        final IndexedDocument doc;
+
+        Context(final String relativePath, final String conrefFilename, final String sourceTopicId,
+                final IndexedDocument doc) {
+            this.relativePath = relativePath;
+            this.conrefFilename = conrefFilename;
+            this.sourceTopicId = sourceTopicId;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * Index of exported anchors for delayed conref resolution. Instances are immutable and can be shared between
+     * threads.
+     */
+    public static final class ExportAnchors {
+
+        /** Exported files by file name. */
+        private final Map<String, FileAnchors> files;
+
+        private ExportAnchors(final Map<String, FileAnchors> files) {
+            this.files = files;
+        }
+
+        /**
+         * Read exported anchors from export file document.
+         *
+         * @param root root element of exported anchors
+         * @return exported anchors
+         */
+        public static ExportAnchors read(final Element root) {
+            final Map<String, FileAnchors> files = new HashMap<>();
+            for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (isExport(n, ELEMENT_NAME_EXPORT_FILE) && !files.containsKey(getName(n))) {
+                    files.put(getName(n), readFile((Element) n));
+                }
+            }
+            return new ExportAnchors(Collections.unmodifiableMap(files));
+        }
+
+        private static FileAnchors readFile(final Element file) {
+            final Set<String> ids = new HashSet<>();
+            final Map<String, Set<String>> topics = new HashMap<>();
+            for (Node n = file.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (isExport(n, ELEMENT_NAME_EXPORT_ID)) {
+                    ids.add(getName(n));
+                } else if (isExport(n, ELEMENT_NAME_EXPORT_TOPICID) && !topics.containsKey(getName(n))) {
+                    final Set<String> topicIds = new HashSet<>();
+                    for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+                        if (isExport(c, ELEMENT_NAME_EXPORT_ID)) {
+                            topicIds.add(getName(c));
+                        }
+                    }
+                    topics.put(getName(n), Collections.unmodifiableSet(topicIds));
+                }
+            }
+            return new FileAnchors(Collections.unmodifiableSet(ids), Collections.unmodifiableMap(topics));
+        }
+
+        private static boolean isExport(final Node node, final String elementName) {
+            return node.getNodeType() == Node.ELEMENT_NODE && ((Element) node).getTagName().equals(elementName);
+        }
+
+        private static String getName(final Node node) {
+            return ((Element) node).getAttribute(ATTRIBUTE_NAME_NAME);
+        }
+
+        /**
+         * Exported anchors of a single file.
+         */
+        static final class FileAnchors {
+            /** Exported element IDs. */
+            final Set<String> ids;
+            /** Exported topic IDs. */
+            final Set<String> topicIds;
+            /** Exported element IDs by topic ID. */
+            private final Map<String, Set<String>> topics;
+
+            private FileAnchors(final Set<String> ids, final Map<String, Set<String>> topics) {
+                this.ids = ids;
+                this.topicIds = topics.keySet();
+                this.topics = topics;
+            }
+
+            Set<String> getTopicElementIds(final String topicId) {
+                final Set<String> res = topicId != null ? topics.get(topicId) : null;
+                return res != null ? res : Collections.emptySet();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,419 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.writer;
+
+import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.util.DitaClass;
+import org.dita.dost.util.XMLUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.dita.dost.util.Constants.*;
+
+/**
+ * Streaming filter that inserts map metadata into a topic.
+ *
+ * <p>Only the header of the root topic, i.e. title, titlealts, shortdesc, abstract and prolog, is buffered into a
+ * DOM fragment, including comments and CDATA sections. Metadata is inserted into the fragment with
+ * {@link DitaMetaWriter} and the rest of the document is passed through unchanged. Instances are not thread-safe.</p>
+ *
+ * @since 3.0
+ */
+public final class DitaMetaFilter extends AbstractXMLFilter implements LexicalHandler {
+
+    private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+
+    private static final List<DitaClass> headerClasses = Collections.unmodifiableList(Arrays.asList(
+            TOPIC_TITLE,
+            TOPIC_TITLEALTS,
+            TOPIC_SHORTDESC,
+            TOPIC_ABSTRACT,
+            TOPIC_PROLOG
+    ));
+
+    private final DitaMetaWriter metaWriter = new DitaMetaWriter();
+    private final Transformer domToSaxTransformer;
+    private boolean hasMetadata;
+    /** Element depth of current node. */
+    private int depth;
+    /** Depth of the root topic, {@code 0} if not found yet. */
+    private int topicDepth;
+    /** Whether metadata has been inserted. */
+    private boolean done;
+    /** Header fragment, {@code null} if not buffering. */
+    private Document header;
+    /** Current node in the header fragment. */
+    private Node current;
+    /** Prefix mappings reported while buffering, as prefix and URI pairs. */
+    private final List<String[]> prefixMappings = new ArrayList<>();
+    /** Buffered CDATA section contents in the header, {@code null} if not in CDATA section. */
+    private StringBuilder cdata;
+    private LexicalHandler lexicalHandler;
+
+    public DitaMetaFilter() {
+        super();
+        try {
+            domToSaxTransformer = TransformerFactory.newInstance().newTransformer();
+        } catch (final TransformerConfigurationException e) {
+            throw new RuntimeException("Failed to configure DOM to SAX transformer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Set metadata to insert.
+     *
+     * @param metaTable metadata elements by class matcher
+     */
+    public void setMetaTable(final Map<String, Element> metaTable) {
+        metaWriter.setMetaTable(metaTable);
+        hasMetadata = metaWriter.hasMetadata();
+    }
+
+    @Override
+    public void write(final File filename) throws DITAOTException {
+        if (!hasMetadata) {
+            return;
+        }
+        super.write(filename);
+    }
+
+    @Override
+    public void setProperty(final String name, final Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER_PROPERTY.equals(name)) {
+            lexicalHandler = (LexicalHandler) value;
+            super.setProperty(name, this);
+        } else {
+            super.setProperty(name, value);
+        }
+    }
+
+    @Override
+    public Object getProperty(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER_PROPERTY.equals(name)) {
+            return lexicalHandler;
+        }
+        return super.getProperty(name);
+    }
+
+    // SAX methods
+
+    @Override
+    public void startDocument() throws SAXException {
+        depth = 0;
+        topicDepth = 0;
+        done = false;
+        header = null;
+        current = null;
+        cdata = null;
+        prefixMappings.clear();
+        getContentHandler().startDocument();
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        depth++;
+        if (header != null) {
+            if (current == header.getDocumentElement() && !isHeader(atts)) {
+                flush();
+                for (final String[] mapping : prefixMappings) {
+                    getContentHandler().startPrefixMapping(mapping[0], mapping[1]);
+                }
+                prefixMappings.clear();
+            } else {
+                prefixMappings.clear();
+                final Element elem = createElement(uri, qName, atts);
+                current.appendChild(elem);
+                current = elem;
+                return;
+            }
+        }
+        getContentHandler().startElement(uri, localName, qName, atts);
+        if (!done && topicDepth == 0 && depth <= 2 && TOPIC_TOPIC.matches(atts)) {
+            topicDepth = depth;
+            header = XMLUtils.getDocumentBuilder().newDocument();
+            current = createElement(uri, qName, atts);
+            header.appendChild(current);
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (header != null) {
+            if (depth == topicDepth) {
+                flush();
+            } else {
+                current = current.getParentNode();
+                depth--;
+                return;
+            }
+        }
+        depth--;
+        getContentHandler().endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (header != null) {
+            if (cdata != null) {
+                cdata.append(ch, start, length);
+            } else {
+                current.appendChild(header.createTextNode(new String(ch, start, length)));
+            }
+        } else {
+            getContentHandler().characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        if (header != null) {
+            current.appendChild(header.createTextNode(new String(ch, start, length)));
+        } else {
+            getContentHandler().ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (header != null) {
+            current.appendChild(header.createProcessingInstruction(target, data));
+        } else {
+            getContentHandler().processingInstruction(target, data);
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        // namespace declarations in the header are regenerated from the fragment
+        if (header == null) {
+            getContentHandler().startPrefixMapping(prefix, uri);
+        } else {
+            prefixMappings.add(new String[] {prefix, uri});
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        if (header == null) {
+            getContentHandler().endPrefixMapping(prefix);
+        }
+    }
+
+    // LexicalHandler methods
+
+    @Override
+    public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.startDTD(name, publicId, systemId);
+        }
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.endDTD();
+        }
+    }
+
+    @Override
+    public void startEntity(final String name) throws SAXException {
+        // entity boundaries are not preserved in the header fragment
+        if (lexicalHandler != null && header == null) {
+            lexicalHandler.startEntity(name);
+        }
+    }
+
+    @Override
+    public void endEntity(final String name) throws SAXException {
+        if (lexicalHandler != null && header == null) {
+            lexicalHandler.endEntity(name);
+        }
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        if (header != null) {
+            cdata = new StringBuilder();
+        } else if (lexicalHandler != null) {
+            lexicalHandler.startCDATA();
+        }
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        if (header != null) {
+            current.appendChild(header.createCDATASection(cdata.toString()));
+            cdata = null;
+        } else if (lexicalHandler != null) {
+            lexicalHandler.endCDATA();
+        }
+    }
+
+    @Override
+    public void comment(final char[] ch, final int start, final int length) throws SAXException {
+        if (header != null) {
+            current.appendChild(header.createComment(new String(ch, start, length)));
+        } else if (lexicalHandler != null) {
+            lexicalHandler.comment(ch, start, length);
+        }
+    }
+
+    private boolean isHeader(final Attributes atts) {
+        for (final DitaClass cls : headerClasses) {
+            if (cls.matches(atts)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Element createElement(final String uri, final String qName, final Attributes atts) {
+        final Element elem = header.createElementNS(uri.isEmpty() ? null : uri, qName);
+        for (int i = 0; i < atts.getLength(); i++) {
+            final String attUri = atts.getURI(i);
+            elem.setAttributeNS(attUri.isEmpty() ? null : attUri, atts.getQName(i), atts.getValue(i));
+        }
+        return elem;
+    }
+
+    /**
+     * Insert metadata into buffered header and serialize it.
+     */
+    private void flush() throws SAXException {
+        final Element root = header.getDocumentElement();
+        header = null;
+        current = null;
+        done = true;
+        metaWriter.process(root.getOwnerDocument());
+        try {
+            final FilterHandler handler = new FilterHandler(getContentHandler(), lexicalHandler);
+            final SAXResult result = new SAXResult(handler);
+            if (lexicalHandler != null) {
+                result.setLexicalHandler(handler);
+            }
+            domToSaxTransformer.transform(new DOMSource(root), result);
+        } catch (final TransformerException e) {
+            throw new SAXException("Failed to serialize DOM node to SAX: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Content and lexical handler that passes through the contents of the document element.
+     */
+    private static class FilterHandler extends XMLFilterImpl implements LexicalHandler {
+
+        private final LexicalHandler lexicalHandler;
+        private int depth = 0;
+
+        FilterHandler(final ContentHandler handler, final LexicalHandler lexicalHandler) {
+            super();
+            setContentHandler(handler);
+            this.lexicalHandler = lexicalHandler;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            // ignore
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            // ignore
+        }
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+            if (depth > 0) {
+                getContentHandler().startPrefixMapping(prefix, uri);
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(final String prefix) throws SAXException {
+            if (depth > 0) {
+                getContentHandler().endPrefixMapping(prefix);
+            }
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+                throws SAXException {
+            if (depth++ > 0) {
+                getContentHandler().startElement(uri, localName, qName, atts);
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if (--depth > 0) {
+                getContentHandler().endElement(uri, localName, qName);
+            }
+        }
+
+        @Override
+        public void startDTD(final String name, final String publicId, final String systemId) {
+            // ignore
+        }
+
+        @Override
+        public void endDTD() {
+            // ignore
+        }
+
+        @Override
+        public void startEntity(final String name) {
+            // ignore
+        }
+
+        @Override
+        public void endEntity(final String name) {
+            // ignore
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            lexicalHandler.startCDATA();
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            lexicalHandler.endCDATA();
+        }
+
+        @Override
+        public void comment(final char[] ch, final int start, final int length) throws SAXException {
+            if (depth > 0) {
+                lexicalHandler.comment(ch, start, length);
+            }
+        }
+
+    }
+
+}
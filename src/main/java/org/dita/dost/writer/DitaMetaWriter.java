@@ -63,6 +63,13 @@ public final class DitaMetaWriter extends AbstractDitaMetaWriter {
             TOPIC_OTHERMETA
     ));
 
+    /**
+     * Test whether metadata table contains metadata inserted into topics.
+     */
+    boolean hasMetadata() {
+        return hasMetadata(titlealtsOrder) || hasMetadata(prologOrder) || hasMetadata(metadataOrder);
+    }
+
     public Document process(final Document doc) {
         Element root = doc.getDocumentElement();
         if (root.getTagName().equals(ELEMENT_NAME_DITA)) {
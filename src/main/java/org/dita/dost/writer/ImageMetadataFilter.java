@@ -11,6 +11,7 @@ import com.google.common.collect.ImmutableList;
 import org.apache.commons.codec.binary.Base64;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.reader.SvgMetadataReader;
+import org.dita.dost.util.ImageMetadataCache;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
 import org.dita.dost.util.XMLUtils;
@@ -38,6 +39,9 @@ import static org.dita.dost.util.URLUtils.toURI;
 
 /**
  * Image metadata filter.
+ *
+ * <p>Image metadata is read through an {@link ImageMetadataCache} that can be shared between filters and persisted
+ * between builds. Reading metadata and {@link #prefetch(FileInfo)} are thread-safe, filtering is not.</p>
  */
 public final class ImageMetadataFilter extends AbstractXMLFilter {
 
@@ -56,8 +60,7 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
     private int depth = 0;
     private final Map<URI, Attributes> cache = new HashMap<>();
     private final Job job;
-    private final XMLReader reader;
-    private final SvgMetadataReader svgMetadataReader;
+    private ImageMetadataCache metadataCache = new ImageMetadataCache();
 
     // Constructors ------------------------------------------------------------
 
@@ -69,14 +72,15 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         this.job = job;
         this.tempDir = job.tempDir;
         this.uplevels = job.getProperty("uplevels");
-        svgMetadataReader = new SvgMetadataReader();
-        try {
-            reader = XMLUtils.getXMLReader();
-        } catch (final SAXException e) {
-            throw new RuntimeException(e);
-        }
-        reader.setContentHandler(svgMetadataReader);
-        reader.setEntityResolver(new SvgMetadataReader.EmptyEntityResolver());
+    }
+
+    /**
+     * Set image metadata cache to read metadata through.
+     *
+     * @param metadataCache image metadata cache
+     */
+    public void setMetadataCache(final ImageMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
     }
 
     // AbstractWriter methods --------------------------------------------------
@@ -87,8 +91,6 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         if (filename == null || !filename.exists()) {
             return;
         }
-        svgMetadataReader.setLogger(logger);
-        svgMetadataReader.setJob(job);
         currentFile = filename.toURI();
         logger.info("Processing " + filename.getAbsolutePath());
         try {
@@ -102,6 +104,21 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         return ImmutableList.copyOf(cache.keySet());
     }
 
+    /**
+     * Read metadata of an image into the metadata cache.
+     *
+     * @param fi image file info
+     */
+    public void prefetch(final FileInfo fi) {
+        if (fi.src == null) {
+            return;
+        }
+        final URI imgInput = getImageFile(fi, fi.uri);
+        if (imgInput != null) {
+            metadataCache.get(imgInput, this::readMetadata);
+        }
+    }
+
     // XMLFilter methods -------------------------------------------------------
 
     @Override
@@ -113,7 +130,7 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
             if (href != null) {
                 final URI imgInput = getImageFile(href);
                 if (imgInput != null) {
-                    Attributes m = cache.computeIfAbsent(imgInput, this::readMetadata);
+                    final Attributes m = cache.computeIfAbsent(imgInput, this::getMetadata);
                     a.addAll(m);
                 } else {
                     logger.error("Image file " + href + " not found");
@@ -167,7 +184,18 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         }
     }
 
-    private Attributes readMetadata(final URI imgInput) {
+    private Attributes getMetadata(final URI imgInput) {
+        final Dimensions dimensions = metadataCache.get(imgInput, this::readMetadata);
+        return dimensions != null ? dimensions.getAttributes() : EMPTY_ATTR;
+    }
+
+    /**
+     * Read image metadata.
+     *
+     * @param imgInput absolute image URI
+     * @return image metadata, {@code null} if reading failed
+     */
+    private Dimensions readMetadata(final URI imgInput) {
         logger.info("Reading " + imgInput);
         final String mimeType = getMimeType(imgInput);
         switch (mimeType) {
@@ -178,17 +206,25 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         }
     }
 
-    private Attributes readSvgMetadata(final URI imgInput) {
+    private Dimensions readSvgMetadata(final URI imgInput) {
+        final SvgMetadataReader svgMetadataReader = new SvgMetadataReader();
+        svgMetadataReader.setLogger(logger);
+        svgMetadataReader.setJob(job);
+        final XMLReader reader = XMLUtils.getXMLReaderPool().borrow();
         try (final InputStream in = getInputStream(imgInput)) {
+            reader.setContentHandler(svgMetadataReader);
+            reader.setEntityResolver(new SvgMetadataReader.EmptyEntityResolver());
             reader.parse(new InputSource(in));
-            return svgMetadataReader.getDimensions().getAttributes();
+            return svgMetadataReader.getDimensions();
         } catch (final IOException | SAXException e) {
             logger.error("Failed to read image " + imgInput + " metadata: " + e.getMessage(), e);
+        } finally {
+            XMLUtils.getXMLReaderPool().release(reader);
         }
-        return EMPTY_ATTR;
+        return null;
     }
 
-    private Attributes readBitmapMetadata(final URI imgInput) {
+    private Dimensions readBitmapMetadata(final URI imgInput) {
         try {
             InputStream in = null;
             ImageReader r = null;
@@ -199,6 +235,7 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
                 final Iterator<ImageReader> i = ImageIO.getImageReaders(iis);
                 if (!i.hasNext()) {
                     logger.info("Image " + imgInput + " format not supported");
+                    return new Dimensions();
                 } else {
                     r = i.next();
                     r.setInput(iis);
@@ -219,7 +256,7 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
                         final int dpi = Math.round(MM_TO_INCH / v);
                         dimensions.verticalDpi = Integer.toString(dpi);
                     }
-                    return dimensions.getAttributes();
+                    return dimensions;
                 }
             } finally {
                 if (r != null) {
@@ -237,7 +274,7 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         } catch (final Exception e) {
             logger.error("Failed to read image " + imgInput + " metadata: " + e.getMessage(), e);
         }
-        return EMPTY_ATTR;
+        return null;
     }
 
     private String getMimeType(final URI imgInput) {
@@ -274,8 +311,18 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
 
     // TODO create a list of files and list of directories, then check permutations for hits
     private URI getImageFile(final URI href) {
+        return getImageFile(job.getFileInfo(currentFile.resolve(href)), href);
+    }
+
+    /**
+     * Find image file from output, temporary or input directory.
+     *
+     * @param fi image file info, may be {@code null}
+     * @param href image reference to use if file info is not available
+     * @return absolute image URI, {@code null} if not found
+     */
+    private URI getImageFile(final FileInfo fi, final URI href) {
         final URI fileName;
-        final FileInfo fi = job.getFileInfo(currentFile.resolve(href));
         if (fi != null) {
             fileName = job.getInputDir().relativize(fi.src);
         } else {
@@ -57,4 +57,33 @@ public class IndexCollator {
 
     }
 
+    /**
+     * Get collation key for a string. Comparing keys as unsigned bytes with {@link #compareKeys(byte[], byte[])}
+     * gives the same result as comparing the strings with {@link #compare(Object, Object)}.
+     *
+     * @param value string to get key for
+     * @return collation key bytes
+     */
+    public byte[] getCollationKey(final String value) {
+        if (icuCollator) {
+            return this.icu4jCollator.getCollationKey(value).toByteArray();
+        } else {
+            return this.defaultCollator.getCollationKey(value).toByteArray();
+        }
+    }
+
+    /**
+     * Compare collation keys returned by {@link #getCollationKey(String)}.
+     */
+    public static int compareKeys(final byte[] k1, final byte[] k2) {
+        final int len = Math.min(k1.length, k2.length);
+        for (int i = 0; i < len; i++) {
+            final int c = (k1[i] & 0xFF) - (k2[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return k1.length - k2.length;
+    }
+
 }
@@ -1,11 +1,16 @@
 package com.idiominc.ws.opentopic.fo.index2;
 
 import com.ibm.icu.text.Collator;
+import com.idiominc.ws.opentopic.fo.index2.configuration.CharRange;
 import com.idiominc.ws.opentopic.fo.index2.configuration.ConfigEntry;
+import com.idiominc.ws.opentopic.fo.index2.configuration.ConfigEntryImpl;
 import com.idiominc.ws.opentopic.fo.index2.configuration.IndexConfiguration;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
@@ -101,6 +106,8 @@ public final class IndexGroupProcessor {
         }
          */
 
+        final EntryIndex index = new EntryIndex(indexMap, collator);
+
         for (int i = 0; i < IndexGroups.length; i++) {
             final MyIndexGroup group = IndexGroups[i];
             final ConfigEntry configEntry = group.getConfigEntry();
@@ -109,15 +116,8 @@ public final class IndexGroupProcessor {
 
             if (groupMembers.length > 0) {
                 //Find entries by comaping first letter with a chars in current config entry
-                for (final String key : new ArrayList<String>(indexMap.keySet())) {
-                    if (key.length() > 0) {
-                        final String value = getValue((IndexEntry) indexMap.get(key));
-                        //                        final char c = value.charAt(0);
-                        if (configEntry.isInRange(value,collator)) {
-                            final IndexEntry entry = (IndexEntry) indexMap.remove(key);
-                            group.addEntry(entry);
-                        }
-                    }
+                for (final IndexedEntry entry : index.takeInRange(configEntry)) {
+                    group.addEntry(entry.entry);
                 }
             } else {
                 //Get index entries by range specified by two keys
@@ -127,18 +127,10 @@ public final class IndexGroupProcessor {
                     final ConfigEntry nextEntry = entries[i + 1];
                     key2 = nextEntry.getKey();
                 }
-                final String[] indexMapKeys = getIndexKeysOfIndexesInRange(key1, key2, collator, indexMap);
-
-                for (final String mapKey : indexMapKeys) {
-                    final IndexEntry entry = (IndexEntry) indexMap.remove(mapKey);
-                    group.addEntry(entry);
+                for (final IndexedEntry entry : index.takeInRange(key1, key2)) {
+                    group.addEntry(entry.entry);
                 }
             }
-            /*
-            if (group.getEntries().length > 0) {
-                result.add(group);
-            }
-             */
         }
 
         //If some terms remain uncategorized, and a recognized special character
@@ -148,24 +140,21 @@ public final class IndexGroupProcessor {
             final ConfigEntry configEntry = group.getConfigEntry();
             final String configKey = configEntry.getKey();
             if (configKey.equals(SPECIAL_CHARACTER_GROUP_KEY)) {
-              for (final String key : new ArrayList<String>(indexMap.keySet())) {
-                    if (key.length() > 0) {
-                        final String value = getValue((IndexEntry) indexMap.get(key));
-                        //                        final char c = value.charAt(0);
-                        logger.info(MessageUtils.getMessage("PDFJ003I", value).toString());
-                        final IndexEntry entry = (IndexEntry) indexMap.remove(key);
-                        group.addEntry(entry);
+                for (final IndexedEntry entry : index.getRemaining()) {
+                    if (entry.key.length() > 0) {
+                        logger.info(MessageUtils.getMessage("PDFJ003I", entry.value).toString());
+                        index.take(entry);
+                        group.addEntry(entry.entry);
                     }
                 }
             }
         }
 
         //No recognized "Special characters" group; uncategorized terms have no place to go, must be dropped
-        if (!indexMap.isEmpty()) {
-            for (final String key : new ArrayList<String>(indexMap.keySet())) {
-                if (key.length() > 0) {
-                    final IndexEntry entry = (IndexEntry) indexMap.get(key);
-                    logger.error(MessageUtils.getMessage("PDFJ001E", entry.toString()).toString());
+        if (index.hasRemaining()) {
+            for (final IndexedEntry entry : index.getRemaining()) {
+                if (entry.key.length() > 0) {
+                    logger.error(MessageUtils.getMessage("PDFJ001E", entry.entry.toString()).toString());
                 }
             }
             if (IndexPreprocessorTask.failOnError) {
@@ -195,26 +184,6 @@ public final class IndexGroupProcessor {
     }
 
 
-    private static String[] getIndexKeysOfIndexesInRange(final String theKey1, final String theKey2, final IndexCollator theCollator, final HashMap<String, IndexEntry> theIndexEntryMap) {
-        final ArrayList<String> res = new ArrayList<String>();
-        for (final Map.Entry<String, IndexEntry> e : theIndexEntryMap.entrySet()) {
-            final int res1 = theCollator.compare(theKey1, getValue(e.getValue()));
-            if (res1 <= 0) {
-                if (theKey2 == null) {
-                    //the right range is not specified
-                    res.add(e.getKey());
-                    continue;
-                }
-                final int res2 = theCollator.compare(theKey2, e.getKey());
-                if (res2 > 0) {
-                    res.add(e.getKey());
-                }
-            }
-        }
-        return (String[]) res.toArray(new String[res.size()]);
-    }
-
-
     private static boolean doesStart(final String sourceString, final String[] compStrings) {
         for (final String compString : compStrings) {
             if (sourceString.startsWith(compString)) {
@@ -283,6 +252,252 @@ public final class IndexGroupProcessor {
     }
 
 
+    /**
+     * Index entry with precomputed collation keys.
+     */
+    private static final class IndexedEntry {
+        /** Index map key, entry value. */
+        private final String key;
+        /** Value used for grouping, sort string or entry value. */
+        private final String value;
+        private final IndexEntry entry;
+        private final byte[] keyCollationKey;
+        private final byte[] valueCollationKey;
+        private boolean taken;
+
+        private IndexedEntry(final String key, final IndexEntry entry, final IndexCollator collator) {
+            this.key = key;
+            this.value = getValue(entry);
+            this.entry = entry;
+            this.keyCollationKey = collator.getCollationKey(key);
+            this.valueCollationKey = value.equals(key) ? keyCollationKey : collator.getCollationKey(value);
+        }
+    }
+
+    /**
+     * Index entries sorted by collation key and by string value, so that entries for a group can be found with
+     * binary search instead of comparing every entry against every group. Entries are taken from the index as
+     * they are assigned to groups.
+     */
+    private static final class EntryIndex {
+        private final IndexCollator collator;
+        private final List<IndexedEntry> entries;
+        /** Entries sorted by collation key of value. */
+        private final IndexedEntry[] byValueCollationKey;
+        /** Entries sorted by collation key of key. */
+        private final IndexedEntry[] byKeyCollationKey;
+        /** Entries sorted by value in code unit order, for prefix lookup. */
+        private final IndexedEntry[] byValue;
+        private final Map<String, List<IndexedEntry>> valueMap = new HashMap<String, List<IndexedEntry>>();
+        private int remaining;
+
+        private EntryIndex(final Map<String, IndexEntry> indexMap, final IndexCollator collator) {
+            this.collator = collator;
+            entries = new ArrayList<IndexedEntry>(indexMap.size());
+            for (final Map.Entry<String, IndexEntry> e : indexMap.entrySet()) {
+                final IndexedEntry entry = new IndexedEntry(e.getKey(), e.getValue(), collator);
+                entries.add(entry);
+                List<IndexedEntry> values = valueMap.get(entry.value);
+                if (values == null) {
+                    values = new ArrayList<IndexedEntry>(1);
+                    valueMap.put(entry.value, values);
+                }
+                values.add(entry);
+            }
+            remaining = entries.size();
+            final IndexedEntry[] array = entries.toArray(new IndexedEntry[entries.size()]);
+            byValueCollationKey = array.clone();
+            Arrays.sort(byValueCollationKey, VALUE_COLLATION_KEY_ORDER);
+            byKeyCollationKey = array.clone();
+            Arrays.sort(byKeyCollationKey, KEY_COLLATION_KEY_ORDER);
+            byValue = array.clone();
+            Arrays.sort(byValue, VALUE_ORDER);
+        }
+
+        /**
+         * Take entries that belong to a group with members. Same as taking every entry for which
+         * {@link ConfigEntry#isInRange(String, IndexCollator)} is true.
+         */
+        private List<IndexedEntry> takeInRange(final ConfigEntry configEntry) {
+            final List<IndexedEntry> res = new ArrayList<IndexedEntry>();
+            if (!(configEntry instanceof ConfigEntryImpl)) {
+                for (final IndexedEntry entry : entries) {
+                    if (!entry.taken && entry.key.length() > 0 && configEntry.isInRange(entry.value, collator)) {
+                        take(entry, res);
+                    }
+                }
+                return res;
+            }
+            for (final String member : configEntry.getGroupMembers()) {
+                // value starts with member
+                for (int i = lowerBound(byValue, member); i < byValue.length; i++) {
+                    final IndexedEntry entry = byValue[i];
+                    if (!entry.value.startsWith(member)) {
+                        break;
+                    }
+                    takeMember(entry, res);
+                }
+                // member starts with value
+                for (int i = 1; i <= member.length(); i++) {
+                    final List<IndexedEntry> values = valueMap.get(member.substring(0, i));
+                    if (values != null) {
+                        for (final IndexedEntry entry : values) {
+                            takeMember(entry, res);
+                        }
+                    }
+                }
+            }
+            for (final CharRange range : ((ConfigEntryImpl) configEntry).getRanges()) {
+                final int start = upperBound(byValueCollationKey, collator.getCollationKey(range.getStart()));
+                final int end = lowerBound(byValueCollationKey, collator.getCollationKey(range.getEnd()));
+                for (int i = start; i < end; i++) {
+                    takeMember(byValueCollationKey[i], res);
+                }
+            }
+            return res;
+        }
+
+        /**
+         * Take entries whose value is not before first key and whose key is before second key.
+         *
+         * @param key1 range start key
+         * @param key2 range end key, {@code null} if range is open
+         */
+        private List<IndexedEntry> takeInRange(final String key1, final String key2) {
+            final List<IndexedEntry> res = new ArrayList<IndexedEntry>();
+            final byte[] start = collator.getCollationKey(key1);
+            final int first = lowerBound(byValueCollationKey, start);
+            if (key2 == null) {
+                for (int i = first; i < byValueCollationKey.length; i++) {
+                    take(byValueCollationKey[i], res);
+                }
+                return res;
+            }
+            final byte[] end = collator.getCollationKey(key2);
+            final int last = bound(byKeyCollationKey, end, false, true);
+            if (byValueCollationKey.length - first <= last) {
+                for (int i = first; i < byValueCollationKey.length; i++) {
+                    final IndexedEntry entry = byValueCollationKey[i];
+                    if (IndexCollator.compareKeys(entry.keyCollationKey, end) < 0) {
+                        take(entry, res);
+                    }
+                }
+            } else {
+                for (int i = 0; i < last; i++) {
+                    final IndexedEntry entry = byKeyCollationKey[i];
+                    if (IndexCollator.compareKeys(entry.valueCollationKey, start) >= 0) {
+                        take(entry, res);
+                    }
+                }
+            }
+            return res;
+        }
+
+        private void takeMember(final IndexedEntry entry, final List<IndexedEntry> res) {
+            if (entry.key.length() > 0 && entry.value.length() > 0) {
+                take(entry, res);
+            }
+        }
+
+        private void take(final IndexedEntry entry, final List<IndexedEntry> res) {
+            if (!entry.taken) {
+                take(entry);
+                res.add(entry);
+            }
+        }
+
+        private void take(final IndexedEntry entry) {
+            entry.taken = true;
+            remaining--;
+        }
+
+        private boolean hasRemaining() {
+            return remaining > 0;
+        }
+
+        /**
+         * Get entries that have not been taken.
+         */
+        private List<IndexedEntry> getRemaining() {
+            final List<IndexedEntry> res = new ArrayList<IndexedEntry>(remaining);
+            for (final IndexedEntry entry : entries) {
+                if (!entry.taken) {
+                    res.add(entry);
+                }
+            }
+            return res;
+        }
+
+        /** Index of first entry whose value is not before the given string. */
+        private static int lowerBound(final IndexedEntry[] array, final String value) {
+            int low = 0;
+            int high = array.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (array[mid].value.compareTo(value) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** Index of first entry whose value collation key is not before the given key. */
+        private static int lowerBound(final IndexedEntry[] array, final byte[] key) {
+            return bound(array, key, false, false);
+        }
+
+        /** Index of first entry whose value collation key is after the given key. */
+        private static int upperBound(final IndexedEntry[] array, final byte[] key) {
+            return bound(array, key, true, false);
+        }
+
+        /**
+         * Binary search entries sorted by collation key.
+         *
+         * @param array sorted entries
+         * @param key collation key to search
+         * @param upper {@code true} to find first entry after key, {@code false} to find first entry not before key
+         * @param keyOrder {@code true} if entries are sorted by key collation key, {@code false} if by value
+         *                 collation key
+         */
+        private static int bound(final IndexedEntry[] array, final byte[] key, final boolean upper,
+                                 final boolean keyOrder) {
+            int low = 0;
+            int high = array.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                final IndexedEntry entry = array[mid];
+                final int c = IndexCollator.compareKeys(keyOrder ? entry.keyCollationKey : entry.valueCollationKey, key);
+                if (c < 0 || (upper && c == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final Comparator<IndexedEntry> VALUE_COLLATION_KEY_ORDER = new Comparator<IndexedEntry>() {
+        public int compare(final IndexedEntry e1, final IndexedEntry e2) {
+            return IndexCollator.compareKeys(e1.valueCollationKey, e2.valueCollationKey);
+        }
+    };
+
+    private static final Comparator<IndexedEntry> KEY_COLLATION_KEY_ORDER = new Comparator<IndexedEntry>() {
+        public int compare(final IndexedEntry e1, final IndexedEntry e2) {
+            return IndexCollator.compareKeys(e1.keyCollationKey, e2.keyCollationKey);
+        }
+    };
+
+    private static final Comparator<IndexedEntry> VALUE_ORDER = new Comparator<IndexedEntry>() {
+        public int compare(final IndexedEntry e1, final IndexedEntry e2) {
+            return e1.value.compareTo(e2.value);
+        }
+    };
+
     private static class MyIndexGroup
     implements IndexGroup {
         private final String label;
@@ -34,7 +34,7 @@ with those set forth herein.
 
 This file is part of the DITA Open Toolkit project.
 See the accompanying LICENSE file for applicable license.
- */class ConfigEntryImpl
+ */public class ConfigEntryImpl
  implements ConfigEntry {
      private final String label;
      private final String key;
@@ -72,6 +72,13 @@ See the accompanying LICENSE file for applicable license.
          return this.members;
      }
 
+     /**
+      * @return character ranges of this group, a string strictly between range start and end belongs to this group
+      */
+     public CharRange[] getRanges() {
+         return this.ranges;
+     }
+
      public boolean isInRange(final String value, final IndexCollator collator) {
          if (value.length() > 0) {
              for (final String member : members) {
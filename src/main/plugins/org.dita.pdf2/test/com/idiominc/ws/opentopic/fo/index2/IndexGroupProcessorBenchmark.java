@@ -0,0 +1,51 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package com.idiominc.ws.opentopic.fo.index2;
+
+import com.idiominc.ws.opentopic.fo.index2.configuration.IndexConfiguration;
+import org.dita.dost.TestUtils;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+import static com.idiominc.ws.opentopic.fo.index2.IndexGroupProcessorTest.LOCALE;
+import static com.idiominc.ws.opentopic.fo.index2.IndexGroupProcessorTest.createConfiguration;
+import static com.idiominc.ws.opentopic.fo.index2.IndexGroupProcessorTest.createEntries;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark grouping with a large CJK index configuration. Not run as part of the default test task.
+ */
+public class IndexGroupProcessorBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexGroupProcessorBenchmark.class);
+
+    @Test
+    public void testProcessLargeConfiguration() {
+        final int groupCount = 600;
+        final IndexConfiguration config = createConfiguration(groupCount);
+        final IndexEntry[] entries = createEntries(50000, groupCount, new Random(0));
+
+        final IndexGroupProcessor processor = new IndexGroupProcessor();
+        processor.setLogger(new TestUtils.TestLogger());
+        final long start = System.nanoTime();
+        final IndexGroup[] act = processor.process(entries, config, LOCALE);
+        final long time = (System.nanoTime() - start) / 1000000;
+        logger.info("Grouped {} index entries into {} groups in {} ms",
+                entries.length, config.getEntries().length, time);
+
+        int count = 0;
+        for (final IndexGroup group : act) {
+            count += group.getEntries().length;
+        }
+        assertEquals(entries.length, count);
+    }
+
+}
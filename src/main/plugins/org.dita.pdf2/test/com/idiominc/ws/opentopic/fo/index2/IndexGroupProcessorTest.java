@@ -0,0 +1,164 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package com.idiominc.ws.opentopic.fo.index2;
+
+import com.idiominc.ws.opentopic.fo.index2.configuration.CharRange;
+import com.idiominc.ws.opentopic.fo.index2.configuration.ConfigEntry;
+import com.idiominc.ws.opentopic.fo.index2.configuration.ConfigEntryImpl;
+import com.idiominc.ws.opentopic.fo.index2.configuration.IndexConfiguration;
+import org.dita.dost.TestUtils;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class IndexGroupProcessorTest {
+
+    static final Locale LOCALE = Locale.JAPANESE;
+
+    @Test
+    public void testProcess() {
+        final IndexConfiguration config = createConfiguration(50);
+        final IndexEntry[] entries = createEntries(2000, 50, new Random(0));
+
+        final IndexGroupProcessor processor = new IndexGroupProcessor();
+        processor.setLogger(new TestUtils.TestLogger());
+        final IndexGroup[] act = processor.process(entries, config, LOCALE);
+
+        assertEquals(group(entries, config), toMap(act));
+    }
+
+    /**
+     * Create configuration with Latin groups without members, and CJK groups with members and character ranges.
+     */
+    static IndexConfiguration createConfiguration(final int cjkGroupCount) {
+        final IndexConfiguration config = new IndexConfiguration();
+        config.addEntry(new ConfigEntryImpl("Specials", IndexGroupProcessor.SPECIAL_CHARACTER_GROUP_KEY,
+                new String[0]));
+        for (char c = 'A'; c <= 'Z'; c++) {
+            config.addEntry(new ConfigEntryImpl(String.valueOf(c), String.valueOf(c), new String[0]));
+        }
+        for (int i = 0; i < cjkGroupCount; i++) {
+            final String start = String.valueOf(cjk(i, 0));
+            final String end = String.valueOf(cjk(i + 1, 0));
+            final ConfigEntryImpl entry = new ConfigEntryImpl(start, start, new String[] {start});
+            entry.addRange(new CharRange(start, end));
+            config.addEntry(entry);
+        }
+        return config;
+    }
+
+    static IndexEntry[] createEntries(final int count, final int cjkGroupCount, final Random random) {
+        final IndexEntry[] entries = new IndexEntry[count];
+        for (int i = 0; i < count; i++) {
+            final String value;
+            String sortString = null;
+            switch (random.nextInt(4)) {
+                case 0:
+                    value = (char) ('a' + random.nextInt(26)) + Integer.toString(i, 36);
+                    break;
+                case 1:
+                    value = "#" + i;
+                    break;
+                default:
+                    value = String.valueOf(cjk(random.nextInt(cjkGroupCount), random.nextInt(8))) + i;
+                    if (random.nextInt(4) == 0) {
+                        sortString = String.valueOf(cjk(random.nextInt(cjkGroupCount), random.nextInt(8)));
+                    }
+            }
+            entries[i] = createEntry(value, sortString);
+        }
+        return entries;
+    }
+
+    private static char cjk(final int group, final int offset) {
+        return (char) (0x4E00 + group * 8 + offset);
+    }
+
+    private static IndexEntry createEntry(final String value, final String sortString) {
+        return (IndexEntry) Proxy.newProxyInstance(IndexEntry.class.getClassLoader(),
+                new Class[] {IndexEntry.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getValue":
+                        case "toString":
+                            return value;
+                        case "getSortString":
+                            return sortString;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "getRefIDs":
+                            return new String[0];
+                        case "getChildIndexEntries":
+                            return new IndexEntry[0];
+                        default:
+                            return method.getReturnType() == boolean.class ? false : null;
+                    }
+                });
+    }
+
+    private static Map<String, Set<String>> toMap(final IndexGroup[] groups) {
+        final Map<String, Set<String>> res = new HashMap<>();
+        for (final IndexGroup group : groups) {
+            final Set<String> values = new HashSet<>();
+            for (final IndexEntry entry : group.getEntries()) {
+                values.add(entry.getValue());
+            }
+            res.put(group.getLabel(), values);
+        }
+        return res;
+    }
+
+    /**
+     * Reference grouping that compares every entry against every group.
+     */
+    private static Map<String, Set<String>> group(final IndexEntry[] entries, final IndexConfiguration config) {
+        final IndexCollator collator = new IndexCollator(LOCALE);
+        final Map<String, IndexEntry> remaining = new HashMap<>();
+        for (final IndexEntry entry : entries) {
+            remaining.put(entry.getValue(), entry);
+        }
+        final Map<String, Set<String>> res = new HashMap<>();
+        final ConfigEntry[] configEntries = config.getEntries();
+        for (int i = 0; i < configEntries.length; i++) {
+            final ConfigEntry configEntry = configEntries[i];
+            final Set<String> values = new HashSet<>();
+            for (final Iterator<IndexEntry> it = remaining.values().iterator(); it.hasNext(); ) {
+                final IndexEntry entry = it.next();
+                final String value = entry.getSortString() != null ? entry.getSortString() : entry.getValue();
+                final boolean inGroup;
+                if (configEntry.getGroupMembers().length > 0) {
+                    inGroup = configEntry.isInRange(value, collator);
+                } else {
+                    final String key2 = i + 1 < configEntries.length ? configEntries[i + 1].getKey() : null;
+                    inGroup = collator.compare(configEntry.getKey(), value) <= 0
+                            && (key2 == null || collator.compare(key2, entry.getValue()) > 0);
+                }
+                if (inGroup) {
+                    values.add(entry.getValue());
+                    it.remove();
+                }
+            }
+            if (!values.isEmpty()) {
+                res.put(configEntry.getLabel(), values);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            final Set<String> specials = res.computeIfAbsent("Specials", k -> new HashSet<>());
+            for (final IndexEntry entry : remaining.values()) {
+                specials.add(entry.getValue());
+            }
+        }
+        return res;
+    }
+
+}
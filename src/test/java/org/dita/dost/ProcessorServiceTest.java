@@ -0,0 +1,82 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProcessorServiceTest {
+
+    @Rule
+    public final TemporaryFolder tempDirGenerator = new TemporaryFolder();
+
+    private ProcessorService service;
+
+    @Before
+    public void setUp() throws Exception {
+        String ditaDir = System.getProperty("dita.dir");
+        if (ditaDir == null) {
+            ditaDir = new File("src" + File.separator + "main").getAbsolutePath();
+        }
+        final ProcessorFactory pf = ProcessorFactory.newInstance(new File(ditaDir));
+        pf.setBaseTempDir(tempDirGenerator.newFolder("tmp"));
+        service = new ProcessorService(pf, 2);
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+    }
+
+    @Test
+    public void testParseRequest() {
+        final Map<String, String> exp = new HashMap<>();
+        exp.put("transtype", "html5");
+        exp.put("args.input", "/foo bar/root.ditamap");
+        exp.put("args.filter", "a=b.ditaval");
+        assertEquals(exp, ProcessorService.parseRequest("transtype=html5\targs.input=/foo bar/root.ditamap\targs.filter=a=b.ditaval"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRequestInvalid() {
+        ProcessorService.parseRequest("transtype=html5\tfoo");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubmitWithoutInput() {
+        final Map<String, String> request = new HashMap<>();
+        request.put("transtype", "html5");
+        request.put("output.dir", "out");
+        service.submit(request);
+    }
+
+    @Test
+    public void testServeInvalidRequests() throws Exception {
+        final String in = "id=first\ttranstype=html5\toutput.dir=out\n"
+                + "\n"
+                + "transtype\n";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.serve(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out);
+        assertEquals("first\tFAILED\tProperty args.input not set\n"
+                        + "2\tFAILED\tInvalid property transtype\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+    }
+
+}
@@ -10,8 +10,11 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ProcessorTest {
@@ -107,4 +110,39 @@ public class ProcessorTest {
         }
     }
 
+    @Test
+    public void testIncremental() throws Exception {
+        final File ditaDir = tempDirGenerator.newFolder("dita");
+        Files.write(new File(ditaDir, "build.xml").toPath(), (
+                "<project name='test'>" +
+                "<target name='dita2html5'><touch file='${dita.temp.dir}/${build}'/></target>" +
+                "</project>").getBytes(StandardCharsets.UTF_8));
+        final ProcessorFactory pf = ProcessorFactory.newInstance(ditaDir);
+        pf.setBaseTempDir(tempDir);
+        final File mapFile = new File(getClass().getClassLoader().getResource("ProcessorTest/test.ditamap").toURI());
+        final File out = tempDirGenerator.newFolder("out");
+
+        for (final String build : new String[] {"first", "second"}) {
+            pf.newProcessor("html5")
+                    .setInput(mapFile)
+                    .setOutputDir(out)
+                    .setProperty("incremental", "true")
+                    .setProperty("build", build)
+                    .createDebugLog(false)
+                    .run();
+        }
+        final File[] tempDirs = tempDir.listFiles(File::isDirectory);
+        assertEquals(1, tempDirs.length);
+        assertTrue(new File(tempDirs[0], "first").exists());
+        assertTrue(new File(tempDirs[0], "second").exists());
+
+        pf.newProcessor("html5")
+                .setInput(mapFile)
+                .setOutputDir(out)
+                .setProperty("build", "third")
+                .createDebugLog(false)
+                .run();
+        assertEquals(1, tempDir.listFiles(File::isDirectory).length);
+    }
+
 }
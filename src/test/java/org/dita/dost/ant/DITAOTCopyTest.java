@@ -0,0 +1,145 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.ant;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class DITAOTCopyTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File srcDir;
+    private File destDir;
+
+    @Before
+    public void setUp() throws IOException {
+        srcDir = tempDir.newFolder("src");
+        destDir = new File(tempDir.getRoot(), "out");
+        for (final String name : new String[] {"a.png", "sub/b.png", "sub/c.png"}) {
+            final File f = new File(srcDir, name);
+            f.getParentFile().mkdirs();
+            write(f, name);
+        }
+    }
+
+    @Test
+    public void copyResources() throws IOException {
+        createTask(null).execute();
+        assertEquals("a.png", read(new File(destDir, "a.png")));
+        assertEquals("sub/b.png", read(new File(destDir, "sub/b.png")));
+        assertEquals("sub/c.png", read(new File(destDir, "sub/c.png")));
+        assertEquals(new File(srcDir, "a.png").lastModified(), new File(destDir, "a.png").lastModified());
+    }
+
+    @Test
+    public void copyResources_upToDate() throws IOException {
+        createTask(null).execute();
+        final File dst = new File(destDir, "a.png");
+        write(dst, "A.png");
+        Files.setLastModifiedTime(dst.toPath(), Files.getLastModifiedTime(new File(srcDir, "a.png").toPath()));
+        createTask(null).execute();
+        assertEquals("A.png", read(dst));
+
+        Files.setLastModifiedTime(dst.toPath(), FileTime.fromMillis(0L));
+        createTask(null).execute();
+        assertEquals("a.png", read(dst));
+    }
+
+    @Test
+    public void copyResources_newerDestination() throws IOException {
+        createTask(null).execute();
+        final File dst = new File(destDir, "a.png");
+        write(dst, "modified");
+        Files.setLastModifiedTime(dst.toPath(), FileTime.fromMillis(new File(srcDir, "a.png").lastModified() + 60000L));
+        createTask(null).execute();
+        assertEquals("modified", read(dst));
+
+        final DITAOTCopy task = createTask(null);
+        task.setOverwrite(true);
+        task.execute();
+        assertEquals("a.png", read(dst));
+    }
+
+    @Test
+    public void copyIncludes_newerDestination() throws IOException {
+        final File dst = new File(destDir, "a.png");
+        dst.getParentFile().mkdirs();
+        write(dst, "modified");
+        Files.setLastModifiedTime(dst.toPath(), FileTime.fromMillis(new File(srcDir, "a.png").lastModified() + 60000L));
+        final DITAOTCopy task = new DITAOTCopy();
+        task.setProject(new Project());
+        task.setTodir(destDir);
+        task.setIncludes(new File(srcDir, "a.png").getPath());
+        task.execute();
+        assertEquals("modified", read(dst));
+    }
+
+    @Test
+    public void copyResources_hardlink() throws IOException {
+        createTask("hardlink").execute();
+        final File dst = new File(destDir, "sub/b.png");
+        assertEquals("sub/b.png", read(dst));
+        assertTrue(Files.isSameFile(new File(srcDir, "sub/b.png").toPath(), dst.toPath()));
+    }
+
+    @Test
+    public void copyIncludes() throws IOException {
+        final DITAOTCopy task = new DITAOTCopy();
+        task.setProject(new Project());
+        task.setTodir(destDir);
+        task.setIncludes(new File(srcDir, "a.png").getPath() + "," + new File(srcDir, "sub/b.png").getPath());
+        task.setRelativePaths("img/a.png,img/b.png");
+        task.execute();
+        assertEquals("a.png", read(new File(destDir, "img/a.png")));
+        assertEquals("sub/b.png", read(new File(destDir, "img/b.png")));
+    }
+
+    @Test(expected = org.apache.tools.ant.BuildException.class)
+    public void setMode_unsupported() {
+        new DITAOTCopy().setMode("move");
+    }
+
+    private DITAOTCopy createTask(final String mode) {
+        final Project project = new Project();
+        final DITAOTCopy task = new DITAOTCopy();
+        task.setProject(project);
+        task.setTodir(destDir);
+        task.setThreads(2);
+        if (mode != null) {
+            task.setMode(mode);
+        }
+        final FileSet fs = new FileSet();
+        fs.setProject(project);
+        fs.setDir(srcDir);
+        task.add(fs);
+        return task;
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+}
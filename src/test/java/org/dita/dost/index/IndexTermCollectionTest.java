@@ -11,6 +11,7 @@ import static org.junit.Assert.*;
 
 import org.dita.dost.TestUtils;
 import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.util.DITAOTCollator;
 
 import java.io.File;
 import java.io.IOException;
@@ -18,6 +19,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 
 import org.dita.dost.writer.HTMLIndexWriter;
 import org.junit.After;
@@ -115,6 +118,47 @@ public class IndexTermCollectionTest {
                 i.getTermList());
     }
 
+    @Test
+    public void testAddTermMerge() {
+        final IndexTermCollection i = new IndexTermCollection();
+        final IndexTerm first = new IndexTerm();
+        first.setTermName("term");
+        first.setTermKey("term");
+        first.addTarget(createTarget("a.html"));
+        i.addTerm(first);
+        final IndexTerm second = new IndexTerm();
+        second.setTermName("term");
+        second.setTermKey("term");
+        second.addTarget(createTarget("b.html"));
+        i.addTerm(second);
+        assertEquals(1, i.getTermList().size());
+        assertEquals(2, i.getTermList().get(0).getTargetList().size());
+    }
+
+    @Test
+    public void testSortLarge() {
+        final IndexTermCollection i = new IndexTermCollection();
+        final Random random = new Random(0);
+        final List<IndexTerm> exp = new ArrayList<>();
+        for (int n = 0; n < DITAOTCollator.PARALLEL_SORT_THRESHOLD * 2; n++) {
+            final IndexTerm term = new IndexTerm();
+            term.setTermName("term" + n);
+            term.setTermKey((random.nextBoolean() ? "\u00c4" : "a") + Integer.toString(random.nextInt(), 36));
+            i.addTerm(term);
+            exp.add(term);
+        }
+        i.sort();
+        Collections.sort(exp);
+        assertEquals(exp, i.getTermList());
+    }
+
+    private IndexTermTarget createTarget(final String uri) {
+        final IndexTermTarget target = new IndexTermTarget();
+        target.setTargetName(uri);
+        target.setTargetURI(uri);
+        return target;
+    }
+
     @Test
     public void testOutputTerms() throws DITAOTException {
         final IndexTermCollection i = new IndexTermCollection();
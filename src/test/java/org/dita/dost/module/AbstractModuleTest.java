@@ -124,7 +124,7 @@ public abstract class AbstractModuleTest {
 
     abstract AbstractPipelineModule getModule(File tempDir);
 
-    private static final Set<String> IGNORE = ImmutableSet.of(".job.xml", ".DS_Store");
+    private static final Set<String> IGNORE = ImmutableSet.of(".job.xml", ".job.bin", ".DS_Store");
 
     private void compare(File actDir, File expDir) throws SAXException, IOException {
         final File[] exps = expDir.listFiles();
@@ -11,7 +11,9 @@ package org.dita.dost.module;
 import com.google.common.collect.ImmutableMap;
 import org.dita.dost.TestUtils;
 import org.dita.dost.TestUtils.TestLogger;
+import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.module.KeyrefModule.ResolveTask;
+import org.dita.dost.reader.KeyrefReader;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo.Builder;
 import org.dita.dost.util.KeyDef;
@@ -27,6 +29,8 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,10 +48,11 @@ public class KeyrefModuleTest {
     private static final URI inputMap = new File(baseDir, "xsrc" + File.separator + "test.ditamap").toURI();
 
     KeyrefModule module;
+    File tempDir;
 
     @Before
     public void setUp() throws IOException {
-        final File tempDir = createTempDir(KeyrefModuleTest.class);
+        tempDir = createTempDir(KeyrefModuleTest.class);
 
         module = new KeyrefModule();
         final Job job = new Job(tempDir);
@@ -117,9 +122,11 @@ public class KeyrefModuleTest {
     }
 
     @Test
-    public void testWalkMap() throws ParserConfigurationException, IOException, SAXException {
-        final DocumentBuilder b = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        final Document act = b.parse(new File(baseDir, "src" + File.separator + "test.ditamap"));
+    public void testWalkMap() throws ParserConfigurationException, IOException, SAXException, DITAOTException {
+        final File map = new File(tempDir, "test.ditamap");
+        Files.copy(new File(baseDir, "src" + File.separator + "test.ditamap").toPath(), map.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        final KeyrefModule.MapNode root = module.readMap(map.toURI(), new KeyrefReader());
         final KeyScope keyScope =
                 new KeyScope("#root", null,
                             ImmutableMap.of(
@@ -133,7 +140,10 @@ public class KeyrefModuleTest {
                                             EMPTY_LIST)
         ));
         final List<ResolveTask> res = new ArrayList<>();
-        module.walkMap(act.getDocumentElement(), keyScope, res);
+        module.walkMap(root, keyScope, res);
+        module.writeMap(map, root);
+        final DocumentBuilder b = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        final Document act = b.parse(map);
         final Document exp = b.parse(new File(baseDir, "exp" + File.separator + "test.ditamap"));
 
         assertXMLEqual(exp, act);
@@ -23,7 +23,7 @@ import java.util.stream.Collectors;
 import static org.dita.dost.util.Constants.*;
 import static org.dita.dost.util.Job.FileInfo;
 import static org.dita.dost.util.Job.Generate.NOT_GENERATEOUTTER;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class TestGenMapAndTopicListModule {
 
@@ -39,6 +39,16 @@ public class TestGenMapAndTopicListModule {
     }
 
     private static Job generate(final File inputDir, final File inputMap, final File outDir, final File tempDir) throws DITAOTException, IOException {
+        return generate(inputDir, inputMap, outDir, tempDir, false);
+    }
+
+    private static Job generate(final File inputDir, final File inputMap, final File outDir, final File tempDir,
+                                final boolean parallel) throws DITAOTException, IOException {
+        return generate(inputDir, inputMap, outDir, tempDir, parallel, false);
+    }
+
+    private static Job generate(final File inputDir, final File inputMap, final File outDir, final File tempDir,
+                                final boolean parallel, final boolean incremental) throws DITAOTException, IOException {
         final PipelineHashIO pipelineInput = new PipelineHashIO();
         pipelineInput.setAttribute(ANT_INVOKER_PARAM_INPUTMAP, inputMap.getPath());
         pipelineInput.setAttribute(ANT_INVOKER_PARAM_BASEDIR, srcDir.getAbsolutePath());
@@ -56,9 +66,11 @@ public class TestGenMapAndTopicListModule {
         //pipelineInput.setAttribute("ditalist", new File(tempDir, FILE_NAME_DITA_LIST).getPath());
         pipelineInput.setAttribute(ANT_INVOKER_PARAM_MAPLINKS, new File(tempDir, "maplinks.unordered").getPath());
         pipelineInput.setAttribute(ANT_INVOKER_EXT_PARAN_SETSYSTEMID, "no");
+        pipelineInput.setAttribute(ANT_INVOKER_EXT_PARAM_INCREMENTAL, Boolean.toString(incremental));
 
         final GenMapAndTopicListModule module = new GenMapAndTopicListModule();
         module.setLogger(new TestUtils.TestLogger());
+        module.setParallel(parallel);
         final Job job = new Job(tempDir);
         module.setJob(job);
         module.execute(pipelineInput);
@@ -324,6 +336,41 @@ public class TestGenMapAndTopicListModule {
                         .collect(Collectors.toSet()));
     }
 
+    @Test
+    public void testParallelCrawl() throws Exception{
+        final File inputDir = new File("conref");
+        final File inputMap = new File(inputDir, "link.ditamap");
+        final File serialTempDir = new File(tempDir, "serial");
+        final File parallelTempDir = new File(tempDir, "parallel");
+        serialTempDir.mkdirs();
+        parallelTempDir.mkdirs();
+        final Job serial = generate(inputDir, inputMap, new File(serialTempDir, "out"), serialTempDir, false);
+        final Job parallel = generate(inputDir, inputMap, new File(parallelTempDir, "out"), parallelTempDir, true);
+
+        assertEquals(new HashSet<>(serial.getFileInfo()), new HashSet<>(parallel.getFileInfo()));
+        assertEquals(serial.getInputFile(), parallel.getInputFile());
+    }
+
+    @Test
+    public void testIncremental() throws Exception{
+        final File inputDir = new File("conref");
+        final File inputMap = new File(inputDir, "link.ditamap");
+        final File outDir = new File(tempDir, "out");
+        final Job first = generate(inputDir, inputMap, outDir, tempDir, false, true);
+        for (final Job.FileInfo fi : first.getFileInfo()) {
+            assertFalse(fi.isUnchanged);
+        }
+
+        final Job second = generate(inputDir, inputMap, outDir, tempDir, false, true);
+        for (final Job.FileInfo fi : second.getFileInfo()) {
+            if (fi.src != null && new File(fi.src).exists()) {
+                assertNotNull(fi.hash);
+                assertEquals(first.getFileInfo(fi.uri).hash, fi.hash);
+                assertTrue(fi.uri.toString(), fi.isUnchanged);
+            }
+        }
+    }
+
     private Set<String> readLines(final File f) throws IOException {
         final Set<String> lines = new HashSet<String>();
         BufferedReader in = null;
@@ -0,0 +1,67 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+
+package org.dita.dost.module.reader;
+
+import org.dita.dost.reader.GenListModuleReader.Reference;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.dita.dost.util.Constants.ATTR_FORMAT_VALUE_DITAMAP;
+import static org.junit.Assert.*;
+
+public class WaitListTest {
+
+    @Test
+    public void add() {
+        final WaitList waitList = new WaitList();
+        assertTrue(waitList.isEmpty());
+        assertTrue(waitList.add(new Reference(URI.create("file:/foo/bar.ditamap"), ATTR_FORMAT_VALUE_DITAMAP)));
+        assertTrue(waitList.add(new Reference(URI.create("file:/foo/baz.dita"))));
+        assertFalse(waitList.add(new Reference(URI.create("file:/foo/bar.ditamap"))));
+        assertFalse(waitList.add(new Reference(URI.create("file:/foo/./qux/../baz.dita"))));
+        assertEquals(2, waitList.size());
+    }
+
+    @Test
+    public void remove() {
+        final WaitList waitList = new WaitList();
+        waitList.add(new Reference(URI.create("file:/foo/bar.ditamap"), ATTR_FORMAT_VALUE_DITAMAP));
+        waitList.add(new Reference(URI.create("file:/foo/baz.dita")));
+
+        final Reference first = waitList.remove();
+        assertEquals(URI.create("file:/foo/bar.ditamap"), first.filename);
+        assertEquals(ATTR_FORMAT_VALUE_DITAMAP, first.format);
+        assertEquals(URI.create("file:/foo/baz.dita"), waitList.remove().filename);
+        assertTrue(waitList.isEmpty());
+
+        assertTrue(waitList.isSeen(URI.create("file:/foo/bar.ditamap")));
+        assertFalse(waitList.add(new Reference(URI.create("file:/foo/bar.ditamap"))));
+        assertTrue(waitList.isEmpty());
+    }
+
+    @Test
+    public void removeAll() {
+        final WaitList waitList = new WaitList();
+        waitList.add(new Reference(URI.create("file:/foo/a.dita")));
+        waitList.add(new Reference(URI.create("file:/foo/b.dita")));
+        waitList.add(new Reference(URI.create("file:/foo/c.dita")));
+
+        final List<Reference> act = waitList.removeAll();
+        assertEquals(Arrays.asList(URI.create("file:/foo/a.dita"), URI.create("file:/foo/b.dita"), URI.create("file:/foo/c.dita")),
+                Arrays.asList(act.get(0).filename, act.get(1).filename, act.get(2).filename));
+        assertTrue(waitList.isEmpty());
+        assertFalse(waitList.add(new Reference(URI.create("file:/foo/b.dita"))));
+        assertTrue(waitList.add(new Reference(URI.create("file:/foo/d.dita"))));
+        assertEquals(1, waitList.size());
+    }
+
+}
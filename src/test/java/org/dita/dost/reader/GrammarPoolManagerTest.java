@@ -0,0 +1,33 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.reader;
+
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class GrammarPoolManagerTest {
+
+    @Test
+    public void getGrammarPool() throws Exception {
+        final XMLGrammarPool pool = GrammarPoolManager.getGrammarPool();
+        assertNotNull(pool);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertSame(pool, executor.submit(GrammarPoolManager::getGrammarPool).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
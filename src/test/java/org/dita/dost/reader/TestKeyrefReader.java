@@ -22,6 +22,7 @@ import javax.xml.parsers.DocumentBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.net.URI;
 import java.util.*;
 
 import static junit.framework.Assert.assertEquals;
@@ -57,7 +58,7 @@ public class TestKeyrefReader {
         exp.put("blatintro", "<topicref keys='blatview blatfeference blatintro' href='blatview.dita' navtitle='blatview' locktitle='yes' class='- map/topicref '/>");
         exp.put("keyword", "<topicref keys='keyword' class='- map/topicref '><topicmeta class='- map/topicmeta '><keywords class='- topic/keywords '><keyword class='- topic/keyword '>keyword value</keyword></keywords></topicmeta></topicref>");
         exp.put("escape", "<topicref keys='escape' class='- map/topicref ' navtitle='&amp;&lt;&gt;&quot;&apos;'><topicmeta class='- map/topicmeta '><keywords class='- topic/keywords '><keyword class='- topic/keyword '>&amp;&lt;&gt;&quot;&apos;</keyword></keywords></topicmeta></topicref>");
-        exp.put("top", "<topicref keys='top' class='- map/topicref ' navtitle='top'><topicmeta class='- map/topicmeta '><keywords class='- topic/keywords '><keyword class='- topic/keyword '>top keyword</keyword></keywords></topicmeta><topicref keys='nested' class='- map/topicref ' navtitle='nested'><topicmeta class='- map/topicmeta '><keywords class='- topic/keywords '><keyword class='- topic/keyword '>nested keyword</keyword></keywords></topicmeta></topicref></topicref>");
+        exp.put("top", "<topicref keys='top' class='- map/topicref ' navtitle='top'><topicmeta class='- map/topicmeta '><keywords class='- topic/keywords '><keyword class='- topic/keyword '>top keyword</keyword></keywords></topicmeta></topicref>");
         exp.put("nested", "<topicref keys='nested' class='- map/topicref ' navtitle='nested'><topicmeta class='- map/topicmeta '><keywords class='- topic/keywords '><keyword class='- topic/keyword '>nested keyword</keyword></keywords></topicmeta></topicref>");
 
         assertEquals(exp.keySet(), act.keySet());
@@ -89,6 +90,47 @@ public class TestKeyrefReader {
         }
     }
 
+    @Test
+    public void testDetachedKeyDefinition() throws Exception {
+        final Document map = keyDefToDoc("<map class='- map/map '>" +
+                "<keydef keys='a' href='a.dita' class='+ map/topicref mapgroup-d/keydef '>" +
+                "<topicmeta class='- map/topicmeta '>" +
+                "<navtitle class='- topic/navtitle '>Navigation title</navtitle>" +
+                "<linktext class='- map/linktext '>Link <ph class='- topic/ph '>text</ph></linktext>" +
+                "</topicmeta>" +
+                "<topicref href='child.dita' class='- map/topicref '/>" +
+                "</keydef>" +
+                "</map>");
+
+        final KeyrefReader keyrefreader = new KeyrefReader();
+        keyrefreader.read(new File(srcDir, "detached.ditamap").toURI(), map);
+        final KeyScope act = keyrefreader.getKeyDefinition();
+
+        final Document exp = keyDefToDoc("<keydef keys='a' href='a.dita' class='+ map/topicref mapgroup-d/keydef '>" +
+                "<topicmeta class='- map/topicmeta '>" +
+                "<navtitle class='- topic/navtitle '>Navigation title</navtitle>" +
+                "<linktext class='- map/linktext '>Link <ph class='- topic/ph '>text</ph></linktext>" +
+                "</topicmeta>" +
+                "</keydef>");
+        assertXMLEqual(exp, act.get("a").element.getOwnerDocument());
+    }
+
+    @Test
+    public void testNestedMap() throws Exception {
+        final Document map = keyDefToDoc("<map class='- map/map '>" +
+                "<map class='- map/map '>" +
+                "<keydef keys='a' href='nested.dita' class='+ map/topicref mapgroup-d/keydef '/>" +
+                "</map>" +
+                "<keydef keys='a' href='outer.dita' class='+ map/topicref mapgroup-d/keydef '/>" +
+                "</map>");
+
+        final KeyrefReader keyrefreader = new KeyrefReader();
+        keyrefreader.read(new File(srcDir, "nested.ditamap").toURI(), map);
+        final KeyScope act = keyrefreader.getKeyDefinition();
+
+        assertEquals(URI.create("nested.dita"), act.get("a").href);
+    }
+
     private static Document keyDefToDoc(final String key) throws Exception {
         final InputSource inputSource = new InputSource(new StringReader(key));
         final DocumentBuilder documentBuilder = XMLUtils.getDocumentBuilder();
@@ -217,6 +259,30 @@ public class TestKeyrefReader {
 //        testKeyAttr(scope1, "scope2.test2", "id", "three");
     }
 
+    @Test
+    public void testInheritedKeyref() throws DITAOTException {
+        final File filename = new File(srcDir, "inheritedKeyref.ditamap");
+
+        final KeyrefReader keyrefreader = new KeyrefReader();
+        keyrefreader.read(filename.toURI(), readMap(filename));
+        final KeyScope root = keyrefreader.getKeyDefinition();
+
+        assertEquals(3, root.keySet().size());
+        assertNull(root.get("product").href);
+        assertEquals("a.dita", root.get("a.name").href.toString());
+
+        final KeyScope a = root.getChildScope("a");
+        assertEquals(4, a.keySet().size());
+        assertEquals("a.dita", a.get("product").href.toString());
+        assertEquals("a.dita", a.get("name").href.toString());
+
+        final KeyScope b = root.getChildScope("b");
+        assertEquals("b.dita", b.get("product").href.toString());
+        final KeyScope c = b.getChildScope("c");
+        assertEquals("b.dita", c.get("product").href.toString());
+        assertEquals(b.keyDefinition, c.keyDefinition);
+    }
+
     @Test
     public void testMapWithKeyscopes() throws DITAOTException {
         final File filename = new File(srcDir, "map-with-keyscopes.ditamap");
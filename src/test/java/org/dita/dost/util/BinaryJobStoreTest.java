@@ -0,0 +1,175 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.dita.dost.util.Job.FileInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryJobStoreTest {
+
+    @Rule
+    public TemporaryFolder tempDirGenerator = new TemporaryFolder();
+
+    private File tempDir;
+    private Map<String, Object> prop;
+    private Map<URI, FileInfo> files;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = tempDirGenerator.newFolder("temp");
+        prop = new HashMap<>();
+        prop.put("string", "value");
+        prop.put("set", new HashSet<>(Arrays.asList("a", "b")));
+        prop.put("map", Collections.singletonMap("key", "value"));
+        files = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            final FileInfo fi = new FileInfo.Builder()
+                    .src(new URI("file:/src/topic" + i + ".dita"))
+                    .uri(new URI("topic" + i + ".dita"))
+                    .format("dita")
+                    .hasConref(i % 2 == 0)
+                    .isUnchanged(i % 3 == 0)
+                    .hash("hash" + i)
+                    .dependencies(Collections.singleton(new URI("file:/src/map.ditamap")))
+                    .build();
+            files.put(fi.uri, fi);
+        }
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        new BinaryJobStore(tempDir).write(prop, files, 1L);
+
+        final Map<String, Object> actProp = new HashMap<>();
+        final Map<URI, FileInfo> actFiles = new HashMap<>();
+        new BinaryJobStore(tempDir).read(actProp, actFiles);
+        assertEquals(prop, actProp);
+        assertEquals(files, actFiles);
+    }
+
+    @Test
+    public void testIncrementalWrite() throws Exception {
+        final BinaryJobStore store = new BinaryJobStore(tempDir);
+        store.write(prop, files, 1L);
+        final File jobFile = new File(tempDir, BinaryJobStore.JOB_FILE);
+        final long full = jobFile.length();
+
+        files.get(new URI("topic1.dita")).isChunked = true;
+        files.remove(new URI("topic2.dita"));
+        prop.remove("string");
+        prop.put("new", "value");
+        store.write(prop, files, 2L);
+        assertTrue(jobFile.length() - full < full / 10);
+        assertEquals(2L, new BinaryJobStore(tempDir).getGeneration());
+
+        final Map<String, Object> actProp = new HashMap<>();
+        final Map<URI, FileInfo> actFiles = new HashMap<>();
+        new BinaryJobStore(tempDir).read(actProp, actFiles);
+        assertEquals(prop, actProp);
+        assertEquals(files, actFiles);
+    }
+
+    @Test
+    public void testReadTruncated() throws Exception {
+        final BinaryJobStore store = new BinaryJobStore(tempDir);
+        store.write(prop, files, 1L);
+        final File jobFile = new File(tempDir, BinaryJobStore.JOB_FILE);
+        final long full = jobFile.length();
+        files.get(new URI("topic1.dita")).isChunked = true;
+        store.write(prop, files, 2L);
+        try (RandomAccessFile raf = new RandomAccessFile(jobFile, "rw")) {
+            raf.setLength(full + 10);
+        }
+
+        final Map<URI, FileInfo> actFiles = new HashMap<>();
+        new BinaryJobStore(tempDir).read(new HashMap<>(), actFiles);
+        assertEquals(files.size(), actFiles.size());
+        assertFalse(actFiles.get(new URI("topic1.dita")).isChunked);
+    }
+
+    @Test
+    public void testJobExportXml() throws Exception {
+        final Job job = new Job(tempDir, new BinaryJobStore(tempDir));
+        job.setProperty("foo", "bar");
+        job.add(files.get(new URI("topic1.dita")));
+        job.write();
+        job.exportXml();
+
+        final Map<String, Object> actProp = new HashMap<>();
+        final Map<URI, FileInfo> actFiles = new HashMap<>();
+        new XmlJobStore(tempDir).read(actProp, actFiles);
+        assertEquals("bar", actProp.get("foo"));
+        assertEquals(files.get(new URI("topic1.dita")), actFiles.get(new URI("topic1.dita")));
+        assertFalse(job.isStale());
+        assertEquals(new BinaryJobStore(tempDir).getGeneration(), new XmlJobStore(tempDir).getGeneration());
+    }
+
+    @Test
+    public void testJobReadNewerXml() throws Exception {
+        final Job job = new Job(tempDir, new BinaryJobStore(tempDir));
+        job.setProperty("foo", "bar");
+        job.write();
+        job.exportXml();
+        job.setProperty("foo", "baz");
+        job.write();
+        assertEquals("baz", new Job(tempDir, new BinaryJobStore(tempDir)).getProperty("foo"));
+
+        final Map<String, Object> xmlProp = new HashMap<>();
+        final XmlJobStore xmlStore = new XmlJobStore(tempDir);
+        xmlStore.read(xmlProp, new HashMap<>());
+        xmlProp.put("foo", "qux");
+        xmlStore.write(xmlProp, new HashMap<>(), new BinaryJobStore(tempDir).getGeneration() + 1);
+        assertTrue(job.isStale());
+        assertEquals("qux", new Job(tempDir, new BinaryJobStore(tempDir)).getProperty("foo"));
+    }
+
+    @Test
+    public void testJobReadXmlWithoutGeneration() throws Exception {
+        Files.write(new File(tempDir, XmlJobStore.JOB_FILE).toPath(),
+                "<job><property name='foo'><string>bar</string></property></job>".getBytes(StandardCharsets.UTF_8));
+        assertEquals(XmlJobStore.GENERATION_UNKNOWN, new XmlJobStore(tempDir).getGeneration());
+        final Job job = new Job(tempDir, new BinaryJobStore(tempDir));
+        assertEquals("bar", job.getProperty("foo"));
+        job.setProperty("foo", "baz");
+        job.write();
+        assertEquals(1L, new BinaryJobStore(tempDir).getGeneration());
+        assertEquals(1L, new XmlJobStore(tempDir).getGeneration());
+        assertEquals("baz", new Job(tempDir, new BinaryJobStore(tempDir)).getProperty("foo"));
+    }
+
+    @Test
+    public void testJobStaleAfterXmlRewrite() throws Exception {
+        for (final JobStore store : new JobStore[] {new BinaryJobStore(tempDir), new XmlJobStore(tempDir)}) {
+            final Job job = new Job(tempDir, store);
+            job.setProperty("foo", "bar");
+            job.write();
+            job.exportXml();
+            assertFalse(job.isStale());
+
+            // other tools rewrite job file without generation
+            Files.write(new File(tempDir, XmlJobStore.JOB_FILE).toPath(),
+                    "<job><property name='foo'><string>qux</string></property></job>".getBytes(StandardCharsets.UTF_8));
+            assertTrue(job.isStale());
+            assertEquals("qux", new Job(tempDir, store).getProperty("foo"));
+        }
+    }
+
+}
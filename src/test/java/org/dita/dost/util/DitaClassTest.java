@@ -10,6 +10,8 @@ package org.dita.dost.util;
 import static org.dita.dost.util.Constants.ATTRIBUTE_NAME_CLASS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -71,6 +73,37 @@ public class DitaClassTest {
     public void testMatchesString() {
         assertTrue(new DitaClass("- foo/bar ").matches("- foo/bar baz/qux "));
         assertTrue(new DitaClass("- foo/bar baz/qux ").matches("- foo/bar baz/qux "));
+        assertTrue(new DitaClass("- foo/bar ").matches("-\tfoo/bar\n baz/qux"));
+        assertFalse(new DitaClass("- foo/ba ").matches("- foo/bar baz/qux "));
+        assertFalse(new DitaClass("- bar/baz ").matches("- foo/bar baz/qux "));
+        assertFalse(new DitaClass("- foo/bar ").matches("foo/bar "));
+        assertFalse(new DitaClass("- foo/bar ").matches(""));
+        assertFalse(new DitaClass("- foo/bar ").matches(" "));
+        assertFalse(new DitaClass("- foo/bar ").matches((String) null));
+    }
+
+    @Test
+    public void testMatchesStringFullCache() {
+        for (int i = 0; i < 8192; i++) {
+            DitaClass.getInstance("- fill/fill fill/f" + i + " ");
+        }
+        assertTrue(new DitaClass("- full/bar ").matches("- full/bar baz/qux "));
+        assertTrue(new DitaClass("- full/bar baz/qux ").matches("- full/bar baz/qux "));
+        assertTrue(new DitaClass("- full/bar ").matches("-\tfull/bar\n baz/qux"));
+        assertFalse(new DitaClass("- full/ba ").matches("- full/bar baz/qux "));
+        assertFalse(new DitaClass("- bar/baz ").matches("- full/bar baz/qux "));
+        assertFalse(new DitaClass("- full/bar ").matches("full/bar "));
+        assertFalse(new DitaClass("- full/bar ").matches(" "));
+    }
+
+    @Test
+    public void testGetInstance() {
+        final String cls = "- foo/bar baz/qux ";
+        final DitaClass act = DitaClass.getInstance(cls);
+        assertEquals(new DitaClass(cls), act);
+        assertSame(act, DitaClass.getInstance(cls));
+        assertSame(act, DitaClass.getInstance(new String(cls)));
+        assertNull(DitaClass.getInstance((String) null));
     }
 
     @Test
@@ -0,0 +1,86 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.dita.dost.util.DocumentCache.IndexedDocument;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class DocumentCacheTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File a;
+    private File b;
+
+    @Before
+    public void setUp() throws Exception {
+        final File baseDir = tempDir.newFolder("temp");
+        a = new File(baseDir, "a.xml");
+        write(a, "<topic id='a'><title/><body><p id='p1'/><p id='p2'/></body></topic>");
+        b = new File(baseDir, "b.xml");
+        write(b, "<topic id='a'><title/><body><p id='p1'/><p id='p2'/></body></topic>");
+    }
+
+    @Test
+    public void generateId() throws SAXException {
+        final String id = generateId(new DocumentCache(1), a, "p2");
+        assertEquals(id, generateId(new DocumentCache(1), a, "p2"));
+        assertNotEquals(id, generateId(new DocumentCache(1), a, "p1"));
+        assertNotEquals(id, generateId(new DocumentCache(1), b, "p2"));
+    }
+
+    @Test
+    public void generateIdAfterEviction() throws SAXException {
+        final DocumentCache cache = new DocumentCache(1);
+        final String id = generateId(cache, a, "p1");
+        generateId(cache, b, "p1");
+        assertEquals(id, generateId(cache, a, "p1"));
+        assertEquals(3, cache.getStats().missCount());
+    }
+
+    @Test
+    public void getMissing() throws SAXException {
+        final DocumentCache cache = new DocumentCache(1);
+        assertNull(cache.get(new File(a.getParentFile(), "missing.xml").toURI()));
+    }
+
+    @Test
+    public void getMalformed() throws IOException {
+        final File malformed = new File(a.getParentFile(), "malformed.xml");
+        write(malformed, "<topic id='a'><title></topic>");
+        final DocumentCache cache = new DocumentCache(1);
+        try {
+            cache.get(malformed.toURI());
+            fail();
+        } catch (final SAXException e) {
+            assertTrue(e.getMessage().contains(malformed.toURI().toString()));
+        }
+    }
+
+    private static String generateId(final DocumentCache cache, final File file, final String id) throws SAXException {
+        final IndexedDocument doc = cache.get(file.toURI());
+        return doc.generateId(doc.getElementsById(id).get(0));
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -154,6 +154,24 @@ public class FilterUtilsTest {
         assertTrue(f.needExclude(windows, new QName[0][0]));
     }
 
+    @Test
+    public void testNeedExcludeRepeated() {
+        final Map<FilterKey, Action> fm = new HashMap<>(filterMap);
+        fm.put(new FilterKey(OS, "windows"), Action.INCLUDE);
+        fm.put(new FilterKey(GUI, "windows"), Action.EXCLUDE);
+        final FilterUtils f = new FilterUtils(false, fm, null, null);
+        f.setLogger(new TestUtils.TestLogger());
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(f.needExclude(attr(PLATFORM, "windows"), new QName[0][0]));
+            assertFalse(f.needExclude(attr(AUDIENCE, "windows"), new QName[0][0]));
+            assertFalse(f.needExclude(attr(OS, "windows"), new QName[][] {{PROPS, OS}}));
+            assertTrue(f.needExclude(attr(GUI, "windows"), new QName[][] {{PROPS, GUI}}));
+            assertTrue(f.needExclude(attr(PROPS, "gui(windows)"), new QName[][] {{PROPS, GUI}}));
+            assertFalse(f.needExclude(attr(PROPS, "os(windows)"), new QName[][] {{PROPS, OS}}));
+        }
+    }
+
     @Test
     public void testNeedExcludeDomainAttribute() {
         final Map<FilterKey, Action> fm = new HashMap<>();
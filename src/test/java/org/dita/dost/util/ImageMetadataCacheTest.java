@@ -0,0 +1,104 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.dita.dost.writer.ImageMetadataFilter.Dimensions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class ImageMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File image;
+    private final AtomicInteger reads = new AtomicInteger();
+    private final Function<URI, Dimensions> reader = uri -> {
+        reads.incrementAndGet();
+        final Dimensions dimensions = new Dimensions();
+        dimensions.width = "10";
+        dimensions.height = "20";
+        dimensions.horizontalDpi = "72";
+        return dimensions;
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        image = tempDir.newFile("image.png");
+        Files.write(image.toPath(), new byte[] {1, 2, 3});
+    }
+
+    @Test
+    public void get() {
+        final ImageMetadataCache cache = new ImageMetadataCache();
+        assertEquals("10", cache.get(image.toURI(), reader).width);
+        assertEquals("10", cache.get(image.toURI(), reader).width);
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void get_modified() throws IOException {
+        final ImageMetadataCache cache = new ImageMetadataCache();
+        cache.get(image.toURI(), reader);
+        Files.write(image.toPath(), new byte[] {1, 2, 3, 4});
+        cache.get(image.toURI(), reader);
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void get_failed() {
+        final ImageMetadataCache cache = new ImageMetadataCache();
+        assertNull(cache.get(image.toURI(), uri -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void get_dataUri() {
+        final ImageMetadataCache cache = new ImageMetadataCache();
+        final URI data = URI.create("data:image/png;base64,AAAA");
+        cache.get(data, reader);
+        cache.get(data, reader);
+        assertEquals(2, reads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void readWrite() throws IOException {
+        final File file = new File(tempDir.getRoot(), "cache" + File.separator + "image-metadata.bin");
+        final ImageMetadataCache cache = new ImageMetadataCache();
+        cache.get(image.toURI(), reader);
+        cache.write(file);
+        assertTrue(file.exists());
+
+        final ImageMetadataCache act = ImageMetadataCache.read(file);
+        assertEquals(1, act.size());
+        final Dimensions dimensions = act.get(image.toURI(), reader);
+        assertEquals(1, reads.get());
+        assertEquals("10", dimensions.width);
+        assertEquals("20", dimensions.height);
+        assertEquals("72", dimensions.horizontalDpi);
+        assertNull(dimensions.verticalDpi);
+    }
+
+    @Test
+    public void read_missing() throws IOException {
+        assertEquals(0, ImageMetadataCache.read(new File(tempDir.getRoot(), "missing.bin")).size());
+    }
+
+}
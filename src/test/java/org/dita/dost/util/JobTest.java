@@ -15,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -61,6 +62,23 @@ public final class JobTest {
         assertNull(job.getFileInfo((URI) null));
     }
 
+    @Test
+    public void testWriteHash() throws IOException, URISyntaxException {
+        final URI relative = new URI("foo/hash.dita");
+        final Job.FileInfo fi = new Job.FileInfo.Builder()
+                .uri(relative)
+                .hash("abc123")
+                .dependencies(Collections.singleton(new URI("file:/src/foo/bar.dita")))
+                .isUnchanged(true)
+                .build();
+        job.add(fi);
+        job.write();
+        final Job.FileInfo act = new Job(tempDir).getFileInfo(relative);
+        assertEquals("abc123", act.hash);
+        assertEquals(Collections.singleton(new URI("file:/src/foo/bar.dita")), act.dependencies);
+        assertTrue(act.isUnchanged);
+    }
+
     @Test
     public void testGetInputMap() {
         assertEquals(toURI("foo"), job.getInputMap());
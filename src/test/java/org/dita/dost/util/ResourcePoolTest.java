@@ -0,0 +1,52 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResourcePoolTest {
+
+    @Test
+    public void testBorrow() {
+        final List<StringBuilder> reset = new ArrayList<>();
+        final ResourcePool<StringBuilder> pool = new ResourcePool<>("test", 1, StringBuilder::new, b -> {
+            b.setLength(0);
+            reset.add(b);
+        });
+        final StringBuilder first = pool.borrow();
+        first.append("foo");
+        final StringBuilder second = pool.borrow();
+        assertNotSame(first, second);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(2, reset.size());
+        assertEquals(1, pool.getIdle());
+
+        final StringBuilder third = pool.borrow();
+        assertSame(first, third);
+        assertEquals(0, third.length());
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+    }
+
+    @Test
+    public void testReleaseFailedReset() {
+        final ResourcePool<StringBuilder> pool = new ResourcePool<>("test", 2, StringBuilder::new, b -> {
+            throw new IllegalStateException();
+        });
+        pool.release(pool.borrow());
+        pool.release(null);
+        assertEquals(0, pool.getIdle());
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SourceTreeCacheTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private Templates templates;
+    private File baseDir;
+    private File doc;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = tempDir.newFolder("temp");
+        doc = new File(baseDir, "doc.xml");
+        write(doc, "<root>\n  <a>first</a>\n</root>");
+        templates = TransformerFactory.newInstance().newTemplates(new StreamSource(new StringReader(
+                "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='2.0'>" +
+                "<xsl:strip-space elements='*'/>" +
+                "<xsl:output method='text'/>" +
+                "<xsl:template match='/'>" +
+                "<xsl:value-of select=\"count(document(input/@href)/root/node()), document(input/@href)/root/a\"/>" +
+                "</xsl:template></xsl:stylesheet>")));
+    }
+
+    @Test
+    public void resolve() throws Exception {
+        final SourceTreeCache cache = new SourceTreeCache(1);
+        assertEquals("1 first", transform(cache, baseDir, doc));
+        assertEquals(1, cache.getMisses());
+        assertEquals("1 first", transform(cache, baseDir, doc));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void resolve_modified() throws Exception {
+        final SourceTreeCache cache = new SourceTreeCache(1);
+        assertEquals("1 first", transform(cache, baseDir, doc));
+        write(doc, "<root><a>second</a></root>");
+        assertEquals("1 second", transform(cache, baseDir, doc));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void resolve_invalidate() throws Exception {
+        final SourceTreeCache cache = new SourceTreeCache(1);
+        transform(cache, baseDir, doc);
+        cache.invalidate(doc);
+        transform(cache, baseDir, doc);
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void resolve_invalidateAll() throws Exception {
+        final SourceTreeCache cache = new SourceTreeCache(1);
+        transform(cache, baseDir, doc);
+        cache.invalidateAll(tempDir.newFolder("other"));
+        transform(cache, baseDir, doc);
+        assertEquals(1, cache.getHits());
+        cache.invalidateAll(baseDir);
+        transform(cache, baseDir, doc);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void resolve_outsideBaseDir() throws Exception {
+        final SourceTreeCache cache = new SourceTreeCache(1);
+        assertEquals("1 first", transform(cache, tempDir.newFolder("other"), doc));
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    private String transform(final SourceTreeCache cache, final File baseDir, final File doc) throws Exception {
+        final Transformer t = templates.newTransformer();
+        t.setURIResolver(cache.getURIResolver(t, baseDir, null));
+        final StringWriter buf = new StringWriter();
+        final StreamSource src = new StreamSource(new StringReader("<input href='doc.xml'/>"), new File(doc.getParentFile(), "input.xml").toURI().toString());
+        t.transform(src, new StreamResult(buf));
+        return buf.toString();
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.transform.Templates;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class TemplatesCacheTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File style;
+    private File module;
+
+    @Before
+    public void setUp() throws IOException {
+        style = tempDir.newFile("style.xsl");
+        module = tempDir.newFile("module.xsl");
+        write(style, "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='2.0'>" +
+                "<xsl:import href='module.xsl'/></xsl:stylesheet>");
+        write(module, "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='2.0'/>");
+    }
+
+    @Test
+    public void getTemplates() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(2);
+        final Templates first = cache.getTemplates(style, null, null);
+        assertSame(first, cache.getTemplates(style, null, null));
+        assertNotSame(first, cache.getTemplates(style, null, "catalog.xml"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void getTemplates_catalogIdentity() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(2);
+        final Object catalog = new Object();
+        final Templates first = cache.getTemplates(style, null, catalog);
+        assertSame(first, cache.getTemplates(style, null, catalog));
+        assertNotSame(first, cache.getTemplates(style, null, new Object()));
+    }
+
+    @Test
+    public void getTemplates_modifiedImport() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(2);
+        final Templates first = cache.getTemplates(style, null, null);
+        assertTrue(module.setLastModified(module.lastModified() - 10000L));
+        final Templates second = cache.getTemplates(style, null, null);
+        assertNotSame(first, second);
+        assertSame(second, cache.getTemplates(style, null, null));
+    }
+
+    @Test
+    public void getTemplates_evict() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(1);
+        final Templates first = cache.getTemplates(style, null, null);
+        cache.getTemplates(module, null, null);
+        assertEquals(1, cache.size());
+        assertNotSame(first, cache.getTemplates(style, null, null));
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -7,10 +7,15 @@
  */
 package org.dita.dost.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+
 import org.dita.dost.util.DITAOTCollator;
 import org.junit.Test;
-import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.*;
 public class TestDITAOTCollator {
     @Test
     public void testgetinstance()
@@ -19,4 +24,40 @@ public class TestDITAOTCollator {
         assertNotSame(DITAOTCollator.getInstance(Locale.US),DITAOTCollator.getInstance(Locale.UK));
     }
 
+    @Test
+    public void testCompare() {
+        final DITAOTCollator c = DITAOTCollator.getInstance(Locale.US);
+        assertTrue(c.compare("a", "B") < 0);
+        assertTrue(c.compare("\u00e4", "b") < 0);
+        assertEquals(0, c.compare("a", "a"));
+    }
+
+    @Test
+    public void testGetCollationKey() {
+        final DITAOTCollator c = DITAOTCollator.getInstance(Locale.US);
+        assertSame(c.getCollationKey("abc"), c.getCollationKey("abc"));
+        assertTrue(c.getCollationKey("a").compareTo(c.getCollationKey("B")) < 0);
+    }
+
+    @Test
+    public void testSort() {
+        final List<String> act = new ArrayList<>(Arrays.asList("c", "B", "\u00e4", "a"));
+        DITAOTCollator.getInstance(Locale.US).sort(act);
+        assertEquals(Arrays.asList("a", "\u00e4", "B", "c"), act);
+    }
+
+    @Test
+    public void testSortLarge() {
+        final DITAOTCollator c = DITAOTCollator.getInstance(Locale.US);
+        final Random random = new Random(0);
+        final List<String> act = new ArrayList<>();
+        for (int i = 0; i < DITAOTCollator.PARALLEL_SORT_THRESHOLD * 2; i++) {
+            act.add(Integer.toString(random.nextInt(), 36));
+        }
+        final List<String> exp = new ArrayList<>(act);
+        exp.sort(c);
+        c.sort(act);
+        assertEquals(exp, act);
+    }
+
 }
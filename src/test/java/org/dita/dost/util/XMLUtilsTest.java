@@ -10,6 +10,10 @@ package org.dita.dost.util;
 import static javax.xml.XMLConstants.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -18,8 +22,12 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Document;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Attr;
+import org.dita.dost.TestUtils;
 import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
 import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
 import org.junit.Test;
 
 public class XMLUtilsTest {
@@ -207,4 +215,38 @@ public class XMLUtilsTest {
         assertTrue(XMLUtils.nonDitaContext(classes));
     }
 
+    @Test
+    public void testTransformPooled() throws Exception {
+        final File tempDir = TestUtils.createTempDir(XMLUtilsTest.class);
+        try {
+            final File src = new File(tempDir, "src.xml");
+            Files.write(src.toPath(), "<root><a/></root>".getBytes(StandardCharsets.UTF_8));
+            final XMLUtils xmlUtils = new XMLUtils();
+            final long misses = XMLUtils.getXMLReaderPool().getMisses();
+            for (int i = 0; i < 3; i++) {
+                final XMLFilter filter = new XMLFilterImpl() {
+                    @Override
+                    public void startElement(final String uri, final String localName, final String qName,
+                                             final Attributes atts) throws SAXException {
+                        final String name = localName.equals("a") ? "b" : localName;
+                        super.startElement(uri, name, name, atts);
+                    }
+
+                    @Override
+                    public void endElement(final String uri, final String localName, final String qName)
+                            throws SAXException {
+                        final String name = localName.equals("a") ? "b" : localName;
+                        super.endElement(uri, name, name);
+                    }
+                };
+                xmlUtils.transform(src, new File(tempDir, "dst" + i + ".xml"), Collections.singletonList(filter));
+                final Document act = XMLUtils.getDocumentBuilder().parse(new File(tempDir, "dst" + i + ".xml"));
+                assertEquals(1, act.getElementsByTagName("b").getLength());
+            }
+            assertTrue(XMLUtils.getXMLReaderPool().getMisses() - misses <= 1);
+        } finally {
+            TestUtils.forceDelete(tempDir);
+        }
+    }
+
 }
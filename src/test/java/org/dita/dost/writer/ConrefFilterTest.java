@@ -0,0 +1,171 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.writer;
+
+import static org.dita.dost.TestUtils.CachingLogger.Message.Level.ERROR;
+import static org.dita.dost.TestUtils.CachingLogger.Message.Level.WARN;
+import static org.dita.dost.TestUtils.assertXMLEqual;
+import static org.dita.dost.util.Constants.TRANS_TYPE_ECLIPSEHELP;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
+
+import org.dita.dost.TestUtils;
+import org.dita.dost.TestUtils.CachingLogger;
+import org.dita.dost.TestUtils.CachingLogger.Message;
+import org.dita.dost.util.DocumentCache;
+import org.dita.dost.writer.ConrefFilter.ExportAnchors;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+public class ConrefFilterTest {
+
+    private static final File resourceDir = TestUtils.getResourceDir(ConrefFilterTest.class);
+    private static final File srcDir = new File(resourceDir, "src");
+    private static final File expDir = new File(resourceDir, "exp");
+
+    private CachingLogger logger;
+    private DocumentCache cache;
+
+    @Before
+    public void setUp() {
+        logger = new CachingLogger();
+        cache = new DocumentCache();
+    }
+
+    @Test
+    public void test() throws Exception {
+        assertXMLEqual(getExpected("topic.dita"), resolve("topic.dita", f -> {}));
+
+        final List<Message> errors = getMessages(ERROR);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).message.contains("DOTX010E"));
+        assertEquals(2, cache.getStats().missCount());
+    }
+
+    @Test
+    public void testConaction() throws Exception {
+        assertXMLEqual(getExpected("conaction.dita"), resolve("conaction.dita", f -> {}));
+        assertTrue(getMessages(ERROR).isEmpty());
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        assertXMLEqual(getExpected("nested.dita"), resolve("nested.dita", f -> {}));
+        final List<Message> errors = getMessages(ERROR);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).message.contains("DOTX013E"));
+    }
+
+    @Test
+    public void testDomainGeneralization() throws Exception {
+        assertXMLEqual(getExpected("domains.dita"), resolve("domains.dita", f -> {}));
+        assertTrue(getMessages(WARN).isEmpty());
+    }
+
+    @Test
+    public void testDomainConstraints() throws Exception {
+        assertXMLEqual(getExpected("constraints.dita"), resolve("constraints.dita", f -> {}));
+        final List<Message> warnings = getMessages(WARN);
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).message.contains("DOTX012W"));
+    }
+
+    @Test
+    public void testExportAnchors() throws Exception {
+        final DocumentCache exportCache = new DocumentCache(1);
+        final Element export = exportCache.get(new File(srcDir, "sub" + File.separator + "export.xml").toURI())
+                .document.getDocumentElement();
+        final ExportAnchors exportAnchors = ExportAnchors.read(export);
+
+        assertXMLEqual(getExpected("export.dita"), resolve("export.dita", f -> {
+            f.setTranstype(TRANS_TYPE_ECLIPSEHELP);
+            f.setExportAnchors(exportAnchors);
+        }));
+        assertXMLEqual(getExpected("export_resolved.dita"), resolve("export.dita", f -> {
+            f.setTranstype("xhtml");
+            f.setExportAnchors(exportAnchors);
+        }));
+    }
+
+    @Test
+    public void testLinks() throws Exception {
+        final Document act = resolve("links.dita", f -> {});
+        final Element section = getElements(act, "section").get(0);
+        assertFalse(section.hasAttribute("id"));
+        assertFalse(section.hasAttribute("conref"));
+
+        final Element p = getElements(act, "p").get(0);
+        final String id = p.getAttribute("id");
+        assertTrue(id.matches("d[0-9a-f]+e\\d+"));
+        final List<String> hrefs = getElements(act, "xref").stream()
+                .map(xref -> xref.getAttribute("href"))
+                .collect(Collectors.toList());
+        assertEquals("#links/" + id, hrefs.get(0));
+        assertEquals("sub/links.dita#other/target", hrefs.get(1));
+        assertEquals("sub/other.dita#other", hrefs.get(2));
+        assertEquals("http://example.com/", hrefs.get(3));
+        assertEquals("sub/image.png", getElements(act, "image").get(0).getAttribute("href"));
+
+        assertEquals("links", act.getDocumentElement().getAttribute("id"));
+        assertEquals(id, getElements(resolve("links.dita", f -> {}), "p").get(0).getAttribute("id"));
+    }
+
+    private Document resolve(final String name, final Consumer<ConrefFilter> config) throws Exception {
+        final File src = new File(srcDir, name);
+        final ConrefFilter f = new ConrefFilter();
+        f.setLogger(logger);
+        f.setDocumentCache(cache);
+        f.setCurrentFile(src.toURI());
+        config.accept(f);
+        final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        f.setParent(parserFactory.newSAXParser().getXMLReader());
+
+        final DOMResult dst = new DOMResult();
+        TransformerFactory.newInstance().newTransformer().transform(new SAXSource(f, new InputSource(src.toURI().toString())), dst);
+        return (Document) dst.getNode();
+    }
+
+    private static Document getExpected(final String name) throws Exception {
+        final DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+        builderFactory.setNamespaceAware(true);
+        builderFactory.setIgnoringComments(true);
+        return builderFactory.newDocumentBuilder().parse(new File(expDir, name));
+    }
+
+    private List<Message> getMessages(final Message.Level level) {
+        return logger.getMessages().stream()
+                .filter(msg -> msg.level == level)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Element> getElements(final Document doc, final String name) {
+        final NodeList ns = doc.getElementsByTagName(name);
+        final List<Element> res = new ArrayList<>(ns.getLength());
+        for (int i = 0; i < ns.getLength(); i++) {
+            res.add((Element) ns.item(i));
+        }
+        return res;
+    }
+
+}
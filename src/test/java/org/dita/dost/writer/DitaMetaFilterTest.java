@@ -0,0 +1,153 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ *
+ * Copyright 2017 Jarno Elovirta
+ *
+ * See the accompanying LICENSE file for applicable license.
+ */
+package org.dita.dost.writer;
+
+import org.dita.dost.util.DitaClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xmlunit.builder.DiffBuilder;
+import org.xmlunit.diff.Diff;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.dita.dost.util.Constants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DitaMetaFilterTest {
+
+    private static final String TOPIC =
+            "<topic class='- topic/topic ' id='t'>\n" +
+            "  <title class='- topic/title '>Title</title>\n" +
+            "  <shortdesc class='- topic/shortdesc '>Short</shortdesc>\n" +
+            "  <prolog class='- topic/prolog '>\n" +
+            "    <source class='- topic/source '>Old</source>\n" +
+            "    <metadata class='- topic/metadata '>\n" +
+            "      <keywords class='- topic/keywords '><keyword class='- topic/keyword '>old</keyword></keywords>\n" +
+            "    </metadata>\n" +
+            "  </prolog>\n" +
+            "  <body class='- topic/body '><p class='- topic/p '>Body</p></body>\n" +
+            "  <topic class='- topic/topic ' id='nested'><title class='- topic/title '>Nested</title></topic>\n" +
+            "</topic>";
+    private static final String TOPIC_NO_PROLOG =
+            "<dita>\n" +
+            "  <topic class='- topic/topic ' id='t'>\n" +
+            "    <title class='- topic/title '>Title</title>\n" +
+            "    <body class='- topic/body '/>\n" +
+            "  </topic>\n" +
+            "  <topic class='- topic/topic ' id='t2'><title class='- topic/title '>Second</title></topic>\n" +
+            "</dita>";
+
+    private static final String TOPIC_LEXICAL =
+            "<topic class='- topic/topic ' id='t'>\n" +
+            "  <!-- title -->\n" +
+            "  <title class='- topic/title '>Title <![CDATA[<Header>]]></title>\n" +
+            "  <prolog class='- topic/prolog '><!-- prolog --></prolog>\n" +
+            "  <body class='- topic/body '><!-- body --><p class='- topic/p '><![CDATA[<Body>]]></p></body>\n" +
+            "</topic>";
+
+    private Map<String, Element> metaTable;
+
+    @Before
+    public void setUp() throws Exception {
+        final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        metaTable = new HashMap<>();
+        metaTable.put(TOPIC_NAVTITLE.matcher, stub(doc, TOPIC_NAVTITLE, "Nav"));
+        metaTable.put(TOPIC_AUTHOR.matcher, stub(doc, TOPIC_AUTHOR, "Author"));
+        metaTable.put(TOPIC_SOURCE.matcher, stub(doc, TOPIC_SOURCE, "New"));
+        metaTable.put(TOPIC_KEYWORDS.matcher, stub(doc, TOPIC_KEYWORDS, "new"));
+    }
+
+    @Test
+    public void testProlog() throws Exception {
+        assertSame(TOPIC);
+    }
+
+    @Test
+    public void testNoProlog() throws Exception {
+        assertSame(TOPIC_NO_PROLOG);
+    }
+
+    @Test
+    public void testCommentsAndCDATA() throws Exception {
+        final Document act = filter(TOPIC_LEXICAL);
+        assertSame(TOPIC_LEXICAL, act);
+        assertEquals("Title <Header>", act.getElementsByTagName(TOPIC_TITLE.localName).item(0).getTextContent());
+        assertEquals(Node.COMMENT_NODE, act.getElementsByTagName(TOPIC_PROLOG.localName).item(0).getFirstChild().getNodeType());
+        assertEquals(Node.COMMENT_NODE, act.getElementsByTagName(TOPIC_BODY.localName).item(0).getFirstChild().getNodeType());
+    }
+
+    @Test
+    public void testNoMetadata() throws Exception {
+        metaTable.clear();
+        assertSame(TOPIC);
+    }
+
+    /**
+     * Assert streaming filter output is the same as DOM writer output.
+     */
+    private void assertSame(final String src) throws Exception {
+        assertSame(src, filter(src));
+    }
+
+    private void assertSame(final String src, final Document act) throws Exception {
+        final DitaMetaWriter writer = new DitaMetaWriter();
+        writer.setMetaTable(metaTable);
+        // identity transformer does not preserve CDATA section boundaries
+        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setCoalescing(true);
+        final Document exp = writer.process(dbf.newDocumentBuilder().parse(new InputSource(new StringReader(src))));
+
+        final Diff d = DiffBuilder
+                .compare(exp)
+                .withTest(act)
+                .ignoreWhitespace()
+                .build();
+        assertFalse(d.toString(), d.hasDifferences());
+    }
+
+    private Document filter(final String src) throws Exception {
+        final DitaMetaFilter filter = new DitaMetaFilter();
+        filter.setMetaTable(metaTable);
+        final SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        filter.setParent(spf.newSAXParser().getXMLReader());
+        final DOMResult act = new DOMResult();
+        TransformerFactory.newInstance().newTransformer()
+                .transform(new SAXSource(filter, new InputSource(new StringReader(src))), act);
+        return (Document) act.getNode();
+    }
+
+    private static Element stub(final Document doc, final DitaClass cls, final String content) {
+        final Element stub = doc.createElement("stub");
+        final Element elem = doc.createElement(cls.localName);
+        elem.setAttribute(ATTRIBUTE_NAME_CLASS, cls.toString());
+        if (cls == TOPIC_KEYWORDS) {
+            final Element keyword = doc.createElement(TOPIC_KEYWORD.localName);
+            keyword.setAttribute(ATTRIBUTE_NAME_CLASS, TOPIC_KEYWORD.toString());
+            keyword.setTextContent(content);
+            elem.appendChild(keyword);
+        } else {
+            elem.setTextContent(content);
+        }
+        stub.appendChild(elem);
+        return stub;
+    }
+
+}